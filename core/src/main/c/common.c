@@ -77,6 +77,10 @@ void throw_native_exception(JNIEnv *env, char *msg) {
     throw_tel_schich_javacan_platform_linux_LinuxNativeOperationException_cstr(env, msg, errorNumber, strerror(errorNumber));
 }
 
+bool would_block(void) {
+    return errno == EAGAIN || errno == EWOULDBLOCK;
+}
+
 void parse_timestamp(struct cmsghdr *cmsg, jlong* software_seconds, jlong* software_nanos, jlong* hardware_seconds, jlong* hardware_nanos) {
     struct timeval tv;
     struct timespec ts;
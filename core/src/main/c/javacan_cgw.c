@@ -0,0 +1,40 @@
+/**
+ * The MIT License
+ * Copyright © 2018 Phillip Schichtel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+#include "common.h"
+#include <linux/netlink.h>
+#include <linux/can/gw.h>
+#include <stddef.h>
+
+_Static_assert(sizeof(struct rtcanmsg) == 4, "unexpected size of struct rtcanmsg");
+_Static_assert(CGW_MODATTR_LEN == 17, "unexpected size of struct cgw_frame_mod");
+_Static_assert(CGW_FDMODATTR_LEN == 73, "unexpected size of struct cgw_fdframe_mod");
+_Static_assert(CGW_CS_XOR_LEN == 4, "unexpected size of struct cgw_csum_xor");
+_Static_assert(CGW_CS_CRC8_LEN == 282, "unexpected size of struct cgw_csum_crc8");
+
+JNIEXPORT jint JNICALL Java_tel_schich_javacan_SocketCAN_createNetlinkSocket(JNIEnv *env, jclass class) {
+    jint fd = socket(AF_NETLINK, SOCK_RAW, NETLINK_ROUTE);
+    if (fd == -1) {
+        throw_native_exception(env, "Unable to create netlink socket");
+    }
+    return fd;
+}
@@ -20,9 +20,13 @@
  * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
  * THE SOFTWARE.
  */
+#define _GNU_SOURCE
 #include "common.h"
 #include <linux/can.h>
 #include <linux/can/j1939.h>
+#include <linux/errqueue.h>
+#include <linux/netlink.h>
+#include <errno.h>
 #include <stddef.h>
 #include <string.h>
 
@@ -162,17 +166,51 @@ struct j1939_message_header_buffer {
     jbyte priority;
 };
 
-JNIEXPORT jlong JNICALL Java_tel_schich_javacan_SocketCAN_receiveWithJ1939Headers(JNIEnv *env, jclass clazz, jint sock, jobject buffer, jint offset, jint len, jint flags, jobject headerBuffer, jint headerOffset) {
+static void init_j1939_message_header(struct j1939_message_header_buffer *header_buffer) {
+    memset(header_buffer, 0, sizeof(*header_buffer));
+    header_buffer->dst_addr = J1939_NO_ADDR;
+    header_buffer->dst_name = J1939_NO_NAME;
+}
+
+static void parse_j1939_message_header(struct msghdr *header, struct j1939_message_header_buffer *header_buffer) {
+    for (struct cmsghdr *cmsg = CMSG_FIRSTHDR(header); cmsg; cmsg = CMSG_NXTHDR(header, cmsg)) {
+        if (cmsg->cmsg_level == SOL_CAN_J1939) {
+            switch (cmsg->cmsg_type) {
+                case SCM_J1939_DEST_ADDR:
+                    header_buffer->dst_addr = (jbyte) *CMSG_DATA(cmsg);
+                    break;
+                case SCM_J1939_DEST_NAME:
+                    memcpy(&header_buffer->dst_name, CMSG_DATA(cmsg), cmsg->cmsg_len - CMSG_LEN(0));
+                    break;
+                case SCM_J1939_ERRQUEUE:
+                    break;
+                case SCM_J1939_PRIO:
+                    header_buffer->priority = (jbyte) *CMSG_DATA(cmsg);
+                    break;
+            }
+        } else {
+            parse_timestamp(
+                cmsg,
+                &header_buffer->software_timestamp_seconds,
+                &header_buffer->software_timestamp_nanos,
+                &header_buffer->hardware_timestamp_seconds,
+                &header_buffer->hardware_timestamp_nanos
+            );
+        }
+    }
+}
+
+#define J1939_CONTROL_SIZE 200
+
+static jlong receive_with_j1939_headers(JNIEnv *env, jint sock, jobject buffer, jint offset, jint len, jint flags, jobject headerBuffer, jint headerOffset, bool fail_if_would_block) {
     void *raw_buf = (*env)->GetDirectBufferAddress(env, buffer);
     void *buf = raw_buf + offset;
-    char control[200];
+    char control[J1939_CONTROL_SIZE];
 
 
     void *raw_header_buf = (*env)->GetDirectBufferAddress(env, headerBuffer);
     struct j1939_message_header_buffer* header_buffer = (struct j1939_message_header_buffer*) (raw_header_buf + headerOffset);
-    memset(header_buffer, 0, sizeof(*header_buffer));
-    header_buffer->dst_addr = J1939_NO_ADDR;
-    header_buffer->dst_name = J1939_NO_NAME;
+    init_j1939_message_header(header_buffer);
 
 
     struct iovec iov = {
@@ -191,37 +229,203 @@ JNIEXPORT jlong JNICALL Java_tel_schich_javacan_SocketCAN_receiveWithJ1939Header
 
     ssize_t bytes_received = recvmsg(sock, &header, flags);
     if (bytes_received == -1) {
-        throw_native_exception(env, "Unable to recvmsg from the socket");
+        if (fail_if_would_block || !would_block()) {
+            throw_native_exception(env, "Unable to recvmsg from the socket");
+        }
         return bytes_received;
     }
 
+    parse_j1939_message_header(&header, header_buffer);
+
+    return bytes_received;
+}
+
+JNIEXPORT jlong JNICALL Java_tel_schich_javacan_SocketCAN_receiveWithJ1939Headers(JNIEnv *env, jclass clazz, jint sock, jobject buffer, jint offset, jint len, jint flags, jobject headerBuffer, jint headerOffset) {
+    return receive_with_j1939_headers(env, sock, buffer, offset, len, flags, headerBuffer, headerOffset, true);
+}
+
+JNIEXPORT jlong JNICALL Java_tel_schich_javacan_SocketCAN_tryReceiveWithJ1939Headers(JNIEnv *env, jclass clazz, jint sock, jobject buffer, jint offset, jint len, jint flags, jobject headerBuffer, jint headerOffset) {
+    return receive_with_j1939_headers(env, sock, buffer, offset, len, flags, headerBuffer, headerOffset, false);
+}
+
+#define RECEIVE_J1939_MULTIPLE_CHUNK_SIZE 64
+
+JNIEXPORT jint JNICALL Java_tel_schich_javacan_SocketCAN_receiveJ1939Multiple(JNIEnv *env, jclass clazz, jint sock, jobject buffer, jint slotSize, jintArray lengths, jobject headerBuffer, jint count, jint flags) {
+    void *raw_buf = (*env)->GetDirectBufferAddress(env, buffer);
+    struct j1939_message_header_buffer *header_buffers = (*env)->GetDirectBufferAddress(env, headerBuffer);
+    struct mmsghdr messages[RECEIVE_J1939_MULTIPLE_CHUNK_SIZE];
+    struct iovec iovecs[RECEIVE_J1939_MULTIPLE_CHUNK_SIZE];
+    char controls[RECEIVE_J1939_MULTIPLE_CHUNK_SIZE][J1939_CONTROL_SIZE];
+    jint chunk_lengths[RECEIVE_J1939_MULTIPLE_CHUNK_SIZE];
+
+    jint total_received = 0;
+    // block for the first message at most, later chunks only collect what is already queued
+    int chunk_flags = flags | MSG_WAITFORONE;
+    while (total_received < count) {
+        int chunk_size = count - total_received;
+        if (chunk_size > RECEIVE_J1939_MULTIPLE_CHUNK_SIZE) {
+            chunk_size = RECEIVE_J1939_MULTIPLE_CHUNK_SIZE;
+        }
+
+        memset(messages, 0, sizeof(struct mmsghdr) * chunk_size);
+        for (int i = 0; i < chunk_size; ++i) {
+            struct j1939_message_header_buffer *header_buffer = &header_buffers[total_received + i];
+            init_j1939_message_header(header_buffer);
+            iovecs[i].iov_base = raw_buf + (size_t) (total_received + i) * slotSize;
+            iovecs[i].iov_len = (size_t) slotSize;
+            messages[i].msg_hdr.msg_name = &header_buffer->source_address;
+            messages[i].msg_hdr.msg_namelen = sizeof(struct sockaddr_can);
+            messages[i].msg_hdr.msg_control = controls[i];
+            messages[i].msg_hdr.msg_controllen = J1939_CONTROL_SIZE;
+            messages[i].msg_hdr.msg_iov = &iovecs[i];
+            messages[i].msg_hdr.msg_iovlen = 1;
+        }
+
+        int received = recvmmsg(sock, messages, (unsigned int) chunk_size, chunk_flags, NULL);
+        if (received == -1) {
+            if (total_received == 0) {
+                throw_native_exception(env, "Unable to receive multiple messages from the socket");
+            }
+            // nothing more is queued, report what has been received so far
+            return total_received;
+        }
+
+        for (int i = 0; i < received; ++i) {
+            parse_j1939_message_header(&messages[i].msg_hdr, &header_buffers[total_received + i]);
+            chunk_lengths[i] = (jint) messages[i].msg_len;
+        }
+        (*env)->SetIntArrayRegion(env, lengths, total_received, received, chunk_lengths);
+        total_received += received;
+        if (received < chunk_size) {
+            break;
+        }
+        chunk_flags = flags | MSG_DONTWAIT;
+    }
+    return total_received;
+}
+
+struct j1939_error_queue_event_buffer {
+    jint error_number;
+    jint origin;
+    jint info;
+    jint session_id;
+    jlong software_timestamp_seconds;
+    jlong software_timestamp_nanos;
+    jlong hardware_timestamp_seconds;
+    jlong hardware_timestamp_nanos;
+    jlong bytes_acked;
+    jlong total_size;
+    jint pgn;
+    jlong src_name;
+    jlong dst_name;
+    jbyte src_addr;
+    jbyte dst_addr;
+};
+
+static void parse_j1939_stats(struct j1939_error_queue_event_buffer *event, void *stats, ssize_t len) {
+    struct nlattr *attr = stats;
+    while (len >= (ssize_t) NLA_HDRLEN && attr->nla_len >= NLA_HDRLEN && attr->nla_len <= len) {
+        void *data = (void *) attr + NLA_HDRLEN;
+        __u32 u32;
+        __u64 u64;
+        switch (attr->nla_type) {
+            case J1939_NLA_BYTES_ACKED:
+                memcpy(&u32, data, sizeof(u32));
+                event->bytes_acked = u32;
+                break;
+            case J1939_NLA_TOTAL_SIZE:
+                memcpy(&u32, data, sizeof(u32));
+                event->total_size = u32;
+                break;
+            case J1939_NLA_PGN:
+                memcpy(&u32, data, sizeof(u32));
+                event->pgn = (jint) u32;
+                break;
+            case J1939_NLA_SRC_NAME:
+                memcpy(&u64, data, sizeof(u64));
+                event->src_name = (jlong) u64;
+                break;
+            case J1939_NLA_DEST_NAME:
+                memcpy(&u64, data, sizeof(u64));
+                event->dst_name = (jlong) u64;
+                break;
+            case J1939_NLA_SRC_ADDR:
+                event->src_addr = *(jbyte *) data;
+                break;
+            case J1939_NLA_DEST_ADDR:
+                event->dst_addr = *(jbyte *) data;
+                break;
+        }
+        ssize_t aligned = NLA_ALIGN(attr->nla_len);
+        len -= aligned;
+        attr = (void *) attr + aligned;
+    }
+}
+
+JNIEXPORT jint JNICALL Java_tel_schich_javacan_SocketCAN_receiveJ1939ErrorQueue(JNIEnv *env, jclass clazz, jint sock, jobject eventBuffer, jint eventOffset) {
+    char control[512];
+    // the kernel attaches the session statistics as netlink attributes to the error queue message
+    char stats[256];
+
+    void *raw_event_buf = (*env)->GetDirectBufferAddress(env, eventBuffer);
+    struct j1939_error_queue_event_buffer* event = (struct j1939_error_queue_event_buffer*) (raw_event_buf + eventOffset);
+    memset(event, 0, sizeof(*event));
+    event->bytes_acked = -1;
+    event->total_size = -1;
+    event->pgn = J1939_NO_PGN;
+    event->src_name = J1939_NO_NAME;
+    event->dst_name = J1939_NO_NAME;
+    event->src_addr = J1939_NO_ADDR;
+    event->dst_addr = J1939_NO_ADDR;
+
+    struct iovec iov = {
+        .iov_base = stats,
+        .iov_len = sizeof(stats),
+    };
+    struct msghdr header = {
+        .msg_name = NULL,
+        .msg_namelen = 0,
+        .msg_control = control,
+        .msg_controllen = sizeof(control),
+        .msg_flags = 0,
+        .msg_iov = &iov,
+        .msg_iovlen = 1,
+    };
+
+    ssize_t bytes_received = recvmsg(sock, &header, MSG_ERRQUEUE | MSG_DONTWAIT);
+    if (bytes_received == -1) {
+        if (errno == EAGAIN || errno == EWOULDBLOCK) {
+            return 0;
+        }
+        throw_native_exception(env, "Unable to recvmsg from the error queue of the socket");
+        return -1;
+    }
+
     for (struct cmsghdr *cmsg = CMSG_FIRSTHDR(&header); cmsg; cmsg = CMSG_NXTHDR(&header, cmsg)) {
-        if (cmsg->cmsg_level == SOL_CAN_J1939) {
-            switch (cmsg->cmsg_type) {
-                case SCM_J1939_DEST_ADDR:
-                    header_buffer->dst_addr = (jbyte) *CMSG_DATA(cmsg);
-                    break;
-                case SCM_J1939_DEST_NAME:
-                    memcpy(&header_buffer->dst_name, CMSG_DATA(cmsg), cmsg->cmsg_len - CMSG_LEN(0));
-                    break;
-                case SCM_J1939_ERRQUEUE:
-                    break;
-                case SCM_J1939_PRIO:
-                    header_buffer->priority = (jbyte) *CMSG_DATA(cmsg);
-                    break;
+        if (cmsg->cmsg_level == SOL_CAN_J1939 && cmsg->cmsg_type == SCM_J1939_ERRQUEUE) {
+            struct sock_extended_err serr;
+            if (cmsg->cmsg_len < CMSG_LEN(sizeof(serr))) {
+                continue;
             }
+            memcpy(&serr, CMSG_DATA(cmsg), sizeof(serr));
+            event->error_number = (jint) serr.ee_errno;
+            event->origin = serr.ee_origin;
+            event->info = (jint) serr.ee_info;
+            event->session_id = (jint) serr.ee_data;
         } else {
             parse_timestamp(
                 cmsg,
-                &header_buffer->software_timestamp_seconds,
-                &header_buffer->software_timestamp_nanos,
-                &header_buffer->hardware_timestamp_seconds,
-                &header_buffer->hardware_timestamp_nanos
+                &event->software_timestamp_seconds,
+                &event->software_timestamp_nanos,
+                &event->hardware_timestamp_seconds,
+                &event->hardware_timestamp_nanos
             );
         }
     }
 
-    return bytes_received;
+    parse_j1939_stats(event, stats, bytes_received);
+
+    return 1;
 }
 
 JNIEXPORT jlong JNICALL Java_tel_schich_javacan_SocketCAN_sendJ1939Message(JNIEnv *env, jclass clazz, jint sock, jobject data, jint offset, jint len, jint flags, jint destination_ifindex, jlong destination_name, jint destination_pgn, jbyte destination_address) {
@@ -243,6 +447,70 @@ JNIEXPORT jlong JNICALL Java_tel_schich_javacan_SocketCAN_sendJ1939Message(JNIEn
     return bytes_sent;
 }
 
+JNIEXPORT jlong JNICALL Java_tel_schich_javacan_SocketCAN_sendJ1939MessageTo(JNIEnv *env, jclass clazz, jint sock, jobject data, jint offset, jint len, jint flags, jobject addressBuffer, jint addressOffset) {
+    void *raw_buf = (*env)->GetDirectBufferAddress(env, data);
+    void *data_start = raw_buf + offset;
+    void *raw_address_buf = (*env)->GetDirectBufferAddress(env, addressBuffer);
+    struct sockaddr_can *destination = (struct sockaddr_can *) (raw_address_buf + addressOffset);
+    destination->can_family = AF_CAN;
+
+    ssize_t bytes_sent = sendto(sock, data_start, len, flags, (const struct sockaddr *) destination, sizeof(*destination));
+    if (bytes_sent == -1) {
+        throw_native_exception(env, "Unable to sendto to the socket");
+    }
+    return bytes_sent;
+}
+
+#define SEND_J1939_MULTIPLE_CHUNK_SIZE 64
+
+JNIEXPORT jint JNICALL Java_tel_schich_javacan_SocketCAN_sendJ1939Multiple(JNIEnv *env, jclass clazz, jint sock, jobject buf, jintArray offsets, jintArray lengths, jobject addressBuffer, jint addressOffset, jint count, jint flags) {
+    void *raw_buf = (*env)->GetDirectBufferAddress(env, buf);
+    struct sockaddr_can *destinations = (struct sockaddr_can *) ((*env)->GetDirectBufferAddress(env, addressBuffer) + addressOffset);
+    struct mmsghdr messages[SEND_J1939_MULTIPLE_CHUNK_SIZE];
+    struct iovec iovecs[SEND_J1939_MULTIPLE_CHUNK_SIZE];
+    jint chunk_offsets[SEND_J1939_MULTIPLE_CHUNK_SIZE];
+    jint chunk_lengths[SEND_J1939_MULTIPLE_CHUNK_SIZE];
+
+    jint total_sent = 0;
+    while (total_sent < count) {
+        int chunk_size = count - total_sent;
+        if (chunk_size > SEND_J1939_MULTIPLE_CHUNK_SIZE) {
+            chunk_size = SEND_J1939_MULTIPLE_CHUNK_SIZE;
+        }
+        (*env)->GetIntArrayRegion(env, offsets, total_sent, chunk_size, chunk_offsets);
+        (*env)->GetIntArrayRegion(env, lengths, total_sent, chunk_size, chunk_lengths);
+        if ((*env)->ExceptionCheck(env)) {
+            return total_sent;
+        }
+
+        memset(messages, 0, sizeof(struct mmsghdr) * chunk_size);
+        for (int i = 0; i < chunk_size; ++i) {
+            struct sockaddr_can *destination = &destinations[total_sent + i];
+            destination->can_family = AF_CAN;
+            iovecs[i].iov_base = raw_buf + chunk_offsets[i];
+            iovecs[i].iov_len = (size_t) chunk_lengths[i];
+            messages[i].msg_hdr.msg_name = destination;
+            messages[i].msg_hdr.msg_namelen = sizeof(*destination);
+            messages[i].msg_hdr.msg_iov = &iovecs[i];
+            messages[i].msg_hdr.msg_iovlen = 1;
+        }
+
+        int sent = sendmmsg(sock, messages, (unsigned int) chunk_size, flags);
+        if (sent == -1) {
+            if (total_sent == 0) {
+                throw_native_exception(env, "Unable to send multiple messages to the socket");
+            }
+            // report the partial success, the error will occur again on the next call
+            return total_sent;
+        }
+        total_sent += sent;
+        if (sent < chunk_size) {
+            break;
+        }
+    }
+    return total_sent;
+}
+
 JNIEXPORT jint JNICALL Java_tel_schich_javacan_SocketCAN_getJ1939MaxFilters(JNIEnv *env, jclass clazz) {
     return J1939_FILTER_MAX;
 }
@@ -351,3 +619,67 @@ JNIEXPORT jint JNICALL Java_tel_schich_javacan_J1939ReceiveMessageHeaderBuffer_g
 JNIEXPORT jint JNICALL Java_tel_schich_javacan_J1939ReceiveMessageHeaderBuffer_getStructPriorityOffset(JNIEnv *env, jclass clazz) {
     return offsetof(struct j1939_message_header_buffer, priority);
 }
+
+JNIEXPORT jint JNICALL Java_tel_schich_javacan_J1939ErrorQueueEventBuffer_getStructSize(JNIEnv *env, jclass clazz) {
+    return sizeof(struct j1939_error_queue_event_buffer);
+}
+
+JNIEXPORT jint JNICALL Java_tel_schich_javacan_J1939ErrorQueueEventBuffer_getStructErrorNumberOffset(JNIEnv *env, jclass clazz) {
+    return offsetof(struct j1939_error_queue_event_buffer, error_number);
+}
+
+JNIEXPORT jint JNICALL Java_tel_schich_javacan_J1939ErrorQueueEventBuffer_getStructOriginOffset(JNIEnv *env, jclass clazz) {
+    return offsetof(struct j1939_error_queue_event_buffer, origin);
+}
+
+JNIEXPORT jint JNICALL Java_tel_schich_javacan_J1939ErrorQueueEventBuffer_getStructInfoOffset(JNIEnv *env, jclass clazz) {
+    return offsetof(struct j1939_error_queue_event_buffer, info);
+}
+
+JNIEXPORT jint JNICALL Java_tel_schich_javacan_J1939ErrorQueueEventBuffer_getStructSessionIdOffset(JNIEnv *env, jclass clazz) {
+    return offsetof(struct j1939_error_queue_event_buffer, session_id);
+}
+
+JNIEXPORT jint JNICALL Java_tel_schich_javacan_J1939ErrorQueueEventBuffer_getStructSoftwareTimestampSecondsOffset(JNIEnv *env, jclass clazz) {
+    return offsetof(struct j1939_error_queue_event_buffer, software_timestamp_seconds);
+}
+
+JNIEXPORT jint JNICALL Java_tel_schich_javacan_J1939ErrorQueueEventBuffer_getStructSoftwareTimestampNanosOffset(JNIEnv *env, jclass clazz) {
+    return offsetof(struct j1939_error_queue_event_buffer, software_timestamp_nanos);
+}
+
+JNIEXPORT jint JNICALL Java_tel_schich_javacan_J1939ErrorQueueEventBuffer_getStructHardwareTimestampSecondsOffset(JNIEnv *env, jclass clazz) {
+    return offsetof(struct j1939_error_queue_event_buffer, hardware_timestamp_seconds);
+}
+
+JNIEXPORT jint JNICALL Java_tel_schich_javacan_J1939ErrorQueueEventBuffer_getStructHardwareTimestampNanosOffset(JNIEnv *env, jclass clazz) {
+    return offsetof(struct j1939_error_queue_event_buffer, hardware_timestamp_nanos);
+}
+
+JNIEXPORT jint JNICALL Java_tel_schich_javacan_J1939ErrorQueueEventBuffer_getStructBytesAckedOffset(JNIEnv *env, jclass clazz) {
+    return offsetof(struct j1939_error_queue_event_buffer, bytes_acked);
+}
+
+JNIEXPORT jint JNICALL Java_tel_schich_javacan_J1939ErrorQueueEventBuffer_getStructTotalSizeOffset(JNIEnv *env, jclass clazz) {
+    return offsetof(struct j1939_error_queue_event_buffer, total_size);
+}
+
+JNIEXPORT jint JNICALL Java_tel_schich_javacan_J1939ErrorQueueEventBuffer_getStructPgnOffset(JNIEnv *env, jclass clazz) {
+    return offsetof(struct j1939_error_queue_event_buffer, pgn);
+}
+
+JNIEXPORT jint JNICALL Java_tel_schich_javacan_J1939ErrorQueueEventBuffer_getStructSrcNameOffset(JNIEnv *env, jclass clazz) {
+    return offsetof(struct j1939_error_queue_event_buffer, src_name);
+}
+
+JNIEXPORT jint JNICALL Java_tel_schich_javacan_J1939ErrorQueueEventBuffer_getStructDstNameOffset(JNIEnv *env, jclass clazz) {
+    return offsetof(struct j1939_error_queue_event_buffer, dst_name);
+}
+
+JNIEXPORT jint JNICALL Java_tel_schich_javacan_J1939ErrorQueueEventBuffer_getStructSrcAddrOffset(JNIEnv *env, jclass clazz) {
+    return offsetof(struct j1939_error_queue_event_buffer, src_addr);
+}
+
+JNIEXPORT jint JNICALL Java_tel_schich_javacan_J1939ErrorQueueEventBuffer_getStructDstAddrOffset(JNIEnv *env, jclass clazz) {
+    return offsetof(struct j1939_error_queue_event_buffer, dst_addr);
+}
@@ -180,7 +180,7 @@ struct raw_message_header_buffer {
     jlong hardware_timestamp_nanos;
 };
 
-JNIEXPORT jlong JNICALL Java_tel_schich_javacan_SocketCAN_receiveWithRawHeaders(JNIEnv *env, jclass clazz, jint sock, jobject buffer, jint offset, jint len, jint flags, jobject headerBuffer, jint headerOffset) {
+static jlong receive_with_raw_headers(JNIEnv *env, jint sock, jobject buffer, jint offset, jint len, jint flags, jobject headerBuffer, jint headerOffset, bool fail_if_would_block) {
     void *raw_buf = (*env)->GetDirectBufferAddress(env, buffer);
     void *buf = raw_buf + offset;
     char control[200];
@@ -206,7 +206,9 @@ JNIEXPORT jlong JNICALL Java_tel_schich_javacan_SocketCAN_receiveWithRawHeaders(
 
     ssize_t bytes_received = recvmsg(sock, &header, flags);
     if (bytes_received == -1) {
-        throw_native_exception(env, "Unable to recvmsg from the socket");
+        if (fail_if_would_block || !would_block()) {
+            throw_native_exception(env, "Unable to recvmsg from the socket");
+        }
         return bytes_received;
     }
 
@@ -229,6 +231,14 @@ JNIEXPORT jlong JNICALL Java_tel_schich_javacan_SocketCAN_receiveWithRawHeaders(
     return bytes_received;
 }
 
+JNIEXPORT jlong JNICALL Java_tel_schich_javacan_SocketCAN_receiveWithRawHeaders(JNIEnv *env, jclass clazz, jint sock, jobject buffer, jint offset, jint len, jint flags, jobject headerBuffer, jint headerOffset) {
+    return receive_with_raw_headers(env, sock, buffer, offset, len, flags, headerBuffer, headerOffset, true);
+}
+
+JNIEXPORT jlong JNICALL Java_tel_schich_javacan_SocketCAN_tryReceiveWithRawHeaders(JNIEnv *env, jclass clazz, jint sock, jobject buffer, jint offset, jint len, jint flags, jobject headerBuffer, jint headerOffset) {
+    return receive_with_raw_headers(env, sock, buffer, offset, len, flags, headerBuffer, headerOffset, false);
+}
+
 JNIEXPORT jint JNICALL Java_tel_schich_javacan_RawReceiveMessageHeaderBuffer_getStructSize(JNIEnv *env, jclass clazz) {
     return sizeof(struct raw_message_header_buffer);
 }
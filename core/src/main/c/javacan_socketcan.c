@@ -20,12 +20,15 @@
  * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
  * THE SOFTWARE.
  */
+#define _GNU_SOURCE
 #include "common.h"
 #include <sys/socket.h>
 #include <unistd.h>
 #include <poll.h>
 #include <fcntl.h>
 #include <sys/time.h>
+#include <sys/uio.h>
+#include <string.h>
 
 #ifndef SO_RXQ_OVFL
 #include <asm/socket.h>
@@ -97,6 +100,10 @@ JNIEXPORT void JNICALL Java_tel_schich_javacan_SocketCAN_close(JNIEnv *env, jcla
     }
 }
 
+JNIEXPORT jstring JNICALL Java_tel_schich_javacan_SocketCAN_errorString(JNIEnv *env, jclass clazz, jint errorNumber) {
+    return (*env)->NewStringUTF(env, strerror(errorNumber));
+}
+
 JNIEXPORT jint JNICALL Java_tel_schich_javacan_SocketCAN_setBlockingMode(JNIEnv *env, jclass clazz, jint sock, jboolean block) {
     jint result = set_blocking_mode(sock, block);
     if (result == -1) {
@@ -161,6 +168,24 @@ JNIEXPORT jint JNICALL Java_tel_schich_javacan_SocketCAN_getReceiveBufferSize(JN
     return size;
 }
 
+JNIEXPORT jint JNICALL Java_tel_schich_javacan_SocketCAN_setSendBufferSize(JNIEnv *env, jclass clazz, jint sock, jint size) {
+    jint result = setsockopt(sock, SOL_SOCKET, SO_SNDBUF, &size, sizeof(size));
+    if (result) {
+        throw_native_exception(env, "Unable to set send buffer size");
+    }
+    return result;
+}
+
+JNIEXPORT jint JNICALL Java_tel_schich_javacan_SocketCAN_getSendBufferSize(JNIEnv *env, jclass clazz, jint sock) {
+    int size = 0;
+    socklen_t size_size = sizeof(size);
+    int result = getsockopt(sock, SOL_SOCKET, SO_SNDBUF, &size, &size_size);
+    if (result) {
+        throw_native_exception(env, "Unable to get send buffer size");
+    }
+    return size;
+}
+
 JNIEXPORT jlong JNICALL Java_tel_schich_javacan_SocketCAN_write(JNIEnv *env, jclass clazz, jint sock, jobject buf, jint offset, jint len) {
     void *raw_buf = (*env)->GetDirectBufferAddress(env, buf);
     void *data_start = raw_buf + offset;
@@ -181,6 +206,16 @@ JNIEXPORT jlong JNICALL Java_tel_schich_javacan_SocketCAN_read(JNIEnv *env, jcla
     return bytes_read;
 }
 
+JNIEXPORT jlong JNICALL Java_tel_schich_javacan_SocketCAN_tryRead(JNIEnv *env, jclass clazz, jint sock, jobject buf, jint offset, jint len) {
+    void *raw_buf = (*env)->GetDirectBufferAddress(env, buf);
+    void *data_start = raw_buf + offset;
+    ssize_t bytes_read = read(sock, data_start, (size_t) len);
+    if (bytes_read == -1 && !would_block()) {
+        throw_native_exception(env, "Unable to read from the socket");
+    }
+    return bytes_read;
+}
+
 JNIEXPORT jlong JNICALL Java_tel_schich_javacan_SocketCAN_send(JNIEnv *env, jclass clazz, jint sock, jobject buf, jint offset, jint len, jint flags) {
     void *raw_buf = (*env)->GetDirectBufferAddress(env, buf);
     void *data_start = raw_buf + offset;
@@ -201,6 +236,61 @@ JNIEXPORT jlong JNICALL Java_tel_schich_javacan_SocketCAN_receive(JNIEnv *env, j
     return bytes_received;
 }
 
+JNIEXPORT jlong JNICALL Java_tel_schich_javacan_SocketCAN_tryReceive(JNIEnv *env, jclass clazz, jint sock, jobject buf, jint offset, jint len, jint flags) {
+    void *raw_buf = (*env)->GetDirectBufferAddress(env, buf);
+    void *data_start = raw_buf + offset;
+    ssize_t bytes_received = recv(sock, data_start, (size_t) len, flags);
+    if (bytes_received == -1 && !would_block()) {
+        throw_native_exception(env, "Unable to recv from the socket");
+    }
+    return bytes_received;
+}
+
+#define SEND_MULTIPLE_CHUNK_SIZE 64
+
+JNIEXPORT jint JNICALL Java_tel_schich_javacan_SocketCAN_sendMultiple(JNIEnv *env, jclass clazz, jint sock, jobject buf, jintArray offsets, jintArray lengths, jint count, jint flags) {
+    void *raw_buf = (*env)->GetDirectBufferAddress(env, buf);
+    struct mmsghdr messages[SEND_MULTIPLE_CHUNK_SIZE];
+    struct iovec iovecs[SEND_MULTIPLE_CHUNK_SIZE];
+    jint chunk_offsets[SEND_MULTIPLE_CHUNK_SIZE];
+    jint chunk_lengths[SEND_MULTIPLE_CHUNK_SIZE];
+
+    jint total_sent = 0;
+    while (total_sent < count) {
+        int chunk_size = count - total_sent;
+        if (chunk_size > SEND_MULTIPLE_CHUNK_SIZE) {
+            chunk_size = SEND_MULTIPLE_CHUNK_SIZE;
+        }
+        (*env)->GetIntArrayRegion(env, offsets, total_sent, chunk_size, chunk_offsets);
+        (*env)->GetIntArrayRegion(env, lengths, total_sent, chunk_size, chunk_lengths);
+        if ((*env)->ExceptionCheck(env)) {
+            return total_sent;
+        }
+
+        memset(messages, 0, sizeof(struct mmsghdr) * chunk_size);
+        for (int i = 0; i < chunk_size; ++i) {
+            iovecs[i].iov_base = raw_buf + chunk_offsets[i];
+            iovecs[i].iov_len = (size_t) chunk_lengths[i];
+            messages[i].msg_hdr.msg_iov = &iovecs[i];
+            messages[i].msg_hdr.msg_iovlen = 1;
+        }
+
+        int sent = sendmmsg(sock, messages, (unsigned int) chunk_size, flags);
+        if (sent == -1) {
+            if (total_sent == 0) {
+                throw_native_exception(env, "Unable to send multiple messages to the socket");
+            }
+            // report the partial success, the error will occur again on the next call
+            return total_sent;
+        }
+        total_sent += sent;
+        if (sent < chunk_size) {
+            break;
+        }
+    }
+    return total_sent;
+}
+
 JNIEXPORT jshort JNICALL Java_tel_schich_javacan_SocketCAN_poll(JNIEnv *env, jclass clazz, jint sock, jint events, jint timeout) {
     return poll_single(sock, (short) events, timeout);
 }
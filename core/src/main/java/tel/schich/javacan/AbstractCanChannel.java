@@ -29,6 +29,7 @@ import java.nio.channels.Channel;
 import java.nio.channels.ClosedChannelException;
 import java.util.concurrent.atomic.AtomicBoolean;
 
+import org.eclipse.jdt.annotation.Nullable;
 import tel.schich.javacan.platform.NativeChannel;
 import tel.schich.javacan.platform.linux.LinuxNativeOperationException;
 import tel.schich.javacan.platform.linux.UnixFileDescriptor;
@@ -46,6 +47,8 @@ public abstract class AbstractCanChannel implements NativeChannel<UnixFileDescri
     private final int sock;
     private final UnixFileDescriptor fileDescriptor;
     private final AtomicBoolean open = new AtomicBoolean(true);
+    @Nullable
+    private volatile ChannelMetrics metrics;
 
     public AbstractCanChannel(int sock) {
         this.sock = sock;
@@ -78,6 +81,26 @@ public abstract class AbstractCanChannel implements NativeChannel<UnixFileDescri
         return sock;
     }
 
+    /**
+     * Attaches {@link ChannelMetrics} to this channel, all reads and writes are counted from now on. The same
+     * instance can be attached to several channels to aggregate their counts.
+     *
+     * @param metrics the metrics or null to stop collecting metrics
+     */
+    public void setMetrics(@Nullable ChannelMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Returns the {@link ChannelMetrics} attached to this channel.
+     *
+     * @return the metrics or null if no metrics are collected
+     */
+    @Nullable
+    public ChannelMetrics getMetrics() {
+        return metrics;
+    }
+
     @Override
     public UnixFileDescriptor getHandle() {
         return fileDescriptor;
@@ -112,7 +135,7 @@ public abstract class AbstractCanChannel implements NativeChannel<UnixFileDescri
         try {
             SocketCAN.setBlockingMode(sock, block);
         } catch (LinuxNativeOperationException e) {
-            throw checkForClosedChannel(e);
+            throw failed(e);
         }
     }
 
@@ -127,7 +150,7 @@ public abstract class AbstractCanChannel implements NativeChannel<UnixFileDescri
         try {
             return SocketCAN.getBlockingMode(sock) != 0;
         } catch (LinuxNativeOperationException e) {
-            throw checkForClosedChannel(e);
+            throw failed(e);
         }
     }
 
@@ -164,7 +187,7 @@ public abstract class AbstractCanChannel implements NativeChannel<UnixFileDescri
             try {
                 ((CanSocketOption<T>) option).getHandler().set(getHandle(), value, validate);
             } catch (LinuxNativeOperationException e) {
-                throw checkForClosedChannel(e);
+                throw failed(e);
             }
         } else {
             throw new IllegalArgumentException("option " + option.name() + " is not supported by CAN channels!");
@@ -187,7 +210,7 @@ public abstract class AbstractCanChannel implements NativeChannel<UnixFileDescri
             try {
                 return ((CanSocketOption<T>) option).getHandler().get(getHandle());
             } catch (LinuxNativeOperationException e) {
-                throw checkForClosedChannel(e);
+                throw failed(e);
             }
         } else {
             throw new IllegalArgumentException(option.name() + " is no support by CAN channels!");
@@ -210,9 +233,10 @@ public abstract class AbstractCanChannel implements NativeChannel<UnixFileDescri
             int pos = buffer.position();
             int bytesRead = (int) SocketCAN.read(sock, buffer, pos, buffer.remaining());
             buffer.position(pos + bytesRead);
+            recordRead(bytesRead, 1);
             return bytesRead;
         } catch (LinuxNativeOperationException e) {
-            throw checkForClosedChannel(e);
+            throw failed(e);
         }
     }
 
@@ -233,9 +257,64 @@ public abstract class AbstractCanChannel implements NativeChannel<UnixFileDescri
             int pos = buffer.position();
             int bytesReceived = (int) SocketCAN.receive(sock, buffer, pos, buffer.remaining(), flags);
             buffer.position(pos + bytesReceived);
+            recordRead(bytesReceived, 1);
+            return bytesReceived;
+        } catch (LinuxNativeOperationException e) {
+            throw failed(e);
+        }
+    }
+
+    /**
+     * Reads data from this socket into the given {@link java.nio.ByteBuffer} like {@link #readSocket(ByteBuffer)},
+     * but returns -1 instead of throwing if the socket is non-blocking and no data is available. This is meant for
+     * draining a socket after a readiness event, where running out of data is the expected way to stop and not a
+     * failure, so it is not counted as such by the {@link ChannelMetrics}.
+     *
+     * @see <a href="https://man7.org/linux/man-pages/man2/read.2.html">read man page</a>
+     * @param buffer the buffer to read into
+     * @return The number of bytes read from the socket or -1 if no data is available
+     * @throws IOException if the native call fails
+     */
+    protected long tryReadSocket(ByteBuffer buffer) throws IOException {
+        ensureDirectBuffer(buffer);
+        try {
+            int pos = buffer.position();
+            int bytesRead = (int) SocketCAN.tryRead(sock, buffer, pos, buffer.remaining());
+            if (bytesRead < 0) {
+                return -1;
+            }
+            buffer.position(pos + bytesRead);
+            recordRead(bytesRead, 1);
+            return bytesRead;
+        } catch (LinuxNativeOperationException e) {
+            throw failed(e);
+        }
+    }
+
+    /**
+     * Receives a message from this socket into the given {@link java.nio.ByteBuffer} like
+     * {@link #receiveFromSocket(ByteBuffer, int)}, but returns -1 instead of throwing if no message is available
+     * without blocking, see {@link #tryReadSocket(ByteBuffer)}.
+     *
+     * @see <a href="https://man7.org/linux/man-pages/man2/recv.2.html">recv man page</a>
+     * @param buffer the buffer to receive into
+     * @param flags flags to pass to the underlying recv syscall
+     * @return The number of bytes received from the socket or -1 if no message is available
+     * @throws IOException if the native call fails
+     */
+    protected long tryReceiveFromSocket(ByteBuffer buffer, int flags) throws IOException {
+        ensureDirectBuffer(buffer);
+        try {
+            int pos = buffer.position();
+            int bytesReceived = (int) SocketCAN.tryReceive(sock, buffer, pos, buffer.remaining(), flags);
+            if (bytesReceived < 0) {
+                return -1;
+            }
+            buffer.position(pos + bytesReceived);
+            recordRead(bytesReceived, 1);
             return bytesReceived;
         } catch (LinuxNativeOperationException e) {
-            throw checkForClosedChannel(e);
+            throw failed(e);
         }
     }
 
@@ -255,9 +334,10 @@ public abstract class AbstractCanChannel implements NativeChannel<UnixFileDescri
             int pos = buffer.position();
             int bytesWritten = (int) SocketCAN.write(sock, buffer, pos, buffer.remaining());
             buffer.position(pos + bytesWritten);
+            recordWrite(bytesWritten, 1);
             return bytesWritten;
         } catch (LinuxNativeOperationException e) {
-            throw checkForClosedChannel(e);
+            throw failed(e);
         }
     }
 
@@ -278,12 +358,108 @@ public abstract class AbstractCanChannel implements NativeChannel<UnixFileDescri
             int pos = buffer.position();
             int bytesReceived = (int) SocketCAN.send(sock, buffer, pos, buffer.remaining(), flags);
             buffer.position(pos + bytesReceived);
+            recordWrite(bytesReceived, 1);
             return bytesReceived;
         } catch (LinuxNativeOperationException e) {
-            throw checkForClosedChannel(e);
+            throw failed(e);
         }
     }
 
+    /**
+     * Sends several messages to this socket from the given {@link java.nio.ByteBuffer} using a single system call.
+     * The {@link java.nio.ByteBuffer} must be a direct buffer as it is passed into native code. Buffer position and
+     * limit will be ignored, the messages are defined by the given offsets and lengths.
+     *
+     * @see <a href="https://man7.org/linux/man-pages/man2/sendmmsg.2.html">sendmmsg man page</a>
+     * @param buffer the buffer to send from
+     * @param offsets the offsets of the messages within the buffer
+     * @param lengths the lengths of the messages
+     * @param count the number of messages to send
+     * @param flags flags to pass to the underlying sendmmsg syscall
+     * @return The number of messages sent to the socket, which might be less than count
+     * @throws IOException if the native call fails
+     */
+    protected int sendMultipleToSocket(ByteBuffer buffer, int[] offsets, int[] lengths, int count, int flags) throws IOException {
+        ensureDirectBuffer(buffer);
+        if (count < 0 || count > offsets.length || count > lengths.length) {
+            throw new IllegalArgumentException("count must be between 0 and the length of the offsets and lengths!");
+        }
+        final int capacity = buffer.capacity();
+        for (int i = 0; i < count; i++) {
+            if (offsets[i] < 0 || lengths[i] < 0 || lengths[i] > capacity - offsets[i]) {
+                throw new IndexOutOfBoundsException("Message " + i + " exceeds the buffer!");
+            }
+        }
+        try {
+            int sent = SocketCAN.sendMultiple(sock, buffer, offsets, lengths, count, flags);
+            recordBatchWrite(lengths, sent);
+            return sent;
+        } catch (LinuxNativeOperationException e) {
+            throw failed(e);
+        }
+    }
+
+    /**
+     * Counts a successful read in the attached {@link ChannelMetrics}, if any. Subclasses that call into native
+     * code directly use this to keep the metrics complete.
+     *
+     * @param bytes the number of bytes read
+     * @param messages the number of messages read
+     */
+    protected void recordRead(long bytes, int messages) {
+        ChannelMetrics metrics = this.metrics;
+        if (metrics != null) {
+            metrics.recordRead(bytes, messages);
+        }
+    }
+
+    /**
+     * Counts a successful write in the attached {@link ChannelMetrics}, if any.
+     *
+     * @param bytes the number of bytes written
+     * @param messages the number of messages written
+     */
+    protected void recordWrite(long bytes, int messages) {
+        ChannelMetrics metrics = this.metrics;
+        if (metrics != null) {
+            metrics.recordWrite(bytes, messages);
+        }
+    }
+
+    /**
+     * Counts a successful batched write of the first {@code sent} messages in the attached {@link ChannelMetrics},
+     * if any.
+     *
+     * @param lengths the lengths of the messages
+     * @param sent the number of messages written
+     */
+    protected void recordBatchWrite(int[] lengths, int sent) {
+        ChannelMetrics metrics = this.metrics;
+        if (metrics != null) {
+            long bytes = 0;
+            for (int i = 0; i < sent; i++) {
+                bytes += lengths[i];
+            }
+            metrics.recordWrite(bytes, sent);
+        }
+    }
+
+    /**
+     * Counts a failed native operation in the attached {@link ChannelMetrics}, if any, and translates the exception
+     * into a {@link ClosedChannelException} if the socket has been closed. Every native call of a channel reports its
+     * failures through this. Callers are expected to {@code throw failed(e)}.
+     *
+     * @param e the exception of the native call
+     * @return the exception to throw, a {@link ClosedChannelException} if the channel has been closed
+     */
+    protected IOException failed(LinuxNativeOperationException e) {
+        ChannelMetrics metrics = this.metrics;
+        if (metrics != null) {
+            metrics.recordFailure(e);
+        }
+        return translate(e);
+    }
+
     @Override
     public String toString() {
         return getClass().getSimpleName() + "(device=" + getDevice() + ", handle=" + getHandle() + ")";
@@ -296,11 +472,21 @@ public abstract class AbstractCanChannel implements NativeChannel<UnixFileDescri
     }
 
     protected static IOException checkForClosedChannel(LinuxNativeOperationException orig) throws IOException {
+        throw translate(orig);
+    }
+
+    /**
+     * Translates the exception of a native call into the exception to throw.
+     *
+     * @param orig the exception of the native call
+     * @return a {@link ClosedChannelException} if the socket has been closed, the original exception otherwise
+     */
+    private static IOException translate(LinuxNativeOperationException orig) {
         if (orig.isBadFD()) {
             final ClosedChannelException ex = new ClosedChannelException();
             ex.addSuppressed(orig);
-            throw ex;
+            return ex;
         }
-        throw orig;
+        return orig;
     }
 }
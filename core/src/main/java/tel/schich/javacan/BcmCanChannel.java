@@ -95,14 +95,15 @@ public class BcmCanChannel extends AbstractCanChannel {
         try {
             SocketCAN.connectTpAddress(getSocket(), ((LinuxNetworkDevice) device).getIndex(), 0, 0);
         } catch (LinuxNativeOperationException e) {
-            throw checkForClosedChannel(e);
+            throw failed(e);
         }
         this.device = device;
         return this;
     }
 
     /**
-     * Read one message from the BCM socket.
+     * Read one message from the BCM socket. This allocates a new buffer of {@link #MTU} bytes for every message, use
+     * {@link #read(BcmMessageReader)} to read many messages without allocating.
      *
      * @see <a href="https://man7.org/linux/man-pages/man2/read.2.html">read man page</a>
      * @return the message
@@ -131,6 +132,45 @@ public class BcmCanChannel extends AbstractCanChannel {
         return new BcmMessage(buffer);
     }
 
+    /**
+     * Read one message from the BCM socket into the given reader, which then represents the received message. The
+     * reader and all frames obtained from it before are overwritten.
+     * <p>
+     * If the received message is invalid, the content of the reader is undefined until the next successful read.
+     *
+     * @see <a href="https://man7.org/linux/man-pages/man2/read.2.html">read man page</a>
+     * @param reader the reusable reader
+     * @return the given reader
+     * @throws IllegalArgumentException if the received message is invalid
+     * @throws IOException              if the socket is not readable
+     */
+    public BcmMessageReader read(BcmMessageReader reader) throws IOException {
+        int bytesRead = (int) readSocket(reader.receiveBuffer());
+        reader.received(bytesRead);
+        return reader;
+    }
+
+    /**
+     * Reads one message like {@link #read(BcmMessageReader)}, but returns {@code null} instead of throwing if this
+     * channel is non-blocking and no message is available. This allows draining a channel after a readiness event
+     * without an exception for the final empty read.
+     *
+     * @see <a href="https://man7.org/linux/man-pages/man2/read.2.html">read man page</a>
+     * @param reader the reusable reader
+     * @return the given reader or {@code null} if no message is available
+     * @throws IllegalArgumentException if the received message is invalid
+     * @throws IOException              if the socket is not readable
+     */
+    @Nullable
+    public BcmMessageReader tryRead(BcmMessageReader reader) throws IOException {
+        int bytesRead = (int) tryReadSocket(reader.receiveBuffer());
+        if (bytesRead < 0) {
+            return null;
+        }
+        reader.received(bytesRead);
+        return reader;
+    }
+
     /**
      * Write the given message to the socket.
      *
@@ -148,4 +188,44 @@ public class BcmCanChannel extends AbstractCanChannel {
         }
         return this;
     }
+
+    /**
+     * Write the message prepared by the given writer to the socket. This does not allocate, so a writer can be used to
+     * update cyclic transmissions at a high rate.
+     *
+     * @see <a href="https://man7.org/linux/man-pages/man2/write.2.html">write man page</a>
+     * @param writer the writer holding the message
+     * @return this channel
+     * @throws IOException if the message was not completely written
+     */
+    public BcmCanChannel write(BcmMessageWriter writer) throws IOException {
+        ByteBuffer buffer = writer.getBuffer();
+        int bytesToWrite = buffer.remaining();
+        long written = writeSocket(buffer);
+        if (written != bytesToWrite) {
+            throw new IOException("message incompletely written");
+        }
+        return this;
+    }
+
+    /**
+     * <p>
+     * Writes several messages from a single buffer to the socket using one system call.
+     * </p>
+     * <p>
+     * The messages are located by the given offsets and lengths within the buffer, the position and limit of the
+     * buffer are ignored. The messages are not validated, the buffer must be in {@link ByteOrder#nativeOrder()}.
+     * </p>
+     *
+     * @see <a href="https://man7.org/linux/man-pages/man2/sendmmsg.2.html">sendmmsg man page</a>
+     * @param buffer the direct buffer containing the messages
+     * @param offsets the offsets of the messages within the buffer
+     * @param lengths the lengths of the messages
+     * @param count the number of messages to write
+     * @return the number of messages written
+     * @throws IOException if the native call fails
+     */
+    public int writeBatchUnsafe(ByteBuffer buffer, int[] offsets, int[] lengths, int count) throws IOException {
+        return sendMultipleToSocket(buffer, offsets, lengths, count, 0);
+    }
 }
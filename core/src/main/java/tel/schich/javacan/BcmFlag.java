@@ -102,12 +102,34 @@ public enum BcmFlag {
      */
     CAN_FD_FRAME(0x0800);
 
+    private static final BcmFlag[] VALUES = values();
+
     private final int bit;
 
     BcmFlag(int bit) {
         this.bit = bit;
     }
 
+    /**
+     * Returns the native bit of this flag, which can be combined into the bitmask used by
+     * {@link BcmMessage#getNativeFlags()} and {@link BcmMessageWriter#flags(int)}.
+     *
+     * @return the native bit
+     */
+    public int getBit() {
+        return bit;
+    }
+
+    /**
+     * Checks if this flag is set in the given native flags.
+     *
+     * @param nativeFlags the native bitmask
+     * @return true if the flag is set
+     */
+    public boolean isSet(int nativeFlags) {
+        return (nativeFlags & bit) != 0;
+    }
+
     /**
      * Get the Java representation for the native flags.
      *
@@ -116,7 +138,7 @@ public enum BcmFlag {
      */
     public static Set<BcmFlag> fromNative(int nativeFlags) {
         EnumSet<BcmFlag> flags = EnumSet.noneOf(BcmFlag.class);
-        for (BcmFlag flag : values()) {
+        for (BcmFlag flag : VALUES) {
             if ((flag.bit & nativeFlags) != 0) {
                 flags.add(flag);
             }
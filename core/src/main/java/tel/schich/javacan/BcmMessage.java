@@ -26,7 +26,7 @@ import java.nio.ByteBuffer;
 import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.HashSet;
+import java.util.EnumSet;
 import java.util.List;
 import java.util.Set;
 import java.util.concurrent.TimeUnit;
@@ -115,16 +115,20 @@ public class BcmMessage {
      * @param buffer the backing buffer for the message
      */
     public BcmMessage(ByteBuffer buffer) {
-        // assigning the attributes before the validation enables the use of getters
+        validate(buffer, buffer.position(), buffer.remaining());
         this.buffer = buffer;
         this.base = buffer.position();
         this.size = buffer.remaining();
+    }
 
+    static void validate(ByteBuffer buffer, int base, int size) {
         if (size < HEADER_LENGTH) {
             throw new IllegalArgumentException("the buffer is too small for a BCM message");
         }
-        int expectedSize = HEADER_LENGTH + getFrameCount() * frameLength(getFlags());
-        if (expectedSize > size) {
+        int frameCount = buffer.getInt(base + OFFSET_NFRAMES);
+        int frameLength = frameLength(buffer.getInt(base + OFFSET_FLAGS));
+        long expectedSize = HEADER_LENGTH + (long) frameCount * frameLength;
+        if (frameCount < 0 || expectedSize > size) {
             throw new IllegalArgumentException(String.format(
                     "the buffer capacity cannot hold all frames of this BCM message,required %d but was %d",
                     expectedSize, size));
@@ -143,18 +147,20 @@ public class BcmMessage {
      * @param frames see {@link #getFrames()}
      */
     public BcmMessage(BcmOpcode opcode, Set<BcmFlag> flags, int count, @Nullable Duration interval1, @Nullable Duration interval2, int canId, List<CanFrame> frames) {
-        boolean fdFrames = frames.stream().anyMatch(CanFrame::isFDFrame);
-        if (fdFrames && !flags.contains(BcmFlag.CAN_FD_FRAME)) {
-            flags = new HashSet<>(flags); // the set might not be mutable
-            flags.add(BcmFlag.CAN_FD_FRAME);
+        int nativeFlags = BcmFlag.toNative(flags);
+        for (int i = 0; i < frames.size(); i++) {
+            if (frames.get(i).isFDFrame()) {
+                nativeFlags |= BcmFlag.CAN_FD_FRAME.getBit();
+                break;
+            }
         }
-        int frameLength = frameLength(flags);
+        int frameLength = frameLength(nativeFlags);
         base = 0;
         size = HEADER_LENGTH + frames.size() * frameLength;
         buffer = JavaCAN.allocateOrdered(size);
 
         buffer.putInt(OFFSET_OPCODE, opcode.nativeOpcode)
-                .putInt(OFFSET_FLAGS, BcmFlag.toNative(flags))
+                .putInt(OFFSET_FLAGS, nativeFlags)
                 .putInt(OFFSET_COUNT, count)
                 .putInt(OFFSET_CAN_ID, canId)
                 .putInt(OFFSET_NFRAMES, frames.size());
@@ -188,7 +194,27 @@ public class BcmMessage {
      * @return the flags
      */
     public Set<BcmFlag> getFlags() {
-        return BcmFlag.fromNative(buffer.getInt(base + OFFSET_FLAGS));
+        return BcmFlag.fromNative(getNativeFlags());
+    }
+
+    /**
+     * Returns the flags of this message as the native bitmask, which does not allocate a {@link java.util.Set}.
+     *
+     * @return the flags bitmask
+     * @see BcmFlag#isSet(int)
+     */
+    public int getNativeFlags() {
+        return buffer.getInt(base + OFFSET_FLAGS);
+    }
+
+    /**
+     * Checks if the given flag is set on this message.
+     *
+     * @param flag the flag
+     * @return true if the flag is set
+     */
+    public boolean hasFlag(BcmFlag flag) {
+        return flag.isSet(getNativeFlags());
     }
 
     /**
@@ -239,8 +265,12 @@ public class BcmMessage {
     }
 
     private Duration getIntervalAt(int secOffset, int usecOffset) {
-        long sec = getPlatformLong(buffer, base + secOffset);
-        long usec = getPlatformLong(buffer, base + usecOffset);
+        return getInterval(buffer, base + secOffset, base + usecOffset);
+    }
+
+    static Duration getInterval(ByteBuffer buffer, int secOffset, int usecOffset) {
+        long sec = getPlatformLong(buffer, secOffset);
+        long usec = getPlatformLong(buffer, usecOffset);
         if (sec + usec == 0) {
             return Duration.ZERO;
         }
@@ -273,7 +303,7 @@ public class BcmMessage {
      * @throws IllegalArgumentException if the message buffer contains no frame for that index
      */
     public CanFrame getFrame(int index) {
-        int frameLength = frameLength(getFlags());
+        int frameLength = frameLength(getNativeFlags());
         return CanFrame.create(createFrameBuffer(index, frameLength));
     }
 
@@ -287,7 +317,7 @@ public class BcmMessage {
         if (nFrames == 0) {
             return Collections.emptyList();
         }
-        int frameLength = frameLength(getFlags());
+        int frameLength = frameLength(getNativeFlags());
         List<CanFrame> frames = new ArrayList<>(nFrames);
         for (int i = 0; i < nFrames; i++) {
             frames.add(CanFrame.create(createFrameBuffer(i, frameLength)));
@@ -313,8 +343,8 @@ public class BcmMessage {
         return frameBuffer;
     }
 
-    private static int frameLength(Set<BcmFlag> flags) {
-        return flags.contains(BcmFlag.CAN_FD_FRAME) ? RawCanChannel.FD_MTU : RawCanChannel.MTU;
+    static int frameLength(int nativeFlags) {
+        return BcmFlag.CAN_FD_FRAME.isSet(nativeFlags) ? RawCanChannel.FD_MTU : RawCanChannel.MTU;
     }
 
     @Override
@@ -387,7 +417,7 @@ public class BcmMessage {
 
     public static class Builder {
         private final BcmOpcode opcode;
-        private final Set<BcmFlag> flags = new HashSet<>();
+        private final Set<BcmFlag> flags = EnumSet.noneOf(BcmFlag.class);
         private int count;
         @Nullable
         private Duration interval1;
@@ -0,0 +1,206 @@
+/*
+ * The MIT License
+ * Copyright © 2018 Phillip Schichtel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package tel.schich.javacan;
+
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.Set;
+
+import static tel.schich.javacan.BcmMessage.HEADER_LENGTH;
+import static tel.schich.javacan.BcmMessage.OFFSET_CAN_ID;
+import static tel.schich.javacan.BcmMessage.OFFSET_COUNT;
+import static tel.schich.javacan.BcmMessage.OFFSET_FLAGS;
+import static tel.schich.javacan.BcmMessage.OFFSET_FRAMES;
+import static tel.schich.javacan.BcmMessage.OFFSET_IVAL1_TV_SEC;
+import static tel.schich.javacan.BcmMessage.OFFSET_IVAL1_TV_USEC;
+import static tel.schich.javacan.BcmMessage.OFFSET_IVAL2_TV_SEC;
+import static tel.schich.javacan.BcmMessage.OFFSET_IVAL2_TV_USEC;
+import static tel.schich.javacan.BcmMessage.OFFSET_NFRAMES;
+import static tel.schich.javacan.BcmMessage.OFFSET_OPCODE;
+
+/**
+ * <p>
+ * A BcmMessageReader is a reusable receive buffer for {@link BcmCanChannel#read(BcmMessageReader)}. In contrast to
+ * {@link BcmCanChannel#read()} it does not allocate a new {@link BcmMessage} per received message, the accessors read
+ * the last received message directly from the buffer owned by the reader.
+ * </p>
+ * <p>
+ * The content of the reader, including all frames obtained from it, is replaced by the next read. Use
+ * {@link #toMessage()} to keep a message beyond that. The content is undefined before the first successful read and
+ * after a read that received an invalid message.
+ * </p>
+ *
+ * @see BcmMessageWriter
+ */
+public final class BcmMessageReader {
+    private final ByteBuffer buffer;
+    private int size;
+
+    /**
+     * Creates a reader that can hold a message with up to {@link BcmCanChannel#MAX_FRAMES_PER_MESSAGE} frames.
+     */
+    public BcmMessageReader() {
+        this(BcmCanChannel.MTU);
+    }
+
+    /**
+     * Creates a reader with a buffer of the given capacity.
+     *
+     * @param capacity the capacity in bytes, messages exceeding it are truncated by the read
+     * @throws IllegalArgumentException if the capacity is too small for the message header
+     */
+    public BcmMessageReader(int capacity) {
+        if (capacity < HEADER_LENGTH) {
+            throw new IllegalArgumentException("the capacity is too small for a BCM message");
+        }
+        this.buffer = JavaCAN.allocateOrdered(capacity);
+    }
+
+    /**
+     * Prepares the buffer for receiving a message.
+     *
+     * @return the cleared buffer
+     */
+    ByteBuffer receiveBuffer() {
+        buffer.clear();
+        return buffer;
+    }
+
+    /**
+     * Makes the received bytes the current message.
+     *
+     * @param size the number of bytes received
+     * @throws IllegalArgumentException if the received bytes are not a valid BCM message
+     */
+    void received(int size) {
+        this.size = 0;
+        BcmMessage.validate(buffer, 0, size);
+        this.size = size;
+    }
+
+    public BcmOpcode getOpcode() {
+        return BcmOpcode.fromNative(buffer.getInt(OFFSET_OPCODE));
+    }
+
+    /**
+     * Returns the flags of the message as the native bitmask.
+     *
+     * @return the flags bitmask
+     * @see BcmFlag#isSet(int)
+     */
+    public int getNativeFlags() {
+        return buffer.getInt(OFFSET_FLAGS);
+    }
+
+    public Set<BcmFlag> getFlags() {
+        return BcmFlag.fromNative(getNativeFlags());
+    }
+
+    public boolean hasFlag(BcmFlag flag) {
+        return flag.isSet(getNativeFlags());
+    }
+
+    public int getCount() {
+        return buffer.getInt(OFFSET_COUNT);
+    }
+
+    /**
+     * Returns {@code ival1} of the message, see {@link BcmMessage#getInterval1()}.
+     *
+     * @return the duration or {@link Duration#ZERO} if it is not set
+     */
+    public Duration getInterval1() {
+        return BcmMessage.getInterval(buffer, OFFSET_IVAL1_TV_SEC, OFFSET_IVAL1_TV_USEC);
+    }
+
+    /**
+     * Returns {@code ival2} of the message, see {@link BcmMessage#getInterval2()}.
+     *
+     * @return the duration or {@link Duration#ZERO} if it is not set
+     */
+    public Duration getInterval2() {
+        return BcmMessage.getInterval(buffer, OFFSET_IVAL2_TV_SEC, OFFSET_IVAL2_TV_USEC);
+    }
+
+    public int getCanId() {
+        return buffer.getInt(OFFSET_CAN_ID);
+    }
+
+    public int getFrameCount() {
+        return buffer.getInt(OFFSET_NFRAMES);
+    }
+
+    /**
+     * Returns a single frame of the message. The frame is backed by the buffer of this reader, so it changes with the
+     * next read.
+     *
+     * @param index of the frame; ({@code 0 <= index < frameCount})
+     * @return the frame
+     * @throws IndexOutOfBoundsException if the message contains no frame for that index
+     */
+    public CanFrame getFrame(int index) {
+        if (index < 0 || index >= getFrameCount()) {
+            throw new IndexOutOfBoundsException("frame index out of range: " + index);
+        }
+        int frameLength = BcmMessage.frameLength(getNativeFlags());
+        ByteBuffer frameBuffer = buffer.duplicate().order(buffer.order());
+        frameBuffer.position(OFFSET_FRAMES + index * frameLength)
+                .limit(frameBuffer.position() + frameLength);
+        return CanFrame.create(frameBuffer);
+    }
+
+    /**
+     * Returns the length of the last received message.
+     *
+     * @return the length in bytes
+     */
+    public int length() {
+        return size;
+    }
+
+    /**
+     * Copies the last received message into a new {@link BcmMessage}, which is not affected by further reads.
+     *
+     * @return the message
+     */
+    public BcmMessage toMessage() {
+        ByteBuffer copy = JavaCAN.allocateOrdered(size);
+        ByteBuffer source = buffer.duplicate();
+        source.clear().limit(size);
+        copy.put(source).flip();
+        return new BcmMessage(copy);
+    }
+
+    @Override
+    public String toString() {
+        return "BcmMessageReader(" +
+                "OP=" + getOpcode() +
+                ", FLAGS=" + getFlags() +
+                ", COUNT=" + getCount() +
+                ", IVAL1=" + getInterval1() +
+                ", IVAL2=" + getInterval2() +
+                ", CANID=" + getCanId() +
+                ", FRAMES=" + getFrameCount() +
+                ')';
+    }
+}
@@ -0,0 +1,363 @@
+/*
+ * The MIT License
+ * Copyright © 2018 Phillip Schichtel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package tel.schich.javacan;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.time.Duration;
+
+import static tel.schich.javacan.BcmMessage.HEADER_LENGTH;
+import static tel.schich.javacan.BcmMessage.OFFSET_CAN_ID;
+import static tel.schich.javacan.BcmMessage.OFFSET_COUNT;
+import static tel.schich.javacan.BcmMessage.OFFSET_FLAGS;
+import static tel.schich.javacan.BcmMessage.OFFSET_FRAMES;
+import static tel.schich.javacan.BcmMessage.OFFSET_IVAL1_TV_SEC;
+import static tel.schich.javacan.BcmMessage.OFFSET_IVAL1_TV_USEC;
+import static tel.schich.javacan.BcmMessage.OFFSET_IVAL2_TV_SEC;
+import static tel.schich.javacan.BcmMessage.OFFSET_IVAL2_TV_USEC;
+import static tel.schich.javacan.BcmMessage.OFFSET_NFRAMES;
+import static tel.schich.javacan.BcmMessage.OFFSET_OPCODE;
+import static tel.schich.javacan.util.BufferHelper.putPlatformLong;
+
+/**
+ * <p>
+ * A BcmMessageWriter writes a BCM message directly into a caller provided buffer. In contrast to
+ * {@link BcmMessage.Builder} it neither allocates buffers nor collections, so a single writer can be used to
+ * repeatedly update the frames of a {@link BcmOpcode#TX_SETUP} table in place and write it to the
+ * {@link BcmCanChannel} again.
+ * </p>
+ * <p>
+ * Flags are given as the native bitmask, which can be composed from {@link BcmFlag#getBit()}. The frame length is
+ * derived from the {@link BcmFlag#CAN_FD_FRAME} flag, which therefore has to be set before any frames are written.
+ * The writer does not track any state apart from the buffer content, it can also be used to modify a message that
+ * has been read from a channel.
+ * </p>
+ *
+ * @see <a href="https://www.kernel.org/doc/html/latest/networking/can.html#broadcast-manager-protocol-sockets-sock-dgram">
+ *     Kernel CAN documentation: BCM sockets</a>
+ */
+public final class BcmMessageWriter {
+    private static final int OFFSET_FRAME_DATA_LENGTH = 4;
+    private static final int OFFSET_FRAME_FLAGS = 5;
+
+    private final ByteBuffer buffer;
+    private final int base;
+
+    /**
+     * Creates a writer for a message at the start of the given buffer.
+     *
+     * @param buffer the direct buffer to write into, its byte order will be set to the native order
+     * @throws IllegalArgumentException if the buffer is not a direct buffer or too small for the message header
+     */
+    public BcmMessageWriter(ByteBuffer buffer) {
+        this(buffer, 0);
+    }
+
+    /**
+     * Creates a writer for a message at the given offset of the buffer. This allows several messages to be placed in
+     * a single buffer, e.g. for {@link BcmCanChannel#writeBatchUnsafe(ByteBuffer, int[], int[], int)}.
+     *
+     * @param buffer the direct buffer to write into, its byte order will be set to the native order
+     * @param offset the offset of the message within the buffer
+     * @throws IllegalArgumentException if the buffer is not a direct buffer or too small for the message header
+     */
+    public BcmMessageWriter(ByteBuffer buffer, int offset) {
+        if (!buffer.isDirect()) {
+            throw new IllegalArgumentException("The buffer must be a direct buffer!");
+        }
+        if (offset < 0 || offset + HEADER_LENGTH > buffer.capacity()) {
+            throw new IllegalArgumentException("the buffer is too small for a BCM message");
+        }
+        this.buffer = buffer.order(ByteOrder.nativeOrder());
+        this.base = offset;
+    }
+
+    /**
+     * Calculates the length of a message with the given number of frames.
+     *
+     * @param frameCount the number of frames
+     * @param fdFrames whether the frames are FD frames
+     * @return the message length in bytes
+     */
+    public static int messageLength(int frameCount, boolean fdFrames) {
+        return HEADER_LENGTH + frameCount * (fdFrames ? RawCanChannel.FD_MTU : RawCanChannel.MTU);
+    }
+
+    /**
+     * Resets the header to the given values, the count, both intervals and the frame count are set to zero.
+     *
+     * @param opcode the opcode
+     * @param nativeFlags the flags bitmask
+     * @param canId the CAN ID
+     * @return this writer
+     */
+    public BcmMessageWriter header(BcmOpcode opcode, int nativeFlags, int canId) {
+        buffer.putInt(base + OFFSET_OPCODE, opcode.nativeOpcode)
+                .putInt(base + OFFSET_FLAGS, nativeFlags)
+                .putInt(base + OFFSET_COUNT, 0)
+                .putInt(base + OFFSET_CAN_ID, canId)
+                .putInt(base + OFFSET_NFRAMES, 0);
+        putPlatformLong(buffer, base + OFFSET_IVAL1_TV_SEC, 0);
+        putPlatformLong(buffer, base + OFFSET_IVAL1_TV_USEC, 0);
+        putPlatformLong(buffer, base + OFFSET_IVAL2_TV_SEC, 0);
+        putPlatformLong(buffer, base + OFFSET_IVAL2_TV_USEC, 0);
+        return this;
+    }
+
+    public BcmMessageWriter opcode(BcmOpcode opcode) {
+        buffer.putInt(base + OFFSET_OPCODE, opcode.nativeOpcode);
+        return this;
+    }
+
+    /**
+     * Replaces the flags of the message.
+     *
+     * @param nativeFlags the flags bitmask
+     * @return this writer
+     */
+    public BcmMessageWriter flags(int nativeFlags) {
+        buffer.putInt(base + OFFSET_FLAGS, nativeFlags);
+        return this;
+    }
+
+    public int getFlags() {
+        return buffer.getInt(base + OFFSET_FLAGS);
+    }
+
+    public BcmMessageWriter count(int count) {
+        buffer.putInt(base + OFFSET_COUNT, count);
+        return this;
+    }
+
+    /**
+     * Sets {@code ival1} of the message, see {@link BcmMessage#getInterval1()}.
+     *
+     * @param seconds the seconds
+     * @param micros the microseconds
+     * @return this writer
+     */
+    public BcmMessageWriter interval1(long seconds, long micros) {
+        putPlatformLong(buffer, base + OFFSET_IVAL1_TV_SEC, seconds);
+        putPlatformLong(buffer, base + OFFSET_IVAL1_TV_USEC, micros);
+        return this;
+    }
+
+    public BcmMessageWriter interval1(Duration interval) {
+        return interval1(interval.getSeconds(), interval.getNano() / 1000);
+    }
+
+    /**
+     * Sets {@code ival2} of the message, see {@link BcmMessage#getInterval2()}.
+     *
+     * @param seconds the seconds
+     * @param micros the microseconds
+     * @return this writer
+     */
+    public BcmMessageWriter interval2(long seconds, long micros) {
+        putPlatformLong(buffer, base + OFFSET_IVAL2_TV_SEC, seconds);
+        putPlatformLong(buffer, base + OFFSET_IVAL2_TV_USEC, micros);
+        return this;
+    }
+
+    public BcmMessageWriter interval2(Duration interval) {
+        return interval2(interval.getSeconds(), interval.getNano() / 1000);
+    }
+
+    public BcmMessageWriter canId(int canId) {
+        buffer.putInt(base + OFFSET_CAN_ID, canId);
+        return this;
+    }
+
+    /**
+     * Sets the number of frames of the message. The frames themselves are not touched.
+     *
+     * @param frameCount the number of frames
+     * @return this writer
+     * @throws IllegalArgumentException if the count exceeds {@link BcmCanChannel#MAX_FRAMES_PER_MESSAGE} or the
+     *                                  buffer capacity
+     */
+    public BcmMessageWriter frameCount(int frameCount) {
+        if (frameCount < 0 || frameCount > BcmCanChannel.MAX_FRAMES_PER_MESSAGE) {
+            throw new IllegalArgumentException("frame count must be between 0 and " + BcmCanChannel.MAX_FRAMES_PER_MESSAGE);
+        }
+        if (base + HEADER_LENGTH + frameCount * frameLength() > buffer.capacity()) {
+            throw new IllegalArgumentException("the buffer capacity cannot hold " + frameCount + " frames");
+        }
+        buffer.putInt(base + OFFSET_NFRAMES, frameCount);
+        return this;
+    }
+
+    public int getFrameCount() {
+        return buffer.getInt(base + OFFSET_NFRAMES);
+    }
+
+    /**
+     * Writes a complete frame, unused payload bytes are zeroed.
+     *
+     * @param index the index of the frame, which must be lower than the {@link #getFrameCount() frame count}
+     * @param canId the CAN ID of the frame
+     * @param fdFlags the CAN FD flags, ignored unless the message has the {@link BcmFlag#CAN_FD_FRAME} flag
+     * @param data the payload
+     * @param offset the offset within data
+     * @param length the payload length
+     * @return this writer
+     */
+    public BcmMessageWriter frame(int index, int canId, byte fdFlags, byte[] data, int offset, int length) {
+        int frameOffset = getFrameOffset(index);
+        int frameLength = frameLength();
+        if (length > frameLength - CanFrame.HEADER_LENGTH) {
+            throw new IllegalArgumentException("payload must fit in " + (frameLength - CanFrame.HEADER_LENGTH) + " bytes");
+        }
+        buffer.putInt(frameOffset, canId)
+                .put(frameOffset + OFFSET_FRAME_DATA_LENGTH, (byte) length)
+                .put(frameOffset + OFFSET_FRAME_FLAGS, frameLength == RawCanChannel.FD_MTU ? fdFlags : 0)
+                .putShort(frameOffset + OFFSET_FRAME_FLAGS + 1, (short) 0);
+        writePayload(frameOffset, frameLength, data, offset, length);
+        return this;
+    }
+
+    /**
+     * Copies a frame into the message. The CAN FD flags of the frame are only kept if the message has the
+     * {@link BcmFlag#CAN_FD_FRAME} flag.
+     *
+     * @param index the index of the frame, which must be lower than the {@link #getFrameCount() frame count}
+     * @param frame the frame
+     * @return this writer
+     */
+    public BcmMessageWriter frame(int index, CanFrame frame) {
+        int frameOffset = getFrameOffset(index);
+        int frameLength = frameLength();
+        ByteBuffer source = frame.getBuffer();
+        if (source.remaining() > frameLength) {
+            throw new IllegalArgumentException("FD frames require the CAN_FD_FRAME flag");
+        }
+        int pos = source.position();
+        for (int i = 0; i < source.remaining(); i++) {
+            buffer.put(frameOffset + i, source.get(pos + i));
+        }
+        for (int i = source.remaining(); i < frameLength; i++) {
+            buffer.put(frameOffset + i, (byte) 0);
+        }
+        if (frameLength != RawCanChannel.FD_MTU) {
+            buffer.put(frameOffset + OFFSET_FRAME_FLAGS, (byte) 0);
+        }
+        return this;
+    }
+
+    /**
+     * Replaces the payload of a frame in place, the CAN ID and flags of the frame are kept.
+     *
+     * @param index the index of the frame, which must be lower than the {@link #getFrameCount() frame count}
+     * @param data the payload
+     * @param offset the offset within data
+     * @param length the payload length
+     * @return this writer
+     */
+    public BcmMessageWriter payload(int index, byte[] data, int offset, int length) {
+        int frameOffset = getFrameOffset(index);
+        int frameLength = frameLength();
+        if (length > frameLength - CanFrame.HEADER_LENGTH) {
+            throw new IllegalArgumentException("payload must fit in " + (frameLength - CanFrame.HEADER_LENGTH) + " bytes");
+        }
+        buffer.put(frameOffset + OFFSET_FRAME_DATA_LENGTH, (byte) length);
+        writePayload(frameOffset, frameLength, data, offset, length);
+        return this;
+    }
+
+    /**
+     * Replaces a single payload byte of a frame in place, the data length of the frame is not changed.
+     *
+     * @param index the index of the frame, which must be lower than the {@link #getFrameCount() frame count}
+     * @param position the position within the payload
+     * @param value the new value
+     * @return this writer
+     */
+    public BcmMessageWriter payloadByte(int index, int position, byte value) {
+        int frameOffset = getFrameOffset(index);
+        if (position < 0 || position >= frameLength() - CanFrame.HEADER_LENGTH) {
+            throw new IndexOutOfBoundsException("payload position out of range: " + position);
+        }
+        buffer.put(frameOffset + CanFrame.HEADER_LENGTH + position, value);
+        return this;
+    }
+
+    /**
+     * Returns the absolute offset of a frame within the buffer, which allows signals to be encoded directly into the
+     * buffer. The payload starts at {@link CanFrame#HEADER_LENGTH} relative to this offset.
+     *
+     * @param index the index of the frame, which must be lower than the {@link #getFrameCount() frame count}
+     * @return the offset of the frame
+     */
+    public int getFrameOffset(int index) {
+        if (index < 0 || index >= getFrameCount()) {
+            throw new IndexOutOfBoundsException("frame index out of range: " + index);
+        }
+        return base + OFFSET_FRAMES + index * frameLength();
+    }
+
+    /**
+     * Returns the length of the message according to the current frame count and flags.
+     *
+     * @return the length in bytes
+     */
+    public int length() {
+        return HEADER_LENGTH + getFrameCount() * frameLength();
+    }
+
+    public int getOffset() {
+        return base;
+    }
+
+    /**
+     * Returns the backing {@link ByteBuffer} with position and limit set to the message.
+     *
+     * @return the backing buffer
+     */
+    public ByteBuffer getBuffer() {
+        buffer.clear().position(base).limit(base + length());
+        return buffer;
+    }
+
+    /**
+     * Creates a {@link BcmMessage} view of the written message, which shares the buffer with this writer.
+     *
+     * @return the message
+     */
+    public BcmMessage toMessage() {
+        return new BcmMessage(getBuffer());
+    }
+
+    private int frameLength() {
+        return BcmMessage.frameLength(getFlags());
+    }
+
+    private void writePayload(int frameOffset, int frameLength, byte[] data, int offset, int length) {
+        int dataOffset = frameOffset + CanFrame.HEADER_LENGTH;
+        for (int i = 0; i < length; i++) {
+            buffer.put(dataOffset + i, data[offset + i]);
+        }
+        for (int i = length; i < frameLength - CanFrame.HEADER_LENGTH; i++) {
+            buffer.put(dataOffset + i, (byte) 0);
+        }
+    }
+}
@@ -98,6 +98,20 @@ public enum BcmOpcode {
      */
     public final int nativeOpcode;
 
+    // values() copies the array on every call, the lookup table keeps decoding received messages allocation-free
+    private static final BcmOpcode[] BY_NATIVE;
+
+    static {
+        int max = 0;
+        for (BcmOpcode opcode : values()) {
+            max = Math.max(max, opcode.nativeOpcode);
+        }
+        BY_NATIVE = new BcmOpcode[max + 1];
+        for (BcmOpcode opcode : values()) {
+            BY_NATIVE[opcode.nativeOpcode] = opcode;
+        }
+    }
+
     BcmOpcode(int nativeOpcode) {
         this.nativeOpcode = nativeOpcode;
     }
@@ -110,8 +124,9 @@ public enum BcmOpcode {
      * @throws IllegalArgumentException on an unknown op-code
      */
     public static BcmOpcode fromNative(int nativeOpcode) {
-        for (BcmOpcode opcode : values()) {
-            if (nativeOpcode == opcode.nativeOpcode) {
+        if (nativeOpcode > 0 && nativeOpcode < BY_NATIVE.length) {
+            BcmOpcode opcode = BY_NATIVE[nativeOpcode];
+            if (opcode != null) {
                 return opcode;
             }
         }
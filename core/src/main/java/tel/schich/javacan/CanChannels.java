@@ -250,4 +250,16 @@ public class CanChannels {
     public static IsotpCanChannel newIsotpChannel(String device, int rx, int tx) throws IOException {
         return newIsotpChannel(NetworkDevice.lookup(device), rx, tx);
     }
+
+    /**
+     * Creates a new {@link tel.schich.javacan.CgwChannel} to configure the kernel's CAN gateway.
+     *
+     * @return The new channel
+     * @throws IOException if the native socket could not be created
+     * @see <a href="https://man7.org/linux/man-pages/man7/netlink.7.html">netlink man page</a>
+     */
+    public static CgwChannel newCgwChannel() throws IOException {
+        int fd = SocketCAN.createNetlinkSocket();
+        return new CgwChannel(fd);
+    }
 }
@@ -137,11 +137,12 @@ public class CanFrame {
     }
 
     /**
-     * Returns the offset of the frame data within the buffer.
+     * Returns the offset of the frame data within the buffer, which allows decoders to read the payload directly from
+     * the backing buffer of {@link #getBuffer()} without copying it.
      *
      * @return the data offset in the buffer
      */
-    int getDataOffset() {
+    public int getDataOffset() {
         return this.base + OFFSET_DATA;
     }
 
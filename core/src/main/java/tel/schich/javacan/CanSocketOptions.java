@@ -229,6 +229,28 @@ public class CanSocketOptions {
         }
     });
 
+    /**
+     * Option to configure the size of the send buffer. For J1939 channels this limits how much of a large transport
+     * protocol message can be queued in the kernel at once.
+     *
+     * @see <a href="https://man7.org/linux/man-pages/man2/setsockopt.2.html">setsockopt man page</a>
+     * @see <a href="https://man7.org/linux/man-pages/man2/getsockopt.2.html">getsockopt man page</a>
+     */
+    public static final SocketOption<Integer> SO_SNDBUF = new CanSocketOption<>("SO_SNDBUF", Integer.class, new LinuxSocketOptionHandler<Integer>() {
+        @Override
+        public void set(int sock, Integer val, boolean validate) throws IOException {
+            if (validate && val <= 0) {
+                throw new IllegalArgumentException("Buffer size must be positive!");
+            }
+            SocketCAN.setSendBufferSize(sock, val);
+        }
+
+        @Override
+        public Integer get(int sock) throws IOException {
+            return SocketCAN.getSendBufferSize(sock);
+        }
+    });
+
     /**
      * Option to allow broadcasts.
      *
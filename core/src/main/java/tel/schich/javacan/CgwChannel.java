@@ -0,0 +1,372 @@
+/*
+ * The MIT License
+ * Copyright © 2018 Phillip Schichtel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package tel.schich.javacan;
+
+import org.eclipse.jdt.annotation.Nullable;
+import tel.schich.javacan.platform.linux.LinuxNativeOperationException;
+import tel.schich.javacan.platform.linux.LinuxNetworkDevice;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channel;
+import java.nio.channels.ClosedChannelException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * <p>
+ * This channel configures the kernel's CAN gateway ({@code can-gw}) over a netlink socket. The gateway forwards and
+ * modifies frames between CAN devices entirely within the kernel, which avoids the latency of a user space gateway
+ * like the {@code CanGateway} of the epoll module for all rules that can be expressed as a {@link CgwRule}.
+ * </p>
+ * <p>
+ * All operations are synchronous: each request waits for the acknowledgement of the kernel and failures are reported
+ * as {@link tel.schich.javacan.platform.linux.LinuxNativeOperationException}s. Adding and removing rules requires the
+ * {@code CAP_NET_ADMIN} capability and the {@code can-gw} kernel module.
+ * </p>
+ *
+ * @see <a href="https://www.kernel.org/doc/html/latest/networking/can.html">Kernel CAN documentation</a>
+ */
+public final class CgwChannel implements Channel {
+    private static final int AF_CAN = 29;
+    private static final int CGW_TYPE_CAN_CAN = 1;
+
+    // netlink message types and flags as given in netlink.h and rtnetlink.h
+    private static final short NLMSG_ERROR = 2;
+    private static final short NLMSG_DONE = 3;
+    private static final short RTM_NEWROUTE = 24;
+    private static final short RTM_DELROUTE = 25;
+    private static final short RTM_GETROUTE = 26;
+    private static final short NLM_F_REQUEST = 0x01;
+    private static final short NLM_F_ACK = 0x04;
+    private static final short NLM_F_DUMP = 0x300;
+
+    // attribute types as given in gw.h
+    private static final short CGW_HANDLED = 7;
+    private static final short CGW_DROPPED = 8;
+    private static final short CGW_SRC_IF = 9;
+    private static final short CGW_DST_IF = 10;
+    private static final short CGW_FILTER = 11;
+    private static final short CGW_DELETED = 12;
+    private static final short CGW_LIM_HOPS = 13;
+    private static final short CGW_MOD_UID = 14;
+
+    private static final int NLMSG_HEADER_LENGTH = 16;
+    private static final int RTCANMSG_LENGTH = 4;
+    private static final int NLA_HEADER_LENGTH = 4;
+    private static final int NLA_TYPE_MASK = 0x3FFF;
+    private static final int REQUEST_BUFFER_SIZE = 1024;
+    private static final int RESPONSE_BUFFER_SIZE = 64 * 1024;
+
+    private final int sock;
+    private final ByteBuffer request = JavaCAN.allocateOrdered(REQUEST_BUFFER_SIZE);
+    private final ByteBuffer response = JavaCAN.allocateOrdered(RESPONSE_BUFFER_SIZE);
+    private int sequence = 0;
+    private boolean open = true;
+
+    CgwChannel(int sock) {
+        this.sock = sock;
+    }
+
+    /**
+     * Adds a rule. If the rule has a {@link CgwRule#getUid() uid} of an existing rule, only the modifications of the
+     * existing rule are updated.
+     *
+     * @param rule the rule
+     * @throws IOException if the kernel rejected the rule or the native calls fail
+     */
+    public synchronized void add(CgwRule rule) throws IOException {
+        begin(RTM_NEWROUTE, (short) (NLM_F_REQUEST | NLM_F_ACK), CgwFlag.toNative(rule.getFlags()));
+        putRule(rule);
+        send();
+        awaitAck();
+    }
+
+    /**
+     * Removes a rule. All properties of the rule except the counters have to match, unless it has a
+     * {@link CgwRule#getUid() uid}, in which case only the uid is matched.
+     *
+     * @param rule the rule
+     * @throws IOException if no such rule exists or the native calls fail
+     */
+    public synchronized void remove(CgwRule rule) throws IOException {
+        begin(RTM_DELROUTE, (short) (NLM_F_REQUEST | NLM_F_ACK), CgwFlag.toNative(rule.getFlags()));
+        putRule(rule);
+        send();
+        awaitAck();
+    }
+
+    /**
+     * Removes all rules of the gateway, including those that have been added by other processes.
+     *
+     * @throws IOException if the native calls fail
+     */
+    public synchronized void clear() throws IOException {
+        begin(RTM_DELROUTE, (short) (NLM_F_REQUEST | NLM_F_ACK), 0);
+        send();
+        awaitAck();
+    }
+
+    /**
+     * Lists all rules of the gateway together with their frame counters.
+     *
+     * @return the rules
+     * @throws IOException if the native calls fail
+     */
+    public synchronized List<CgwRule> list() throws IOException {
+        begin(RTM_GETROUTE, (short) (NLM_F_REQUEST | NLM_F_DUMP), 0);
+        send();
+        List<CgwRule> rules = new ArrayList<>();
+        while (true) {
+            int length = receive();
+            int offset = 0;
+            while (offset + NLMSG_HEADER_LENGTH <= length) {
+                int messageLength = response.getInt(offset);
+                short type = response.getShort(offset + 4);
+                int seq = response.getInt(offset + 8);
+                if (messageLength < NLMSG_HEADER_LENGTH || offset + messageLength > length) {
+                    throw new IOException("Received a truncated netlink message!");
+                }
+                if (seq == sequence) {
+                    if (type == NLMSG_DONE) {
+                        return rules;
+                    } else if (type == NLMSG_ERROR) {
+                        checkError(offset);
+                    } else if (type == RTM_NEWROUTE) {
+                        CgwRule rule = decodeRule(offset, messageLength);
+                        if (rule != null) {
+                            rules.add(rule);
+                        }
+                    }
+                }
+                offset += align(messageLength);
+            }
+        }
+    }
+
+    @Override
+    public synchronized boolean isOpen() {
+        return open;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (open) {
+            open = false;
+            SocketCAN.close(sock);
+        }
+    }
+
+    private void begin(short type, short flags, int ruleFlags) throws ClosedChannelException {
+        if (!open) {
+            throw new ClosedChannelException();
+        }
+        sequence++;
+        request.clear();
+        request.putInt(0)
+                .putShort(type)
+                .putShort(flags)
+                .putInt(sequence)
+                .putInt(0);
+        request.put((byte) AF_CAN)
+                .put((byte) CGW_TYPE_CAN_CAN)
+                .putShort((short) ruleFlags);
+    }
+
+    private void putRule(CgwRule rule) {
+        boolean fd = rule.isFD();
+        for (CgwModification modification : rule.getModifications()) {
+            CgwModification.Function function = modification.getFunction();
+            int start = beginAttribute(fd ? function.fdAttribute : function.attribute);
+            modification.encode(request, fd);
+            endAttribute(start);
+        }
+        for (CgwChecksum checksum : rule.getChecksums()) {
+            int start = beginAttribute(checksum.getType().attribute);
+            checksum.encode(request);
+            endAttribute(start);
+        }
+        if (rule.getUid() != 0) {
+            endAttribute(beginAttribute(CGW_MOD_UID), rule.getUid());
+        }
+        CanFilter filter = rule.getFilter();
+        if (filter != null) {
+            int start = beginAttribute(CGW_FILTER);
+            request.putInt(filter.getId()).putInt(filter.getMask());
+            endAttribute(start);
+        }
+        endAttribute(beginAttribute(CGW_SRC_IF), rule.getSourceIndex());
+        endAttribute(beginAttribute(CGW_DST_IF), rule.getDestinationIndex());
+        if (rule.getHopLimit() != 0) {
+            int start = beginAttribute(CGW_LIM_HOPS);
+            request.put((byte) rule.getHopLimit());
+            endAttribute(start);
+        }
+    }
+
+    private int beginAttribute(int type) {
+        int start = request.position();
+        request.putShort((short) 0).putShort((short) type);
+        return start;
+    }
+
+    private void endAttribute(int start, int value) {
+        request.putInt(value);
+        endAttribute(start);
+    }
+
+    private void endAttribute(int start) {
+        request.putShort(start, (short) (request.position() - start));
+        while ((request.position() & 3) != 0) {
+            request.put((byte) 0);
+        }
+    }
+
+    private void send() throws IOException {
+        int length = request.position();
+        request.putInt(0, length);
+        SocketCAN.write(sock, request, 0, length);
+    }
+
+    private int receive() throws IOException {
+        return (int) SocketCAN.read(sock, response, 0, response.capacity());
+    }
+
+    private void awaitAck() throws IOException {
+        while (true) {
+            int length = receive();
+            int offset = 0;
+            while (offset + NLMSG_HEADER_LENGTH <= length) {
+                int messageLength = response.getInt(offset);
+                if (messageLength < NLMSG_HEADER_LENGTH || offset + messageLength > length) {
+                    throw new IOException("Received a truncated netlink message!");
+                }
+                if (response.getShort(offset + 4) == NLMSG_ERROR && response.getInt(offset + 8) == sequence) {
+                    checkError(offset);
+                    return;
+                }
+                offset += align(messageLength);
+            }
+        }
+    }
+
+    private void checkError(int offset) throws LinuxNativeOperationException {
+        int error = -response.getInt(offset + NLMSG_HEADER_LENGTH);
+        if (error != 0) {
+            throw new LinuxNativeOperationException("The CAN gateway rejected the request", error, SocketCAN.errorString(error));
+        }
+    }
+
+    @Nullable
+    private CgwRule decodeRule(int offset, int messageLength) {
+        int flags = response.getShort(offset + NLMSG_HEADER_LENGTH + 2) & 0xFFFF;
+        if (response.get(offset + NLMSG_HEADER_LENGTH + 1) != CGW_TYPE_CAN_CAN) {
+            return null;
+        }
+        boolean fd = CgwFlag.FD.isSet(flags);
+        int sourceIndex = 0;
+        int destinationIndex = 0;
+        List<CgwModification> modifications = new ArrayList<>();
+        List<CgwChecksum> checksums = new ArrayList<>();
+        @Nullable
+        CanFilter filter = null;
+        int hopLimit = 0;
+        int uid = 0;
+        long handled = 0;
+        long dropped = 0;
+        long deleted = 0;
+
+        int end = offset + messageLength;
+        int attribute = offset + NLMSG_HEADER_LENGTH + RTCANMSG_LENGTH;
+        while (attribute + NLA_HEADER_LENGTH <= end) {
+            response.clear();
+            int length = response.getShort(attribute) & 0xFFFF;
+            int type = response.getShort(attribute + 2) & NLA_TYPE_MASK;
+            if (length < NLA_HEADER_LENGTH || attribute + length > end) {
+                break;
+            }
+            int payload = attribute + NLA_HEADER_LENGTH;
+            response.clear().position(payload).limit(attribute + length);
+            switch (type) {
+                case CGW_HANDLED:
+                    handled = response.getInt(payload) & 0xFFFFFFFFL;
+                    break;
+                case CGW_DROPPED:
+                    dropped = response.getInt(payload) & 0xFFFFFFFFL;
+                    break;
+                case CGW_DELETED:
+                    deleted = response.getInt(payload) & 0xFFFFFFFFL;
+                    break;
+                case CGW_SRC_IF:
+                    sourceIndex = response.getInt(payload);
+                    break;
+                case CGW_DST_IF:
+                    destinationIndex = response.getInt(payload);
+                    break;
+                case CGW_FILTER:
+                    filter = new CanFilter(response.getInt(payload), response.getInt(payload + 4));
+                    break;
+                case CGW_LIM_HOPS:
+                    hopLimit = response.get(payload) & 0xFF;
+                    break;
+                case CGW_MOD_UID:
+                    uid = response.getInt(payload);
+                    break;
+                default:
+                    for (CgwModification.Function function : CgwModification.Function.values()) {
+                        if (type == (fd ? function.fdAttribute : function.attribute)) {
+                            modifications.add(CgwModification.decode(function, response, fd));
+                        }
+                    }
+                    for (CgwChecksum.Type checksumType : CgwChecksum.Type.values()) {
+                        if (type == checksumType.attribute) {
+                            checksums.add(CgwChecksum.decode(checksumType, response));
+                        }
+                    }
+                    break;
+            }
+            attribute += align(length);
+        }
+        response.clear();
+
+        CgwRule.Builder builder = CgwRule.builder(LinuxNetworkDevice.fromDeviceIndex(sourceIndex), LinuxNetworkDevice.fromDeviceIndex(destinationIndex))
+                .filter(filter)
+                .hopLimit(hopLimit)
+                .uid(uid)
+                .statistics(handled, dropped, deleted);
+        for (CgwFlag flag : CgwFlag.fromNative(flags)) {
+            builder.flag(flag);
+        }
+        for (CgwModification modification : modifications) {
+            builder.modification(modification);
+        }
+        for (CgwChecksum checksum : checksums) {
+            builder.checksum(checksum);
+        }
+        return builder.build();
+    }
+
+    private static int align(int length) {
+        return (length + 3) & ~3;
+    }
+}
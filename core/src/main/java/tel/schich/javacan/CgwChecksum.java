@@ -0,0 +1,315 @@
+/*
+ * The MIT License
+ * Copyright © 2018 Phillip Schichtel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package tel.schich.javacan;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * <p>
+ * A CgwChecksum lets a rule of the kernel's CAN gateway recompute a checksum over the payload of forwarded frames
+ * after all modifications have been applied. The checksum over the bytes {@code from} to {@code to} (both inclusive)
+ * is stored at {@code result}. Negative indices count from the end of the payload, so {@code -1} is the last byte.
+ * </p>
+ * <p>
+ * A rule can have at most one XOR and one CRC8 checksum.
+ * </p>
+ *
+ * @see CgwRule
+ */
+public final class CgwChecksum {
+    /**
+     * The size of the CRC8 lookup table.
+     */
+    public static final int CRC8_TABLE_SIZE = 256;
+
+    /**
+     * The maximum size of the profile data of a CRC8 checksum.
+     */
+    public static final int MAX_PROFILE_DATA_LENGTH = 20;
+
+    static final int XOR_LENGTH = 4;
+    static final int CRC8_LENGTH = 5 + CRC8_TABLE_SIZE + 1 + MAX_PROFILE_DATA_LENGTH;
+
+    private static final byte[] EMPTY = new byte[0];
+
+    private final Type type;
+    private final byte from;
+    private final byte to;
+    private final byte result;
+    private final byte initialValue;
+    private final byte finalXor;
+    private final byte[] table;
+    private final Crc8Profile profile;
+    private final byte[] profileData;
+
+    private CgwChecksum(Type type, int from, int to, int result, int initialValue, int finalXor, byte[] table,
+                        Crc8Profile profile, byte[] profileData) {
+        this.type = type;
+        this.from = checkIndex(from);
+        this.to = checkIndex(to);
+        this.result = checkIndex(result);
+        this.initialValue = (byte) initialValue;
+        this.finalXor = (byte) finalXor;
+        this.table = table;
+        this.profile = profile;
+        this.profileData = profileData;
+    }
+
+    private static byte checkIndex(int index) {
+        if (index < -CanFrame.MAX_FD_DATA_LENGTH || index >= CanFrame.MAX_FD_DATA_LENGTH) {
+            throw new IllegalArgumentException("Checksum indices must be within [" + -CanFrame.MAX_FD_DATA_LENGTH + ", " + CanFrame.MAX_FD_DATA_LENGTH + ")!");
+        }
+        return (byte) index;
+    }
+
+    /**
+     * Creates an XOR checksum.
+     *
+     * @param from the first byte of the checksum
+     * @param to the last byte of the checksum
+     * @param result the byte to store the checksum at
+     * @param initialValue the initial value
+     * @return the checksum
+     */
+    public static CgwChecksum xor(int from, int to, int result, int initialValue) {
+        return new CgwChecksum(Type.XOR, from, to, result, initialValue, 0, EMPTY, Crc8Profile.NONE, EMPTY);
+    }
+
+    /**
+     * Creates a CRC8 checksum with a table computed from the given polynomial.
+     *
+     * @param from the first byte of the checksum
+     * @param to the last byte of the checksum
+     * @param result the byte to store the checksum at
+     * @param initialValue the initial value
+     * @param finalXor the value the result is XORed with
+     * @param polynomial the polynomial in normal (MSB first) representation, e.g. {@code 0x1D} for SAE J1850
+     * @return the checksum
+     */
+    public static CgwChecksum crc8(int from, int to, int result, int initialValue, int finalXor, int polynomial) {
+        return crc8(from, to, result, initialValue, finalXor, crc8Table(polynomial), Crc8Profile.NONE, EMPTY);
+    }
+
+    /**
+     * Creates a CRC8 checksum. The profile additionally includes a value that does not depend on the covered
+     * bytes, as used by AUTOSAR E2E profiles.
+     *
+     * @param from the first byte of the checksum
+     * @param to the last byte of the checksum
+     * @param result the byte to store the checksum at
+     * @param initialValue the initial value
+     * @param finalXor the value the result is XORed with
+     * @param table the CRC8 lookup table of {@link #CRC8_TABLE_SIZE} bytes
+     * @param profile the profile
+     * @param profileData the data of the profile, at most {@link #MAX_PROFILE_DATA_LENGTH} bytes
+     * @return the checksum
+     */
+    public static CgwChecksum crc8(int from, int to, int result, int initialValue, int finalXor, byte[] table,
+                                   Crc8Profile profile, byte[] profileData) {
+        if (table.length != CRC8_TABLE_SIZE) {
+            throw new IllegalArgumentException("The CRC8 table must have exactly " + CRC8_TABLE_SIZE + " entries!");
+        }
+        if (profileData.length > MAX_PROFILE_DATA_LENGTH) {
+            throw new IllegalArgumentException("The profile data must not be longer than " + MAX_PROFILE_DATA_LENGTH + " bytes!");
+        }
+        return new CgwChecksum(Type.CRC8, from, to, result, initialValue, finalXor, table.clone(), profile,
+                Arrays.copyOf(profileData, MAX_PROFILE_DATA_LENGTH));
+    }
+
+    /**
+     * Computes the lookup table of a CRC8 checksum.
+     *
+     * @param polynomial the polynomial in normal (MSB first) representation
+     * @return the table of {@link #CRC8_TABLE_SIZE} bytes
+     */
+    public static byte[] crc8Table(int polynomial) {
+        byte[] table = new byte[CRC8_TABLE_SIZE];
+        for (int i = 0; i < CRC8_TABLE_SIZE; i++) {
+            int crc = i;
+            for (int bit = 0; bit < 8; bit++) {
+                crc = (crc & 0x80) != 0 ? (crc << 1) ^ polynomial : crc << 1;
+            }
+            table[i] = (byte) crc;
+        }
+        return table;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public int getFrom() {
+        return from;
+    }
+
+    public int getTo() {
+        return to;
+    }
+
+    public int getResult() {
+        return result;
+    }
+
+    public int getInitialValue() {
+        return initialValue & 0xFF;
+    }
+
+    public int getFinalXor() {
+        return finalXor & 0xFF;
+    }
+
+    public Crc8Profile getProfile() {
+        return profile;
+    }
+
+    /**
+     * Writes the attribute payload ({@code struct cgw_csum_xor} or {@code struct cgw_csum_crc8}).
+     *
+     * @param buffer the buffer to write to at its position
+     */
+    void encode(ByteBuffer buffer) {
+        buffer.put(from).put(to).put(result).put(initialValue);
+        if (type == Type.CRC8) {
+            buffer.put(finalXor).put(table).put((byte) profile.nativeProfile).put(profileData);
+        }
+    }
+
+    /**
+     * Reads the attribute payload ({@code struct cgw_csum_xor} or {@code struct cgw_csum_crc8}).
+     *
+     * @param type the type given by the attribute type
+     * @param buffer the buffer to read from at its position
+     * @return the checksum
+     */
+    static CgwChecksum decode(Type type, ByteBuffer buffer) {
+        byte from = buffer.get();
+        byte to = buffer.get();
+        byte result = buffer.get();
+        byte initialValue = buffer.get();
+        if (type == Type.XOR) {
+            return xor(from, to, result, initialValue);
+        }
+        byte finalXor = buffer.get();
+        byte[] table = new byte[CRC8_TABLE_SIZE];
+        buffer.get(table);
+        Crc8Profile profile = Crc8Profile.fromNative(buffer.get() & 0xFF);
+        byte[] profileData = new byte[MAX_PROFILE_DATA_LENGTH];
+        buffer.get(profileData);
+        return new CgwChecksum(type, from, to, result, initialValue, finalXor, table, profile, profileData);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof CgwChecksum)) return false;
+        CgwChecksum that = (CgwChecksum) o;
+        return type == that.type && from == that.from && to == that.to && result == that.result
+                && initialValue == that.initialValue && finalXor == that.finalXor && Arrays.equals(table, that.table)
+                && profile == that.profile && Arrays.equals(profileData, that.profileData);
+    }
+
+    @Override
+    public int hashCode() {
+        int hash = type.hashCode();
+        hash = 31 * hash + from;
+        hash = 31 * hash + to;
+        hash = 31 * hash + result;
+        hash = 31 * hash + initialValue;
+        hash = 31 * hash + finalXor;
+        hash = 31 * hash + Arrays.hashCode(table);
+        hash = 31 * hash + profile.hashCode();
+        hash = 31 * hash + Arrays.hashCode(profileData);
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        return "CgwChecksum(type=" + type + ", from=" + from + ", to=" + to + ", result=" + result
+                + ", initialValue=" + getInitialValue() + ", finalXor=" + getFinalXor() + ", profile=" + profile + ")";
+    }
+
+    /**
+     * The checksum algorithms.
+     */
+    public enum Type {
+        /**
+         * XOR over all covered bytes.
+         */
+        XOR(5),
+
+        /**
+         * Table driven CRC8 over all covered bytes.
+         */
+        CRC8(6);
+
+        /**
+         * The native attribute type as given in {@code gw.h}
+         */
+        final int attribute;
+
+        Type(int attribute) {
+            this.attribute = attribute;
+        }
+    }
+
+    /**
+     * The profiles of a CRC8 checksum, which define an additional value that is fed into the checksum.
+     */
+    public enum Crc8Profile {
+        /**
+         * No additional value.
+         */
+        NONE(0),
+
+        /**
+         * One additional byte taken from the first byte of the profile data.
+         */
+        ONE_U8(1),
+
+        /**
+         * One additional byte taken from the profile data, indexed by the lower 4 bits of the second payload byte.
+         */
+        SIXTEEN_U8(2),
+
+        /**
+         * One additional byte computed as the XOR of both bytes of a standard CAN ID.
+         */
+        SFF_ID_XOR(3);
+
+        final int nativeProfile;
+
+        Crc8Profile(int nativeProfile) {
+            this.nativeProfile = nativeProfile;
+        }
+
+        static Crc8Profile fromNative(int nativeProfile) {
+            for (Crc8Profile profile : values()) {
+                if (profile.nativeProfile == nativeProfile) {
+                    return profile;
+                }
+            }
+            throw new IllegalArgumentException("unknown CRC8 profile: " + nativeProfile);
+        }
+    }
+}
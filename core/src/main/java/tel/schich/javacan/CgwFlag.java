@@ -0,0 +1,112 @@
+/*
+ * The MIT License
+ * Copyright © 2018 Phillip Schichtel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package tel.schich.javacan;
+
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * The CgwFlag enum represents the flags of a rule of the kernel's CAN gateway ({@code can-gw}).
+ *
+ * @see CgwRule
+ */
+public enum CgwFlag {
+
+    /**
+     * Forwarded frames are echoed back to sockets on the destination device, like frames sent by a local socket with
+     * loopback enabled.
+     */
+    ECHO(0x01),
+
+    /**
+     * Forwarded frames keep the receive timestamp of the source frame.
+     */
+    SOURCE_TIMESTAMP(0x02),
+
+    /**
+     * Allows the source and the destination device to be the same device.
+     */
+    IIF_TX_OK(0x04),
+
+    /**
+     * The rule forwards CAN FD frames, modifications are applied to {@link CanFrame#isFDFrame() FD frames}.
+     */
+    FD(0x08);
+
+    private static final CgwFlag[] VALUES = values();
+
+    private final int bit;
+
+    CgwFlag(int bit) {
+        this.bit = bit;
+    }
+
+    /**
+     * Returns the native bit of this flag as defined in {@code gw.h}.
+     *
+     * @return the native bit
+     */
+    public int getBit() {
+        return bit;
+    }
+
+    /**
+     * Checks if this flag is set in the given native flags.
+     *
+     * @param nativeFlags the native bitmask
+     * @return true if the flag is set
+     */
+    public boolean isSet(int nativeFlags) {
+        return (nativeFlags & bit) != 0;
+    }
+
+    /**
+     * Get the Java representation for the native flags.
+     *
+     * @param nativeFlags from the kernel
+     * @return the set of flags
+     */
+    public static Set<CgwFlag> fromNative(int nativeFlags) {
+        EnumSet<CgwFlag> flags = EnumSet.noneOf(CgwFlag.class);
+        for (CgwFlag flag : VALUES) {
+            if ((flag.bit & nativeFlags) != 0) {
+                flags.add(flag);
+            }
+        }
+        return flags;
+    }
+
+    /**
+     * Get the native representation for the given set of flags.
+     *
+     * @param flags the flags to convert
+     * @return an integer bitmask
+     */
+    public static int toNative(Set<CgwFlag> flags) {
+        int nativeFlags = 0;
+        for (CgwFlag flag : flags) {
+            nativeFlags |= flag.bit;
+        }
+        return nativeFlags;
+    }
+}
@@ -0,0 +1,199 @@
+/*
+ * The MIT License
+ * Copyright © 2018 Phillip Schichtel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package tel.schich.javacan;
+
+import java.nio.ByteBuffer;
+
+/**
+ * <p>
+ * A CgwModification describes how a rule of the kernel's CAN gateway modifies forwarded frames. The operand frame
+ * is combined with the forwarded frame using the {@link Function}, only the parts of the frame selected by the
+ * targets ({@link #ID}, {@link #LENGTH}, {@link #DATA}, {@link #FLAGS}) are modified.
+ * </p>
+ * <p>
+ * The kernel applies the functions in the order AND, OR, XOR, SET, a rule can have at most one modification per
+ * function.
+ * </p>
+ *
+ * @see CgwRule
+ */
+public final class CgwModification {
+    /**
+     * Modify the CAN ID.
+     */
+    public static final int ID = 0x01;
+
+    /**
+     * Modify the data length (the DLC for classic CAN frames).
+     */
+    public static final int LENGTH = 0x02;
+
+    /**
+     * Modify the payload.
+     */
+    public static final int DATA = 0x04;
+
+    /**
+     * Modify the CAN FD flags, only valid for rules with {@link CgwFlag#FD}.
+     */
+    public static final int FLAGS = 0x08;
+
+    private static final int ALL_TARGETS = ID | LENGTH | DATA | FLAGS;
+
+    private final Function function;
+    private final int targets;
+    private final CanFrame operand;
+
+    private CgwModification(Function function, int targets, CanFrame operand) {
+        this.function = function;
+        this.targets = targets;
+        this.operand = operand;
+    }
+
+    /**
+     * Creates a modification.
+     *
+     * @param function the function to apply
+     * @param targets the parts of the frame to modify, a combination of {@link #ID}, {@link #LENGTH}, {@link #DATA}
+     *                and {@link #FLAGS}
+     * @param operand the frame that provides the values to combine the forwarded frame with, it will be copied
+     * @return the modification
+     */
+    public static CgwModification of(Function function, int targets, CanFrame operand) {
+        if (targets == 0 || (targets & ~ALL_TARGETS) != 0) {
+            throw new IllegalArgumentException("Invalid modification targets: " + targets);
+        }
+        return new CgwModification(function, targets, operand.copy());
+    }
+
+    public Function getFunction() {
+        return function;
+    }
+
+    public int getTargets() {
+        return targets;
+    }
+
+    public CanFrame getOperand() {
+        return operand;
+    }
+
+    /**
+     * Writes the attribute payload ({@code struct cgw_frame_mod} or {@code struct cgw_fdframe_mod}).
+     *
+     * @param buffer the buffer to write to at its position
+     * @param fd whether the rule forwards CAN FD frames
+     */
+    void encode(ByteBuffer buffer, boolean fd) {
+        int frameLength = fd ? RawCanChannel.FD_MTU : RawCanChannel.MTU;
+        if (operand.getSize() > frameLength) {
+            throw new IllegalArgumentException("A CAN FD operand requires a rule with the FD flag!");
+        }
+        int start = buffer.position();
+        buffer.put(operand.getBuffer());
+        while (buffer.position() < start + frameLength) {
+            buffer.put((byte) 0);
+        }
+        buffer.put((byte) targets);
+    }
+
+    /**
+     * Reads the attribute payload ({@code struct cgw_frame_mod} or {@code struct cgw_fdframe_mod}).
+     *
+     * @param function the function given by the attribute type
+     * @param buffer the buffer to read from at its position
+     * @param fd whether the attribute is a CAN FD modification
+     * @return the modification
+     */
+    static CgwModification decode(Function function, ByteBuffer buffer, boolean fd) {
+        int frameLength = fd ? RawCanChannel.FD_MTU : RawCanChannel.MTU;
+        ByteBuffer frame = JavaCAN.allocateOrdered(frameLength);
+        for (int i = 0; i < frameLength; i++) {
+            frame.put(buffer.get());
+        }
+        frame.clear();
+        int targets = buffer.get() & 0xFF;
+        return new CgwModification(function, targets, CanFrame.createUnsafe(frame));
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof CgwModification)) return false;
+        CgwModification that = (CgwModification) o;
+        return function == that.function && targets == that.targets && operand.equals(that.operand);
+    }
+
+    @Override
+    public int hashCode() {
+        int result = function.hashCode();
+        result = 31 * result + targets;
+        result = 31 * result + operand.hashCode();
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return "CgwModification(function=" + function + ", targets=" + targets + ", operand=" + operand + ")";
+    }
+
+    /**
+     * The functions to combine a forwarded frame with the operand frame.
+     */
+    public enum Function {
+        /**
+         * Binary AND of the selected parts.
+         */
+        AND(1, 15),
+
+        /**
+         * Binary OR of the selected parts.
+         */
+        OR(2, 16),
+
+        /**
+         * Binary XOR of the selected parts.
+         */
+        XOR(3, 17),
+
+        /**
+         * Replace the selected parts.
+         */
+        SET(4, 18);
+
+        /**
+         * The native attribute type for classic CAN rules as given in {@code gw.h}
+         */
+        final int attribute;
+
+        /**
+         * The native attribute type for CAN FD rules as given in {@code gw.h}
+         */
+        final int fdAttribute;
+
+        Function(int attribute, int fdAttribute) {
+            this.attribute = attribute;
+            this.fdAttribute = fdAttribute;
+        }
+    }
+}
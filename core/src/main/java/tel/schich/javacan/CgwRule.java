@@ -0,0 +1,307 @@
+/*
+ * The MIT License
+ * Copyright © 2018 Phillip Schichtel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package tel.schich.javacan;
+
+import org.eclipse.jdt.annotation.Nullable;
+import tel.schich.javacan.platform.linux.LinuxNetworkDevice;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * <p>
+ * A CgwRule describes a route of the kernel's CAN gateway ({@code can-gw}): frames received on the source device
+ * that are accepted by the filter are forwarded to the destination device inside the kernel, optionally modified
+ * and with recomputed checksums. Rules are managed with a {@link CgwChannel}.
+ * </p>
+ * <p>
+ * Rules returned by {@link CgwChannel#list()} additionally carry the frame counters of the kernel, which are not
+ * part of the rule's identity.
+ * </p>
+ *
+ * @see <a href="https://www.kernel.org/doc/html/latest/networking/can.html">Kernel CAN documentation</a>
+ */
+public final class CgwRule {
+    private final NetworkDevice source;
+    private final NetworkDevice destination;
+    @Nullable
+    private final CanFilter filter;
+    private final Set<CgwFlag> flags;
+    private final List<CgwModification> modifications;
+    private final List<CgwChecksum> checksums;
+    private final int hopLimit;
+    private final int uid;
+    private final long handledFrames;
+    private final long droppedFrames;
+    private final long deletedFrames;
+
+    private CgwRule(Builder builder) {
+        this.source = builder.source;
+        this.destination = builder.destination;
+        this.filter = builder.filter;
+        this.flags = Collections.unmodifiableSet(EnumSet.copyOf(builder.flags));
+        this.modifications = Collections.unmodifiableList(new ArrayList<>(builder.modifications.values()));
+        this.checksums = Collections.unmodifiableList(new ArrayList<>(builder.checksums.values()));
+        this.hopLimit = builder.hopLimit;
+        this.uid = builder.uid;
+        this.handledFrames = builder.handledFrames;
+        this.droppedFrames = builder.droppedFrames;
+        this.deletedFrames = builder.deletedFrames;
+    }
+
+    /**
+     * Provides a mutable builder for a rule that forwards frames from the source to the destination device.
+     *
+     * @param source the device to receive frames from
+     * @param destination the device to send frames to
+     * @return the builder
+     */
+    public static Builder builder(NetworkDevice source, NetworkDevice destination) {
+        return new Builder(source, destination);
+    }
+
+    public NetworkDevice getSource() {
+        return source;
+    }
+
+    public NetworkDevice getDestination() {
+        return destination;
+    }
+
+    /**
+     * Returns the filter on the source device.
+     *
+     * @return the filter or null if all frames are forwarded
+     */
+    @Nullable
+    public CanFilter getFilter() {
+        return filter;
+    }
+
+    public Set<CgwFlag> getFlags() {
+        return flags;
+    }
+
+    public boolean isFD() {
+        return flags.contains(CgwFlag.FD);
+    }
+
+    /**
+     * Returns the modifications in the order they are applied by the kernel.
+     *
+     * @return the modifications
+     */
+    public List<CgwModification> getModifications() {
+        return modifications;
+    }
+
+    public List<CgwChecksum> getChecksums() {
+        return checksums;
+    }
+
+    /**
+     * Returns the maximum number of gateway hops of frames forwarded by this rule.
+     *
+     * @return the hop limit or 0 if only the global limit of the kernel module applies
+     */
+    public int getHopLimit() {
+        return hopLimit;
+    }
+
+    /**
+     * Returns the user defined identifier of this rule.
+     *
+     * @return the identifier or 0 if none has been assigned
+     */
+    public int getUid() {
+        return uid;
+    }
+
+    /**
+     * Returns the number of frames forwarded by this rule, as reported by the kernel.
+     *
+     * @return the number of frames or 0 if this rule has not been listed from the kernel
+     */
+    public long getHandledFrames() {
+        return handledFrames;
+    }
+
+    /**
+     * Returns the number of frames this rule failed to forward, as reported by the kernel.
+     *
+     * @return the number of frames or 0 if this rule has not been listed from the kernel
+     */
+    public long getDroppedFrames() {
+        return droppedFrames;
+    }
+
+    /**
+     * Returns the number of frames that have not been forwarded due to the hop limit, as reported by the kernel.
+     *
+     * @return the number of frames or 0 if this rule has not been listed from the kernel
+     */
+    public long getDeletedFrames() {
+        return deletedFrames;
+    }
+
+    int getSourceIndex() {
+        return ((LinuxNetworkDevice) source).getIndex();
+    }
+
+    int getDestinationIndex() {
+        return ((LinuxNetworkDevice) destination).getIndex();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof CgwRule)) return false;
+        CgwRule that = (CgwRule) o;
+        return source.equals(that.source) && destination.equals(that.destination)
+                && Objects.equals(filter, that.filter) && flags.equals(that.flags)
+                && modifications.equals(that.modifications) && checksums.equals(that.checksums)
+                && hopLimit == that.hopLimit && uid == that.uid;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(source, destination, filter, flags, modifications, checksums, hopLimit, uid);
+    }
+
+    @Override
+    public String toString() {
+        return "CgwRule(source=" + source + ", destination=" + destination + ", filter=" + filter
+                + ", flags=" + flags + ", modifications=" + modifications + ", checksums=" + checksums
+                + ", hopLimit=" + hopLimit + ", uid=" + uid + ", handled=" + handledFrames
+                + ", dropped=" + droppedFrames + ", deleted=" + deletedFrames + ")";
+    }
+
+    public static class Builder {
+        private final NetworkDevice source;
+        private final NetworkDevice destination;
+        @Nullable
+        private CanFilter filter;
+        private final Set<CgwFlag> flags = EnumSet.noneOf(CgwFlag.class);
+        private final Map<CgwModification.Function, CgwModification> modifications = new EnumMap<>(CgwModification.Function.class);
+        private final Map<CgwChecksum.Type, CgwChecksum> checksums = new EnumMap<>(CgwChecksum.Type.class);
+        private int hopLimit;
+        private int uid;
+        private long handledFrames;
+        private long droppedFrames;
+        private long deletedFrames;
+
+        public Builder(NetworkDevice source, NetworkDevice destination) {
+            if (!(source instanceof LinuxNetworkDevice) || !(destination instanceof LinuxNetworkDevice)) {
+                throw new IllegalArgumentException("Unsupported network device given!");
+            }
+            this.source = source;
+            this.destination = destination;
+        }
+
+        /**
+         * Sets the filter on the source device. Filters that accept all frames are treated like no filter, just like
+         * the kernel does it.
+         *
+         * @param filter the filter or null to forward all frames
+         * @return this builder
+         */
+        public Builder filter(@Nullable CanFilter filter) {
+            if (filter != null && filter.getId() == 0 && filter.getMask() == 0) {
+                filter = null;
+            }
+            this.filter = filter;
+            return this;
+        }
+
+        public Builder flag(CgwFlag flag) {
+            this.flags.add(flag);
+            return this;
+        }
+
+        /**
+         * Sets the modification of the function of the given modification, replacing a previous one.
+         *
+         * @param modification the modification
+         * @return this builder
+         */
+        public Builder modification(CgwModification modification) {
+            this.modifications.put(modification.getFunction(), modification);
+            return this;
+        }
+
+        /**
+         * Sets the checksum of the type of the given checksum, replacing a previous one.
+         *
+         * @param checksum the checksum
+         * @return this builder
+         */
+        public Builder checksum(CgwChecksum checksum) {
+            this.checksums.put(checksum.getType(), checksum);
+            return this;
+        }
+
+        public Builder hopLimit(int hopLimit) {
+            if (hopLimit < 0 || hopLimit > 0xFF) {
+                throw new IllegalArgumentException("The hop limit must be within [0, 255]!");
+            }
+            this.hopLimit = hopLimit;
+            return this;
+        }
+
+        /**
+         * Sets a user defined identifier. Adding a rule with the identifier of an existing rule only updates the
+         * modifications of the existing rule and removing a rule with an identifier ignores all other properties.
+         *
+         * @param uid the identifier or 0 for none
+         * @return this builder
+         */
+        public Builder uid(int uid) {
+            this.uid = uid;
+            return this;
+        }
+
+        Builder statistics(long handledFrames, long droppedFrames, long deletedFrames) {
+            this.handledFrames = handledFrames;
+            this.droppedFrames = droppedFrames;
+            this.deletedFrames = deletedFrames;
+            return this;
+        }
+
+        public CgwRule build() {
+            if (!flags.contains(CgwFlag.FD)) {
+                for (CgwModification modification : modifications.values()) {
+                    if (modification.getOperand().isFDFrame() || (modification.getTargets() & CgwModification.FLAGS) != 0) {
+                        throw new IllegalArgumentException("CAN FD modifications require the FD flag!");
+                    }
+                }
+            }
+            return new CgwRule(this);
+        }
+    }
+}
@@ -0,0 +1,181 @@
+/*
+ * The MIT License
+ * Copyright © 2018 Phillip Schichtel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package tel.schich.javacan;
+
+import tel.schich.javacan.platform.linux.LinuxNativeOperationException;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * <p>
+ * I/O counters of one or more {@link AbstractCanChannel}s. Metrics are disabled by default, they are collected once
+ * an instance has been attached to a channel using {@link AbstractCanChannel#setMetrics(ChannelMetrics)}. The
+ * counters are striped {@link java.util.concurrent.atomic.LongAdder}s, so a single instance can be shared by several
+ * channels that are used from different threads to get aggregated counts.
+ * </p>
+ * <p>
+ * A message is whatever a single read or write transfers for the channel type, e.g. a frame for
+ * {@link RawCanChannel}s or a {@link BcmMessage} for {@link BcmCanChannel}s. Calls are counted per system call, so a
+ * batched write counts as a single write call.
+ * </p>
+ * <p>
+ * This class implements {@link ChannelMetricsMXBean}, so it can be registered with a JMX MBean server as is.
+ * </p>
+ */
+public final class ChannelMetrics implements ChannelMetricsMXBean {
+    private final LongAdder readCalls = new LongAdder();
+    private final LongAdder readMessages = new LongAdder();
+    private final LongAdder readBytes = new LongAdder();
+    private final LongAdder writeCalls = new LongAdder();
+    private final LongAdder writtenMessages = new LongAdder();
+    private final LongAdder writtenBytes = new LongAdder();
+    private final LongAdder wouldBlock = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final LongAdder kernelDrops = new LongAdder();
+
+    void recordRead(long bytes, int messages) {
+        readCalls.increment();
+        readMessages.add(messages);
+        readBytes.add(bytes);
+    }
+
+    void recordWrite(long bytes, int messages) {
+        writeCalls.increment();
+        writtenMessages.add(messages);
+        writtenBytes.add(bytes);
+    }
+
+    void recordFailure(LinuxNativeOperationException e) {
+        if (e.mayTryAgain()) {
+            wouldBlock.increment();
+        } else {
+            errors.increment();
+        }
+    }
+
+    void recordKernelDrops(long drops) {
+        kernelDrops.add(drops);
+    }
+
+    /**
+     * Returns the number of successful read system calls.
+     *
+     * @return the number of calls
+     */
+    @Override
+    public long getReadCalls() {
+        return readCalls.sum();
+    }
+
+    @Override
+    public long getReadMessages() {
+        return readMessages.sum();
+    }
+
+    @Override
+    public long getReadBytes() {
+        return readBytes.sum();
+    }
+
+    /**
+     * Returns the number of successful write system calls.
+     *
+     * @return the number of calls
+     */
+    @Override
+    public long getWriteCalls() {
+        return writeCalls.sum();
+    }
+
+    @Override
+    public long getWrittenMessages() {
+        return writtenMessages.sum();
+    }
+
+    @Override
+    public long getWrittenBytes() {
+        return writtenBytes.sum();
+    }
+
+    /**
+     * Returns the number of reads and writes of non-blocking channels that failed because they would have blocked
+     * ({@code EAGAIN}). The non-blocking reads used to drain a channel, like
+     * {@link RawCanChannel#tryReadUnsafe(java.nio.ByteBuffer)}, are not counted, since running out of messages is
+     * how draining ends and not a failure.
+     *
+     * @return the number of calls
+     */
+    @Override
+    public long getWouldBlock() {
+        return wouldBlock.sum();
+    }
+
+    /**
+     * Returns the number of reads, writes and other native operations on the channels that failed for any other
+     * reason.
+     *
+     * @return the number of calls
+     */
+    @Override
+    public long getErrors() {
+        return errors.sum();
+    }
+
+    /**
+     * Returns the number of frames the kernel dropped from the receive queues of the channels. The kernel only
+     * reports drops if {@link CanSocketOptions#SO_RXQ_OVFL} is enabled and messages are received together with a
+     * {@link RawReceiveMessageHeaderBuffer}. Each channel adds the increase of its socket's cumulative drop counter, so
+     * the drops of several channels sharing this instance add up.
+     *
+     * @return the number of frames dropped by the kernel
+     */
+    @Override
+    public long getKernelDrops() {
+        return kernelDrops.sum();
+    }
+
+    /**
+     * Resets all counters. Updates that happen concurrently to the reset might be lost.
+     */
+    @Override
+    public void reset() {
+        readCalls.reset();
+        readMessages.reset();
+        readBytes.reset();
+        writeCalls.reset();
+        writtenMessages.reset();
+        writtenBytes.reset();
+        wouldBlock.reset();
+        errors.reset();
+        kernelDrops.reset();
+    }
+
+    @Override
+    public String toString() {
+        return "ChannelMetrics(readCalls=" + getReadCalls() + ", readMessages=" + getReadMessages()
+                + ", readBytes=" + getReadBytes() + ", writeCalls=" + getWriteCalls()
+                + ", writtenMessages=" + getWrittenMessages() + ", writtenBytes=" + getWrittenBytes()
+                + ", wouldBlock=" + getWouldBlock() + ", errors=" + getErrors()
+                + ", kernelDrops=" + getKernelDrops() + ")";
+    }
+}
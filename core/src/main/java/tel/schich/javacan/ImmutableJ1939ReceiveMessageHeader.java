@@ -36,8 +36,6 @@ public final class ImmutableJ1939ReceiveMessageHeader implements J1939ReceiveMes
     private final long destinationName;
     private final byte priority;
 
-    // TODO add support for SCM_J1939_ERRQUEUE
-
     public ImmutableJ1939ReceiveMessageHeader(ImmutableJ1939Address sourceAddress, Instant softwareTimestamp, Instant hardwareTimestamp, byte destinationAddress, long destinationName, byte priority) {
         this.sourceAddress = sourceAddress;
         this.softwareTimestamp = softwareTimestamp;
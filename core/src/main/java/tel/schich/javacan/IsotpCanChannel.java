@@ -86,6 +86,18 @@ public abstract class IsotpCanChannel extends AbstractCanChannel {
      */
     public abstract int read(ByteBuffer buffer) throws IOException;
 
+    /**
+     * Reads a message like {@link #read(ByteBuffer)}, but returns -1 instead of throwing if this channel is
+     * non-blocking and no message is available. This allows draining a channel after a readiness event without an
+     * exception for the final empty read.
+     *
+     * @see <a href="https://man7.org/linux/man-pages/man2/read.2.html">read man page</a>
+     * @param buffer the destination buffer
+     * @return the number of bytes that have been read or -1 if no message is available
+     * @throws IOException if the native calls fail
+     */
+    public abstract int tryRead(ByteBuffer buffer) throws IOException;
+
     /**
      * Writes a message from the given {@link java.nio.ByteBuffer} into this socket. Buffer position and limit will be
      * respected and will be updated according to the data that has been written.
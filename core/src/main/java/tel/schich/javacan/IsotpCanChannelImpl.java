@@ -55,7 +55,7 @@ final class IsotpCanChannelImpl extends IsotpCanChannel {
         try {
             SocketCAN.bindTpAddress(getSocket(), ((LinuxNetworkDevice) device).getIndex(), rx.getId(), tx.getId());
         } catch (LinuxNativeOperationException e) {
-            throw checkForClosedChannel(e);
+            throw failed(e);
         }
         this.device = device;
         this.rx = rx;
@@ -97,6 +97,11 @@ final class IsotpCanChannelImpl extends IsotpCanChannel {
         return (int) readSocket(buffer);
     }
 
+    @Override
+    public int tryRead(ByteBuffer buffer) throws IOException {
+        return (int) tryReadSocket(buffer);
+    }
+
     @Override
     public int write(ByteBuffer buffer) throws IOException {
         if (buffer.remaining() > MAX_MESSAGE_LENGTH) {
@@ -0,0 +1,160 @@
+/*
+ * The MIT License
+ * Copyright © 2018 Phillip Schichtel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package tel.schich.javacan;
+
+import tel.schich.javacan.util.CanUtils;
+
+import java.io.IOException;
+import java.util.Objects;
+
+import static tel.schich.javacan.IsotpCanSocketOptions.LL_OPTS;
+import static tel.schich.javacan.IsotpCanSocketOptions.RECV_FC;
+
+/**
+ * A tuning profile bundles the link layer options (MTU, TX_DL and the bit rate switch) with the flow control
+ * options (block size and STmin) that together determine the throughput of an ISO-TP connection.
+ * Profiles are applied as a whole using {@link #apply(IsotpCanChannel)}, so both peers of a connection can be
+ * configured consistently.
+ */
+public class IsotpTuningProfile {
+
+    /**
+     * The kernel defaults: classic CAN frames, no block size limit and no separation time.
+     */
+    public static final IsotpTuningProfile DEFAULT = new IsotpTuningProfile("default",
+            IsotpLinkLayerOptions.DEFAULT, IsotpFlowControlOptions.DEFAULT);
+
+    private final String name;
+    private final IsotpLinkLayerOptions linkLayerOptions;
+    private final IsotpFlowControlOptions flowControlOptions;
+
+    public IsotpTuningProfile(String name, IsotpLinkLayerOptions linkLayerOptions,
+                              IsotpFlowControlOptions flowControlOptions) {
+        this.name = name;
+        this.linkLayerOptions = linkLayerOptions;
+        this.flowControlOptions = flowControlOptions;
+    }
+
+    /**
+     * Creates a profile for classic CAN frames.
+     *
+     * @param name the name of the profile
+     * @param blockSize the number of consecutive frames the receiver accepts before sending a flow control frame,
+     *                  0 for no limit
+     * @param minimumSeparationTime the STmin value the receiver requests, encoded as specified by ISO 15765-2
+     * @return the new profile
+     */
+    public static IsotpTuningProfile classic(String name, int blockSize, int minimumSeparationTime) {
+        return new IsotpTuningProfile(name, IsotpLinkLayerOptions.DEFAULT,
+                flowControl(blockSize, minimumSeparationTime));
+    }
+
+    /**
+     * Creates a profile for CAN FD frames.
+     *
+     * @param name the name of the profile
+     * @param transmissionDataLength the TX_DL, which must be a valid CAN FD data length (8, 12, 16, 20, 24, 32,
+     *                               48 or 64)
+     * @param bitRateSwitch whether the data phase of the frames should be transmitted with the higher bit rate
+     * @param blockSize the number of consecutive frames the receiver accepts before sending a flow control frame,
+     *                  0 for no limit
+     * @param minimumSeparationTime the STmin value the receiver requests, encoded as specified by ISO 15765-2
+     * @return the new profile
+     */
+    public static IsotpTuningProfile canFd(String name, int transmissionDataLength, boolean bitRateSwitch,
+                                           int blockSize, int minimumSeparationTime) {
+        if (transmissionDataLength < CanFrame.MAX_DATA_LENGTH || transmissionDataLength > CanFrame.MAX_FD_DATA_LENGTH
+                || CanUtils.padDataLength((byte) transmissionDataLength) != transmissionDataLength) {
+            throw new IllegalArgumentException("Invalid CAN FD transmission data length: " + transmissionDataLength);
+        }
+        IsotpLinkLayerOptions linkLayer = new IsotpLinkLayerOptions(
+                (byte) RawCanChannel.FD_MTU,
+                (byte) transmissionDataLength,
+                bitRateSwitch ? CanFrame.FD_FLAG_BIT_RATE_SWITCH : CanFrame.FD_NO_FLAGS
+        );
+        return new IsotpTuningProfile(name, linkLayer, flowControl(blockSize, minimumSeparationTime));
+    }
+
+    private static IsotpFlowControlOptions flowControl(int blockSize, int minimumSeparationTime) {
+        if (blockSize < 0 || blockSize > 0xFF) {
+            throw new IllegalArgumentException("The block size must be within 0 and 255!");
+        }
+        if (minimumSeparationTime < 0 || minimumSeparationTime > 0xFF) {
+            throw new IllegalArgumentException("STmin must be within 0 and 255!");
+        }
+        return IsotpFlowControlOptions.DEFAULT
+                .withBlockSize(blockSize)
+                .withMinimumSeparationTime(minimumSeparationTime);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public IsotpLinkLayerOptions getLinkLayerOptions() {
+        return linkLayerOptions;
+    }
+
+    public IsotpFlowControlOptions getFlowControlOptions() {
+        return flowControlOptions;
+    }
+
+    public boolean isFd() {
+        return linkLayerOptions.getMaximumTransmissionUnit() == RawCanChannel.FD_MTU;
+    }
+
+    /**
+     * Applies the link layer and flow control options of this profile to the given channel.
+     * The kernel only accepts these options before the channel is bound, so this has to be called on both peers
+     * prior to {@link IsotpCanChannel#bind(NetworkDevice, IsotpSocketAddress, IsotpSocketAddress)}.
+     *
+     * @param channel the unbound channel to configure
+     * @throws IOException if the kernel rejected the options, e.g. because the channel is already bound
+     */
+    public void apply(IsotpCanChannel channel) throws IOException {
+        channel.setOption(LL_OPTS, linkLayerOptions);
+        channel.setOption(RECV_FC, flowControlOptions);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o)
+            return true;
+        if (o == null || getClass() != o.getClass())
+            return false;
+        IsotpTuningProfile that = (IsotpTuningProfile) o;
+        return name.equals(that.name) && linkLayerOptions.equals(that.linkLayerOptions)
+                && flowControlOptions.equals(that.flowControlOptions);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(name, linkLayerOptions, flowControlOptions);
+    }
+
+    @Override
+    public String toString() {
+        return "IsotpTuningProfile(" + "name=" + name + ", linkLayerOptions=" + linkLayerOptions
+                + ", flowControlOptions=" + flowControlOptions + ')';
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * The MIT License
+ * Copyright © 2018 Phillip Schichtel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package tel.schich.javacan;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A fixed size array of J1939 addresses in their native representation, stored back to back in a single direct
+ * buffer. It is used as the destinations of
+ * {@link J1939CanChannel#send(ByteBuffer, int[], int[], J1939AddressArray, int)}, so sending to many destinations
+ * requires neither marshalling nor allocations per call.
+ */
+public final class J1939AddressArray {
+    private final ByteBuffer buffer;
+    private final J1939AddressBuffer[] addresses;
+
+    /**
+     * Creates an array of the given size. All addresses are initially zeroed and have to be set before sending.
+     *
+     * @param size the number of addresses
+     * @throws IllegalArgumentException if size is not positive or the addresses would exceed the maximum size of a
+     *                                  buffer
+     */
+    public J1939AddressArray(int size) {
+        if (size < 1) {
+            throw new IllegalArgumentException("size must be positive!");
+        }
+        if ((long) size * J1939AddressBuffer.BYTES > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("size exceeds the maximum buffer size!");
+        }
+        this.buffer = JavaCAN.allocateOrdered(size * J1939AddressBuffer.BYTES);
+        this.addresses = new J1939AddressBuffer[size];
+        for (int i = 0; i < size; i++) {
+            addresses[i] = new J1939AddressBuffer(buffer, i * J1939AddressBuffer.BYTES);
+        }
+    }
+
+    /**
+     * Returns the number of addresses in this array.
+     *
+     * @return the size
+     */
+    public int size() {
+        return addresses.length;
+    }
+
+    /**
+     * Returns a view of the address at the given index, modifications of the view are reflected in the array.
+     *
+     * @param index the index
+     * @return the address view
+     */
+    public J1939AddressBuffer get(int index) {
+        return addresses[index];
+    }
+
+    /**
+     * Copies an address into the array.
+     *
+     * @param index the index
+     * @param address the address to copy
+     * @return fluent interface
+     */
+    public J1939AddressArray set(int index, J1939Address address) {
+        addresses[index].set(address);
+        return this;
+    }
+
+    ByteBuffer getBuffer() {
+        return buffer;
+    }
+}
@@ -25,9 +25,15 @@ package tel.schich.javacan;
 import tel.schich.javacan.platform.linux.LinuxNetworkDevice;
 
 import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 
 /**
- * This class represents a J1939 address that can be used for native operations.
+ * This class represents a J1939 address that can be used for native operations. The address is kept in its native
+ * representation ({@code struct sockaddr_can}), so passing it as the destination of
+ * {@link J1939CanChannel#send(ByteBuffer, J1939Address)} avoids unpacking and re-marshalling it on every call. This
+ * makes it suitable as a prepared destination for repeated sends. This only applies to direct buffers in
+ * {@link ByteOrder#nativeOrder()}, like the one allocated by {@link #J1939AddressBuffer()}, other buffers are
+ * unpacked through the getters like any other {@link J1939Address}.
  */
 public final class J1939AddressBuffer implements J1939Address {
 
@@ -61,6 +67,17 @@ public final class J1939AddressBuffer implements J1939Address {
         this.offset = offset;
     }
 
+    /**
+     * Checks whether the address can be passed to native code as is, which requires a direct buffer in native byte
+     * order that holds the complete structure.
+     *
+     * @return true if the backing buffer contains a native {@code struct sockaddr_can}
+     */
+    boolean isNative() {
+        return buffer.isDirect() && buffer.order() == ByteOrder.nativeOrder() && offset >= 0
+                && offset <= buffer.capacity() - BYTES;
+    }
+
     @Override
     public LinuxNetworkDevice getDevice() {
         return LinuxNetworkDevice.fromDeviceIndex(buffer.getInt(offset + DEVICE_INDEX_OFFSET));
@@ -119,6 +136,14 @@ public final class J1939AddressBuffer implements J1939Address {
         );
     }
 
+    ByteBuffer getBuffer() {
+        return buffer;
+    }
+
+    int getOffset() {
+        return offset;
+    }
+
     private static native int getStructSize();
     private static native int getStructDeviceIndexOffset();
     private static native int getStructNameOffset();
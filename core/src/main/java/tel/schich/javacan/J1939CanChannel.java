@@ -100,6 +100,44 @@ public abstract class J1939CanChannel extends AbstractCanChannel {
      */
     public abstract long receive(ByteBuffer buffer, @Nullable J1939ReceiveMessageHeaderBuffer messageHeaderBuffer) throws IOException;
 
+    /**
+     * Receives a message like {@link #receive(ByteBuffer, J1939ReceiveMessageHeaderBuffer)}, but returns -1 instead of
+     * throwing if this channel is non-blocking and no message is available. This allows draining a channel after a
+     * readiness event without an exception for the final empty receive.
+     *
+     * @see <a href="https://man7.org/linux/man-pages/man2/recvmsg.2.html">recvmsg man page</a>
+     * @param buffer the destination buffer
+     * @param messageHeaderBuffer the buffer to read message headers into.
+     * @return the number of bytes that have been read or -1 if no message is available
+     * @throws IOException if the native calls fail
+     */
+    public abstract long tryReceive(ByteBuffer buffer, @Nullable J1939ReceiveMessageHeaderBuffer messageHeaderBuffer) throws IOException;
+
+    /**
+     * Receives up to {@link J1939ReceiveBatch#capacity()} messages together with their extended message headers using
+     * a single {@code recvmmsg} system call. If this channel is in blocking mode, this call blocks until at least one
+     * message has been received, further messages are only collected if they are already queued.
+     *
+     * @see <a href="https://man7.org/linux/man-pages/man2/recvmmsg.2.html">recvmmsg man page</a>
+     * @param batch the batch to receive into
+     * @return the number of messages that have been received, also available as {@link J1939ReceiveBatch#size()}
+     * @throws IOException if the native calls fail
+     */
+    public abstract int receive(J1939ReceiveBatch batch) throws IOException;
+
+    /**
+     * Reads the next event from the error queue of this socket ({@code MSG_ERRQUEUE}) into the given buffer. Reading
+     * the error queue never blocks, regardless of the blocking mode of this channel. A pending event is signaled by
+     * {@code EPOLLERR} when this channel is registered with a selector.
+     *
+     * @see J1939ErrorQueueEvent
+     * @see <a href="https://man7.org/linux/man-pages/man2/recvmsg.2.html">recvmsg man page</a>
+     * @param eventBuffer the buffer to read the event into
+     * @return true if an event has been read, false if the error queue was empty
+     * @throws IOException if the native calls fail
+     */
+    public abstract boolean receiveErrorQueue(J1939ErrorQueueEventBuffer eventBuffer) throws IOException;
+
     /**
      * Sends data from the given {@link java.nio.ByteBuffer} into this socket. Buffer position and limit will be
      * respected and will be updated according to the data that has been sent.
@@ -116,6 +154,8 @@ public abstract class J1939CanChannel extends AbstractCanChannel {
      * Sends a message from the given {@link java.nio.ByteBuffer} into this socket. Buffer position and limit will be
      * respected and will be updated according to the data that has been sent.
      * If this channel is in blocking mode, this call might block indefinitely.
+     * A {@link J1939AddressBuffer} destination is passed to the kernel as is, so it can be prepared once and reused
+     * for any number of sends.
      *
      * @see <a href="https://man7.org/linux/man-pages/man2/send.2.html">send man page</a>
      * @param buffer the source buffer
@@ -124,4 +164,22 @@ public abstract class J1939CanChannel extends AbstractCanChannel {
      * @throws IOException if the native calls fail
      */
     public abstract long send(ByteBuffer buffer, @Nullable J1939Address destination) throws IOException;
+
+    /**
+     * Sends several messages from the given {@link java.nio.ByteBuffer} using a single system call, message {@code i}
+     * is sent to the destination {@code i} of the given array. Buffer position and limit will be ignored, the
+     * messages are defined by the given offsets and lengths. The same offset and length may be used for several
+     * messages to send the same payload to many destinations.
+     * If this channel is in non-blocking mode, fewer messages than requested might be sent.
+     *
+     * @see <a href="https://man7.org/linux/man-pages/man2/sendmmsg.2.html">sendmmsg man page</a>
+     * @param buffer the direct buffer containing the messages
+     * @param offsets the offsets of the messages within the buffer
+     * @param lengths the lengths of the messages
+     * @param destinations the destinations of the messages
+     * @param count the number of messages to send
+     * @return the number of messages that have been sent
+     * @throws IOException if the native calls fail
+     */
+    public abstract int send(ByteBuffer buffer, int[] offsets, int[] lengths, J1939AddressArray destinations, int count) throws IOException;
 }
@@ -56,7 +56,7 @@ final class J1939CanChannelImpl extends J1939CanChannel {
             SocketCAN.bindJ1939Address(getSocket(), copy.getDevice().getIndex(), copy.getName(), copy.getParameterGroupNumber(), copy.getAddress());
 
         } catch (LinuxNativeOperationException e) {
-            throw checkForClosedChannel(e);
+            throw failed(e);
         }
         this.boundAddress = copy;
         return this;
@@ -68,7 +68,7 @@ final class J1939CanChannelImpl extends J1939CanChannel {
         try {
             SocketCAN.connectJ1939Address(getSocket(), copy.getDevice().getIndex(), copy.getName(), copy.getParameterGroupNumber(), copy.getAddress());
         } catch (LinuxNativeOperationException e) {
-            throw checkForClosedChannel(e);
+            throw failed(e);
         }
         this.connectedAddress = copy;
         return this;
@@ -117,9 +117,75 @@ final class J1939CanChannelImpl extends J1939CanChannel {
                 headerOffset
             );
             buffer.position((int) (offset + bytesReceived));
+            recordRead(bytesReceived, 1);
             return bytesReceived;
         } catch (LinuxNativeOperationException e) {
-            throw checkForClosedChannel(e);
+            throw failed(e);
+        }
+    }
+
+    @Override
+    public long tryReceive(ByteBuffer buffer, @Nullable J1939ReceiveMessageHeaderBuffer messageHeaderBuffer) throws IOException {
+        if (messageHeaderBuffer == null) {
+            return tryReceiveFromSocket(buffer, 0);
+        }
+        ensureDirectBuffer(buffer);
+
+        try {
+            final int offset = buffer.position();
+            final long bytesReceived = SocketCAN.tryReceiveWithJ1939Headers(
+                getSocket(),
+                buffer,
+                offset,
+                buffer.remaining(),
+                0,
+                messageHeaderBuffer.getBuffer(),
+                messageHeaderBuffer.getOffset()
+            );
+            if (bytesReceived < 0) {
+                return -1;
+            }
+            buffer.position((int) (offset + bytesReceived));
+            recordRead(bytesReceived, 1);
+            return bytesReceived;
+        } catch (LinuxNativeOperationException e) {
+            throw failed(e);
+        }
+    }
+
+    @Override
+    public int receive(J1939ReceiveBatch batch) throws IOException {
+        batch.setSize(0);
+        try {
+            final int received = SocketCAN.receiveJ1939Multiple(
+                getSocket(),
+                batch.getBuffer(),
+                batch.getSlotSize(),
+                batch.getLengths(),
+                batch.getHeaderBuffer(),
+                batch.capacity(),
+                0
+            );
+            batch.setSize(received);
+            if (getMetrics() != null) {
+                long bytes = 0;
+                for (int i = 0; i < received; i++) {
+                    bytes += batch.getLengths()[i];
+                }
+                recordRead(bytes, received);
+            }
+            return received;
+        } catch (LinuxNativeOperationException e) {
+            throw failed(e);
+        }
+    }
+
+    @Override
+    public boolean receiveErrorQueue(J1939ErrorQueueEventBuffer eventBuffer) throws IOException {
+        try {
+            return SocketCAN.receiveJ1939ErrorQueue(getSocket(), eventBuffer.getBuffer(), eventBuffer.getOffset()) > 0;
+        } catch (LinuxNativeOperationException e) {
+            throw failed(e);
         }
     }
 
@@ -134,6 +200,9 @@ final class J1939CanChannelImpl extends J1939CanChannel {
             return send(buffer);
         }
         ensureDirectBuffer(buffer);
+        if (destination instanceof J1939AddressBuffer && ((J1939AddressBuffer) destination).isNative()) {
+            return sendTo(buffer, (J1939AddressBuffer) destination);
+        }
 
         try {
             final int offset = buffer.position();
@@ -149,9 +218,51 @@ final class J1939CanChannelImpl extends J1939CanChannel {
                 destination.getAddress()
             );
             buffer.position((int) (offset + bytesSent));
+            recordWrite(bytesSent, 1);
+            return bytesSent;
+        } catch (LinuxNativeOperationException e) {
+            throw failed(e);
+        }
+    }
+
+    private long sendTo(ByteBuffer buffer, J1939AddressBuffer destination) throws IOException {
+        try {
+            final int offset = buffer.position();
+            final long bytesSent = SocketCAN.sendJ1939MessageTo(
+                getSocket(),
+                buffer,
+                offset,
+                buffer.remaining(),
+                0,
+                destination.getBuffer(),
+                destination.getOffset()
+            );
+            buffer.position((int) (offset + bytesSent));
+            recordWrite(bytesSent, 1);
             return bytesSent;
         } catch (LinuxNativeOperationException e) {
-            throw checkForClosedChannel(e);
+            throw failed(e);
+        }
+    }
+
+    @Override
+    public int send(ByteBuffer buffer, int[] offsets, int[] lengths, J1939AddressArray destinations, int count) throws IOException {
+        ensureDirectBuffer(buffer);
+        if (count < 0 || count > offsets.length || count > lengths.length || count > destinations.size()) {
+            throw new IllegalArgumentException("count must be between 0 and the length of the offsets, lengths and destinations!");
+        }
+        final int capacity = buffer.capacity();
+        for (int i = 0; i < count; i++) {
+            if (offsets[i] < 0 || lengths[i] < 0 || lengths[i] > capacity - offsets[i]) {
+                throw new IndexOutOfBoundsException("Message " + i + " exceeds the buffer!");
+            }
+        }
+        try {
+            int sent = SocketCAN.sendJ1939Multiple(getSocket(), buffer, offsets, lengths, destinations.getBuffer(), 0, count, 0);
+            recordBatchWrite(lengths, sent);
+            return sent;
+        } catch (LinuxNativeOperationException e) {
+            throw failed(e);
         }
     }
 }
@@ -59,7 +59,8 @@ public class J1939CanSocketOptions {
     });
 
     /**
-     * TODO this is currently the only place where we support ERRQUEUE. drop it until demand exists?
+     * Enables reporting of receive session events (RTS, DPO and aborts) through the error queue of the socket.
+     * Events can be read using {@link J1939CanChannel#receiveErrorQueue(J1939ErrorQueueEventBuffer)}.
      */
     public static final SocketOption<Boolean> SO_J1939_ERRQUEUE = new CanSocketOption<>("SO_J1939_ERRQUEUE", Boolean.class, new LinuxSocketOptionHandler<Boolean>() {
         @Override
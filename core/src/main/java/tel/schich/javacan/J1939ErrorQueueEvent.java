@@ -0,0 +1,181 @@
+/*
+ * The MIT License
+ * Copyright © 2018 Phillip Schichtel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package tel.schich.javacan;
+
+import java.time.Instant;
+
+/**
+ * Classes implementing this interface represent an event read from the error queue of a J1939 socket. The kernel
+ * reports the progress of transport protocol sessions through this queue:
+ * <ul>
+ *     <li>transmit sessions report {@link Type#TX_SCHEDULED} and {@link Type#TX_ACKNOWLEDGED} if the
+ *     {@link CanSocketOptions#SO_TIMESTAMPING} flags {@code TX_SCHED} and {@code TX_ACK} are set and
+ *     {@link Type#TX_ABORTED} if the session failed.</li>
+ *     <li>receive sessions report {@link Type#RX_RTS}, {@link Type#RX_DPO} and {@link Type#RX_ABORTED} if
+ *     {@link J1939CanSocketOptions#SO_J1939_ERRQUEUE} is enabled.</li>
+ * </ul>
+ * The session id is only provided if the {@code OPT_ID} timestamping flag is set, it increments with every message
+ * sent on the socket, so it can be used to correlate events with previous send operations.
+ *
+ * @see <a href="https://docs.kernel.org/networking/j1939.html">The Linux J1939 documentation</a>
+ * @see <a href="https://docs.kernel.org/networking/timestamping.html">The Linux timestamping documentation</a>
+ */
+public interface J1939ErrorQueueEvent {
+    /**
+     * The value reported by statistics that have not been provided by the kernel.
+     */
+    long NO_STATISTIC = -1;
+
+    /**
+     * The kind of this event, derived from the origin and the info field of the extended error.
+     *
+     * @return the event type
+     */
+    Type getType();
+
+    /**
+     * The error number of the event, e.g. the reason a session has been aborted. This is {@code ENOMSG} for
+     * informational events.
+     *
+     * @return the error number
+     */
+    int getErrorNumber();
+
+    /**
+     * The raw origin of the extended error ({@code ee_origin}).
+     *
+     * @return the origin
+     */
+    int getOrigin();
+
+    /**
+     * The raw info of the extended error ({@code ee_info}).
+     *
+     * @return the info
+     */
+    int getInfo();
+
+    /**
+     * The id of the session this event belongs to ({@code ee_data}).
+     *
+     * @return the session id
+     */
+    int getSessionId();
+
+    /**
+     * The software timestamp of the event, if software timestamping has been requested.
+     *
+     * @return the software timestamp
+     */
+    Instant getSoftwareTimestamp();
+
+    /**
+     * The hardware timestamp of the event, if hardware timestamping has been requested and is supported.
+     *
+     * @return the hardware timestamp
+     */
+    Instant getHardwareTimestamp();
+
+    /**
+     * The number of bytes of the session that have been acknowledged so far.
+     *
+     * @return the number of acknowledged bytes or {@link #NO_STATISTIC}
+     */
+    long getBytesAcknowledged();
+
+    /**
+     * The total size of the message transferred by the session.
+     *
+     * @return the total size in bytes or {@link #NO_STATISTIC}
+     */
+    long getTotalSize();
+
+    /**
+     * The parameter group number of the session.
+     *
+     * @return the PGN or {@link J1939Address#NO_PGN}
+     */
+    int getParameterGroupNumber();
+
+    /**
+     * The name of the source of the session.
+     *
+     * @return the source name or {@link J1939Address#NO_NAME}
+     */
+    long getSourceName();
+
+    /**
+     * The name of the destination of the session.
+     *
+     * @return the destination name or {@link J1939Address#NO_NAME}
+     */
+    long getDestinationName();
+
+    /**
+     * The address of the source of the session.
+     *
+     * @return the source address or {@link J1939Address#NO_ADDR}
+     */
+    byte getSourceAddress();
+
+    /**
+     * The address of the destination of the session.
+     *
+     * @return the destination address or {@link J1939Address#NO_ADDR}
+     */
+    byte getDestinationAddress();
+
+    /**
+     * The kinds of events reported by the J1939 error queue.
+     */
+    enum Type {
+        /**
+         * A transmit session has been scheduled.
+         */
+        TX_SCHEDULED,
+        /**
+         * A transmit session has been completed and acknowledged, the message has been fully sent.
+         */
+        TX_ACKNOWLEDGED,
+        /**
+         * A transmit session has been aborted, see {@link #getErrorNumber()} for the reason.
+         */
+        TX_ABORTED,
+        /**
+         * A receive session has been started by a request to send.
+         */
+        RX_RTS,
+        /**
+         * A receive session received a data packet offset (extended transport protocol).
+         */
+        RX_DPO,
+        /**
+         * A receive session has been aborted, see {@link #getErrorNumber()} for the reason.
+         */
+        RX_ABORTED,
+        /**
+         * An event this library does not know about.
+         */
+        UNKNOWN,
+    }
+}
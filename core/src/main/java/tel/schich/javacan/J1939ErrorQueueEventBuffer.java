@@ -0,0 +1,259 @@
+/*
+ * The MIT License
+ * Copyright © 2018 Phillip Schichtel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package tel.schich.javacan;
+
+import java.nio.ByteBuffer;
+import java.time.Instant;
+
+/**
+ * This class represents an event buffer that can be used for reading events from the error queue of a J1939 channel.
+ * A single instance can be reused for any number of reads, no allocations happen while reading events.
+ *
+ * @see J1939CanChannel#receiveErrorQueue(J1939ErrorQueueEventBuffer)
+ */
+public final class J1939ErrorQueueEventBuffer implements J1939ErrorQueueEvent {
+
+    static {
+        JavaCAN.initialize();
+    }
+
+    /**
+     * The size of this data structure in memory.
+     */
+    public static final int BYTES = getStructSize();
+
+    /**
+     * Origin of events generated by the J1939 stack itself, e.g. aborts ({@code SO_EE_ORIGIN_LOCAL}).
+     */
+    public static final int ORIGIN_LOCAL = 1;
+
+    /**
+     * Origin of transmit timestamping events ({@code SO_EE_ORIGIN_TIMESTAMPING}).
+     */
+    public static final int ORIGIN_TIMESTAMPING = 4;
+
+    private static final int SCM_TSTAMP_SCHED = 1;
+    private static final int SCM_TSTAMP_ACK = 2;
+
+    private static final int J1939_EE_INFO_TX_ABORT = 1;
+    private static final int J1939_EE_INFO_RX_RTS = 2;
+    private static final int J1939_EE_INFO_RX_DPO = 3;
+    private static final int J1939_EE_INFO_RX_ABORT = 4;
+
+    private static final int ERROR_NUMBER_OFFSET = getStructErrorNumberOffset();
+    private static final int ORIGIN_OFFSET = getStructOriginOffset();
+    private static final int INFO_OFFSET = getStructInfoOffset();
+    private static final int SESSION_ID_OFFSET = getStructSessionIdOffset();
+    private static final int SOFTWARE_TIMESTAMP_SECONDS_OFFSET = getStructSoftwareTimestampSecondsOffset();
+    private static final int SOFTWARE_TIMESTAMP_NANOS_OFFSET = getStructSoftwareTimestampNanosOffset();
+    private static final int HARDWARE_TIMESTAMP_SECONDS_OFFSET = getStructHardwareTimestampSecondsOffset();
+    private static final int HARDWARE_TIMESTAMP_NANOS_OFFSET = getStructHardwareTimestampNanosOffset();
+    private static final int BYTES_ACKED_OFFSET = getStructBytesAckedOffset();
+    private static final int TOTAL_SIZE_OFFSET = getStructTotalSizeOffset();
+    private static final int PGN_OFFSET = getStructPgnOffset();
+    private static final int SRC_NAME_OFFSET = getStructSrcNameOffset();
+    private static final int DST_NAME_OFFSET = getStructDstNameOffset();
+    private static final int SRC_ADDR_OFFSET = getStructSrcAddrOffset();
+    private static final int DST_ADDR_OFFSET = getStructDstAddrOffset();
+
+    private final ByteBuffer buffer;
+    private final int offset;
+
+    /**
+     * This constructor internally allocates a buffer that exactly fits the size of this data structure (see {@link #BYTES}).
+     */
+    public J1939ErrorQueueEventBuffer() {
+        this(JavaCAN.allocateOrdered(BYTES));
+    }
+
+    /**
+     * This constructor allows supplying a pre-allocated buffer. The buffer position will be copied, so
+     * external operations on the buffer will not change the offset at which data will might be written.
+     *
+     * @param buffer the buffer to use
+     */
+    public J1939ErrorQueueEventBuffer(ByteBuffer buffer) {
+        this(buffer, buffer.position());
+    }
+
+    /**
+     * This constructor allows supplying a pre-allocated buffer. The buffer position will be copied, so
+     * external operations on the buffer will not change the offset at which data will might be written.
+     *
+     * @param buffer the buffer to use
+     * @param offset the offset to read and write at
+     */
+    public J1939ErrorQueueEventBuffer(ByteBuffer buffer, int offset) {
+        this.buffer = buffer;
+        this.offset = offset;
+    }
+
+    @Override
+    public Type getType() {
+        return typeOf(getOrigin(), getInfo());
+    }
+
+    /**
+     * Derives the event type from the raw origin and info values of the extended error.
+     *
+     * @param origin the {@code ee_origin} value
+     * @param info the {@code ee_info} value
+     * @return the event type
+     */
+    public static Type typeOf(int origin, int info) {
+        if (origin == ORIGIN_TIMESTAMPING) {
+            switch (info) {
+                case SCM_TSTAMP_SCHED:
+                    return Type.TX_SCHEDULED;
+                case SCM_TSTAMP_ACK:
+                    return Type.TX_ACKNOWLEDGED;
+                default:
+                    return Type.UNKNOWN;
+            }
+        } else if (origin == ORIGIN_LOCAL) {
+            switch (info) {
+                case J1939_EE_INFO_TX_ABORT:
+                    return Type.TX_ABORTED;
+                case J1939_EE_INFO_RX_RTS:
+                    return Type.RX_RTS;
+                case J1939_EE_INFO_RX_DPO:
+                    return Type.RX_DPO;
+                case J1939_EE_INFO_RX_ABORT:
+                    return Type.RX_ABORTED;
+                default:
+                    return Type.UNKNOWN;
+            }
+        }
+        return Type.UNKNOWN;
+    }
+
+    @Override
+    public int getErrorNumber() {
+        return buffer.getInt(offset + ERROR_NUMBER_OFFSET);
+    }
+
+    @Override
+    public int getOrigin() {
+        return buffer.getInt(offset + ORIGIN_OFFSET);
+    }
+
+    @Override
+    public int getInfo() {
+        return buffer.getInt(offset + INFO_OFFSET);
+    }
+
+    @Override
+    public int getSessionId() {
+        return buffer.getInt(offset + SESSION_ID_OFFSET);
+    }
+
+    @Override
+    public Instant getSoftwareTimestamp() {
+        return Instant.ofEpochSecond(buffer.getLong(offset + SOFTWARE_TIMESTAMP_SECONDS_OFFSET), buffer.getLong(offset + SOFTWARE_TIMESTAMP_NANOS_OFFSET));
+    }
+
+    @Override
+    public Instant getHardwareTimestamp() {
+        return Instant.ofEpochSecond(buffer.getLong(offset + HARDWARE_TIMESTAMP_SECONDS_OFFSET), buffer.getLong(offset + HARDWARE_TIMESTAMP_NANOS_OFFSET));
+    }
+
+    @Override
+    public long getBytesAcknowledged() {
+        return buffer.getLong(offset + BYTES_ACKED_OFFSET);
+    }
+
+    @Override
+    public long getTotalSize() {
+        return buffer.getLong(offset + TOTAL_SIZE_OFFSET);
+    }
+
+    @Override
+    public int getParameterGroupNumber() {
+        return buffer.getInt(offset + PGN_OFFSET);
+    }
+
+    @Override
+    public long getSourceName() {
+        return buffer.getLong(offset + SRC_NAME_OFFSET);
+    }
+
+    @Override
+    public long getDestinationName() {
+        return buffer.getLong(offset + DST_NAME_OFFSET);
+    }
+
+    @Override
+    public byte getSourceAddress() {
+        return buffer.get(offset + SRC_ADDR_OFFSET);
+    }
+
+    @Override
+    public byte getDestinationAddress() {
+        return buffer.get(offset + DST_ADDR_OFFSET);
+    }
+
+    @Override
+    public String toString() {
+        return "J1939ErrorQueueEvent{" +
+            "type=" + getType() +
+            ", errorNumber=" + getErrorNumber() +
+            ", origin=" + getOrigin() +
+            ", info=" + getInfo() +
+            ", sessionId=" + getSessionId() +
+            ", softwareTimestamp=" + getSoftwareTimestamp() +
+            ", hardwareTimestamp=" + getHardwareTimestamp() +
+            ", bytesAcknowledged=" + getBytesAcknowledged() +
+            ", totalSize=" + getTotalSize() +
+            ", parameterGroupNumber=" + getParameterGroupNumber() +
+            ", sourceName=" + getSourceName() +
+            ", destinationName=" + getDestinationName() +
+            ", sourceAddress=" + getSourceAddress() +
+            ", destinationAddress=" + getDestinationAddress() +
+            '}';
+    }
+
+    ByteBuffer getBuffer() {
+        return buffer;
+    }
+
+    int getOffset() {
+        return offset;
+    }
+
+    private static native int getStructSize();
+    private static native int getStructErrorNumberOffset();
+    private static native int getStructOriginOffset();
+    private static native int getStructInfoOffset();
+    private static native int getStructSessionIdOffset();
+    private static native int getStructSoftwareTimestampSecondsOffset();
+    private static native int getStructSoftwareTimestampNanosOffset();
+    private static native int getStructHardwareTimestampSecondsOffset();
+    private static native int getStructHardwareTimestampNanosOffset();
+    private static native int getStructBytesAckedOffset();
+    private static native int getStructTotalSizeOffset();
+    private static native int getStructPgnOffset();
+    private static native int getStructSrcNameOffset();
+    private static native int getStructDstNameOffset();
+    private static native int getStructSrcAddrOffset();
+    private static native int getStructDstAddrOffset();
+}
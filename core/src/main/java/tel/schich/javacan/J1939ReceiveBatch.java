@@ -0,0 +1,160 @@
+/*
+ * The MIT License
+ * Copyright © 2018 Phillip Schichtel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package tel.schich.javacan;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A set of preallocated message and header slots for {@link J1939CanChannel#receive(J1939ReceiveBatch)}, which
+ * receives several messages with a single {@code recvmmsg} system call. The payloads are stored in fixed size slots
+ * of a single direct buffer and the headers back to back in another one, so the batch can be reused for any number of
+ * receive calls without allocations.
+ */
+public final class J1939ReceiveBatch {
+    private final int slotSize;
+    private final ByteBuffer buffer;
+    private final ByteBuffer headerBuffer;
+    private final ByteBuffer[] messages;
+    private final J1939ReceiveMessageHeaderBuffer[] headers;
+    private final int[] lengths;
+    private int size;
+
+    /**
+     * Creates a batch.
+     *
+     * @param capacity the maximum number of messages received per call
+     * @param slotSize the maximum size of a single message, longer messages are truncated
+     * @throws IllegalArgumentException if capacity or slotSize are not positive or the batch would exceed the maximum
+     *                                  size of a buffer
+     */
+    public J1939ReceiveBatch(int capacity, int slotSize) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity must be positive!");
+        }
+        if (slotSize < 1) {
+            throw new IllegalArgumentException("slotSize must be positive!");
+        }
+        if ((long) capacity * slotSize > Integer.MAX_VALUE
+                || (long) capacity * J1939ReceiveMessageHeaderBuffer.BYTES > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("capacity * slotSize exceeds the maximum buffer size!");
+        }
+        this.slotSize = slotSize;
+        this.buffer = JavaCAN.allocateOrdered(capacity * slotSize);
+        this.headerBuffer = JavaCAN.allocateOrdered(capacity * J1939ReceiveMessageHeaderBuffer.BYTES);
+        this.messages = new ByteBuffer[capacity];
+        this.headers = new J1939ReceiveMessageHeaderBuffer[capacity];
+        this.lengths = new int[capacity];
+        for (int i = 0; i < capacity; i++) {
+            buffer.limit((i + 1) * slotSize).position(i * slotSize);
+            messages[i] = buffer.slice().order(buffer.order());
+            headers[i] = new J1939ReceiveMessageHeaderBuffer(headerBuffer, i * J1939ReceiveMessageHeaderBuffer.BYTES);
+        }
+        buffer.clear();
+    }
+
+    /**
+     * Returns the maximum number of messages received per call.
+     *
+     * @return the capacity
+     */
+    public int capacity() {
+        return messages.length;
+    }
+
+    /**
+     * Returns the maximum size of a single message.
+     *
+     * @return the slot size
+     */
+    public int getSlotSize() {
+        return slotSize;
+    }
+
+    /**
+     * Returns the number of messages received by the last receive call.
+     *
+     * @return the number of valid slots
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the payload of the message in the given slot. The returned buffer is a view on the slot that is reused
+     * by later receive calls, its position is 0 and its limit the length of the message.
+     *
+     * @param index the slot index, less than {@link #size()}
+     * @return the message payload
+     */
+    public ByteBuffer getMessage(int index) {
+        checkIndex(index);
+        ByteBuffer message = messages[index];
+        message.clear().limit(lengths[index]);
+        return message;
+    }
+
+    /**
+     * Returns the length of the message in the given slot.
+     *
+     * @param index the slot index, less than {@link #size()}
+     * @return the message length
+     */
+    public int getLength(int index) {
+        checkIndex(index);
+        return lengths[index];
+    }
+
+    /**
+     * Returns the headers of the message in the given slot. The returned header buffer is reused by later receive
+     * calls.
+     *
+     * @param index the slot index, less than {@link #size()}
+     * @return the message headers
+     */
+    public J1939ReceiveMessageHeaderBuffer getHeader(int index) {
+        checkIndex(index);
+        return headers[index];
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Slot " + index + " has not been received, size is " + size);
+        }
+    }
+
+    ByteBuffer getBuffer() {
+        return buffer;
+    }
+
+    ByteBuffer getHeaderBuffer() {
+        return headerBuffer;
+    }
+
+    int[] getLengths() {
+        return lengths;
+    }
+
+    void setSize(int size) {
+        this.size = size;
+    }
+}
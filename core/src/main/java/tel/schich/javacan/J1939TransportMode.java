@@ -0,0 +1,118 @@
+/*
+ * The MIT License
+ * Copyright © 2018 Phillip Schichtel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package tel.schich.javacan;
+
+import java.time.Duration;
+
+/**
+ * The transport used by the kernel to send a J1939 message of a given size. The kernel picks the transport itself,
+ * so the only levers for multi-packet throughput are the message size, whether the destination is specific or
+ * global, the send priority ({@link J1939CanSocketOptions#SO_J1939_SEND_PRIO}) and the socket buffers
+ * ({@link CanSocketOptions#SO_SNDBUF}, {@link CanSocketOptions#SO_RCVBUF}).
+ *
+ * @see <a href="https://docs.kernel.org/networking/j1939.html">The Linux J1939 documentation</a>
+ */
+public enum J1939TransportMode {
+    /**
+     * The message fits into a single CAN frame.
+     */
+    SINGLE_FRAME(8),
+    /**
+     * Transport protocol broadcast announce message: connectionless, paced with a fixed gap of
+     * {@link #BROADCAST_PACKET_GAP} between data packets.
+     */
+    TP_BAM(1785),
+    /**
+     * Transport protocol connection mode: the receiver paces the transfer using clear-to-send messages.
+     */
+    TP_CMDT(1785),
+    /**
+     * Extended transport protocol, only available for destination specific messages.
+     */
+    ETP_CMDT(117440505);
+
+    /**
+     * The number of payload bytes carried by each data packet of the (extended) transport protocol.
+     */
+    public static final int PACKET_PAYLOAD = 7;
+
+    /**
+     * The gap the kernel leaves between two data packets of a broadcast transfer.
+     */
+    public static final Duration BROADCAST_PACKET_GAP = Duration.ofMillis(50);
+
+    private final int maximumLength;
+
+    J1939TransportMode(int maximumLength) {
+        this.maximumLength = maximumLength;
+    }
+
+    /**
+     * Returns the maximum message length this transport can carry.
+     *
+     * @return the maximum length in bytes
+     */
+    public int getMaximumLength() {
+        return maximumLength;
+    }
+
+    /**
+     * Determines the transport the kernel will use for a message.
+     *
+     * @param length the message length in bytes
+     * @param broadcast whether the message is sent to the global address
+     * @return the transport
+     * @throws IllegalArgumentException if the message cannot be sent at all
+     */
+    public static J1939TransportMode of(int length, boolean broadcast) {
+        if (length < 0) {
+            throw new IllegalArgumentException("Negative message length: " + length);
+        }
+        if (length <= SINGLE_FRAME.maximumLength) {
+            return SINGLE_FRAME;
+        }
+        if (length <= TP_CMDT.maximumLength) {
+            return broadcast ? TP_BAM : TP_CMDT;
+        }
+        if (broadcast) {
+            throw new IllegalArgumentException("Broadcasts are limited to " + TP_BAM.maximumLength + " bytes!");
+        }
+        if (length <= ETP_CMDT.maximumLength) {
+            return ETP_CMDT;
+        }
+        throw new IllegalArgumentException("Messages are limited to " + ETP_CMDT.maximumLength + " bytes!");
+    }
+
+    /**
+     * Returns the number of data packets needed for a message of the given length, excluding connection management.
+     *
+     * @param length the message length in bytes
+     * @return the number of CAN frames carrying data
+     */
+    public static int packetCount(int length) {
+        if (length <= SINGLE_FRAME.maximumLength) {
+            return 1;
+        }
+        return (length + PACKET_PAYLOAD - 1) / PACKET_PAYLOAD;
+    }
+}
@@ -174,6 +174,33 @@ public abstract class RawCanChannel extends AbstractCanChannel {
      */
     public abstract long receiveUnsafe(ByteBuffer buffer, @Nullable RawReceiveMessageHeaderBuffer messageHeaderBuffer) throws IOException;
 
+    /**
+     * Reads raw bytes from the channel like {@link #readUnsafe(ByteBuffer)}, but returns -1 instead of throwing if
+     * the channel is non-blocking and no frame is available. This allows draining a channel after a readiness event
+     * without an exception for the final empty read.
+     *
+     * @param buffer the buffer to read into. The buffer's {@link ByteOrder} will be set to native, and it will be
+     *               flipped after a successful read, otherwise it is left untouched.
+     * @return the number of bytes read or -1 if no frame is available
+     * @throws IOException if the IO operations failed.
+     * @see <a href="https://man7.org/linux/man-pages/man2/read.2.html">read man page</a>
+     */
+    public abstract long tryReadUnsafe(ByteBuffer buffer) throws IOException;
+
+    /**
+     * Receives raw bytes and message headers from the channel like
+     * {@link #receiveUnsafe(ByteBuffer, RawReceiveMessageHeaderBuffer)}, but returns -1 instead of throwing if the
+     * channel is non-blocking and no frame is available.
+     *
+     * @param buffer the buffer to receive into. The buffer's {@link ByteOrder} will be set to native, and it will be
+     *               flipped after a successful receive, otherwise it is left untouched.
+     * @param messageHeaderBuffer the buffer to read message headers into.
+     * @return the number of bytes received or -1 if no frame is available
+     * @throws IOException if the IO operations failed.
+     * @see <a href="https://man7.org/linux/man-pages/man2/recvmsg.2.html">read man page</a>
+     */
+    public abstract long tryReceiveUnsafe(ByteBuffer buffer, @Nullable RawReceiveMessageHeaderBuffer messageHeaderBuffer) throws IOException;
+
     /**
      * Writes the given CAN frame.
      *
@@ -226,6 +253,26 @@ public abstract class RawCanChannel extends AbstractCanChannel {
      */
     public abstract long sendUnsafe(ByteBuffer buffer) throws IOException;
 
+    /**
+     * <p>
+     * Writes several frames from a single buffer to the socket using one system call.
+     * </p>
+     * <p>
+     * The frames are located by the given offsets and lengths within the buffer, the position and limit of the buffer
+     * are ignored. As with {@link #writeUnsafe(java.nio.ByteBuffer)}, the frames are not checked. If the socket is in
+     * non-blocking mode, fewer frames than requested might be written once the transmit queue is full.
+     * </p>
+     *
+     * @param buffer the direct buffer containing the frames
+     * @param offsets the offsets of the frames within the buffer
+     * @param lengths the lengths of the frames, usually {@link #MTU} or {@link #FD_MTU}
+     * @param count the number of frames to write
+     * @return the number of frames written
+     * @throws IOException if the IO operations failed.
+     * @see <a href="https://man7.org/linux/man-pages/man2/sendmmsg.2.html">sendmmsg man page</a>
+     */
+    public abstract int writeBatchUnsafe(ByteBuffer buffer, int[] offsets, int[] lengths, int count) throws IOException;
+
     /**
      * Allocates a buffer that is large enough to hold any supported CAN frame.
      *
@@ -24,7 +24,9 @@ package tel.schich.javacan;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.nio.channels.NotYetBoundException;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.eclipse.jdt.annotation.Nullable;
 import tel.schich.javacan.platform.linux.LinuxNativeOperationException;
@@ -37,6 +39,7 @@ final class RawCanChannelImpl extends RawCanChannel {
 
     @Nullable
     private NetworkDevice device;
+    private final AtomicInteger lastDropCount = new AtomicInteger();
 
     RawCanChannelImpl(int sock) {
         super(sock);
@@ -50,7 +53,7 @@ final class RawCanChannelImpl extends RawCanChannel {
         try {
             SocketCAN.bindTpAddress(getSocket(), ((LinuxNetworkDevice) device).getIndex(), 0, 0);
         } catch (LinuxNativeOperationException e) {
-            throw checkForClosedChannel(e);
+            throw failed(e);
         }
         this.device = device;
         return this;
@@ -143,9 +146,80 @@ final class RawCanChannelImpl extends RawCanChannel {
             );
             buffer.position((int) (offset + bytesReceived));
             buffer.flip();
+            recordRead(bytesReceived, 1);
+            recordDropCount(messageHeaderBuffer.getDropCount());
             return bytesReceived;
         } catch (LinuxNativeOperationException e) {
-            throw checkForClosedChannel(e);
+            throw failed(e);
+        }
+    }
+
+    @Override
+    public long tryReadUnsafe(ByteBuffer buffer) throws IOException {
+        buffer.order(ByteOrder.nativeOrder());
+        long bytesRead = tryReadSocket(buffer);
+        if (bytesRead >= 0) {
+            buffer.flip();
+        }
+        return bytesRead;
+    }
+
+    @Override
+    public long tryReceiveUnsafe(ByteBuffer buffer, @Nullable RawReceiveMessageHeaderBuffer messageHeaderBuffer) throws IOException {
+        buffer.order(ByteOrder.nativeOrder());
+        if (messageHeaderBuffer == null) {
+            long bytesReceived = tryReceiveFromSocket(buffer, 0);
+            if (bytesReceived >= 0) {
+                buffer.flip();
+            }
+            return bytesReceived;
+        }
+        ensureDirectBuffer(buffer);
+
+        try {
+            final int offset = buffer.position();
+            final long bytesReceived = SocketCAN.tryReceiveWithRawHeaders(
+                getSocket(),
+                buffer,
+                offset,
+                buffer.remaining(),
+                0,
+                messageHeaderBuffer.getBuffer(),
+                messageHeaderBuffer.getOffset()
+            );
+            if (bytesReceived < 0) {
+                return -1;
+            }
+            buffer.position((int) (offset + bytesReceived));
+            buffer.flip();
+            recordRead(bytesReceived, 1);
+            recordDropCount(messageHeaderBuffer.getDropCount());
+            return bytesReceived;
+        } catch (LinuxNativeOperationException e) {
+            throw failed(e);
+        }
+    }
+
+    /**
+     * Adds the increase of the socket's cumulative drop counter since the last received message to the attached
+     * {@link ChannelMetrics}, if any. The kernel counter is unsigned and wraps around.
+     *
+     * @param dropCount the drop counter reported with the last received message
+     */
+    private void recordDropCount(int dropCount) {
+        while (true) {
+            int previous = lastDropCount.get();
+            int increase = dropCount - previous;
+            if (increase <= 0) {
+                return;
+            }
+            if (lastDropCount.compareAndSet(previous, dropCount)) {
+                ChannelMetrics metrics = getMetrics();
+                if (metrics != null) {
+                    metrics.recordKernelDrops(increase);
+                }
+                return;
+            }
         }
     }
 
@@ -180,4 +254,9 @@ final class RawCanChannelImpl extends RawCanChannel {
     public long sendUnsafe(ByteBuffer buffer) throws IOException {
         return sendToSocket(buffer, 0);
     }
+
+    @Override
+    public int writeBatchUnsafe(ByteBuffer buffer, int[] offsets, int[] lengths, int count) throws IOException {
+        return sendMultipleToSocket(buffer, offsets, lengths, count, 0);
+    }
 }
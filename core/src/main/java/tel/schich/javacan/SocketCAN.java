@@ -45,6 +45,8 @@ class SocketCAN {
 
     public static native int createJ1939Socket() throws LinuxNativeOperationException;
 
+    public static native int createNetlinkSocket() throws LinuxNativeOperationException;
+
     public static native int bindTpAddress(int sock, long interfaceId, int rx, int tx) throws LinuxNativeOperationException;
 
     public static native int connectTpAddress(int sock, long interfaceId, int rx, int tx) throws LinuxNativeOperationException;
@@ -55,6 +57,8 @@ class SocketCAN {
 
     public static native void close(int sock) throws LinuxNativeOperationException;
 
+    public static native String errorString(int errorNumber);
+
     public static native int setBlockingMode(int sock, boolean block) throws LinuxNativeOperationException;
 
     public static native int getBlockingMode(int sock) throws LinuxNativeOperationException;
@@ -71,6 +75,10 @@ class SocketCAN {
 
     public static native int getReceiveBufferSize(int sock) throws LinuxNativeOperationException;
 
+    public static native int setSendBufferSize(int sock, int size) throws LinuxNativeOperationException;
+
+    public static native int getSendBufferSize(int sock) throws LinuxNativeOperationException;
+
     public static native int setBroadcast(int sock, boolean enable) throws LinuxNativeOperationException;
 
     public static native int getBroadcast(int sock) throws LinuxNativeOperationException;
@@ -79,10 +87,16 @@ class SocketCAN {
 
     public static native long read(int sock, ByteBuffer buf, int offset, int len) throws LinuxNativeOperationException;
 
+    public static native long tryRead(int sock, ByteBuffer buf, int offset, int len) throws LinuxNativeOperationException;
+
     public static native long send(int sock, ByteBuffer buf, int offset, int len, int flags) throws LinuxNativeOperationException;
 
     public static native long receive(int sock, ByteBuffer buf, int offset, int len, int flags) throws LinuxNativeOperationException;
 
+    public static native long tryReceive(int sock, ByteBuffer buf, int offset, int len, int flags) throws LinuxNativeOperationException;
+
+    public static native int sendMultiple(int sock, ByteBuffer buf, int[] offsets, int[] lengths, int count, int flags) throws LinuxNativeOperationException;
+
     public static native int setFilters(int sock, ByteBuffer data) throws LinuxNativeOperationException;
 
     public static native ByteBuffer getFilters(int sock) throws LinuxNativeOperationException;
@@ -141,8 +155,18 @@ class SocketCAN {
 
     public static native long receiveWithJ1939Headers(int sock, ByteBuffer buffer, int offset, int len, int flags, ByteBuffer headerBuffer, int headerOffset) throws LinuxNativeOperationException;
 
+    public static native long tryReceiveWithJ1939Headers(int sock, ByteBuffer buffer, int offset, int len, int flags, ByteBuffer headerBuffer, int headerOffset) throws LinuxNativeOperationException;
+
+    public static native int receiveJ1939Multiple(int sock, ByteBuffer buffer, int slotSize, int[] lengths, ByteBuffer headerBuffer, int count, int flags) throws LinuxNativeOperationException;
+
+    public static native int receiveJ1939ErrorQueue(int sock, ByteBuffer eventBuffer, int eventOffset) throws LinuxNativeOperationException;
+
     public static native long sendJ1939Message(int sock, ByteBuffer data, int offset, int len, int flags, int destination_ifindex, long destination_name, int destination_pgn, byte destination_address) throws LinuxNativeOperationException;
 
+    public static native long sendJ1939MessageTo(int sock, ByteBuffer data, int offset, int len, int flags, ByteBuffer addressBuffer, int addressOffset) throws LinuxNativeOperationException;
+
+    public static native int sendJ1939Multiple(int sock, ByteBuffer buffer, int[] offsets, int[] lengths, ByteBuffer addressBuffer, int addressOffset, int count, int flags) throws LinuxNativeOperationException;
+
     public static native int getJ1939MaxFilters();
 
     public static native int setJ1939Filters(int sock, ByteBuffer buffer, int offset, int len) throws LinuxNativeOperationException;
@@ -163,6 +187,8 @@ class SocketCAN {
 
     public static native long receiveWithRawHeaders(int sock, ByteBuffer buffer, int offset, int len, int flags, ByteBuffer headerBuffer, int headerOffset) throws LinuxNativeOperationException;
 
+    public static native long tryReceiveWithRawHeaders(int sock, ByteBuffer buffer, int offset, int len, int flags, ByteBuffer headerBuffer, int headerOffset) throws LinuxNativeOperationException;
+
     public static native int setReceiveQueueOverflow(int sock, boolean enable) throws LinuxNativeOperationException;
 
     public static native boolean getReceiveQueueOverflow(int sock) throws LinuxNativeOperationException;
@@ -0,0 +1,192 @@
+/*
+ * The MIT License
+ * Copyright © 2018 Phillip Schichtel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package tel.schich.javacan.util;
+
+import org.eclipse.jdt.annotation.Nullable;
+
+import java.util.Arrays;
+
+/**
+ * <p>
+ * An open addressing hash table with primitive {@code int} keys, so that lookups on the receive path, e.g. by CAN ID
+ * or PGN, neither box the key nor allocate map entries. Collisions are resolved by linear probing and removals shift
+ * the following entries of the probe sequence back instead of leaving tombstones, so lookups stay short for tables
+ * with frequent updates.
+ * </p>
+ * <p>
+ * The table is kept at most half full and is not synchronized. A table that is no longer modified after it has been
+ * safely published can be read by any number of threads.
+ * </p>
+ *
+ * @param <V> the value type
+ * @see LongHashTable
+ */
+public final class IntHashTable<V> {
+    static final int MAX_CAPACITY = 1 << 30;
+
+    private int[] keys;
+    private @Nullable Object[] values;
+    private int size;
+
+    public IntHashTable() {
+        this(8);
+    }
+
+    /**
+     * Creates a table that holds the given number of entries without growing.
+     *
+     * @param expectedSize the expected number of entries
+     * @throws IllegalArgumentException if the expected size is negative or too large
+     */
+    public IntHashTable(int expectedSize) {
+        int capacity = capacityFor(expectedSize);
+        this.keys = new int[capacity];
+        this.values = new Object[capacity];
+    }
+
+    static int capacityFor(int expectedSize) {
+        if (expectedSize < 0 || expectedSize > MAX_CAPACITY / 2) {
+            throw new IllegalArgumentException("Invalid expected size: " + expectedSize);
+        }
+        return Math.max(2, Integer.highestOneBit(Math.max(1, expectedSize) * 2 - 1) * 2);
+    }
+
+    private static int indexOf(int key, int mask) {
+        int h = key * 0x9E3779B9;
+        return (h ^ (h >>> 16)) & mask;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Looks up the value of the given key.
+     *
+     * @param key the key
+     * @return the value or null if the key is unknown
+     */
+    @Nullable
+    @SuppressWarnings("unchecked")
+    public V get(int key) {
+        int mask = values.length - 1;
+        for (int i = indexOf(key, mask); values[i] != null; i = (i + 1) & mask) {
+            if (keys[i] == key) {
+                return (V) values[i];
+            }
+        }
+        return null;
+    }
+
+    public boolean containsKey(int key) {
+        return get(key) != null;
+    }
+
+    /**
+     * Associates the value with the given key, replacing any previous value.
+     *
+     * @param key the key
+     * @param value the value
+     * @return the previous value or null if the key was unknown
+     */
+    @Nullable
+    @SuppressWarnings("unchecked")
+    public V put(int key, V value) {
+        if ((size + 1) * 2 > values.length) {
+            grow();
+        }
+        int mask = values.length - 1;
+        int i = indexOf(key, mask);
+        while (values[i] != null && keys[i] != key) {
+            i = (i + 1) & mask;
+        }
+        V previous = (V) values[i];
+        if (previous == null) {
+            size++;
+        }
+        keys[i] = key;
+        values[i] = value;
+        return previous;
+    }
+
+    /**
+     * Removes the given key.
+     *
+     * @param key the key
+     * @return the removed value or null if the key was unknown
+     */
+    @Nullable
+    @SuppressWarnings("unchecked")
+    public V remove(int key) {
+        int mask = values.length - 1;
+        int i = indexOf(key, mask);
+        while (values[i] != null && keys[i] != key) {
+            i = (i + 1) & mask;
+        }
+        V removed = (V) values[i];
+        if (removed == null) {
+            return null;
+        }
+        values[i] = null;
+        size--;
+        // shift back the following entries of the probe sequence to close the gap
+        for (int j = (i + 1) & mask; values[j] != null; j = (j + 1) & mask) {
+            int home = indexOf(keys[j], mask);
+            boolean between = i <= j ? (i < home && home <= j) : (i < home || home <= j);
+            if (!between) {
+                keys[i] = keys[j];
+                values[i] = values[j];
+                values[j] = null;
+                i = j;
+            }
+        }
+        return removed;
+    }
+
+    public void clear() {
+        Arrays.fill(values, null);
+        size = 0;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void grow() {
+        if (values.length == MAX_CAPACITY) {
+            throw new IllegalStateException("The table is full!");
+        }
+        int[] oldKeys = keys;
+        @Nullable Object[] oldValues = values;
+        keys = new int[oldKeys.length * 2];
+        values = new Object[oldValues.length * 2];
+        size = 0;
+        for (int i = 0; i < oldValues.length; i++) {
+            Object value = oldValues[i];
+            if (value != null) {
+                put(oldKeys[i], (V) value);
+            }
+        }
+    }
+}
@@ -0,0 +1,448 @@
+/*
+ * The MIT License
+ * Copyright © 2018 Phillip Schichtel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package tel.schich.javacan.util;
+
+import tel.schich.javacan.BcmCanChannel;
+import tel.schich.javacan.BcmFlag;
+import tel.schich.javacan.BcmMessage;
+import tel.schich.javacan.BcmOpcode;
+import tel.schich.javacan.CanFrame;
+import tel.schich.javacan.JavaCAN;
+import tel.schich.javacan.RawCanChannel;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static tel.schich.javacan.util.BufferHelper.putPlatformLong;
+
+/**
+ * <p>
+ * This class simulates the cyclic traffic of a CAN network (a "restbus") by installing all messages of a message
+ * table as {@link tel.schich.javacan.BcmOpcode#TX_SETUP} jobs on one or more {@link tel.schich.javacan.BcmCanChannel}s.
+ * The timing is handled entirely by the kernel's broadcast manager, the JVM is only involved when payloads change.
+ * </p>
+ * <p>
+ * All BCM messages of a channel are pre-built in a single direct buffer. Payload and period updates modify a
+ * message in place and mark it dirty, {@link #flush()} then diffs every dirty message against the state that has
+ * been installed in the kernel and writes only the messages that actually changed, together with the deletions of
+ * removed messages, with a single batched send per channel. Updating a value many times between two flushes, or
+ * setting it to the value that is already installed, therefore causes no write at all.
+ * </p>
+ * <p>
+ * Payload updates are sent without {@link tel.schich.javacan.BcmFlag#SETTIMER}, so the running cycles are neither
+ * restarted nor shifted. Period updates are sent with {@link tel.schich.javacan.BcmFlag#SETTIMER} but without
+ * {@link tel.schich.javacan.BcmFlag#STARTTIMER}, so the new period applies from the next cycle on.
+ * </p>
+ * <p>
+ * Messages with several frames are sent as a multiplexed sequence by the broadcast manager: each period sends the
+ * next frame of the message.
+ * </p>
+ * <p>
+ * The channels are neither connected nor closed by this class, closing a BCM channel removes all of its jobs.
+ * </p>
+ */
+public class RestbusSimulator {
+    private static final int INSTALL_FLAGS = BcmFlag.toNative(EnumSet.of(BcmFlag.SETTIMER, BcmFlag.STARTTIMER, BcmFlag.TX_CP_CAN_ID));
+    private static final int UPDATE_FLAGS = BcmFlag.toNative(EnumSet.of(BcmFlag.TX_CP_CAN_ID));
+    private static final int PERIOD_UPDATE_FLAGS = BcmFlag.toNative(EnumSet.of(BcmFlag.SETTIMER, BcmFlag.TX_CP_CAN_ID));
+    private static final int FD_FLAG = BcmFlag.toNative(EnumSet.of(BcmFlag.CAN_FD_FRAME));
+    private static final int INITIAL_TABLE_SIZE = 4096;
+    /**
+     * Offset of {@code len} inside {@code struct can_frame} and {@code struct canfd_frame}.
+     */
+    private static final int OFFSET_FRAME_DATA_LENGTH = 4;
+
+    private final Map<BcmCanChannel, Table> tables = new IdentityHashMap<>();
+
+    /**
+     * Adds a message to the table of the given channel. The message is installed with the next {@link #flush()}.
+     *
+     * @param channel the connected BCM channel to send the message on
+     * @param canId the CAN ID of the message, it is copied into all frames
+     * @param period the cycle time of the message
+     * @param frames the payload templates, more than one frame results in a multiplexed sequence
+     * @return a handle to update the payload of the message
+     * @throws IllegalArgumentException if the channel already has a message with the same CAN ID
+     */
+    public synchronized Message add(BcmCanChannel channel, int canId, Duration period, CanFrame... frames) {
+        checkPeriod(period);
+        if (frames.length == 0 || frames.length > BcmCanChannel.MAX_FRAMES_PER_MESSAGE) {
+            throw new IllegalArgumentException("A message needs between 1 and " + BcmCanChannel.MAX_FRAMES_PER_MESSAGE + " frames!");
+        }
+        boolean fd = false;
+        for (CanFrame frame : frames) {
+            fd |= frame.isFDFrame();
+        }
+        Table table = tables.get(channel);
+        if (table == null) {
+            table = new Table(channel);
+            tables.put(channel, table);
+        }
+        if (table.messagesById.containsKey(canId)) {
+            // the broadcast manager keys its jobs by CAN ID, the second message would silently replace the first
+            throw new IllegalArgumentException("The channel already has a message with CAN ID " + Integer.toHexString(canId) + "!");
+        }
+        Message message = table.allocate(canId, period, fd, frames.length);
+        for (int i = 0; i < frames.length; i++) {
+            message.setFrame(i, frames[i]);
+        }
+        return message;
+    }
+
+    private static void checkPeriod(Duration period) {
+        if (period.isNegative() || period.isZero()) {
+            throw new IllegalArgumentException("The period must be positive!");
+        }
+    }
+
+    /**
+     * Writes all changes since the last flush. New messages are installed with their timers, updated messages only
+     * replace their payload or period if it differs from the installed state, removed messages are deleted.
+     *
+     * @throws IOException if the native call fails
+     */
+    public synchronized void flush() throws IOException {
+        for (Table table : tables.values()) {
+            table.flush();
+        }
+    }
+
+    /**
+     * Removes a message from its channel. The transmission is stopped with the next {@link #flush()}, which sends
+     * the deletion together with all other pending changes.
+     *
+     * @param message the message to remove
+     */
+    public synchronized void remove(Message message) {
+        if (message.removed) {
+            return;
+        }
+        message.removed = true;
+        message.dirty = false;
+        message.table.messages.remove(message);
+        message.table.messagesById.remove(message.canId);
+        if (message.installed) {
+            message.table.deleteLater(message.canId);
+        }
+    }
+
+    /**
+     * Removes all messages from all channels, which stops their transmission immediately.
+     *
+     * @throws IOException if the native call fails
+     */
+    public synchronized void clear() throws IOException {
+        for (Table table : tables.values()) {
+            for (Message message : new ArrayList<>(table.messages)) {
+                remove(message);
+            }
+        }
+        flush();
+        tables.clear();
+    }
+
+    private final class Table {
+        private final BcmCanChannel channel;
+        private final List<Message> messages = new ArrayList<>();
+        private final Map<Integer, Message> messagesById = new HashMap<>();
+        private ByteBuffer buffer = JavaCAN.allocateOrdered(INITIAL_TABLE_SIZE);
+        private int used = 0;
+        private int[] offsets = new int[16];
+        private int[] lengths = new int[16];
+        private int[] pendingDeletes = new int[16];
+        private int pendingDeleteCount = 0;
+
+        Table(BcmCanChannel channel) {
+            this.channel = channel;
+        }
+
+        Message allocate(int canId, Duration period, boolean fd, int frameCount) {
+            int frameLength = fd ? RawCanChannel.FD_MTU : RawCanChannel.MTU;
+            int size = BcmMessage.HEADER_LENGTH + frameCount * frameLength;
+            ensureCapacity(size);
+            int base = used;
+            used += size;
+
+            buffer.putInt(base + BcmMessage.OFFSET_OPCODE, BcmOpcode.TX_SETUP.nativeOpcode);
+            buffer.putInt(base + BcmMessage.OFFSET_COUNT, 0);
+            buffer.putInt(base + BcmMessage.OFFSET_CAN_ID, canId);
+            buffer.putInt(base + BcmMessage.OFFSET_NFRAMES, frameCount);
+            putPlatformLong(buffer, base + BcmMessage.OFFSET_IVAL2_TV_SEC, period.getSeconds());
+            putPlatformLong(buffer, base + BcmMessage.OFFSET_IVAL2_TV_USEC, TimeUnit.NANOSECONDS.toMicros(period.getNano()));
+
+            Message message = new Message(this, base, size, canId, period, fd, frameCount);
+            messages.add(message);
+            messagesById.put(canId, message);
+            return message;
+        }
+
+        void deleteLater(int canId) {
+            if (pendingDeleteCount == pendingDeletes.length) {
+                int[] grown = new int[pendingDeleteCount * 2];
+                System.arraycopy(pendingDeletes, 0, grown, 0, pendingDeleteCount);
+                pendingDeletes = grown;
+            }
+            pendingDeletes[pendingDeleteCount++] = canId;
+        }
+
+        private void dropDeletes(int count) {
+            System.arraycopy(pendingDeletes, count, pendingDeletes, 0, pendingDeleteCount - count);
+            pendingDeleteCount -= count;
+        }
+
+        private void append(int offset, int length, int count) {
+            if (count == offsets.length) {
+                int[] newOffsets = new int[count * 2];
+                int[] newLengths = new int[count * 2];
+                System.arraycopy(offsets, 0, newOffsets, 0, count);
+                System.arraycopy(lengths, 0, newLengths, 0, count);
+                offsets = newOffsets;
+                lengths = newLengths;
+            }
+            offsets[count] = offset;
+            lengths[count] = length;
+        }
+
+        private void ensureCapacity(int additional) {
+            if (used + additional <= buffer.capacity()) {
+                return;
+            }
+            // compact the removed messages out of the table while growing it
+            int required = additional;
+            for (Message message : messages) {
+                required += message.size;
+            }
+            ByteBuffer grown = JavaCAN.allocateOrdered(Math.max(buffer.capacity(), required) * 2);
+            int position = 0;
+            for (Message message : messages) {
+                ByteBuffer source = buffer.duplicate();
+                source.limit(message.base + message.size).position(message.base);
+                grown.position(position);
+                grown.put(source);
+                message.base = position;
+                position += message.size;
+            }
+            grown.clear();
+            buffer = grown;
+            used = position;
+        }
+
+        void flush() throws IOException {
+            int count = 0;
+            // the deletions are placed in the unused space behind the messages, so they go out with the same batch
+            ensureCapacity(pendingDeleteCount * BcmMessage.HEADER_LENGTH);
+            for (int i = 0; i < pendingDeleteCount; i++) {
+                int base = used + i * BcmMessage.HEADER_LENGTH;
+                for (int j = 0; j < BcmMessage.HEADER_LENGTH; j += Integer.BYTES) {
+                    buffer.putInt(base + j, 0);
+                }
+                buffer.putInt(base + BcmMessage.OFFSET_OPCODE, BcmOpcode.TX_DELETE.nativeOpcode);
+                buffer.putInt(base + BcmMessage.OFFSET_CAN_ID, pendingDeletes[i]);
+                append(base, BcmMessage.HEADER_LENGTH, count++);
+            }
+            for (Message message : messages) {
+                if (!message.dirty) {
+                    continue;
+                }
+                final int flags;
+                if (!message.installed) {
+                    flags = INSTALL_FLAGS;
+                } else if (!message.period.equals(message.installedPeriod)) {
+                    flags = PERIOD_UPDATE_FLAGS;
+                } else if (message.framesInstalled()) {
+                    message.dirty = false;
+                    continue;
+                } else {
+                    flags = UPDATE_FLAGS;
+                }
+                buffer.putInt(message.base + BcmMessage.OFFSET_FLAGS, message.fd ? flags | FD_FLAG : flags);
+                append(message.base, message.size, count++);
+            }
+            int written = 0;
+            try {
+                while (written < count) {
+                    int n = channel.writeBatchUnsafe(buffer, offsets, lengths, count - written);
+                    if (n <= 0) {
+                        throw new IOException("BCM messages incompletely written");
+                    }
+                    written += n;
+                    // the offsets are consumed from the front, so shift the remaining ones
+                    System.arraycopy(offsets, n, offsets, 0, count - written);
+                    System.arraycopy(lengths, n, lengths, 0, count - written);
+                }
+            } finally {
+                // the deletions lead the batch, the ones that have been written must not be sent again
+                dropDeletes(Math.min(written, pendingDeleteCount));
+            }
+            for (Message message : messages) {
+                if (message.dirty) {
+                    message.dirty = false;
+                    message.installed = true;
+                    message.installedPeriod = message.period;
+                    message.saveInstalledFrames();
+                }
+            }
+        }
+    }
+
+    /**
+     * A message in the table of a {@link RestbusSimulator}.
+     */
+    public final class Message {
+        private final Table table;
+        private int base;
+        private final int size;
+        private final int canId;
+        private Duration period;
+        private final boolean fd;
+        private final int frameCount;
+        private boolean dirty = true;
+        private boolean installed = false;
+        private boolean removed = false;
+        private Duration installedPeriod;
+        private final byte[] installedFrames;
+
+        private Message(Table table, int base, int size, int canId, Duration period, boolean fd, int frameCount) {
+            this.table = table;
+            this.base = base;
+            this.size = size;
+            this.canId = canId;
+            this.period = period;
+            this.fd = fd;
+            this.frameCount = frameCount;
+            this.installedPeriod = period;
+            this.installedFrames = new byte[size - BcmMessage.OFFSET_FRAMES];
+        }
+
+        public int getCanId() {
+            return canId;
+        }
+
+        public Duration getPeriod() {
+            synchronized (RestbusSimulator.this) {
+                return period;
+            }
+        }
+
+        /**
+         * Changes the cycle time of this message. The change is sent with the next {@link RestbusSimulator#flush()}
+         * and takes effect after the currently running cycle.
+         *
+         * @param period the new cycle time
+         */
+        public void setPeriod(Duration period) {
+            checkPeriod(period);
+            synchronized (RestbusSimulator.this) {
+                if (removed) {
+                    throw new IllegalStateException("The message has already been removed!");
+                }
+                this.period = period;
+                putPlatformLong(table.buffer, base + BcmMessage.OFFSET_IVAL2_TV_SEC, period.getSeconds());
+                putPlatformLong(table.buffer, base + BcmMessage.OFFSET_IVAL2_TV_USEC, TimeUnit.NANOSECONDS.toMicros(period.getNano()));
+                dirty = true;
+            }
+        }
+
+        public int getFrameCount() {
+            return frameCount;
+        }
+
+        /**
+         * Replaces a frame of this message. The change is sent with the next {@link RestbusSimulator#flush()}.
+         *
+         * @param index the index of the frame within the message
+         * @param frame the new frame, its CAN ID is ignored
+         */
+        public void setFrame(int index, CanFrame frame) {
+            synchronized (RestbusSimulator.this) {
+                int offset = frameOffset(index);
+                if (frame.isFDFrame() && !fd) {
+                    throw new IllegalArgumentException("The message has not been created for FD frames!");
+                }
+                ByteBuffer target = table.buffer.duplicate();
+                target.position(offset);
+                target.put(frame.getBuffer());
+                dirty = true;
+            }
+        }
+
+        /**
+         * Replaces the payload of a frame of this message in place, without changing its length. The change is sent
+         * with the next {@link RestbusSimulator#flush()}.
+         *
+         * @param index the index of the frame within the message
+         * @param data the source of the new payload
+         * @param offset the offset within data
+         * @param length the number of bytes to copy, at most the data length of the frame
+         */
+        public void setData(int index, byte[] data, int offset, int length) {
+            synchronized (RestbusSimulator.this) {
+                int frameOffset = frameOffset(index);
+                int dataLength = table.buffer.get(frameOffset + OFFSET_FRAME_DATA_LENGTH) & 0xFF;
+                if (length > dataLength) {
+                    throw new IllegalArgumentException("The payload does not fit the frame!");
+                }
+                ByteBuffer target = table.buffer.duplicate();
+                target.position(frameOffset + CanFrame.HEADER_LENGTH);
+                target.put(data, offset, length);
+                dirty = true;
+            }
+        }
+
+        private boolean framesInstalled() {
+            int frames = base + BcmMessage.OFFSET_FRAMES;
+            for (int i = 0; i < installedFrames.length; i++) {
+                if (table.buffer.get(frames + i) != installedFrames[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private void saveInstalledFrames() {
+            int frames = base + BcmMessage.OFFSET_FRAMES;
+            for (int i = 0; i < installedFrames.length; i++) {
+                installedFrames[i] = table.buffer.get(frames + i);
+            }
+        }
+
+        private int frameOffset(int index) {
+            if (removed) {
+                throw new IllegalStateException("The message has already been removed!");
+            }
+            if (index < 0 || index >= frameCount) {
+                throw new IndexOutOfBoundsException("Frame index out of range: " + index);
+            }
+            int frameLength = fd ? RawCanChannel.FD_MTU : RawCanChannel.MTU;
+            return base + BcmMessage.OFFSET_FRAMES + index * frameLength;
+        }
+    }
+}
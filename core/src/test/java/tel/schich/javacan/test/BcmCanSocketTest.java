@@ -33,9 +33,12 @@ import org.junit.jupiter.api.Test;
 import tel.schich.javacan.BcmCanChannel;
 import tel.schich.javacan.BcmFlag;
 import tel.schich.javacan.BcmMessage;
+import tel.schich.javacan.BcmMessageReader;
+import tel.schich.javacan.BcmMessageWriter;
 import tel.schich.javacan.BcmOpcode;
 import tel.schich.javacan.CanChannels;
 import tel.schich.javacan.CanFrame;
+import tel.schich.javacan.JavaCAN;
 import tel.schich.javacan.RawCanChannel;
 import tel.schich.javacan.platform.linux.LinuxNativeOperationException;
 
@@ -233,4 +236,100 @@ class BcmCanSocketTest {
             assertTrue(delta > 500 & delta < 1000, "thread should block for at least 500 ms");
         }
     }
+
+    @Test
+    void testWriterMatchesBuilder() {
+        int canId = 0x7EB;
+        Duration interval = Duration.ofMillis(1500);
+        CanFrame first = CanFrame.create(canId, FD_NO_FLAGS, new byte[] { 1, 2, 3 });
+        CanFrame second = CanFrame.create(canId, FD_NO_FLAGS, new byte[] { 4, 5, 6, 7, 8, 9, 10, 11 });
+        BcmMessage expected = BcmMessage.builder(BcmOpcode.TX_SETUP)
+                .canId(canId)
+                .flag(BcmFlag.SETTIMER).flag(BcmFlag.STARTTIMER)
+                .count(3)
+                .interval1(interval)
+                .frame(first)
+                .frame(second)
+                .build();
+
+        ByteBuffer buffer = JavaCAN.allocateOrdered(BcmMessageWriter.messageLength(2, false) + 16);
+        BcmMessageWriter writer = new BcmMessageWriter(buffer, 16)
+                .header(BcmOpcode.TX_SETUP, BcmFlag.SETTIMER.getBit() | BcmFlag.STARTTIMER.getBit(), canId)
+                .count(3)
+                .interval1(interval)
+                .frameCount(2)
+                .frame(0, first)
+                .frame(1, canId, FD_NO_FLAGS, new byte[] { 4, 5, 6, 7, 8, 9, 10, 11 }, 0, 8);
+
+        assertEquals(expected.getBuffer().remaining(), writer.length());
+        BcmMessage actual = writer.toMessage();
+        assertEquals(expected, actual);
+        assertEquals(expected.getNativeFlags(), actual.getNativeFlags());
+        assertTrue(actual.hasFlag(BcmFlag.STARTTIMER));
+        assertFalse(actual.hasFlag(BcmFlag.CAN_FD_FRAME));
+        assertEquals(interval, actual.getInterval1());
+
+        // updating the payload in place keeps the header and the other frames
+        writer.payload(0, new byte[] { 9, 9 }, 0, 2).payloadByte(1, 7, (byte) 42);
+        assertEquals(CanFrame.create(canId, FD_NO_FLAGS, new byte[] { 9, 9 }), actual.getFrame(0));
+        assertEquals(CanFrame.create(canId, FD_NO_FLAGS, new byte[] { 4, 5, 6, 7, 8, 9, 10, 42 }), actual.getFrame(1));
+        assertEquals(3, actual.getCount());
+
+        assertThrows(IndexOutOfBoundsException.class, () -> writer.payload(2, new byte[1], 0, 1));
+        assertThrows(IllegalArgumentException.class, () -> writer.payload(0, new byte[9], 0, 9));
+        assertThrows(IllegalArgumentException.class, () -> writer.frameCount(3));
+
+        // FD flags are not written into classic frames
+        writer.frame(0, canId, CanFrame.FD_FLAG_BIT_RATE_SWITCH, new byte[] { 1 }, 0, 1);
+        assertEquals(0, buffer.get(writer.getFrameOffset(0) + 5));
+    }
+
+    @Test
+    void testWriterFDFrames() {
+        int canId = 0x7EC;
+        byte[] data = new byte[20];
+        Arrays.fill(data, (byte) 0x11);
+        ByteBuffer buffer = JavaCAN.allocateOrdered(BcmMessageWriter.messageLength(1, true));
+        BcmMessageWriter writer = new BcmMessageWriter(buffer)
+                .header(BcmOpcode.TX_SETUP, BcmFlag.CAN_FD_FRAME.getBit(), canId)
+                .frameCount(1)
+                .frame(0, canId, CanFrame.FD_FLAG_BIT_RATE_SWITCH, data, 0, data.length);
+
+        assertEquals(buffer.capacity(), writer.length());
+        BcmMessage message = writer.toMessage();
+        CanFrame frame = message.getFrame(0);
+        assertTrue(frame.isFDFrame());
+        assertEquals(data.length, frame.getDataLength());
+        assertEquals(BcmMessage.builder(BcmOpcode.TX_SETUP).canId(canId)
+                .frame(CanFrame.create(canId, CanFrame.FD_FLAG_BIT_RATE_SWITCH, data)).build(), message);
+    }
+
+    @Test
+    void testReusableRead() throws Exception {
+        int canId = 0x7ED;
+        BcmMessage rxFilterSetupMessage = BcmMessage.builder(BcmOpcode.RX_SETUP)
+                .canId(canId)
+                .frame(CanFrame.create(canId, FD_NO_FLAGS, new byte[] { (byte) 0xff }))
+                .build();
+        BcmMessageReader reader = new BcmMessageReader();
+        assertEquals(0, reader.length());
+        try (final BcmCanChannel channel = CanChannels.newBcmChannel(CAN_INTERFACE)) {
+            channel.setOption(SO_RCVTIMEO, Duration.ofSeconds(1));
+            channel.write(rxFilterSetupMessage);
+
+            for (byte i = 1; i <= 3; i++) {
+                CanFrame input = CanFrame.create(canId, FD_NO_FLAGS, new byte[] { i });
+                CanTestHelper.sendFrameViaUtils(CAN_INTERFACE, input);
+                assertSame(reader, channel.read(reader));
+                assertEquals(BcmOpcode.RX_CHANGED, reader.getOpcode());
+                assertEquals(canId, reader.getCanId());
+                assertEquals(1, reader.getFrameCount());
+                assertEquals(input, reader.getFrame(0));
+                assertEquals(BcmMessage.HEADER_LENGTH + RawCanChannel.MTU, reader.length());
+
+                BcmMessage copy = reader.toMessage();
+                assertEquals(input, copy.getFrame(0));
+            }
+        }
+    }
 }
@@ -0,0 +1,121 @@
+/*
+ * The MIT License
+ * Copyright © 2018 Phillip Schichtel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package tel.schich.javacan.test;
+
+import java.time.Duration;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import tel.schich.javacan.CanChannels;
+import tel.schich.javacan.CanFilter;
+import tel.schich.javacan.CanFrame;
+import tel.schich.javacan.CgwChannel;
+import tel.schich.javacan.CgwChecksum;
+import tel.schich.javacan.CgwFlag;
+import tel.schich.javacan.CgwModification;
+import tel.schich.javacan.CgwRule;
+import tel.schich.javacan.RawCanChannel;
+import tel.schich.javacan.platform.linux.LinuxNativeOperationException;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+import static tel.schich.javacan.CanFrame.FD_NO_FLAGS;
+import static tel.schich.javacan.CanSocketOptions.FILTER;
+import static tel.schich.javacan.CanSocketOptions.SO_RCVTIMEO;
+import static tel.schich.javacan.test.CanTestHelper.CAN_INTERFACE;
+
+class CgwChannelTest {
+    private static final int EPERM = 1;
+
+    @Test
+    void testCrc8Table() {
+        // CRC-8/SAE-J1850 without the final XOR
+        byte[] table = CgwChecksum.crc8Table(0x1D);
+        assertEquals(0x00, table[0] & 0xFF);
+        assertEquals(0x1D, table[1] & 0xFF);
+        assertEquals(0x3A, table[2] & 0xFF);
+        assertEquals(0xC4, table[255] & 0xFF);
+    }
+
+    @Test
+    void testRuleValidation() {
+        CanFrame fdOperand = CanFrame.create(0, CanFrame.FD_FLAG_FD_FRAME, new byte[12]);
+        CgwRule.Builder builder = CgwRule.builder(CAN_INTERFACE, CAN_INTERFACE)
+                .modification(CgwModification.of(CgwModification.Function.SET, CgwModification.DATA, fdOperand));
+        assertThrows(IllegalArgumentException.class, builder::build);
+        assertNotNull(builder.flag(CgwFlag.FD).build());
+        assertThrows(IllegalArgumentException.class, () -> CgwModification.of(CgwModification.Function.AND, 0, fdOperand));
+        assertThrows(IllegalArgumentException.class, () -> CgwChecksum.xor(0, 64, 7, 0));
+        assertNull(CgwRule.builder(CAN_INTERFACE, CAN_INTERFACE).filter(CanFilter.ANY).build().getFilter());
+    }
+
+    @Test
+    void testForwarding() throws Exception {
+        final int id = 0x5A0;
+        final int target = 0x5A1;
+        CgwRule rule = CgwRule.builder(CAN_INTERFACE, CAN_INTERFACE)
+                .flag(CgwFlag.ECHO)
+                .flag(CgwFlag.IIF_TX_OK)
+                .filter(new CanFilter(id))
+                .modification(CgwModification.of(CgwModification.Function.SET, CgwModification.ID,
+                        CanFrame.create(target, FD_NO_FLAGS, new byte[0])))
+                .modification(CgwModification.of(CgwModification.Function.XOR, CgwModification.DATA,
+                        CanFrame.create(0, FD_NO_FLAGS, new byte[]{(byte) 0xFF, 0, 0, 0})))
+                .checksum(CgwChecksum.xor(0, 2, 3, 0))
+                .hopLimit(1)
+                .build();
+
+        try (CgwChannel gateway = CanChannels.newCgwChannel();
+             RawCanChannel sender = CanChannels.newRawChannel(CAN_INTERFACE);
+             RawCanChannel receiver = CanChannels.newRawChannel(CAN_INTERFACE)) {
+            try {
+                gateway.add(rule);
+            } catch (LinuxNativeOperationException e) {
+                assumeTrue(e.getErrorNumber() != EPERM, "Configuring the CAN gateway requires CAP_NET_ADMIN");
+                throw e;
+            }
+            try {
+                List<CgwRule> rules = gateway.list();
+                assertTrue(rules.contains(rule), "The rule should have been listed: " + rules);
+
+                receiver.setOption(FILTER, new CanFilter[]{new CanFilter(target)});
+                receiver.setOption(SO_RCVTIMEO, Duration.ofSeconds(2));
+                sender.write(CanFrame.create(id, FD_NO_FLAGS, new byte[]{1, 2, 4, 0}));
+
+                CanFrame frame = receiver.read();
+                assertEquals(target, frame.getId());
+                byte[] data = new byte[frame.getDataLength()];
+                frame.getData(data, 0, data.length);
+                assertArrayEquals(new byte[]{(byte) 0xFE, 2, 4, (byte) (0xFE ^ 2 ^ 4)}, data);
+
+                CgwRule listed = gateway.list().get(rules.indexOf(rule));
+                assertEquals(1, listed.getHandledFrames());
+            } finally {
+                gateway.remove(rule);
+            }
+            assertFalse(gateway.list().contains(rule));
+            assertThrows(LinuxNativeOperationException.class, () -> gateway.remove(rule));
+        }
+    }
+}
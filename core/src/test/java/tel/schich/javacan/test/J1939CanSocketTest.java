@@ -26,9 +26,14 @@ import org.junit.jupiter.api.Test;
 import tel.schich.javacan.CanChannels;
 import tel.schich.javacan.ImmutableJ1939Address;
 import tel.schich.javacan.J1939Address;
+import tel.schich.javacan.J1939AddressArray;
+import tel.schich.javacan.J1939AddressBuffer;
 import tel.schich.javacan.J1939CanChannel;
 import tel.schich.javacan.J1939CanSocketOptions;
+import tel.schich.javacan.J1939ErrorQueueEvent;
+import tel.schich.javacan.J1939ErrorQueueEventBuffer;
 import tel.schich.javacan.J1939Filter;
+import tel.schich.javacan.J1939ReceiveBatch;
 import tel.schich.javacan.ImmutableJ1939ReceiveMessageHeader;
 import tel.schich.javacan.J1939ReceiveMessageHeader;
 import tel.schich.javacan.J1939ReceiveMessageHeaderBuffer;
@@ -186,6 +191,134 @@ class J1939CanSocketTest {
         testTimestamp(ch -> ch.setOption(SO_TIMESTAMPING, sendFlags), ch -> ch.setOption(SO_TIMESTAMPING, receiveFlags), zeroTime(), ReceiveMessageHeader::getHardwareTimestamp);
     }
 
+    @Test
+    void testPreparedDestination() throws Exception {
+        ImmutableJ1939Address source = new ImmutableJ1939Address(CAN_INTERFACE, ImmutableJ1939Address.NO_NAME, 0, (byte) 0x20);
+        ImmutableJ1939Address destination = new ImmutableJ1939Address(CAN_INTERFACE, ImmutableJ1939Address.NO_NAME, ImmutableJ1939Address.NO_PGN, (byte) 0x30);
+        // heap and big endian buffers can not be passed to native code as is and must be unpacked instead
+        J1939AddressBuffer[] preparedDestinations = {
+            new J1939AddressBuffer().set(destination),
+            new J1939AddressBuffer(ByteBuffer.allocate(J1939AddressBuffer.BYTES)).set(destination),
+            new J1939AddressBuffer(ByteBuffer.allocateDirect(J1939AddressBuffer.BYTES)).set(destination),
+        };
+
+        try (final J1939CanChannel a = CanChannels.newJ1939Channel(); final J1939CanChannel b = CanChannels.newJ1939Channel()) {
+            a.bind(source);
+            b.bind(destination);
+            b.configureBlocking(true);
+
+            final ByteBuffer input = directBufferOf(new byte[]{0x20, 0x33});
+            final ByteBuffer output = ByteBuffer.allocateDirect(3);
+            for (J1939AddressBuffer prepared : preparedDestinations) {
+                for (int i = 0; i < 3; i++) {
+                    input.rewind();
+                    output.clear();
+                    assertEquals(2, a.send(input, prepared));
+                    assertEquals(2, b.receive(output));
+                    input.flip();
+                    output.flip();
+                    assertByteBufferEquals(input, output);
+                }
+                assertEquals(destination, prepared.copy(), "Sending must not modify the prepared destination");
+            }
+        }
+    }
+
+    @Test
+    void testBatchedSend() throws Exception {
+        ImmutableJ1939Address source = new ImmutableJ1939Address(CAN_INTERFACE, ImmutableJ1939Address.NO_NAME, 0, (byte) 0x20);
+        ImmutableJ1939Address first = new ImmutableJ1939Address(CAN_INTERFACE, ImmutableJ1939Address.NO_NAME, ImmutableJ1939Address.NO_PGN, (byte) 0x30);
+        ImmutableJ1939Address second = new ImmutableJ1939Address(CAN_INTERFACE, ImmutableJ1939Address.NO_NAME, ImmutableJ1939Address.NO_PGN, (byte) 0x31);
+        J1939AddressArray destinations = new J1939AddressArray(3)
+            .set(0, first)
+            .set(1, second)
+            .set(2, first);
+
+        try (final J1939CanChannel a = CanChannels.newJ1939Channel();
+             final J1939CanChannel b = CanChannels.newJ1939Channel();
+             final J1939CanChannel c = CanChannels.newJ1939Channel()) {
+            a.bind(source);
+            b.bind(first);
+            c.bind(second);
+            b.configureBlocking(true);
+            c.configureBlocking(true);
+
+            final ByteBuffer data = directBufferOf(new byte[]{1, 2, 3, 4, 5, 6});
+            assertEquals(3, a.send(data, new int[]{0, 2, 4}, new int[]{2, 2, 2}, destinations, 3));
+            assertThrows(IndexOutOfBoundsException.class, () -> a.send(data, new int[]{Integer.MAX_VALUE}, new int[]{2}, destinations, 1));
+
+            final ByteBuffer output = ByteBuffer.allocateDirect(8);
+            assertEquals(2, b.receive(output));
+            assertEquals(2, b.receive(output));
+            output.flip();
+            assertByteBufferEquals(directBufferOf(new byte[]{1, 2, 5, 6}), output);
+
+            output.clear();
+            assertEquals(2, c.receive(output));
+            output.flip();
+            assertByteBufferEquals(directBufferOf(new byte[]{3, 4}), output);
+        }
+    }
+
+    @Test
+    void testBatchedReceive() throws Exception {
+        ImmutableJ1939Address source = new ImmutableJ1939Address(CAN_INTERFACE, ImmutableJ1939Address.NO_NAME, 0, (byte) 0x20);
+        ImmutableJ1939Address destination = new ImmutableJ1939Address(CAN_INTERFACE, ImmutableJ1939Address.NO_NAME, ImmutableJ1939Address.NO_PGN, (byte) 0x30);
+        J1939AddressArray destinations = new J1939AddressArray(3)
+            .set(0, destination)
+            .set(1, destination)
+            .set(2, destination);
+        J1939ReceiveBatch batch = new J1939ReceiveBatch(8, 8);
+        assertThrows(IllegalArgumentException.class, () -> new J1939ReceiveBatch(1 << 16, 1 << 16));
+        assertThrows(IllegalArgumentException.class, () -> new J1939AddressArray(Integer.MAX_VALUE));
+
+        try (final J1939CanChannel a = CanChannels.newJ1939Channel(); final J1939CanChannel b = CanChannels.newJ1939Channel()) {
+            a.bind(source);
+            b.bind(destination);
+            b.configureBlocking(true);
+            b.setOption(SO_TIMESTAMP, true);
+
+            final ByteBuffer data = directBufferOf(new byte[]{1, 2, 3, 4, 5, 6});
+            assertEquals(3, a.send(data, new int[]{0, 2, 4}, new int[]{2, 2, 2}, destinations, 3));
+
+            int received = 0;
+            while (received < 3) {
+                assertTrue(b.receive(batch) > 0);
+                assertTrue(batch.size() <= 3 - received, "Only the sent messages can be received");
+                for (int i = 0; i < batch.size(); i++, received++) {
+                    assertEquals(2, batch.getLength(i));
+                    assertByteBufferEquals(directBufferOf(new byte[]{(byte) (received * 2 + 1), (byte) (received * 2 + 2)}), batch.getMessage(i));
+                    assertEquals(source.getAddress(), batch.getHeader(i).getSourceAddress().getAddress());
+                    assertEquals(destination.getAddress(), batch.getHeader(i).getDestinationAddress());
+                    assertTrue(Math.abs(nowSeconds().getEpochSecond() - batch.getHeader(i).getSoftwareTimestamp().getEpochSecond()) <= 1);
+                }
+            }
+            assertThrows(IndexOutOfBoundsException.class, () -> batch.getMessage(batch.size()));
+        }
+    }
+
+    @Test
+    void testEmptyErrorQueue() throws Exception {
+        ImmutableJ1939Address source = new ImmutableJ1939Address(CAN_INTERFACE, ImmutableJ1939Address.NO_NAME, 0, (byte) 0x20);
+        try (final J1939CanChannel a = CanChannels.newJ1939Channel()) {
+            a.bind(source);
+            a.setOption(J1939CanSocketOptions.SO_J1939_ERRQUEUE, true);
+            assertTrue(a.getOption(J1939CanSocketOptions.SO_J1939_ERRQUEUE));
+            assertFalse(a.receiveErrorQueue(new J1939ErrorQueueEventBuffer()), "Reading an empty error queue must not block");
+        }
+    }
+
+    @Test
+    void testErrorQueueEventTypes() {
+        assertEquals(J1939ErrorQueueEvent.Type.TX_SCHEDULED, J1939ErrorQueueEventBuffer.typeOf(J1939ErrorQueueEventBuffer.ORIGIN_TIMESTAMPING, 1));
+        assertEquals(J1939ErrorQueueEvent.Type.TX_ACKNOWLEDGED, J1939ErrorQueueEventBuffer.typeOf(J1939ErrorQueueEventBuffer.ORIGIN_TIMESTAMPING, 2));
+        assertEquals(J1939ErrorQueueEvent.Type.TX_ABORTED, J1939ErrorQueueEventBuffer.typeOf(J1939ErrorQueueEventBuffer.ORIGIN_LOCAL, 1));
+        assertEquals(J1939ErrorQueueEvent.Type.RX_RTS, J1939ErrorQueueEventBuffer.typeOf(J1939ErrorQueueEventBuffer.ORIGIN_LOCAL, 2));
+        assertEquals(J1939ErrorQueueEvent.Type.RX_DPO, J1939ErrorQueueEventBuffer.typeOf(J1939ErrorQueueEventBuffer.ORIGIN_LOCAL, 3));
+        assertEquals(J1939ErrorQueueEvent.Type.RX_ABORTED, J1939ErrorQueueEventBuffer.typeOf(J1939ErrorQueueEventBuffer.ORIGIN_LOCAL, 4));
+        assertEquals(J1939ErrorQueueEvent.Type.UNKNOWN, J1939ErrorQueueEventBuffer.typeOf(0, 1));
+    }
+
     @Test
     void testConnectingToNoAddrFailsWithPermissionError() {
         ImmutableJ1939Address addr = new ImmutableJ1939Address(CAN_INTERFACE);
@@ -0,0 +1,50 @@
+/*
+ * The MIT License
+ * Copyright © 2018 Phillip Schichtel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package tel.schich.javacan.test;
+
+import org.junit.jupiter.api.Test;
+import tel.schich.javacan.J1939TransportMode;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static tel.schich.javacan.J1939TransportMode.*;
+
+class J1939TransportModeTest {
+
+    @Test
+    void testTransportSelection() {
+        assertEquals(SINGLE_FRAME, J1939TransportMode.of(8, false));
+        assertEquals(TP_CMDT, J1939TransportMode.of(9, false));
+        assertEquals(TP_BAM, J1939TransportMode.of(1785, true));
+        assertEquals(ETP_CMDT, J1939TransportMode.of(1786, false));
+        assertEquals(ETP_CMDT, J1939TransportMode.of(100 * 1024, false));
+        assertThrows(IllegalArgumentException.class, () -> J1939TransportMode.of(1786, true));
+        assertThrows(IllegalArgumentException.class, () -> J1939TransportMode.of(-1, false));
+    }
+
+    @Test
+    void testPacketCount() {
+        assertEquals(1, J1939TransportMode.packetCount(8));
+        assertEquals(2, J1939TransportMode.packetCount(9));
+        assertEquals(255, J1939TransportMode.packetCount(1785));
+    }
+}
@@ -26,6 +26,7 @@ import org.junit.jupiter.api.Test;
 import tel.schich.javacan.CanChannels;
 import tel.schich.javacan.CanFilter;
 import tel.schich.javacan.CanFrame;
+import tel.schich.javacan.ChannelMetrics;
 import tel.schich.javacan.JavaCAN;
 import tel.schich.javacan.RawCanChannel;
 import tel.schich.javacan.RawReceiveMessageHeaderBuffer;
@@ -95,6 +96,13 @@ class RawCanSocketTest {
             assertEquals(newReceiveBufferSize * 2, socket.getOption(SO_RCVBUF).intValue());
             socket.setOption(SO_RCVBUF, oldReceiveBufferSize);
             assertEquals(oldReceiveBufferSize * 2, socket.getOption(SO_RCVBUF).intValue());
+
+            int newSendBufferSize = 16384;
+            int oldSendBufferSize = socket.getOption(SO_SNDBUF) / 2;
+            socket.setOption(SO_SNDBUF, newSendBufferSize);
+            assertEquals(newSendBufferSize * 2, socket.getOption(SO_SNDBUF).intValue());
+            socket.setOption(SO_SNDBUF, oldSendBufferSize);
+            assertEquals(oldSendBufferSize * 2, socket.getOption(SO_SNDBUF).intValue());
         }
     }
 
@@ -207,6 +215,40 @@ class RawCanSocketTest {
         }
     }
 
+    @Test
+    void testWriteBatch() throws Exception {
+        try (final RawCanChannel a = CanChannels.newRawChannel()) {
+            a.bind(CAN_INTERFACE);
+
+            try (final RawCanChannel b = CanChannels.newRawChannel()) {
+                b.bind(CAN_INTERFACE);
+                b.setOption(FILTER, new CanFilter[]{new CanFilter(0x7ED)});
+
+                final CanFrame[] input = {
+                        CanFrame.create(0x7ED, FD_NO_FLAGS, new byte[]{0x01}),
+                        CanFrame.create(0x7ED, FD_NO_FLAGS, new byte[]{0x02, 0x03}),
+                        CanFrame.create(0x7ED, FD_NO_FLAGS, new byte[]{0x04, 0x05, 0x06}),
+                };
+                final ByteBuffer buffer = JavaCAN.allocateUnordered(input.length * RawCanChannel.FD_MTU);
+                final int[] offsets = new int[input.length];
+                final int[] lengths = new int[input.length];
+                for (int i = 0; i < input.length; i++) {
+                    offsets[i] = i * RawCanChannel.FD_MTU;
+                    lengths[i] = input[i].getSize();
+                    buffer.position(offsets[i]);
+                    buffer.put(input[i].getBuffer());
+                }
+
+                assertEquals(input.length, a.writeBatchUnsafe(buffer, offsets, lengths, input.length));
+                for (CanFrame frame : input) {
+                    assertEquals(frame, b.read());
+                }
+
+                assertThrows(IndexOutOfBoundsException.class, () -> a.writeBatchUnsafe(buffer, new int[]{buffer.capacity()}, lengths, 1));
+            }
+        }
+    }
+
     @Test
     void testOwnMessage() throws Exception {
         try (final RawCanChannel socket = CanChannels.newRawChannel()) {
@@ -226,6 +268,73 @@ class RawCanSocketTest {
         }
     }
 
+    @Test
+    void testMetrics() throws Exception {
+        try (final RawCanChannel socket = CanChannels.newRawChannel()) {
+            socket.bind(CAN_INTERFACE);
+            socket.configureBlocking(false);
+            socket.setOption(RECV_OWN_MSGS, true);
+            socket.setOption(SO_RXQ_OVFL, true);
+
+            final ChannelMetrics metrics = new ChannelMetrics();
+            socket.setMetrics(metrics);
+
+            final CanFrame input = CanFrame.create(0x7EB, FD_NO_FLAGS, new byte[]{0x11, 0x22});
+            socket.write(input);
+            socket.write(input);
+            assertEquals(input, socket.read());
+            assertEquals(input, socket.receive(new RawReceiveMessageHeaderBuffer()));
+            assertThrows(LinuxNativeOperationException.class, socket::read);
+
+            assertEquals(2, metrics.getWriteCalls());
+            assertEquals(2, metrics.getWrittenMessages());
+            assertEquals(2L * input.getSize(), metrics.getWrittenBytes());
+            assertEquals(2, metrics.getReadCalls());
+            assertEquals(2, metrics.getReadMessages());
+            assertEquals(2L * input.getSize(), metrics.getReadBytes());
+            assertEquals(1, metrics.getWouldBlock());
+            assertEquals(0, metrics.getErrors());
+            assertEquals(0, metrics.getKernelDrops());
+
+            metrics.reset();
+            socket.setMetrics(null);
+            socket.write(input);
+            assertEquals(0, metrics.getWriteCalls(), "Detached metrics must not be updated");
+        }
+    }
+
+    @Test
+    void testTryRead() throws Exception {
+        try (final RawCanChannel socket = CanChannels.newRawChannel()) {
+            socket.bind(CAN_INTERFACE);
+            socket.configureBlocking(false);
+            socket.setOption(RECV_OWN_MSGS, true);
+
+            final ChannelMetrics metrics = new ChannelMetrics();
+            socket.setMetrics(metrics);
+
+            final CanFrame input = CanFrame.create(0x7EB, FD_NO_FLAGS, new byte[]{0x11, 0x22});
+            final ByteBuffer buffer = RawCanChannel.allocateSufficientMemory();
+            socket.write(input);
+            socket.write(input);
+            assertEquals(RawCanChannel.MTU, socket.tryReadUnsafe(buffer));
+            assertEquals(input, CanFrame.create(buffer));
+            buffer.clear();
+            assertEquals(RawCanChannel.MTU, socket.tryReceiveUnsafe(buffer, new RawReceiveMessageHeaderBuffer()));
+            assertEquals(input, CanFrame.create(buffer));
+
+            // an empty socket neither throws nor counts as a failure
+            buffer.clear();
+            assertEquals(-1, socket.tryReadUnsafe(buffer));
+            assertEquals(-1, socket.tryReceiveUnsafe(buffer, new RawReceiveMessageHeaderBuffer()));
+            assertEquals(-1, socket.tryReceiveUnsafe(buffer, null));
+            assertEquals(0, buffer.position());
+            assertEquals(2, metrics.getReadCalls());
+            assertEquals(0, metrics.getWouldBlock());
+            assertEquals(0, metrics.getErrors());
+        }
+    }
+
     @Test
     void testFDFrame() throws Exception {
         try (final RawCanChannel socket = CanChannels.newRawChannel()) {
@@ -0,0 +1,85 @@
+/*
+ * The MIT License
+ * Copyright © 2018 Phillip Schichtel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package tel.schich.javacan.test.isotp;
+
+import org.junit.jupiter.api.Test;
+import tel.schich.javacan.CanChannels;
+import tel.schich.javacan.IsotpCanChannel;
+import tel.schich.javacan.IsotpSocketAddress;
+import tel.schich.javacan.IsotpTuningProfile;
+import tel.schich.javacan.JavaCAN;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static tel.schich.javacan.IsotpCanSocketOptions.LL_OPTS;
+import static tel.schich.javacan.IsotpCanSocketOptions.RECV_FC;
+import static tel.schich.javacan.IsotpSocketAddress.isotpAddress;
+import static tel.schich.javacan.test.CanTestHelper.CAN_INTERFACE;
+
+class IsotpTuningProfileTest {
+
+    @Test
+    void testInvalidProfiles() {
+        assertThrows(IllegalArgumentException.class, () -> IsotpTuningProfile.canFd("a", 11, true, 0, 0));
+        assertThrows(IllegalArgumentException.class, () -> IsotpTuningProfile.canFd("b", 65, true, 0, 0));
+        assertThrows(IllegalArgumentException.class, () -> IsotpTuningProfile.canFd("c", 64, true, 256, 0));
+        assertThrows(IllegalArgumentException.class, () -> IsotpTuningProfile.classic("d", 0, -1));
+    }
+
+    @Test
+    void testApplyAndTransfer() throws Exception {
+        IsotpTuningProfile profile = IsotpTuningProfile.canFd("fd64-brs-bs8", 64, true, 8, 0);
+        assertTrue(profile.isFd());
+
+        IsotpSocketAddress src = isotpAddress(0x7E0);
+        IsotpSocketAddress dst = isotpAddress(0x7E8);
+        try (final IsotpCanChannel a = CanChannels.newIsotpChannel()) {
+            try (final IsotpCanChannel b = CanChannels.newIsotpChannel()) {
+                profile.apply(a);
+                profile.apply(b);
+                assertEquals(profile.getLinkLayerOptions(), a.getOption(LL_OPTS));
+                assertEquals(profile.getFlowControlOptions(), b.getOption(RECV_FC));
+
+                a.bind(CAN_INTERFACE, src, dst);
+                b.bind(CAN_INTERFACE, dst, src);
+
+                byte[] in = new byte[1000];
+                for (int i = 0; i < in.length; i++) {
+                    in[i] = (byte) i;
+                }
+                ByteBuffer buf = JavaCAN.allocateUnordered(IsotpCanChannel.MAX_MESSAGE_LENGTH + 1);
+                buf.put(in);
+                buf.flip();
+                assertEquals(in.length, a.write(buf));
+
+                buf.clear();
+                assertEquals(in.length, b.read(buf), "The whole message must arrive");
+                byte[] out = new byte[in.length];
+                buf.flip();
+                buf.get(out);
+                assertArrayEquals(in, out, "What goes in must come out!");
+            }
+        }
+    }
+}
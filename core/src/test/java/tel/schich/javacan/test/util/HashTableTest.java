@@ -0,0 +1,100 @@
+/*
+ * The MIT License
+ * Copyright © 2018 Phillip Schichtel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package tel.schich.javacan.test.util;
+
+import org.junit.jupiter.api.Test;
+import tel.schich.javacan.util.IntHashTable;
+import tel.schich.javacan.util.LongHashTable;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HashTableTest {
+
+    @Test
+    void testIntTable() {
+        IntHashTable<String> table = new IntHashTable<>();
+        assertTrue(table.isEmpty());
+        assertNull(table.put(0x123, "a"));
+        assertNull(table.put(0, "zero"));
+        assertEquals("a", table.put(0x123, "b"));
+        assertEquals(2, table.size());
+        assertEquals("b", table.get(0x123));
+        assertEquals("zero", table.get(0));
+        assertNull(table.get(0x124));
+        assertEquals("zero", table.remove(0));
+        assertNull(table.remove(0));
+        assertFalse(table.containsKey(0));
+        table.clear();
+        assertTrue(table.isEmpty());
+        assertNull(table.get(0x123));
+    }
+
+    @Test
+    void testIntTableMatchesHashMap() {
+        IntHashTable<Integer> table = new IntHashTable<>(2);
+        Map<Integer, Integer> expected = new HashMap<>();
+        Random random = new Random(42);
+        for (int n = 0; n < 100_000; n++) {
+            // a small key space produces long probe sequences and many removals within them
+            int key = random.nextInt(512) * 0x800;
+            if (random.nextBoolean()) {
+                assertEquals(expected.put(key, n), table.put(key, n));
+            } else {
+                assertEquals(expected.remove(key), table.remove(key));
+            }
+            assertEquals(expected.size(), table.size());
+        }
+        for (int key = 0; key < 512 * 0x800; key += 0x800) {
+            assertEquals(expected.get(key), table.get(key));
+        }
+    }
+
+    @Test
+    void testLongTableMatchesHashMap() {
+        LongHashTable<Integer> table = new LongHashTable<>();
+        Map<Long, Integer> expected = new HashMap<>();
+        Random random = new Random(42);
+        for (int n = 0; n < 100_000; n++) {
+            long key = (long) random.nextInt(512) << 40;
+            if (random.nextBoolean()) {
+                assertEquals(expected.put(key, n), table.put(key, n));
+            } else {
+                assertEquals(expected.remove(key), table.remove(key));
+            }
+            assertEquals(expected.size(), table.size());
+        }
+        for (long i = 0; i < 512; i++) {
+            assertEquals(expected.get(i << 40), table.get(i << 40));
+        }
+    }
+
+    @Test
+    void testInvalidSize() {
+        assertThrows(IllegalArgumentException.class, () -> new IntHashTable<>(-1));
+        assertThrows(IllegalArgumentException.class, () -> new LongHashTable<>(Integer.MAX_VALUE));
+    }
+}
@@ -0,0 +1,179 @@
+/*
+ * The MIT License
+ * Copyright © 2018 Phillip Schichtel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package tel.schich.javacan.test.util;
+
+import org.junit.jupiter.api.Test;
+import tel.schich.javacan.BcmCanChannel;
+import tel.schich.javacan.CanChannels;
+import tel.schich.javacan.CanFilter;
+import tel.schich.javacan.CanFrame;
+import tel.schich.javacan.RawCanChannel;
+import tel.schich.javacan.util.RestbusSimulator;
+
+import java.io.IOException;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static tel.schich.javacan.CanFrame.FD_NO_FLAGS;
+import static tel.schich.javacan.CanSocketOptions.FILTER;
+import static tel.schich.javacan.CanSocketOptions.SO_RCVTIMEO;
+import static tel.schich.javacan.test.CanTestHelper.CAN_INTERFACE;
+
+class RestbusSimulatorTest {
+
+    @Test
+    void testCyclesAndInPlaceUpdates() throws Exception {
+        try (BcmCanChannel bcm = CanChannels.newBcmChannel(CAN_INTERFACE);
+             RawCanChannel rx = CanChannels.newRawChannel(CAN_INTERFACE)) {
+            rx.setOption(FILTER, new CanFilter[]{new CanFilter(0x321), new CanFilter(0x322)});
+            rx.setOption(SO_RCVTIMEO, Duration.ofSeconds(1));
+
+            RestbusSimulator simulator = new RestbusSimulator();
+            RestbusSimulator.Message a = simulator.add(bcm, 0x321, Duration.ofMillis(10),
+                    CanFrame.create(0, FD_NO_FLAGS, new byte[]{0x01, 0x00}));
+            RestbusSimulator.Message b = simulator.add(bcm, 0x322, Duration.ofMillis(10),
+                    CanFrame.create(0, FD_NO_FLAGS, new byte[]{0x10}),
+                    CanFrame.create(0, FD_NO_FLAGS, new byte[]{0x20}));
+            assertEquals(2, b.getFrameCount());
+            assertThrows(IllegalArgumentException.class, () -> simulator.add(bcm, 0x321, Duration.ofMillis(20),
+                    CanFrame.create(0, FD_NO_FLAGS, new byte[]{0x7F})), "A CAN ID can only be used once per channel");
+            simulator.flush();
+
+            boolean seenA = false;
+            boolean seenMuxB1 = false;
+            boolean seenMuxB2 = false;
+            while (!seenA || !seenMuxB1 || !seenMuxB2) {
+                CanFrame frame = rx.read();
+                byte first = firstByte(frame);
+                if (frame.getId() == 0x321) {
+                    assertEquals(0x01, first);
+                    seenA = true;
+                } else {
+                    seenMuxB1 |= first == 0x10;
+                    seenMuxB2 |= first == 0x20;
+                }
+            }
+
+            a.setData(0, new byte[]{0x02, 0x03}, 0, 2);
+            assertThrows(IllegalArgumentException.class, () -> a.setData(0, new byte[3], 0, 3));
+            simulator.flush();
+
+            CanFrame updated;
+            do {
+                updated = rx.read();
+            } while (updated.getId() != 0x321 || firstByte(updated) != 0x02);
+            assertEquals(2, updated.getDataLength());
+
+            simulator.clear();
+            // drain frames that were queued before the jobs have been deleted
+            Thread.sleep(50);
+            rx.configureBlocking(false);
+            while (true) {
+                try {
+                    rx.read();
+                } catch (Exception e) {
+                    break;
+                }
+            }
+            Thread.sleep(50);
+            assertThrows(Exception.class, rx::read, "No frames should be sent after clearing the simulator");
+        }
+    }
+
+    @Test
+    void testPeriodUpdateAndDeferredRemoval() throws Exception {
+        try (BcmCanChannel bcm = CanChannels.newBcmChannel(CAN_INTERFACE);
+             RawCanChannel rx = CanChannels.newRawChannel(CAN_INTERFACE)) {
+            rx.setOption(FILTER, new CanFilter[]{new CanFilter(0x323)});
+            rx.setOption(SO_RCVTIMEO, Duration.ofSeconds(1));
+
+            RestbusSimulator simulator = new RestbusSimulator();
+            RestbusSimulator.Message message = simulator.add(bcm, 0x323, Duration.ofMillis(10),
+                    CanFrame.create(0, FD_NO_FLAGS, new byte[]{0x01}));
+            simulator.flush();
+            assertEquals(0x01, firstByte(rx.read()));
+
+            // updates that end up at the installed state are not written
+            message.setData(0, new byte[]{0x05}, 0, 1);
+            message.setData(0, new byte[]{0x01}, 0, 1);
+            message.setPeriod(Duration.ofMillis(200));
+            assertEquals(Duration.ofMillis(200), message.getPeriod());
+            simulator.flush();
+
+            Thread.sleep(250);
+            drain(rx);
+            rx.read();
+            long start = System.nanoTime();
+            CanFrame frame = rx.read();
+            assertTrue(System.nanoTime() - start >= Duration.ofMillis(150).toNanos(), "The new period should be used");
+            assertEquals(0x01, firstByte(frame));
+
+            simulator.remove(message);
+            assertThrows(IllegalStateException.class, () -> message.setPeriod(Duration.ofMillis(10)));
+            simulator.flush();
+            Thread.sleep(50);
+            drain(rx);
+            Thread.sleep(300);
+            rx.configureBlocking(false);
+            assertThrows(Exception.class, rx::read, "No frames should be sent after removing the message");
+        }
+    }
+
+    @Test
+    void testWrittenDeletionsAreDroppedOnFailure() throws Exception {
+        try (BcmCanChannel bcm = CanChannels.newBcmChannel(CAN_INTERFACE)) {
+            RestbusSimulator simulator = new RestbusSimulator();
+            RestbusSimulator.Message removed = simulator.add(bcm, 0x324, Duration.ofMillis(100),
+                    CanFrame.create(0, FD_NO_FLAGS, new byte[]{0x01}));
+            simulator.flush();
+
+            simulator.remove(removed);
+            // the broadcast manager rejects timers beyond 400 days, so the batch fails behind the deletion
+            RestbusSimulator.Message invalid = simulator.add(bcm, 0x325, Duration.ofDays(500),
+                    CanFrame.create(0, FD_NO_FLAGS, new byte[]{0x02}));
+            assertThrows(IOException.class, simulator::flush);
+
+            // deleting the job a second time would fail, so this only succeeds if the written deletion was dropped
+            simulator.remove(invalid);
+            simulator.flush();
+        }
+    }
+
+    private static void drain(RawCanChannel rx) throws Exception {
+        rx.configureBlocking(false);
+        while (true) {
+            try {
+                rx.read();
+            } catch (Exception e) {
+                break;
+            }
+        }
+        rx.configureBlocking(true);
+    }
+
+    private static byte firstByte(CanFrame frame) {
+        byte[] data = new byte[1];
+        frame.getData(data, 0, 1);
+        return data[0];
+    }
+}
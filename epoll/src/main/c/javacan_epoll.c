@@ -27,6 +27,8 @@
 #include <string.h>
 #include <sys/epoll.h>
 #include <sys/eventfd.h>
+#include <sys/timerfd.h>
+#include <time.h>
 #include <unistd.h>
 
 void throw_epoll_exception(JNIEnv *env, char *msg) {
@@ -65,6 +67,54 @@ JNIEXPORT jlong JNICALL Java_tel_schich_javacan_platform_linux_epoll_EPoll_clear
     return (jlong)val;
 }
 
+#define NANOS_PER_SECOND 1000000000L
+
+static void nanos_to_timespec(jlong nanos, struct timespec *spec) {
+    spec->tv_sec = (time_t) (nanos / NANOS_PER_SECOND);
+    spec->tv_nsec = (long) (nanos % NANOS_PER_SECOND);
+}
+
+JNIEXPORT jint JNICALL Java_tel_schich_javacan_platform_linux_epoll_EPoll_createTimerfd(JNIEnv *env, jclass class, jboolean block) {
+    int flags = TFD_CLOEXEC;
+    if (!block) {
+        flags |= TFD_NONBLOCK;
+    }
+
+    int fd = timerfd_create(CLOCK_MONOTONIC, flags);
+    if (fd == -1) {
+        throw_epoll_exception(env, "Unable to create timerfd");
+    }
+    return fd;
+}
+
+JNIEXPORT void JNICALL Java_tel_schich_javacan_platform_linux_epoll_EPoll_setTimerfd(JNIEnv *env, jclass class, jint timerfd, jlong initialNanos, jlong intervalNanos, jboolean absolute) {
+    struct itimerspec spec;
+    nanos_to_timespec(initialNanos, &spec.it_value);
+    nanos_to_timespec(intervalNanos, &spec.it_interval);
+    if (timerfd_settime(timerfd, absolute ? TFD_TIMER_ABSTIME : 0, &spec, NULL)) {
+        throw_epoll_exception(env, "Unable to set the timerfd");
+    }
+}
+
+JNIEXPORT jlong JNICALL Java_tel_schich_javacan_platform_linux_epoll_EPoll_readTimerfd(JNIEnv *env, jclass class, jint timerfd) {
+    uint64_t expirations = 0;
+    ssize_t result = read(timerfd, &expirations, sizeof(expirations));
+    if (result == -1) {
+        if (errno == EAGAIN) {
+            return 0;
+        }
+        throw_epoll_exception(env, "Unable to read the timerfd");
+        return -1;
+    }
+    return (jlong) expirations;
+}
+
+JNIEXPORT jlong JNICALL Java_tel_schich_javacan_platform_linux_epoll_EPoll_monotonicTime(JNIEnv *env, jclass class) {
+    struct timespec now;
+    clock_gettime(CLOCK_MONOTONIC, &now);
+    return (jlong) now.tv_sec * NANOS_PER_SECOND + now.tv_nsec;
+}
+
 JNIEXPORT jlong JNICALL Java_tel_schich_javacan_platform_linux_epoll_EPoll_newEvents(JNIEnv *env, jclass class, jint maxEvents) {
     return (jlong)(uintptr_t)malloc(sizeof(struct epoll_event) * maxEvents);
 }
@@ -49,6 +49,7 @@ class EPoll {
 
     public static final int EPOLLIN = 0x001;
     public static final int EPOLLOUT = 0x004;
+    public static final int EPOLLERR = 0x008;
 
     public static native int create();
 
@@ -58,6 +59,14 @@ class EPoll {
 
     public static native long clearEvent(int eventfd);
 
+    public static native int createTimerfd(boolean block) throws LinuxNativeOperationException;
+
+    public static native void setTimerfd(int timerfd, long initialNanos, long intervalNanos, boolean absolute) throws LinuxNativeOperationException;
+
+    public static native long readTimerfd(int timerfd) throws LinuxNativeOperationException;
+
+    public static native long monotonicTime();
+
     public static native long newEvents(int maxEvents);
 
     public static native void freeEvents(long eventsPointer);
@@ -48,7 +48,7 @@ import static java.util.Collections.newSetFromMap;
  * own epoll-based {@link java.nio.channels.Selector} implementation.
  * </p>
  * <p>
- * This implementation does not expose any more public APIs.
+ * Apart from {@link #setMetrics(SelectorMetrics)}, this implementation does not expose any more public APIs.
  * </p>
  *
  * @see <a href="https://man7.org/linux/man-pages/man7/epoll.7.html">epoll man page</a>
@@ -72,6 +72,8 @@ final public class EPollSelector implements IOSelector<UnixFileDescriptor> {
     private final Set<SelectorRegistration<UnixFileDescriptor, ?>> registrations;
     private final Map<Integer, SelectorRegistration<UnixFileDescriptor, ?>> fdToKey;
     private final Object keyCollectionsLock = new Object();
+    @Nullable
+    private volatile SelectorMetrics metrics;
 
     public EPollSelector() throws LinuxNativeOperationException {
         this(100);
@@ -196,6 +198,10 @@ final public class EPollSelector implements IOSelector<UnixFileDescriptor> {
                 case WRITE:
                     newOps |= EPoll.EPOLLOUT;
                     break;
+                case ERROR:
+                    // EPOLLERR is always reported, but requesting it explicitly is harmless
+                    newOps |= EPoll.EPOLLERR;
+                    break;
             }
         }
         return newOps;
@@ -207,6 +213,8 @@ final public class EPollSelector implements IOSelector<UnixFileDescriptor> {
             newOps.add(SelectorRegistration.Operation.READ);
         if ((ops & EPoll.EPOLLOUT) != 0)
             newOps.add(SelectorRegistration.Operation.WRITE);
+        if ((ops & EPoll.EPOLLERR) != 0)
+            newOps.add(SelectorRegistration.Operation.ERROR);
 
         return newOps;
     }
@@ -244,6 +252,10 @@ final public class EPollSelector implements IOSelector<UnixFileDescriptor> {
         ensureOpen();
 
         int n = EPoll.poll(epollfd, eventsPointer, maxEvents, timeout);
+        SelectorMetrics metrics = this.metrics;
+        if (metrics != null) {
+            metrics.recordPoll(n);
+        }
 
         int[] events = new int[n];
         int[] fds = new int[n];
@@ -259,6 +271,9 @@ final public class EPollSelector implements IOSelector<UnixFileDescriptor> {
                 fd = fds[i];
                 if (fd == eventfd) {
                     EPoll.clearEvent(eventfd);
+                    if (metrics != null) {
+                        metrics.recordWakeup();
+                    }
                 } else {
                     SelectorRegistration<UnixFileDescriptor, ?> key = fdToKey.get(fd);
                     if (key != null) {
@@ -290,6 +305,10 @@ final public class EPollSelector implements IOSelector<UnixFileDescriptor> {
     @Override
     public void wakeup() {
         ensureOpen();
+        SelectorMetrics metrics = this.metrics;
+        if (metrics != null) {
+            metrics.recordWakeupRequest();
+        }
         try {
             EPoll.signalEvent(eventfd, 1);
         } catch (LinuxNativeOperationException ex) {
@@ -297,6 +316,25 @@ final public class EPollSelector implements IOSelector<UnixFileDescriptor> {
         }
     }
 
+    /**
+     * Attaches {@link SelectorMetrics} to this selector, all polls and wakeups are counted from now on.
+     *
+     * @param metrics the metrics or null to stop collecting metrics
+     */
+    public void setMetrics(@Nullable SelectorMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Returns the {@link SelectorMetrics} attached to this selector.
+     *
+     * @return the metrics or null if no metrics are collected
+     */
+    @Nullable
+    public SelectorMetrics getMetrics() {
+        return metrics;
+    }
+
     public static EPollSelector open() throws IOException {
         return new EPollSelector();
     }
@@ -0,0 +1,130 @@
+/*
+ * The MIT License
+ * Copyright © 2018 Phillip Schichtel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package tel.schich.javacan.platform.linux.epoll;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * <p>
+ * Counters of an {@link EPollSelector}, collected once an instance has been attached using
+ * {@link EPollSelector#setMetrics(SelectorMetrics)}. Together with the
+ * {@link tel.schich.javacan.ChannelMetrics} of the registered channels, these show how many events a poll yields
+ * on average and how often pollers are woken up without I/O.
+ * </p>
+ * <p>
+ * This class implements {@link SelectorMetricsMXBean}, so it can be registered with a JMX MBean server as is.
+ * </p>
+ */
+public final class SelectorMetrics implements SelectorMetricsMXBean {
+    private final LongAdder polls = new LongAdder();
+    private final LongAdder emptyPolls = new LongAdder();
+    private final LongAdder events = new LongAdder();
+    private final LongAdder wakeupRequests = new LongAdder();
+    private final LongAdder wakeups = new LongAdder();
+
+    void recordPoll(int events) {
+        polls.increment();
+        if (events == 0) {
+            emptyPolls.increment();
+        } else {
+            this.events.add(events);
+        }
+    }
+
+    void recordWakeupRequest() {
+        wakeupRequests.increment();
+    }
+
+    void recordWakeup() {
+        wakeups.increment();
+    }
+
+    /**
+     * Returns the number of {@code epoll_wait} calls.
+     *
+     * @return the number of polls
+     */
+    @Override
+    public long getPolls() {
+        return polls.sum();
+    }
+
+    /**
+     * Returns the number of polls that returned without any event, because they timed out.
+     *
+     * @return the number of empty polls
+     */
+    @Override
+    public long getEmptyPolls() {
+        return emptyPolls.sum();
+    }
+
+    /**
+     * Returns the number of events returned by all polls, including wakeups.
+     *
+     * @return the number of events
+     */
+    @Override
+    public long getEvents() {
+        return events.sum();
+    }
+
+    /**
+     * Returns the number of calls to {@link EPollSelector#wakeup()}.
+     *
+     * @return the number of requested wakeups
+     */
+    @Override
+    public long getWakeupRequests() {
+        return wakeupRequests.sum();
+    }
+
+    /**
+     * Returns the number of polls that have been woken up by {@link EPollSelector#wakeup()}. Several requests
+     * before a poll result in a single wakeup.
+     *
+     * @return the number of wakeups
+     */
+    @Override
+    public long getWakeups() {
+        return wakeups.sum();
+    }
+
+    /**
+     * Resets all counters. Updates that happen concurrently to the reset might be lost.
+     */
+    @Override
+    public void reset() {
+        polls.reset();
+        emptyPolls.reset();
+        events.reset();
+        wakeupRequests.reset();
+        wakeups.reset();
+    }
+
+    @Override
+    public String toString() {
+        return "SelectorMetrics(polls=" + getPolls() + ", emptyPolls=" + getEmptyPolls() + ", events=" + getEvents()
+                + ", wakeupRequests=" + getWakeupRequests() + ", wakeups=" + getWakeups() + ")";
+    }
+}
@@ -0,0 +1,163 @@
+/*
+ * The MIT License
+ * Copyright © 2018 Phillip Schichtel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package tel.schich.javacan.platform.linux.epoll;
+
+import tel.schich.javacan.platform.NativeChannel;
+import tel.schich.javacan.platform.linux.UnixFileDescriptor;
+
+import java.io.IOException;
+import java.nio.channels.ClosedChannelException;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * <p>
+ * This channel wraps a Linux timerfd on the monotonic clock. It becomes readable whenever the timer expires and can
+ * therefore be registered on an {@link EPollSelector} like any other channel, which allows cyclic work to be driven
+ * by the kernel's high resolution timers instead of a sleeping thread.
+ * </p>
+ * <p>
+ * The channel is created in non-blocking mode, {@link #read()} returns 0 if the timer did not expire since the last
+ * read.
+ * </p>
+ *
+ * @see <a href="https://man7.org/linux/man-pages/man2/timerfd_create.2.html">timerfd_create man page</a>
+ */
+public class TimerFdChannel implements NativeChannel<UnixFileDescriptor> {
+    private final UnixFileDescriptor fd;
+    private final AtomicBoolean open = new AtomicBoolean(true);
+
+    private TimerFdChannel(int fd) {
+        this.fd = new UnixFileDescriptor(fd);
+    }
+
+    /**
+     * Creates a new disarmed timer.
+     *
+     * @return the new timer channel
+     * @throws IOException if the native call fails
+     */
+    public static TimerFdChannel open() throws IOException {
+        EPoll.initialize();
+        return new TimerFdChannel(EPoll.createTimerfd(false));
+    }
+
+    /**
+     * Returns the current time of the monotonic clock used by timer channels. This is the time base of
+     * {@link #setAbsolute(long, long)}.
+     *
+     * @return the current monotonic time in nanoseconds
+     */
+    public static long currentTime() {
+        EPoll.initialize();
+        return EPoll.monotonicTime();
+    }
+
+    @Override
+    public UnixFileDescriptor getHandle() {
+        return fd;
+    }
+
+    /**
+     * Arms the timer relative to now.
+     *
+     * @param initial the delay until the first expiration, must be positive
+     * @param interval the interval of subsequent expirations, zero for a one-shot timer
+     * @throws IOException if the native call fails
+     */
+    public void set(Duration initial, Duration interval) throws IOException {
+        if (initial.isNegative() || initial.isZero()) {
+            throw new IllegalArgumentException("The initial delay must be positive!");
+        }
+        if (interval.isNegative()) {
+            throw new IllegalArgumentException("The interval must not be negative!");
+        }
+        settime(initial.toNanos(), interval.toNanos(), false);
+    }
+
+    /**
+     * Arms the timer at an absolute point in time. Timers armed with the same time base and intervals that are
+     * multiples of each other expire at exactly the same instants.
+     *
+     * @param firstExpiration the time of the first expiration according to {@link #currentTime()}
+     * @param intervalNanos the interval of subsequent expirations in nanoseconds, zero for a one-shot timer
+     * @throws IOException if the native call fails
+     */
+    public void setAbsolute(long firstExpiration, long intervalNanos) throws IOException {
+        if (firstExpiration <= 0) {
+            throw new IllegalArgumentException("The first expiration must be positive!");
+        }
+        if (intervalNanos < 0) {
+            throw new IllegalArgumentException("The interval must not be negative!");
+        }
+        settime(firstExpiration, intervalNanos, true);
+    }
+
+    /**
+     * Disarms the timer.
+     *
+     * @throws IOException if the native call fails
+     */
+    public void disarm() throws IOException {
+        settime(0, 0, false);
+    }
+
+    private void settime(long initialNanos, long intervalNanos, boolean absolute) throws IOException {
+        ensureOpen();
+        EPoll.setTimerfd(fd.getValue(), initialNanos, intervalNanos, absolute);
+    }
+
+    /**
+     * Reads and resets the number of expirations since the last read.
+     *
+     * @return the number of expirations, 0 if the timer did not expire
+     * @throws IOException if the native call fails
+     */
+    public long read() throws IOException {
+        ensureOpen();
+        return EPoll.readTimerfd(fd.getValue());
+    }
+
+    private void ensureOpen() throws ClosedChannelException {
+        if (!isOpen()) {
+            throw new ClosedChannelException();
+        }
+    }
+
+    @Override
+    public boolean isOpen() {
+        return open.get();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (open.compareAndSet(true, false)) {
+            EPoll.close(fd.getValue());
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "TimerFdChannel(handle=" + fd + ')';
+    }
+}
@@ -80,6 +80,11 @@ public interface SelectorRegistration<HandleType, ChannelType extends Channel> e
         /**
          * The channel can connect.
          */
-        CONNECT
+        CONNECT,
+        /**
+         * The channel has a pending error or messages in its error queue. This is always reported when it occurs,
+         * regardless of whether it is part of the interests of the registration.
+         */
+        ERROR
     }
 }
@@ -0,0 +1,154 @@
+/*
+ * The MIT License
+ * Copyright © 2018 Phillip Schichtel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package tel.schich.javacan.util;
+
+import org.eclipse.jdt.annotation.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import tel.schich.javacan.BcmCanChannel;
+import tel.schich.javacan.BcmMessageReader;
+import tel.schich.javacan.platform.linux.UnixFileDescriptor;
+import tel.schich.javacan.select.IOEvent;
+import tel.schich.javacan.select.IOSelector;
+import tel.schich.javacan.select.SelectorRegistration;
+
+import java.io.IOException;
+import java.nio.channels.Channel;
+import java.time.Duration;
+import java.util.EnumSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * <p>
+ * The base of the event loops that receive the notifications of the CAN broadcast manager on several
+ * {@link tel.schich.javacan.BcmCanChannel}s. Every channel is associated with a target, which is passed to
+ * {@link #handle(BcmCanChannel, Object, BcmMessageReader)} together with each received message.
+ * </p>
+ * <p>
+ * All messages are read into a single {@link tel.schich.javacan.BcmMessageReader} that is reused for every message,
+ * so receiving does not allocate. The channels are configured to be non-blocking when added.
+ * </p>
+ *
+ * @param <T> the type of the targets associated with the channels
+ */
+public abstract class AbstractBcmEventLoop<T> extends EventLoop<UnixFileDescriptor, BcmCanChannel> {
+    private static final Logger LOGGER = LoggerFactory.getLogger(AbstractBcmEventLoop.class);
+
+    private final BcmMessageReader reader = new BcmMessageReader();
+    private final DrainLoop.Step<BcmCanChannel> readMessage = this::readMessage;
+    private final IdentityHashMap<BcmCanChannel, T> targets = new IdentityHashMap<>();
+
+    /**
+     * Guards the channels, events are processed while holding this lock.
+     */
+    protected final Object lock = new Object();
+
+    protected AbstractBcmEventLoop(String name, ThreadFactory threadFactory, IOSelector<UnixFileDescriptor> selector, Duration timeout) {
+        super(name, threadFactory, selector, timeout);
+    }
+
+    /**
+     * Registers the given channel for reading and starts the event loop.
+     *
+     * @param ch the channel
+     * @param target the target passed to {@link #handle(BcmCanChannel, Object, BcmMessageReader)} for the messages of the
+     *               channel
+     * @throws IOException if native calls fail
+     */
+    protected final void registerChannel(BcmCanChannel ch, T target) throws IOException {
+        synchronized (lock) {
+            if (this.targets.containsKey(ch)) {
+                throw new IllegalArgumentException("Channel already added!");
+            }
+            if (ch.isBlocking()) {
+                ch.configureBlocking(false);
+            }
+            register(ch, EnumSet.of(SelectorRegistration.Operation.READ));
+            this.targets.put(ch, target);
+            this.start();
+        }
+    }
+
+    /**
+     * Cancels the registration of the given channel, the channel is not closed.
+     *
+     * @param ch the channel
+     * @return the target of the channel or {@code null} if the channel was not registered
+     * @throws IOException if the underlying selector is unable to cancel the registration
+     */
+    @Nullable
+    protected final T unregisterChannel(BcmCanChannel ch) throws IOException {
+        final T target;
+        synchronized (lock) {
+            target = this.targets.remove(ch);
+            if (target == null) {
+                return null;
+            }
+            cancel(ch);
+        }
+        lazyShutdown();
+        return target;
+    }
+
+    /**
+     * Handles a message received on the polling thread. The reader is reused for the next message.
+     *
+     * @param ch the channel that received the message
+     * @param target the target of the channel
+     * @param message the reader holding the received message
+     * @throws IOException if handling the message fails
+     */
+    protected abstract void handle(BcmCanChannel ch, T target, BcmMessageReader message) throws IOException;
+
+    @Override
+    protected boolean isEmpty() {
+        synchronized (lock) {
+            return this.targets.isEmpty();
+        }
+    }
+
+    @Override
+    protected void processEvents(List<IOEvent<UnixFileDescriptor>> events) throws IOException {
+        synchronized (lock) {
+            for (IOEvent<UnixFileDescriptor> event : events) {
+                Channel ch = event.getRegistration().getChannel();
+                if (ch instanceof BcmCanChannel && targets.containsKey(ch)) {
+                    DrainLoop.drain((BcmCanChannel) ch, DrainLoop.DEFAULT_BUDGET, readMessage);
+                } else {
+                    LOGGER.warn("Unsupported channel: {}", ch);
+                }
+            }
+        }
+    }
+
+    private boolean readMessage(BcmCanChannel ch) throws IOException {
+        T target = targets.get(ch);
+        if (target == null || ch.tryRead(reader) == null) {
+            return false;
+        }
+        handle(ch, target, reader);
+        return true;
+    }
+}
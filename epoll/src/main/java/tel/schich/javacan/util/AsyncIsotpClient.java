@@ -0,0 +1,334 @@
+/*
+ * The MIT License
+ * Copyright © 2018 Phillip Schichtel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package tel.schich.javacan.util;
+
+import org.eclipse.jdt.annotation.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import tel.schich.javacan.IsotpCanChannel;
+import tel.schich.javacan.platform.linux.UnixFileDescriptor;
+import tel.schich.javacan.select.IOSelector;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * <p>
+ * This class implements a request/response style API on top of {@link tel.schich.javacan.IsotpCanChannel}s using an
+ * {@link IsotpListener} for the IO and its timers for the response timeouts. Each request is answered by
+ * the next message received on the same channel, so that a single channel never has more than one request in
+ * flight. Further requests to the same channel are queued and sent as soon as the previous request has been answered
+ * or timed out. Requests to different channels are fully independent, which allows talking to many ECUs in parallel
+ * from very few threads.
+ * </p>
+ * <p>
+ * The returned {@link CompletableFuture}s are completed on the polling thread of the underlying event loop, so
+ * dependent actions that are expensive or blocking should use the {@code *Async} variants of
+ * {@link CompletableFuture}.
+ * </p>
+ * <p>
+ * Since ISO-TP itself has no notion of requests and responses, a response that arrives after its request timed out
+ * will be interpreted as the response to the next request on that channel. Higher level protocols like UDS should
+ * validate the response content.
+ * </p>
+ *
+ * @see IsotpListener
+ * @see TimerWheel
+ */
+public class AsyncIsotpClient implements Closeable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(AsyncIsotpClient.class);
+
+    public static final Duration DEFAULT_TIMEOUT = Duration.ofSeconds(1);
+
+    private final IsotpListener listener;
+    private final Duration defaultTimeout;
+    private final Map<IsotpCanChannel, ChannelState> channels = new IdentityHashMap<>();
+    private final Object channelLock = new Object();
+    private volatile boolean open = true;
+
+    public AsyncIsotpClient(ThreadFactory threadFactory, IOSelector<UnixFileDescriptor> selector) {
+        this(threadFactory, selector, DEFAULT_TIMEOUT);
+    }
+
+    public AsyncIsotpClient(ThreadFactory threadFactory, IOSelector<UnixFileDescriptor> selector, Duration defaultTimeout) {
+        this.listener = new IsotpListener(threadFactory, selector, CanBroker.DEFAULT_TIMEOUT);
+        this.defaultTimeout = defaultTimeout;
+    }
+
+    /**
+     * Returns the timeout used for requests that do not specify their own timeout.
+     *
+     * @return the default timeout
+     */
+    public Duration getDefaultTimeout() {
+        return defaultTimeout;
+    }
+
+    /**
+     * Adds the given {@link tel.schich.javacan.IsotpCanChannel} to this client. The channel will be switched to
+     * non-blocking mode and must not be read by anyone else while it is part of this client.
+     *
+     * @param ch the channel to add
+     * @throws IOException if native calls fail
+     */
+    public void addChannel(IsotpCanChannel ch) throws IOException {
+        ensureOpen();
+        synchronized (channelLock) {
+            if (channels.containsKey(ch)) {
+                throw new IllegalArgumentException("Channel already added!");
+            }
+            ChannelState state = new ChannelState(ch);
+            channels.put(ch, state);
+            try {
+                listener.addChannel(ch, state);
+            } catch (IOException | RuntimeException e) {
+                channels.remove(ch);
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Removes the given {@link tel.schich.javacan.IsotpCanChannel} from this client. All requests that have not been
+     * answered yet will be cancelled. The channel itself will not be closed.
+     *
+     * @param ch the channel to remove
+     * @throws IOException if the underlying selector is unable to cancel the registration
+     */
+    public void removeChannel(IsotpCanChannel ch) throws IOException {
+        final ChannelState state;
+        synchronized (channelLock) {
+            state = channels.remove(ch);
+            if (state == null) {
+                throw new IllegalArgumentException("Channel not known!");
+            }
+        }
+        try {
+            listener.removeChannel(ch);
+        } finally {
+            state.cancelAll();
+        }
+    }
+
+    /**
+     * Sends a request on the given channel using the default timeout.
+     *
+     * @param ch the channel to send the request on, it must have been added to this client before
+     * @param request the request message, this buffer must not be modified until the returned future completed
+     * @return a future that completes with the response
+     * @see #request(IsotpCanChannel, ByteBuffer, Duration)
+     */
+    public CompletableFuture<ByteBuffer> request(IsotpCanChannel ch, ByteBuffer request) {
+        return request(ch, request, defaultTimeout);
+    }
+
+    /**
+     * <p>
+     * Sends a request on the given channel and returns a future of its response. The request is sent immediately if
+     * the channel has no request in flight, otherwise it will be queued.
+     * </p>
+     * <p>
+     * The future completes exceptionally with a {@link TimeoutException} if no response is received within the given
+     * timeout after the request has been sent and with an {@link IOException} if the request could not be sent.
+     * The response buffer is owned by the caller.
+     * </p>
+     *
+     * @param ch the channel to send the request on, it must have been added to this client before
+     * @param request the request message, this buffer must not be modified until the returned future completed
+     * @param timeout the maximum time to wait for the response
+     * @return a future that completes with the response
+     */
+    public CompletableFuture<ByteBuffer> request(IsotpCanChannel ch, ByteBuffer request, Duration timeout) {
+        ensureOpen();
+        if (request.remaining() > IsotpCanChannel.MAX_MESSAGE_LENGTH) {
+            throw new IllegalArgumentException("Message too long!");
+        }
+        final ChannelState state;
+        synchronized (channelLock) {
+            state = channels.get(ch);
+        }
+        if (state == null) {
+            throw new IllegalArgumentException("Channel not known!");
+        }
+        PendingRequest pending = new PendingRequest(request, timeout);
+        state.enqueue(pending);
+        return pending.future;
+    }
+
+    private void ensureOpen() {
+        if (!open) {
+            throw new IllegalStateException("The client has already been closed!");
+        }
+    }
+
+    /**
+     * Closes this client by cancelling all outstanding requests and closing the underlying {@link IsotpListener}.
+     * The channels will not be closed.
+     *
+     * @throws IOException if the underlying listener fails to close
+     */
+    @Override
+    public void close() throws IOException {
+        if (!open) {
+            return;
+        }
+        open = false;
+        final List<ChannelState> states;
+        synchronized (channelLock) {
+            states = new ArrayList<>(channels.values());
+            channels.clear();
+        }
+        try {
+            listener.close();
+        } finally {
+            for (ChannelState state : states) {
+                state.cancelAll();
+            }
+        }
+    }
+
+    private final class ChannelState implements MessageHandler {
+        private final IsotpCanChannel channel;
+        private final ArrayDeque<PendingRequest> queue = new ArrayDeque<>();
+        @Nullable
+        private PendingRequest inFlight;
+
+        ChannelState(IsotpCanChannel channel) {
+            this.channel = channel;
+        }
+
+        void enqueue(PendingRequest request) {
+            synchronized (this) {
+                queue.add(request);
+                if (inFlight != null) {
+                    return;
+                }
+            }
+            sendNext();
+        }
+
+        @Override
+        public void handle(IsotpCanChannel ch, ByteBuffer buffer) {
+            final PendingRequest request;
+            synchronized (this) {
+                request = inFlight;
+                if (request == null) {
+                    LOGGER.debug("Dropping unsolicited message on channel {}", ch);
+                    return;
+                }
+                inFlight = null;
+            }
+            request.cancelTimeout();
+            ByteBuffer response = ByteBuffer.allocate(buffer.remaining());
+            response.put(buffer);
+            response.flip();
+            request.future.complete(response);
+            sendNext();
+        }
+
+        void timedOut(PendingRequest request) {
+            synchronized (this) {
+                if (inFlight != request) {
+                    return;
+                }
+                inFlight = null;
+            }
+            request.future.completeExceptionally(new TimeoutException("No response within " + request.timeout));
+            sendNext();
+        }
+
+        private void sendNext() {
+            while (true) {
+                final PendingRequest request;
+                synchronized (this) {
+                    if (inFlight != null) {
+                        return;
+                    }
+                    request = queue.poll();
+                    if (request == null) {
+                        return;
+                    }
+                    if (request.future.isDone()) {
+                        // cancelled by the caller while being queued
+                        continue;
+                    }
+                    inFlight = request;
+                    try {
+                        channel.write(request.request);
+                        request.timeoutHandle = listener.schedule(request.timeout, () -> timedOut(request));
+                        return;
+                    } catch (IOException | RuntimeException e) {
+                        inFlight = null;
+                        request.future.completeExceptionally(e);
+                    }
+                }
+            }
+        }
+
+        void cancelAll() {
+            final List<PendingRequest> requests;
+            synchronized (this) {
+                requests = new ArrayList<>(queue.size() + 1);
+                if (inFlight != null) {
+                    requests.add(inFlight);
+                    inFlight = null;
+                }
+                requests.addAll(queue);
+                queue.clear();
+            }
+            for (PendingRequest request : requests) {
+                request.cancelTimeout();
+                request.future.cancel(false);
+            }
+        }
+    }
+
+    private static final class PendingRequest {
+        private final ByteBuffer request;
+        private final Duration timeout;
+        private final CompletableFuture<ByteBuffer> future = new CompletableFuture<>();
+        private volatile TimerWheel.@Nullable Timeout timeoutHandle;
+
+        PendingRequest(ByteBuffer request, Duration timeout) {
+            this.request = request;
+            this.timeout = timeout;
+        }
+
+        void cancelTimeout() {
+            TimerWheel.Timeout handle = timeoutHandle;
+            if (handle != null) {
+                handle.cancel();
+            }
+        }
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ * The MIT License
+ * Copyright © 2018 Phillip Schichtel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package tel.schich.javacan.util;
+
+import tel.schich.javacan.BcmCanChannel;
+import tel.schich.javacan.BcmMessageReader;
+import tel.schich.javacan.platform.linux.UnixFileDescriptor;
+import tel.schich.javacan.select.IOSelector;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.ThreadFactory;
+
+import static java.time.Duration.ofMinutes;
+
+/**
+ * <p>
+ * This class implements an event driven interface over several {@link tel.schich.javacan.BcmCanChannel}s to receive
+ * the notifications of the CAN broadcast manager, like {@link tel.schich.javacan.BcmOpcode#RX_CHANGED},
+ * {@link tel.schich.javacan.BcmOpcode#RX_TIMEOUT} and {@link tel.schich.javacan.BcmOpcode#TX_EXPIRED}, with callbacks.
+ * Since the broadcast manager does the timeout monitoring of all receive filters in the kernel, a single polling
+ * thread can watch any number of CAN IDs on any number of buses.
+ * </p>
+ * <p>
+ * All messages are read into a single {@link tel.schich.javacan.BcmMessageReader} that is reused for every message,
+ * so receiving does not allocate. The content of the message is undefined after the
+ * {@link tel.schich.javacan.util.BcmMessageHandler} returns, handlers that need to keep it must copy it.
+ * </p>
+ * <p>
+ * The channels are configured to be non-blocking when added, but neither connected nor closed by this class.
+ * </p>
+ *
+ * @see tel.schich.javacan.util.AbstractBcmEventLoop
+ */
+public class BcmListener extends AbstractBcmEventLoop<BcmMessageHandler> {
+    public static final Duration DEFAULT_TIMEOUT = ofMinutes(1);
+
+    public BcmListener(ThreadFactory threadFactory, IOSelector<UnixFileDescriptor> selector) {
+        this(threadFactory, selector, DEFAULT_TIMEOUT);
+    }
+
+    public BcmListener(ThreadFactory threadFactory, IOSelector<UnixFileDescriptor> selector, Duration timeout) {
+        super("BCM", threadFactory, selector, timeout);
+    }
+
+    /**
+     * Adds the given {@link tel.schich.javacan.BcmCanChannel} together with its
+     * {@link tel.schich.javacan.util.BcmMessageHandler} to this listener.
+     *
+     * @param ch the channel to add
+     * @param handler the corresponding handler
+     * @throws IOException if native calls fail
+     */
+    public void addChannel(BcmCanChannel ch, BcmMessageHandler handler) throws IOException {
+        if (handler == null) {
+            throw new NullPointerException("handle must not be null!");
+        }
+        registerChannel(ch, handler);
+    }
+
+    /**
+     * Removes the given {@link tel.schich.javacan.BcmCanChannel} from this listener.
+     *
+     * @param ch the channel to remove
+     * @throws IOException if the underlying selector is unable to cancel the registration
+     */
+    public void removeChannel(BcmCanChannel ch) throws IOException {
+        if (unregisterChannel(ch) == null) {
+            throw new IllegalArgumentException("Channel not known!");
+        }
+    }
+
+    @Override
+    protected void handle(BcmCanChannel ch, BcmMessageHandler handler, BcmMessageReader message) {
+        handler.handle(ch, message);
+    }
+}
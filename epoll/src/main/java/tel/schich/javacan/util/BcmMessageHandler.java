@@ -0,0 +1,45 @@
+/*
+ * The MIT License
+ * Copyright © 2018 Phillip Schichtel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package tel.schich.javacan.util;
+
+import tel.schich.javacan.BcmCanChannel;
+import tel.schich.javacan.BcmMessageReader;
+
+/**
+ * BCM message handlers are called by a {@link tel.schich.javacan.util.BcmListener} for each notification received by
+ * the {@link tel.schich.javacan.BcmCanChannel} it was added with, typically
+ * {@link tel.schich.javacan.BcmOpcode#RX_CHANGED}, {@link tel.schich.javacan.BcmOpcode#RX_TIMEOUT} and
+ * {@link tel.schich.javacan.BcmOpcode#TX_EXPIRED}.
+ */
+@FunctionalInterface
+public interface BcmMessageHandler {
+    /**
+     * Handles a received message. The reader is reused for the next message, so neither the reader nor frames
+     * obtained from it may be retained after the handler returns, {@link BcmMessageReader#toMessage()} copies the
+     * message.
+     *
+     * @param ch the channel that received the message
+     * @param message the reader holding the received message
+     */
+    void handle(BcmCanChannel ch, BcmMessageReader message);
+}
@@ -22,6 +22,7 @@
  */
 package tel.schich.javacan.util;
 
+import org.eclipse.jdt.annotation.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import java.io.IOException;
@@ -29,6 +30,7 @@ import java.net.SocketOption;
 import java.nio.ByteBuffer;
 import java.nio.channels.Channel;
 import java.time.Duration;
+import java.util.Collections;
 import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -38,10 +40,12 @@ import java.util.Set;
 import java.util.concurrent.ThreadFactory;
 
 import tel.schich.javacan.CanChannels;
+import tel.schich.javacan.ChannelMetrics;
 import tel.schich.javacan.NetworkDevice;
 import tel.schich.javacan.CanFilter;
 import tel.schich.javacan.CanFrame;
 import tel.schich.javacan.RawCanChannel;
+import tel.schich.javacan.RawReceiveMessageHeaderBuffer;
 import tel.schich.javacan.platform.linux.UnixFileDescriptor;
 import tel.schich.javacan.select.IOEvent;
 import tel.schich.javacan.select.IOSelector;
@@ -50,29 +54,38 @@ import tel.schich.javacan.select.SelectorRegistration;
 import static java.time.Duration.ofMinutes;
 import static tel.schich.javacan.CanSocketOptions.FILTER;
 import static tel.schich.javacan.CanSocketOptions.LOOPBACK;
+import static tel.schich.javacan.CanSocketOptions.SO_RXQ_OVFL;
 
 /**
  * This class implements an event driven interface over several CAN interface to send and receive
  * {@link tel.schich.javacan.CanFrame}s over multiple {@link tel.schich.javacan.NetworkDevice}s. Received
  * frames are passed on to a {@link tel.schich.javacan.util.FrameHandler} for each interface.
  * Frames can be sent either to individual interfaces or all at once.
+ * Up to {@link #READ_BUDGET} frames are read from a device per readiness event, so a busy device can not starve the
+ * others.
  */
 public class CanBroker extends EventLoop<UnixFileDescriptor, RawCanChannel> {
     private static final Logger LOGGER = LoggerFactory.getLogger(CanBroker.class);
 
     public static final Duration DEFAULT_TIMEOUT = ofMinutes(1);
+    public static final int READ_BUDGET = DrainLoop.DEFAULT_BUDGET;
     private static final CanFilter[] NO_FILTERS = { CanFilter.NONE };
 
     private final ByteBuffer readBuffer = RawCanChannel.allocateSufficientMemory();
+    private final RawReceiveMessageHeaderBuffer headerBuffer = new RawReceiveMessageHeaderBuffer();
+    private final DrainLoop.Step<RawCanChannel> readFrame = this::readFrame;
 
     private final IdentityHashMap<RawCanChannel, FrameHandler> handlerMap = new IdentityHashMap<>();
     private final HashMap<NetworkDevice, RawCanChannel> channelMap = new HashMap<>();
+    private final Set<RawCanChannel> pausedChannels = Collections.newSetFromMap(new IdentityHashMap<>());
     private final Object handlerLock = new Object();
     private final Set<CanFilter> filters = new HashSet<>();
     private CanFilter[] filterArray = new CanFilter[0];
     private final Object filterLock = new Object();
 
     private volatile boolean loopback = true;
+    @Nullable
+    private volatile LatencyHistogram handlerLatency;
 
     public CanBroker(ThreadFactory threadFactory, IOSelector<UnixFileDescriptor> selector) {
         this(threadFactory, selector, DEFAULT_TIMEOUT);
@@ -217,6 +230,20 @@ public class CanBroker extends EventLoop<UnixFileDescriptor, RawCanChannel> {
      * @throws IOException if the native call fails
      */
     public void addDevice(NetworkDevice device, FrameHandler handler) throws IOException {
+        addDevice(device, handler, false);
+    }
+
+    /**
+     * Adds a new {@link tel.schich.javacan.NetworkDevice} to this broker instance together with a
+     * {@link tel.schich.javacan.util.FrameHandler} to handle incoming frames. If the device is added paused, no frames
+     * will be read until {@link #resumeDevice(tel.schich.javacan.NetworkDevice)} is called.
+     *
+     * @param device the device
+     * @param handler the handler
+     * @param paused whether the device should be added in paused state
+     * @throws IOException if the native call fails
+     */
+    public void addDevice(NetworkDevice device, FrameHandler handler, boolean paused) throws IOException {
         synchronized (handlerLock) {
             if (handler == null) {
                 throw new NullPointerException("handle must not be null!");
@@ -228,13 +255,55 @@ public class CanBroker extends EventLoop<UnixFileDescriptor, RawCanChannel> {
             ch.configureBlocking(false);
             ch.setOption(FILTER, filterArray);
             ch.setOption(LOOPBACK, loopback);
-            register(ch, EnumSet.of(SelectorRegistration.Operation.READ));
+            if (paused) {
+                register(ch, EnumSet.noneOf(SelectorRegistration.Operation.class));
+                this.pausedChannels.add(ch);
+            } else {
+                register(ch, EnumSet.of(SelectorRegistration.Operation.READ));
+            }
             this.handlerMap.put(ch, handler);
             this.channelMap.put(device, ch);
             this.start();
         }
     }
 
+    /**
+     * Attaches {@link tel.schich.javacan.ChannelMetrics} to the channel of a known
+     * {@link tel.schich.javacan.NetworkDevice}. While metrics are attached, the kernel drop counter
+     * ({@link tel.schich.javacan.CanSocketOptions#SO_RXQ_OVFL}) is enabled and frames are received together with
+     * their message headers, so that frames dropped by the kernel are counted as well.
+     *
+     * @param device the device
+     * @param metrics the metrics or null to stop collecting metrics
+     * @throws IOException if the native call fails
+     */
+    public void setMetrics(NetworkDevice device, @Nullable ChannelMetrics metrics) throws IOException {
+        synchronized (handlerLock) {
+            RawCanChannel ch = channelMap.get(device);
+            if (ch == null) {
+                throw new IllegalArgumentException("CAN device not known!");
+            }
+            ch.setOption(SO_RXQ_OVFL, metrics != null);
+            ch.setMetrics(metrics);
+        }
+    }
+
+    /**
+     * Attaches a {@link tel.schich.javacan.util.LatencyHistogram} that records how long the
+     * {@link tel.schich.javacan.util.FrameHandler}s take to handle each frame. Without a histogram, handlers are not
+     * timed at all.
+     *
+     * @param histogram the histogram or null to stop timing handlers
+     */
+    public void setHandlerLatency(@Nullable LatencyHistogram histogram) {
+        this.handlerLatency = histogram;
+    }
+
+    @Nullable
+    public LatencyHistogram getHandlerLatency() {
+        return handlerLatency;
+    }
+
     /**
      * Removes a {@link tel.schich.javacan.NetworkDevice} from this broker instance
      *
@@ -250,10 +319,155 @@ public class CanBroker extends EventLoop<UnixFileDescriptor, RawCanChannel> {
 
             ch = this.channelMap.remove(device);
             this.handlerMap.remove(ch);
+            this.pausedChannels.remove(ch);
+        }
+        cancel(ch);
+        lazyShutdown();
+        ch.close();
+    }
+
+    /**
+     * Removes a {@link tel.schich.javacan.NetworkDevice} from this broker instance, but only if it is still handled by
+     * the given handler. This allows a handler to remove its device without interfering with a handler that has been
+     * added for the same device in the meantime.
+     *
+     * @param device the device to remove
+     * @param handler the handler the device has been added with
+     * @return true if the device has been removed
+     * @throws IOException if the native call fails
+     */
+    boolean removeDevice(NetworkDevice device, FrameHandler handler) throws IOException {
+        final RawCanChannel ch;
+        synchronized (handlerLock) {
+            ch = this.channelMap.get(device);
+            if (ch == null || this.handlerMap.get(ch) != handler) {
+                return false;
+            }
+            this.channelMap.remove(device);
+            this.handlerMap.remove(ch);
+            this.pausedChannels.remove(ch);
         }
         cancel(ch);
         lazyShutdown();
         ch.close();
+        return true;
+    }
+
+    /**
+     * <p>
+     * Stops reading frames from the given {@link tel.schich.javacan.NetworkDevice} until it is resumed. While paused,
+     * incoming frames are queued up in the socket's receive buffer in the kernel and will be dropped by the kernel
+     * once it is full.
+     * </p>
+     * <p>
+     * This can be used to apply backpressure from the {@link tel.schich.javacan.util.FrameHandler}, it is safe to be
+     * called from within the handler.
+     * </p>
+     *
+     * @param device the device to pause
+     * @throws IOException if the native call fails
+     */
+    public void pauseDevice(NetworkDevice device) throws IOException {
+        synchronized (handlerLock) {
+            RawCanChannel ch = getChannel(device);
+            if (pausedChannels.add(ch)) {
+                updateRegistration(ch, EnumSet.noneOf(SelectorRegistration.Operation.class));
+            }
+        }
+    }
+
+    /**
+     * Resumes reading frames from a {@link tel.schich.javacan.NetworkDevice} that has been paused before.
+     *
+     * @param device the device to resume
+     * @throws IOException if the native call fails
+     */
+    public void resumeDevice(NetworkDevice device) throws IOException {
+        synchronized (handlerLock) {
+            RawCanChannel ch = getChannel(device);
+            if (pausedChannels.remove(ch)) {
+                updateRegistration(ch, EnumSet.of(SelectorRegistration.Operation.READ));
+            }
+        }
+    }
+
+    /**
+     * Pauses the given {@link tel.schich.javacan.NetworkDevice} like {@link #pauseDevice(NetworkDevice)}, but only if
+     * it is still handled by the given handler.
+     *
+     * @param device the device to pause
+     * @param handler the handler the device has been added with
+     * @throws IOException if the native call fails
+     */
+    void pauseDevice(NetworkDevice device, FrameHandler handler) throws IOException {
+        synchronized (handlerLock) {
+            RawCanChannel ch = channelMap.get(device);
+            if (ch != null && handlerMap.get(ch) == handler && pausedChannels.add(ch)) {
+                updateRegistration(ch, EnumSet.noneOf(SelectorRegistration.Operation.class));
+            }
+        }
+    }
+
+    /**
+     * Resumes the given {@link tel.schich.javacan.NetworkDevice} like {@link #resumeDevice(NetworkDevice)}, but only
+     * if it is still handled by the given handler.
+     *
+     * @param device the device to resume
+     * @param handler the handler the device has been added with
+     * @throws IOException if the native call fails
+     */
+    void resumeDevice(NetworkDevice device, FrameHandler handler) throws IOException {
+        synchronized (handlerLock) {
+            RawCanChannel ch = channelMap.get(device);
+            if (ch != null && handlerMap.get(ch) == handler && pausedChannels.remove(ch)) {
+                updateRegistration(ch, EnumSet.of(SelectorRegistration.Operation.READ));
+            }
+        }
+    }
+
+    /**
+     * Checks if the given {@link tel.schich.javacan.NetworkDevice} is currently paused.
+     *
+     * @param device the device
+     * @return true if the device is paused
+     */
+    public boolean isPaused(NetworkDevice device) {
+        synchronized (handlerLock) {
+            return pausedChannels.contains(getChannel(device));
+        }
+    }
+
+    private RawCanChannel getChannel(NetworkDevice device) {
+        RawCanChannel ch = channelMap.get(device);
+        if (ch == null) {
+            throw new IllegalArgumentException("Device not known!");
+        }
+        return ch;
+    }
+
+    /**
+     * Looks up the channel of the given {@link tel.schich.javacan.NetworkDevice}. This is intended for subclasses
+     * that send from within {@link tel.schich.javacan.util.FrameHandler}s or {@link #afterEvents()}, where the
+     * device set can not change concurrently.
+     *
+     * @param device the device
+     * @return the channel or null if the device is not known
+     */
+    @Nullable
+    protected RawCanChannel findChannel(NetworkDevice device) {
+        synchronized (handlerLock) {
+            return channelMap.get(device);
+        }
+    }
+
+    /**
+     * Called on the poller thread after all events of a poll have been handled, before the next poll. Subclasses
+     * can use this to flush output that has been collected by their handlers. The default implementation does
+     * nothing.
+     *
+     * @throws IOException if flushing fails
+     */
+    protected void afterEvents() throws IOException {
     }
 
     public boolean isEmpty() {
@@ -270,9 +484,12 @@ public class CanBroker extends EventLoop<UnixFileDescriptor, RawCanChannel> {
                 if (ch instanceof RawCanChannel) {
                     RawCanChannel raw = (RawCanChannel) ch;
                     FrameHandler handler = handlerMap.get(ch);
+                    if (pausedChannels.contains(raw)) {
+                        // paused after the event has been selected, leave the frame in the kernel buffer
+                        continue;
+                    }
                     if (handler != null) {
-                        readBuffer.clear();
-                        handler.handle(raw, raw.read(readBuffer));
+                        DrainLoop.drain(raw, READ_BUDGET, readFrame);
                     } else {
                         LOGGER.warn("Handler not found for channel: {}", ch);
                     }
@@ -280,7 +497,36 @@ public class CanBroker extends EventLoop<UnixFileDescriptor, RawCanChannel> {
                     LOGGER.warn("Unsupported channel: {}", ch);
                 }
             }
+            afterEvents();
+        }
+    }
+
+    private boolean readFrame(RawCanChannel ch) throws IOException {
+        FrameHandler handler = handlerMap.get(ch);
+        if (handler == null) {
+            return false;
+        }
+        readBuffer.clear();
+        final long bytesRead;
+        if (ch.getMetrics() != null) {
+            bytesRead = ch.tryReceiveUnsafe(readBuffer, headerBuffer);
+        } else {
+            bytesRead = ch.tryReadUnsafe(readBuffer);
+        }
+        if (bytesRead < 0) {
+            return false;
+        }
+        CanFrame frame = CanFrame.create(readBuffer);
+        LatencyHistogram latency = handlerLatency;
+        if (latency != null) {
+            long start = System.nanoTime();
+            handler.handle(ch, frame);
+            latency.record(System.nanoTime() - start);
+        } else {
+            handler.handle(ch, frame);
         }
+        // the handler might have paused or removed the device
+        return !pausedChannels.contains(ch) && handlerMap.get(ch) == handler;
     }
 
     @Override
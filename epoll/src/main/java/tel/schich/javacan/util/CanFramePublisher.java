@@ -0,0 +1,247 @@
+/*
+ * The MIT License
+ * Copyright © 2018 Phillip Schichtel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package tel.schich.javacan.util;
+
+import org.eclipse.jdt.annotation.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import tel.schich.javacan.CanFrame;
+import tel.schich.javacan.NetworkDevice;
+import tel.schich.javacan.RawCanChannel;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <p>
+ * This class publishes the {@link tel.schich.javacan.CanFrame}s received from a single
+ * {@link tel.schich.javacan.NetworkDevice} of a {@link tel.schich.javacan.util.CanBroker} to a single
+ * {@link tel.schich.javacan.util.FrameSubscriber} while honouring the subscriber's demand.
+ * </p>
+ * <p>
+ * Backpressure is applied by pausing the device in the broker whenever the demand is exhausted, which removes the
+ * READ interest from the selector. Frames then pile up in the kernel's socket receive buffer (see
+ * {@link java.net.StandardSocketOptions#SO_RCVBUF}) instead of the JVM heap, and the kernel drops frames once that
+ * buffer is full.
+ * </p>
+ * <p>
+ * Frames are delivered on the polling thread of the broker, so {@link FrameSubscriber#onNext(CanFrame)} should not
+ * block.
+ * </p>
+ */
+public class CanFramePublisher implements Closeable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(CanFramePublisher.class);
+
+    private final CanBroker broker;
+    private final NetworkDevice device;
+    private final AtomicBoolean subscribed = new AtomicBoolean(false);
+    @Nullable
+    private volatile Subscription subscription;
+
+    public CanFramePublisher(CanBroker broker, NetworkDevice device) {
+        this.broker = broker;
+        this.device = device;
+    }
+
+    /**
+     * Subscribes the given subscriber to this publisher. Only a single subscriber is supported at a time, further
+     * subscribers are immediately signalled an {@link java.lang.IllegalStateException}. Once the subscription has been
+     * cancelled, completed or failed, the publisher accepts a new subscriber. The device will be added to the broker
+     * paused, so no frames are read before the subscriber requested some.
+     *
+     * @param subscriber the subscriber
+     */
+    public void subscribe(FrameSubscriber subscriber) {
+        if (!subscribed.compareAndSet(false, true)) {
+            subscriber.onSubscribe(NoopSubscription.INSTANCE);
+            subscriber.onError(new IllegalStateException("Publisher already has a subscriber!"));
+            return;
+        }
+        Subscription s = new Subscription(subscriber);
+        this.subscription = s;
+        subscriber.onSubscribe(s);
+        if (s.cancelled.get()) {
+            s.release();
+            return;
+        }
+        try {
+            broker.addDevice(device, s, true);
+        } catch (IOException | RuntimeException e) {
+            s.terminate(e);
+            s.release();
+            return;
+        }
+        s.added = true;
+        // a cancellation that did not see the device added leaves the release to us
+        if (s.cancelled.get()) {
+            s.release();
+            return;
+        }
+        if (s.demand.get() > 0) {
+            s.resume();
+        }
+    }
+
+    /**
+     * Closes this publisher by removing the device from the broker and signalling completion to the subscriber.
+     * The broker itself will not be closed.
+     */
+    @Override
+    public void close() {
+        Subscription s = this.subscription;
+        if (s != null) {
+            s.terminate(null);
+        }
+    }
+
+    private final class Subscription implements FrameSubscription, FrameHandler {
+        private final FrameSubscriber subscriber;
+        private final AtomicLong demand = new AtomicLong(0);
+        private final AtomicBoolean cancelled = new AtomicBoolean(false);
+        private final AtomicBoolean released = new AtomicBoolean(false);
+        private volatile boolean added = false;
+
+        Subscription(FrameSubscriber subscriber) {
+            this.subscriber = subscriber;
+        }
+
+        @Override
+        public void request(long n) {
+            if (cancelled.get()) {
+                return;
+            }
+            if (n <= 0) {
+                terminate(new IllegalArgumentException("Requested demand must be positive, got " + n));
+                return;
+            }
+            long previous = demand.getAndAccumulate(n, CanFramePublisher::addCapped);
+            if (previous == 0 && added) {
+                resume();
+            }
+        }
+
+        @Override
+        public void cancel() {
+            if (cancelled.compareAndSet(false, true) && added) {
+                release();
+            }
+        }
+
+        @Override
+        public void handle(RawCanChannel ch, CanFrame frame) {
+            if (cancelled.get()) {
+                return;
+            }
+            try {
+                subscriber.onNext(frame);
+            } catch (Throwable t) {
+                LOGGER.warn("Subscriber failed to handle a frame, cancelling the subscription.", t);
+                cancel();
+                return;
+            }
+            long current = demand.get();
+            if (current != Long.MAX_VALUE && demand.decrementAndGet() == 0) {
+                pause();
+                // demand might have been added between the decrement and the pause
+                if (demand.get() > 0) {
+                    resume();
+                }
+            }
+        }
+
+        void resume() {
+            try {
+                broker.resumeDevice(device, this);
+            } catch (IOException e) {
+                handleDeviceFailure(e);
+            }
+        }
+
+        void pause() {
+            try {
+                broker.pauseDevice(device, this);
+            } catch (IOException e) {
+                handleDeviceFailure(e);
+            }
+        }
+
+        private void handleDeviceFailure(Exception e) {
+            // the device has been removed in the meantime if the subscription has been cancelled
+            if (!cancelled.get()) {
+                terminate(e);
+            }
+        }
+
+        void terminate(@Nullable Throwable error) {
+            if (!cancelled.compareAndSet(false, true)) {
+                return;
+            }
+            if (added) {
+                release();
+            }
+            if (error == null) {
+                subscriber.onComplete();
+            } else {
+                subscriber.onError(error);
+            }
+        }
+
+        /**
+         * Removes the device from the broker, unless it already belongs to another subscription, and allows the next
+         * subscriber to subscribe. Only the first call has an effect.
+         */
+        void release() {
+            if (!released.compareAndSet(false, true)) {
+                return;
+            }
+            try {
+                broker.removeDevice(device, this);
+            } catch (IOException e) {
+                LOGGER.warn("Failed to remove device {} from the broker.", device, e);
+            }
+            if (subscription == this) {
+                subscription = null;
+            }
+            subscribed.set(false);
+        }
+    }
+
+    private static long addCapped(long a, long b) {
+        long sum = a + b;
+        return sum < 0 ? Long.MAX_VALUE : sum;
+    }
+
+    private static final class NoopSubscription implements FrameSubscription {
+        static final NoopSubscription INSTANCE = new NoopSubscription();
+
+        @Override
+        public void request(long n) {
+        }
+
+        @Override
+        public void cancel() {
+        }
+    }
+}
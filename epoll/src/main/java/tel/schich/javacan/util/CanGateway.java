@@ -0,0 +1,415 @@
+/*
+ * The MIT License
+ * Copyright © 2018 Phillip Schichtel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package tel.schich.javacan.util;
+
+import org.eclipse.jdt.annotation.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import tel.schich.javacan.CanFilter;
+import tel.schich.javacan.CanFrame;
+import tel.schich.javacan.JavaCAN;
+import tel.schich.javacan.NetworkDevice;
+import tel.schich.javacan.RawCanChannel;
+import tel.schich.javacan.platform.linux.LinuxNativeOperationException;
+import tel.schich.javacan.platform.linux.UnixFileDescriptor;
+import tel.schich.javacan.select.IOSelector;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static tel.schich.javacan.CanId.ERR_FLAG;
+
+/**
+ * <p>
+ * This class forwards {@link tel.schich.javacan.CanFrame}s between the devices of a
+ * {@link tel.schich.javacan.util.CanBroker} according to {@link tel.schich.javacan.util.GatewayRoute}s.
+ * </p>
+ * <p>
+ * The routes of each source device are compiled into a dispatch table whenever they change: routes with an exact
+ * filter are looked up by CAN ID in a hash table, only routes with a masked or inverted filter are matched one by
+ * one. Forwarded frames are copied straight from the read buffer into a send batch of the destination device, where
+ * the modifications of the route are applied. The batches are written with a single system call per destination
+ * after all frames of a poll have been handled, or once a batch is full. No objects are allocated per forwarded
+ * frame.
+ * </p>
+ * <p>
+ * Like a hardware gateway, this class does not apply backpressure: frames that do not fit into the transmit queue of
+ * the destination device are dropped and counted, see {@link #getDroppedFrames()}. The devices should have loopback
+ * disabled or filters set, otherwise frames sent by the gateway are received by other sockets on the same host,
+ * which is harmless for the gateway itself since a socket does not receive its own frames.
+ * </p>
+ */
+public class CanGateway extends CanBroker {
+    private static final Logger LOGGER = LoggerFactory.getLogger(CanGateway.class);
+
+    /**
+     * The maximum number of frames per destination that are written with a single system call.
+     */
+    public static final int BATCH_SIZE = READ_BUDGET;
+
+    private static final FrameHandler NO_HANDLER = (ch, frame) -> {};
+
+    private final Map<GatewayRoute, CompiledRoute> routes = new LinkedHashMap<>();
+    private final Map<NetworkDevice, Source> sources = new HashMap<>();
+    private final Map<NetworkDevice, Output> outputs = new HashMap<>();
+    private final Object routeLock = new Object();
+
+    // only accessed from the poller thread
+    private final List<Output> pendingOutputs = new ArrayList<>();
+
+    private final AtomicLong forwardedFrames = new AtomicLong(0);
+    private final AtomicLong droppedFrames = new AtomicLong(0);
+
+    public CanGateway(ThreadFactory threadFactory, IOSelector<UnixFileDescriptor> selector) {
+        this(threadFactory, selector, DEFAULT_TIMEOUT);
+    }
+
+    public CanGateway(ThreadFactory threadFactory, IOSelector<UnixFileDescriptor> selector, Duration timeout) {
+        super(threadFactory, selector, timeout);
+    }
+
+    /**
+     * Adds a new {@link tel.schich.javacan.NetworkDevice} to this gateway that only takes part in routing.
+     *
+     * @param device the device
+     * @throws IOException if the native call fails
+     */
+    public void addDevice(NetworkDevice device) throws IOException {
+        addDevice(device, NO_HANDLER);
+    }
+
+    /**
+     * Adds a new {@link tel.schich.javacan.NetworkDevice} to this gateway. Received frames are routed first and then
+     * passed on to the given handler, so the handler may modify the read buffer.
+     *
+     * @param device the device
+     * @param handler the handler
+     * @param paused whether the device should be added in paused state
+     * @throws IOException if the native call fails
+     */
+    @Override
+    public void addDevice(NetworkDevice device, FrameHandler handler, boolean paused) throws IOException {
+        final Source source;
+        synchronized (routeLock) {
+            source = getSource(device);
+        }
+        super.addDevice(device, new RoutingHandler(source, handler), paused);
+    }
+
+    /**
+     * Adds a route. The devices of the route do not have to be added yet, frames are forwarded as soon as both are.
+     *
+     * @param route the route
+     * @return true if the route was not known yet
+     */
+    public boolean addRoute(GatewayRoute route) {
+        synchronized (routeLock) {
+            if (routes.containsKey(route)) {
+                return false;
+            }
+            Output output = outputs.get(route.getDestination());
+            if (output == null) {
+                output = new Output(route.getDestination());
+                outputs.put(route.getDestination(), output);
+            }
+            routes.put(route, new CompiledRoute(route, output));
+            compile(route.getSource());
+            return true;
+        }
+    }
+
+    /**
+     * Removes a route.
+     *
+     * @param route the route
+     * @return true if the route was known
+     */
+    public boolean removeRoute(GatewayRoute route) {
+        synchronized (routeLock) {
+            if (routes.remove(route) == null) {
+                return false;
+            }
+            compile(route.getSource());
+            return true;
+        }
+    }
+
+    /**
+     * Removes all routes.
+     */
+    public void clearRoutes() {
+        synchronized (routeLock) {
+            routes.clear();
+            for (Source source : sources.values()) {
+                source.table = RouteTable.EMPTY;
+            }
+        }
+    }
+
+    /**
+     * Returns the currently known routes.
+     *
+     * @return a copy of the routes
+     */
+    public List<GatewayRoute> getRoutes() {
+        synchronized (routeLock) {
+            return new ArrayList<>(routes.keySet());
+        }
+    }
+
+    /**
+     * Returns the number of frames that have been sent on destination devices.
+     *
+     * @return the number of forwarded frames
+     */
+    public long getForwardedFrames() {
+        return forwardedFrames.get();
+    }
+
+    /**
+     * Returns the number of frames that have been dropped because the transmit queue of the destination device was
+     * full or the destination device has not been added. Frames dropped by rate limiting are not counted.
+     *
+     * @return the number of dropped frames
+     */
+    public long getDroppedFrames() {
+        return droppedFrames.get();
+    }
+
+    private Source getSource(NetworkDevice device) {
+        Source source = sources.get(device);
+        if (source == null) {
+            source = new Source();
+            sources.put(device, source);
+        }
+        return source;
+    }
+
+    private void compile(NetworkDevice device) {
+        List<CompiledRoute> sourceRoutes = new ArrayList<>();
+        for (CompiledRoute route : routes.values()) {
+            if (route.route.getSource().equals(device)) {
+                sourceRoutes.add(route);
+            }
+        }
+        getSource(device).table = sourceRoutes.isEmpty() ? RouteTable.EMPTY : new RouteTable(sourceRoutes);
+    }
+
+    private void route(Source source, CanFrame frame) {
+        RouteTable table = source.table;
+        int id = frame.getRawId();
+        CompiledRoute[] exact = table.lookup(id & ~ERR_FLAG);
+        if (exact != null) {
+            for (CompiledRoute route : exact) {
+                forward(route, frame);
+            }
+        }
+        for (CompiledRoute route : table.masked) {
+            if (route.matches(id)) {
+                forward(route, frame);
+            }
+        }
+    }
+
+    private void forward(CompiledRoute route, CanFrame frame) {
+        if (route.minIntervalNanos > 0) {
+            long now = System.nanoTime();
+            if (route.forwarded && now - route.lastForwarded < route.minIntervalNanos) {
+                return;
+            }
+            route.forwarded = true;
+            route.lastForwarded = now;
+        }
+        Output output = route.output;
+        if (output.count == BATCH_SIZE) {
+            flush(output);
+        } else if (output.count == 0) {
+            pendingOutputs.add(output);
+        }
+        int offset = output.offsets[output.count];
+        ByteBuffer buffer = output.buffer;
+        buffer.clear().position(offset);
+        buffer.put(frame.getBuffer());
+        output.lengths[output.count++] = frame.getSize();
+        route.apply(buffer, offset);
+    }
+
+    @Override
+    protected void afterEvents() {
+        for (Output output : pendingOutputs) {
+            flush(output);
+        }
+        pendingOutputs.clear();
+    }
+
+    private void flush(Output output) {
+        int count = output.count;
+        if (count == 0) {
+            return;
+        }
+        output.count = 0;
+        RawCanChannel ch = findChannel(output.device);
+        int written = 0;
+        if (ch != null) {
+            try {
+                written = ch.writeBatchUnsafe(output.buffer, output.offsets, output.lengths, count);
+            } catch (LinuxNativeOperationException e) {
+                if (!e.mayTryAgain() && e.getErrorNumber() != LinuxNativeOperationException.ENOBUFS) {
+                    LOGGER.warn("Failed to forward frames to {}", output.device, e);
+                }
+            } catch (IOException e) {
+                LOGGER.warn("Failed to forward frames to {}", output.device, e);
+            }
+        }
+        forwardedFrames.addAndGet(written);
+        if (written < count) {
+            droppedFrames.addAndGet(count - written);
+        }
+    }
+
+    private final class RoutingHandler implements FrameHandler {
+        private final Source source;
+        private final FrameHandler handler;
+
+        RoutingHandler(Source source, FrameHandler handler) {
+            this.source = source;
+            this.handler = handler;
+        }
+
+        @Override
+        public void handle(RawCanChannel ch, CanFrame frame) {
+            route(source, frame);
+            handler.handle(ch, frame);
+        }
+    }
+
+    private static final class Source {
+        volatile RouteTable table = RouteTable.EMPTY;
+    }
+
+    private static final class Output {
+        final NetworkDevice device;
+        final ByteBuffer buffer = JavaCAN.allocateOrdered(BATCH_SIZE * RawCanChannel.FD_MTU);
+        final int[] offsets = new int[BATCH_SIZE];
+        final int[] lengths = new int[BATCH_SIZE];
+        int count = 0;
+
+        Output(NetworkDevice device) {
+            this.device = device;
+            for (int i = 0; i < BATCH_SIZE; i++) {
+                offsets[i] = i * RawCanChannel.FD_MTU;
+            }
+        }
+    }
+
+    private static final class CompiledRoute {
+        private static final int OFFSET_DATA_LENGTH = 4;
+        private static final int OFFSET_DATA = 8;
+
+        final GatewayRoute route;
+        final Output output;
+        final int filterId;
+        final int filterMask;
+        final boolean inverted;
+        final boolean exact;
+        final boolean rewriteId;
+        final int id;
+        final byte[] and;
+        final byte[] or;
+        final byte[] xor;
+        final long minIntervalNanos;
+        // rate limiting state, only accessed from the poller thread
+        boolean forwarded = false;
+        long lastForwarded = 0;
+
+        CompiledRoute(GatewayRoute route, Output output) {
+            this.route = route;
+            this.output = output;
+            CanFilter filter = route.getFilter();
+            this.filterId = filter.getId();
+            this.filterMask = filter.getMask();
+            this.inverted = filter.isInverted();
+            this.exact = !inverted && (filterMask | ERR_FLAG) == -1;
+            this.rewriteId = route.isRewritingId();
+            this.id = route.getId();
+            byte[][] masks = route.toDataMasks();
+            this.and = masks[0];
+            this.or = masks[1];
+            this.xor = masks[2];
+            Duration minInterval = route.getMinInterval();
+            this.minIntervalNanos = minInterval == null ? 0 : minInterval.toNanos();
+        }
+
+        boolean matches(int id) {
+            return ((filterId & filterMask) == (id & filterMask)) != inverted;
+        }
+
+        void apply(ByteBuffer buffer, int offset) {
+            if (rewriteId) {
+                buffer.putInt(offset, id);
+            }
+            int length = Math.min(and.length, buffer.get(offset + OFFSET_DATA_LENGTH) & 0xFF);
+            int data = offset + OFFSET_DATA;
+            for (int i = 0; i < length; i++) {
+                buffer.put(data + i, (byte) (((buffer.get(data + i) & and[i]) | or[i]) ^ xor[i]));
+            }
+        }
+    }
+
+    private static final class RouteTable {
+        static final RouteTable EMPTY = new RouteTable(new ArrayList<>());
+
+        private final IntHashTable<CompiledRoute[]> exact;
+        final CompiledRoute[] masked;
+
+        RouteTable(List<CompiledRoute> routes) {
+            Map<Integer, List<CompiledRoute>> byId = new LinkedHashMap<>();
+            List<CompiledRoute> masked = new ArrayList<>();
+            for (CompiledRoute route : routes) {
+                if (route.exact) {
+                    byId.computeIfAbsent(route.filterId & ~ERR_FLAG, k -> new ArrayList<>()).add(route);
+                } else {
+                    masked.add(route);
+                }
+            }
+            this.exact = new IntHashTable<>(byId.size());
+            for (Map.Entry<Integer, List<CompiledRoute>> entry : byId.entrySet()) {
+                this.exact.put(entry.getKey(), entry.getValue().toArray(new CompiledRoute[0]));
+            }
+            this.masked = masked.toArray(new CompiledRoute[0]);
+        }
+
+        @Nullable
+        CompiledRoute[] lookup(int key) {
+            return exact.get(key);
+        }
+    }
+}
@@ -0,0 +1,206 @@
+/*
+ * The MIT License
+ * Copyright © 2018 Phillip Schichtel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package tel.schich.javacan.util;
+
+import org.eclipse.jdt.annotation.Nullable;
+import tel.schich.javacan.BcmCanChannel;
+import tel.schich.javacan.BcmFlag;
+import tel.schich.javacan.BcmMessage;
+import tel.schich.javacan.BcmOpcode;
+import tel.schich.javacan.CanFrame;
+
+import java.time.Duration;
+import java.util.Arrays;
+
+/**
+ * <p>
+ * A ChangeFilter describes a receive filter of the CAN broadcast manager that is installed by a
+ * {@link tel.schich.javacan.util.ChangeMonitor}. The kernel compares every received frame of the CAN ID against the
+ * last received frame and only reports it if one of the bits selected by the mask changed, so cyclic frames with
+ * unchanged signals never reach user space.
+ * </p>
+ * <p>
+ * Instances are immutable, the {@code with*} methods return modified copies.
+ * </p>
+ *
+ * @see <a href="https://www.kernel.org/doc/html/latest/networking/can.html#broadcast-manager-receive-filter-timers">
+ *     Kernel CAN documentation: BCM receive filter timers</a>
+ */
+public final class ChangeFilter {
+    /**
+     * The maximum number of mask frames of a single filter, including the multiplexer mask.
+     */
+    public static final int MAX_MASKS = BcmCanChannel.MAX_FRAMES_PER_MESSAGE;
+
+    private static final byte[][] NO_MASKS = new byte[0][];
+
+    private final int canId;
+    private final byte[][] masks;
+    @Nullable
+    private final Duration throttle;
+    private final boolean checkDlc;
+
+    private ChangeFilter(int canId, byte[][] masks, @Nullable Duration throttle, boolean checkDlc) {
+        this.canId = canId;
+        this.masks = masks;
+        this.throttle = throttle;
+        this.checkDlc = checkDlc;
+    }
+
+    /**
+     * Creates a filter that reports every frame of the given CAN ID ({@link tel.schich.javacan.BcmFlag#RX_FILTER_ID}).
+     * This is only useful in combination with {@link #withThrottle(Duration)}.
+     *
+     * @param canId the CAN ID, including {@link tel.schich.javacan.CanId#EFF_FLAG} for extended IDs
+     * @return the filter
+     */
+    public static ChangeFilter ofId(int canId) {
+        return new ChangeFilter(canId, NO_MASKS, null, false);
+    }
+
+    /**
+     * Creates a filter that reports frames of the given CAN ID in which any of the bits set in the mask changed.
+     * Masks longer than {@link tel.schich.javacan.CanFrame#MAX_DATA_LENGTH} bytes apply to FD frames.
+     *
+     * @param canId the CAN ID, including {@link tel.schich.javacan.CanId#EFF_FLAG} for extended IDs
+     * @param mask the bits of the payload that are relevant
+     * @return the filter
+     */
+    public static ChangeFilter ofMask(int canId, byte[] mask) {
+        checkMaskLength(mask);
+        return new ChangeFilter(canId, new byte[][] { mask.clone() }, null, false);
+    }
+
+    /**
+     * Creates a filter for a multiplexed message. The kernel selects the relevant mask by comparing the bits selected
+     * by {@code multiplexMask} of the received frame with the same bits of each of the {@code masks}, so each mask has
+     * to contain the multiplexer value it applies to in addition to the signal bits.
+     *
+     * @param canId the CAN ID, including {@link tel.schich.javacan.CanId#EFF_FLAG} for extended IDs
+     * @param multiplexMask the bits of the payload that contain the multiplexer
+     * @param masks the signal masks per multiplexer value
+     * @return the filter
+     */
+    public static ChangeFilter ofMultiplexed(int canId, byte[] multiplexMask, byte[]... masks) {
+        if (masks.length == 0) {
+            throw new IllegalArgumentException("At least one mask is required for a multiplexed filter!");
+        }
+        if (masks.length + 1 > MAX_MASKS) {
+            throw new IllegalArgumentException("At most " + (MAX_MASKS - 1) + " multiplexed masks are supported!");
+        }
+        byte[][] copy = new byte[masks.length + 1][];
+        checkMaskLength(multiplexMask);
+        copy[0] = multiplexMask.clone();
+        for (int i = 0; i < masks.length; i++) {
+            checkMaskLength(masks[i]);
+            copy[i + 1] = masks[i].clone();
+        }
+        return new ChangeFilter(canId, copy, null, false);
+    }
+
+    private static void checkMaskLength(byte[] mask) {
+        if (mask.length > CanFrame.MAX_FD_DATA_LENGTH) {
+            throw new IllegalArgumentException("A mask must not be longer than " + CanFrame.MAX_FD_DATA_LENGTH + " bytes!");
+        }
+    }
+
+    /**
+     * Returns a copy of this filter that lets the kernel report changes at most once per interval
+     * ({@code ival2} of {@link tel.schich.javacan.BcmOpcode#RX_SETUP}). Changes within the interval are merged, only
+     * the last state is reported.
+     *
+     * @param throttle the minimum time between two reports, or {@code null} to disable throttling
+     * @return the modified filter
+     */
+    public ChangeFilter withThrottle(@Nullable Duration throttle) {
+        if (throttle != null && (throttle.isNegative() || throttle.isZero())) {
+            throttle = null;
+        }
+        return new ChangeFilter(canId, masks, throttle, checkDlc);
+    }
+
+    /**
+     * Returns a copy of this filter that also reports changes of the data length
+     * ({@link tel.schich.javacan.BcmFlag#RX_CHECK_DLC}).
+     *
+     * @param checkDlc whether changes of the data length should be reported
+     * @return the modified filter
+     */
+    public ChangeFilter withDlcCheck(boolean checkDlc) {
+        return new ChangeFilter(canId, masks, throttle, checkDlc);
+    }
+
+    public int getCanId() {
+        return canId;
+    }
+
+    @Nullable
+    public Duration getThrottle() {
+        return throttle;
+    }
+
+    /**
+     * Creates the {@link tel.schich.javacan.BcmOpcode#RX_SETUP} message that installs this filter.
+     *
+     * @return the message
+     */
+    BcmMessage toSetupMessage() {
+        BcmMessage.Builder builder = BcmMessage.builder(BcmOpcode.RX_SETUP).canId(canId);
+        if (masks.length == 0) {
+            builder.flag(BcmFlag.RX_FILTER_ID);
+        }
+        if (checkDlc) {
+            builder.flag(BcmFlag.RX_CHECK_DLC);
+        }
+        if (throttle != null) {
+            builder.flag(BcmFlag.SETTIMER).interval2(throttle);
+        }
+        for (byte[] mask : masks) {
+            builder.frame(CanFrame.createRaw(canId, CanFrame.FD_NO_FLAGS, mask, 0, mask.length));
+        }
+        return builder.build();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof ChangeFilter)) return false;
+        ChangeFilter that = (ChangeFilter) o;
+        return canId == that.canId && checkDlc == that.checkDlc && Arrays.deepEquals(masks, that.masks)
+                && (throttle == null ? that.throttle == null : throttle.equals(that.throttle));
+    }
+
+    @Override
+    public int hashCode() {
+        int result = canId;
+        result = 31 * result + Arrays.deepHashCode(masks);
+        result = 31 * result + (throttle == null ? 0 : throttle.hashCode());
+        result = 31 * result + (checkDlc ? 1 : 0);
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return "ChangeFilter(canId=" + Integer.toHexString(canId) + ", masks=" + masks.length + ", throttle=" + throttle + ", checkDlc=" + checkDlc + ")";
+    }
+}
@@ -0,0 +1,293 @@
+/*
+ * The MIT License
+ * Copyright © 2018 Phillip Schichtel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package tel.schich.javacan.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import tel.schich.javacan.BcmCanChannel;
+import tel.schich.javacan.BcmMessage;
+import tel.schich.javacan.BcmMessageReader;
+import tel.schich.javacan.BcmOpcode;
+import tel.schich.javacan.CanChannels;
+import tel.schich.javacan.CanFrame;
+import tel.schich.javacan.JavaCAN;
+import tel.schich.javacan.NetworkDevice;
+import tel.schich.javacan.platform.linux.UnixFileDescriptor;
+import tel.schich.javacan.select.IOSelector;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadFactory;
+
+import static java.time.Duration.ofMinutes;
+
+/**
+ * <p>
+ * This class implements an event driven change detection over several CAN interfaces based on the receive filters of
+ * the CAN broadcast manager. For every device a single {@link tel.schich.javacan.BcmCanChannel} is opened on which
+ * {@link tel.schich.javacan.util.ChangeFilter}s are installed as {@link tel.schich.javacan.BcmOpcode#RX_SETUP}
+ * operations.
+ * </p>
+ * <p>
+ * The kernel compares received frames against the previously received content and only passes
+ * {@link tel.schich.javacan.BcmOpcode#RX_CHANGED} notifications to user space, so cyclic frames with unchanged signals
+ * cause no wakeups at all. The notifications are delivered to a {@link ChangeListener} per device on the polling
+ * thread.
+ * </p>
+ *
+ * @see tel.schich.javacan.util.AbstractBcmEventLoop
+ */
+public class ChangeMonitor extends AbstractBcmEventLoop<ChangeMonitor.Bus> {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ChangeMonitor.class);
+
+    public static final Duration DEFAULT_TIMEOUT = ofMinutes(1);
+
+    private final Map<NetworkDevice, Bus> buses = new HashMap<>();
+
+    public ChangeMonitor(ThreadFactory threadFactory, IOSelector<UnixFileDescriptor> selector) {
+        this(threadFactory, selector, DEFAULT_TIMEOUT);
+    }
+
+    public ChangeMonitor(ThreadFactory threadFactory, IOSelector<UnixFileDescriptor> selector, Duration timeout) {
+        super("change-monitor", threadFactory, selector, timeout);
+    }
+
+    /**
+     * Adds a new {@link tel.schich.javacan.NetworkDevice} to this monitor together with a {@link ChangeListener} that
+     * is notified about the changes detected by the filters installed for the device.
+     *
+     * @param device the device
+     * @param listener the listener
+     * @throws IOException if the native call fails
+     */
+    public void addDevice(NetworkDevice device, ChangeListener listener) throws IOException {
+        synchronized (lock) {
+            if (listener == null) {
+                throw new NullPointerException("listener must not be null!");
+            }
+            if (buses.containsKey(device)) {
+                throw new IllegalArgumentException("Device already added!");
+            }
+            BcmCanChannel ch = CanChannels.newBcmChannel(device);
+            Bus bus = new Bus(device, ch, listener);
+            try {
+                registerChannel(ch, bus);
+            } catch (IOException e) {
+                try {
+                    ch.close();
+                } catch (IOException ce) {
+                    e.addSuppressed(ce);
+                }
+                throw e;
+            }
+            buses.put(device, bus);
+        }
+    }
+
+    /**
+     * Removes a {@link tel.schich.javacan.NetworkDevice} from this monitor. Closing the channel removes all filters of
+     * the device from the kernel.
+     *
+     * @param device the device to remove
+     * @throws IOException if the native call fails
+     */
+    public void removeDevice(NetworkDevice device) throws IOException {
+        final Bus bus;
+        synchronized (lock) {
+            bus = getBus(device);
+            buses.remove(device);
+        }
+        unregisterChannel(bus.channel);
+        bus.channel.close();
+    }
+
+    /**
+     * Installs a filter on the given device, replacing a filter previously installed for the same CAN ID.
+     *
+     * @param device the device
+     * @param filter the filter
+     * @throws IOException if the native call fails
+     */
+    public void install(NetworkDevice device, ChangeFilter filter) throws IOException {
+        install(device, Collections.singletonList(filter));
+    }
+
+    /**
+     * Installs several filters on the given device, replacing filters previously installed for the same CAN IDs. All
+     * setup messages are written to the kernel with as few system calls as possible.
+     *
+     * @param device the device
+     * @param filters the filters
+     * @throws IOException if the native call fails, in which case only some of the filters may have been installed
+     */
+    public void install(NetworkDevice device, Collection<ChangeFilter> filters) throws IOException {
+        synchronized (lock) {
+            Bus bus = getBus(device);
+            List<BcmMessage> messages = new ArrayList<>(filters.size());
+            for (ChangeFilter filter : filters) {
+                messages.add(filter.toSetupMessage());
+            }
+            int written = writeAll(bus.channel, messages);
+            int i = 0;
+            for (ChangeFilter filter : filters) {
+                if (i++ >= written) {
+                    break;
+                }
+                bus.filters.put(filter.getCanId(), filter);
+            }
+        }
+    }
+
+    /**
+     * Removes the filter of the given CAN ID from the device.
+     *
+     * @param device the device
+     * @param canId the CAN ID
+     * @return true if a filter was installed for the CAN ID
+     * @throws IOException if the native call fails
+     */
+    public boolean uninstall(NetworkDevice device, int canId) throws IOException {
+        synchronized (lock) {
+            Bus bus = getBus(device);
+            if (bus.filters.remove(canId) == null) {
+                return false;
+            }
+            bus.channel.write(BcmMessage.builder(BcmOpcode.RX_DELETE).canId(canId).build());
+            return true;
+        }
+    }
+
+    /**
+     * Returns a snapshot of the filters installed on the given device.
+     *
+     * @param device the device
+     * @return the installed filters
+     */
+    public List<ChangeFilter> getFilters(NetworkDevice device) {
+        synchronized (lock) {
+            return new ArrayList<>(getBus(device).filters.values());
+        }
+    }
+
+    private Bus getBus(NetworkDevice device) {
+        Bus bus = buses.get(device);
+        if (bus == null) {
+            throw new IllegalArgumentException("Device not known!");
+        }
+        return bus;
+    }
+
+    private static int writeAll(BcmCanChannel ch, List<BcmMessage> messages) throws IOException {
+        int count = messages.size();
+        int[] offsets = new int[count];
+        int[] lengths = new int[count];
+        int total = 0;
+        for (int i = 0; i < count; i++) {
+            offsets[i] = total;
+            lengths[i] = messages.get(i).getBuffer().remaining();
+            total += lengths[i];
+        }
+        ByteBuffer buffer = JavaCAN.allocateOrdered(total);
+        for (BcmMessage message : messages) {
+            buffer.put(message.getBuffer());
+        }
+
+        int written = 0;
+        while (written < count) {
+            int n = ch.writeBatchUnsafe(buffer, offsets, lengths, count - written);
+            if (n <= 0) {
+                throw new IOException("BCM setup messages incompletely written");
+            }
+            written += n;
+            // shift the remaining messages to the front of the arrays for the next call
+            System.arraycopy(offsets, n, offsets, 0, count - written);
+            System.arraycopy(lengths, n, lengths, 0, count - written);
+        }
+        return written;
+    }
+
+    @Override
+    protected void handle(BcmCanChannel ch, Bus bus, BcmMessageReader message) {
+        if (message.getOpcode() == BcmOpcode.RX_CHANGED && message.getFrameCount() > 0) {
+            bus.listener.onChange(bus.device, message.getFrame(0));
+        } else {
+            LOGGER.trace("Ignoring BCM message on {}: {}", bus.device, message);
+        }
+    }
+
+    @Override
+    protected void closeResources() throws IOException {
+        IOException e = null;
+        synchronized (lock) {
+            for (Bus bus : buses.values()) {
+                try {
+                    bus.channel.close();
+                } catch (IOException e1) {
+                    if (e != null) {
+                        e1.addSuppressed(e);
+                    }
+                    e = e1;
+                }
+            }
+            buses.clear();
+        }
+        if (e != null) {
+            throw e;
+        }
+    }
+
+    /**
+     * A listener that is notified about changes detected by the filters of a device.
+     */
+    @FunctionalInterface
+    public interface ChangeListener {
+        /**
+         * Called on the polling thread for every change reported by the kernel. The frame is backed by a buffer that
+         * is reused for the next notification, it has to be copied if it is retained beyond this call.
+         *
+         * @param device the device the frame has been received on
+         * @param frame the changed frame
+         */
+        void onChange(NetworkDevice device, CanFrame frame);
+    }
+
+    static final class Bus {
+        final NetworkDevice device;
+        final BcmCanChannel channel;
+        final ChangeListener listener;
+        final Map<Integer, ChangeFilter> filters = new HashMap<>();
+
+        Bus(NetworkDevice device, BcmCanChannel channel, ChangeListener listener) {
+            this.device = device;
+            this.channel = channel;
+            this.listener = listener;
+        }
+    }
+}
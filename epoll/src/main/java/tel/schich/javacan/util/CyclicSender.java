@@ -0,0 +1,343 @@
+/*
+ * The MIT License
+ * Copyright © 2018 Phillip Schichtel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package tel.schich.javacan.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import tel.schich.javacan.CanFrame;
+import tel.schich.javacan.JavaCAN;
+import tel.schich.javacan.RawCanChannel;
+import tel.schich.javacan.platform.linux.LinuxNativeOperationException;
+import tel.schich.javacan.platform.linux.UnixFileDescriptor;
+import tel.schich.javacan.platform.linux.epoll.TimerFdChannel;
+import tel.schich.javacan.select.IOEvent;
+import tel.schich.javacan.select.IOSelector;
+import tel.schich.javacan.select.SelectorRegistration;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channel;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <p>
+ * This class sends {@link tel.schich.javacan.CanFrame}s cyclically on a {@link tel.schich.javacan.RawCanChannel}.
+ * Each distinct cycle time is driven by its own {@link TimerFdChannel}, all timers share a common time base, so
+ * cycles that are multiples of each other expire at the same instants. All frames that are due in the same poll
+ * are written with a single batched send.
+ * </p>
+ * <p>
+ * The frames are kept pre-built in a single direct buffer with a fixed number of slots, updating the content of a
+ * cyclic frame only copies the new frame into its slot. The {@link tel.schich.javacan.RawCanChannel} is neither
+ * configured nor closed by this class, it should be bound and non-blocking to not stall the timers.
+ * </p>
+ * <p>
+ * For cycles that never change, the kernel's broadcast manager ({@link tel.schich.javacan.BcmCanChannel}) avoids
+ * the user space round trip entirely.
+ * </p>
+ */
+public class CyclicSender extends EventLoop<UnixFileDescriptor, TimerFdChannel> {
+    private static final Logger LOGGER = LoggerFactory.getLogger(CyclicSender.class);
+
+    /**
+     * The largest supported capacity, all frames are stored in a single {@link ByteBuffer}.
+     */
+    public static final int MAX_CAPACITY = Integer.MAX_VALUE / RawCanChannel.FD_MTU;
+
+    private final RawCanChannel channel;
+    private final ByteBuffer frames;
+    private final int[] slotLengths;
+    private final int[] freeSlots;
+    private int freeSlotCount;
+    private final int[] batchOffsets;
+    private final int[] batchLengths;
+
+    private final Map<Long, Cycle> cyclesByPeriod = new HashMap<>();
+    private final Map<TimerFdChannel, Cycle> cyclesByTimer = new IdentityHashMap<>();
+    private final Object lock = new Object();
+    private final long epoch;
+    private final AtomicLong droppedFrames = new AtomicLong(0);
+
+    public CyclicSender(ThreadFactory threadFactory, IOSelector<UnixFileDescriptor> selector, RawCanChannel channel, int capacity) {
+        this(threadFactory, selector, CanBroker.DEFAULT_TIMEOUT, channel, capacity);
+    }
+
+    public CyclicSender(ThreadFactory threadFactory, IOSelector<UnixFileDescriptor> selector, Duration timeout, RawCanChannel channel, int capacity) {
+        super("cyclic-sender", threadFactory, selector, timeout);
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("The capacity must be positive!");
+        }
+        if (capacity > MAX_CAPACITY) {
+            throw new IllegalArgumentException("The capacity must not exceed " + MAX_CAPACITY + "!");
+        }
+        this.channel = channel;
+        this.frames = JavaCAN.allocateUnordered(capacity * RawCanChannel.FD_MTU);
+        this.slotLengths = new int[capacity];
+        this.freeSlots = new int[capacity];
+        for (int i = 0; i < capacity; i++) {
+            this.freeSlots[i] = capacity - 1 - i;
+        }
+        this.freeSlotCount = capacity;
+        this.batchOffsets = new int[capacity];
+        this.batchLengths = new int[capacity];
+        this.epoch = TimerFdChannel.currentTime();
+    }
+
+    /**
+     * Adds a frame to be sent every given period. The first transmission happens on the next multiple of the period
+     * relative to the creation of this sender.
+     *
+     * @param period the cycle time
+     * @param frame the initial frame, it will be copied
+     * @return a handle to update or cancel the cyclic frame
+     * @throws IOException if the timer could not be created
+     */
+    public CyclicFrame add(Duration period, CanFrame frame) throws IOException {
+        final long periodNanos = period.toNanos();
+        if (periodNanos <= 0) {
+            throw new IllegalArgumentException("The period must be positive!");
+        }
+        synchronized (lock) {
+            if (freeSlotCount == 0) {
+                throw new IllegalStateException("No free slots left!");
+            }
+            Cycle cycle = cyclesByPeriod.get(periodNanos);
+            if (cycle == null) {
+                cycle = openCycle(periodNanos);
+            }
+            int slot = freeSlots[--freeSlotCount];
+            writeSlot(slot, frame);
+            cycle.add(slot);
+            start();
+            return new CyclicFrame(cycle, slot);
+        }
+    }
+
+    private Cycle openCycle(long periodNanos) throws IOException {
+        TimerFdChannel timer = TimerFdChannel.open();
+        try {
+            long now = TimerFdChannel.currentTime();
+            long firstExpiration = epoch + ((now - epoch) / periodNanos + 1) * periodNanos;
+            timer.setAbsolute(firstExpiration, periodNanos);
+            register(timer, EnumSet.of(SelectorRegistration.Operation.READ));
+        } catch (IOException | RuntimeException e) {
+            timer.close();
+            throw e;
+        }
+        Cycle cycle = new Cycle(periodNanos, timer);
+        cyclesByPeriod.put(periodNanos, cycle);
+        cyclesByTimer.put(timer, cycle);
+        return cycle;
+    }
+
+    private void writeSlot(int slot, CanFrame frame) {
+        ByteBuffer source = frame.getBuffer().duplicate();
+        source.limit(frame.getBase() + frame.getSize());
+        source.position(frame.getBase());
+        ByteBuffer target = frames.duplicate();
+        target.position(slot * RawCanChannel.FD_MTU);
+        target.put(source);
+        slotLengths[slot] = frame.getSize();
+    }
+
+    /**
+     * Returns the number of frames that were due but could not be written, because the transmit queue of the
+     * channel was full, i.e. the write failed partially or entirely with {@code EAGAIN} or {@code ENOBUFS}.
+     *
+     * @return the number of dropped frames
+     */
+    public long getDroppedFrames() {
+        return droppedFrames.get();
+    }
+
+    @Override
+    protected boolean isEmpty() {
+        synchronized (lock) {
+            return cyclesByPeriod.isEmpty();
+        }
+    }
+
+    @Override
+    protected void processEvents(List<IOEvent<UnixFileDescriptor>> events) throws IOException {
+        synchronized (lock) {
+            int count = 0;
+            for (IOEvent<UnixFileDescriptor> event : events) {
+                Channel ch = event.getRegistration().getChannel();
+                Cycle cycle = cyclesByTimer.get(ch);
+                if (cycle == null) {
+                    LOGGER.warn("Unsupported channel: {}", ch);
+                    continue;
+                }
+                long expirations = cycle.timer.read();
+                if (expirations == 0) {
+                    continue;
+                }
+                if (expirations > 1) {
+                    LOGGER.debug("Cycle of {}ns missed {} expirations", cycle.periodNanos, expirations - 1);
+                }
+                for (int i = 0; i < cycle.slotCount; i++) {
+                    int slot = cycle.slots[i];
+                    batchOffsets[count] = slot * RawCanChannel.FD_MTU;
+                    batchLengths[count] = slotLengths[slot];
+                    count++;
+                }
+            }
+            if (count > 0) {
+                int written;
+                try {
+                    written = channel.writeBatchUnsafe(frames, batchOffsets, batchLengths, count);
+                } catch (LinuxNativeOperationException e) {
+                    // a completely full transmit queue fails the whole batch instead of writing it partially
+                    if (!e.mayTryAgain() && e.getErrorNumber() != LinuxNativeOperationException.ENOBUFS) {
+                        throw e;
+                    }
+                    written = 0;
+                }
+                if (written < count) {
+                    droppedFrames.addAndGet(count - written);
+                }
+            }
+        }
+    }
+
+    @Override
+    protected void closeResources() throws IOException {
+        synchronized (lock) {
+            IOException e = null;
+            for (Cycle cycle : cyclesByPeriod.values()) {
+                try {
+                    cycle.timer.close();
+                } catch (IOException e1) {
+                    if (e != null) {
+                        e1.addSuppressed(e);
+                    }
+                    e = e1;
+                }
+            }
+            cyclesByPeriod.clear();
+            cyclesByTimer.clear();
+            if (e != null) {
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * A handle to a frame that is sent cyclically.
+     */
+    public final class CyclicFrame {
+        private final Cycle cycle;
+        private final int slot;
+        private boolean cancelled = false;
+
+        private CyclicFrame(Cycle cycle, int slot) {
+            this.cycle = cycle;
+            this.slot = slot;
+        }
+
+        /**
+         * Returns the cycle time of this frame.
+         *
+         * @return the period
+         */
+        public Duration getPeriod() {
+            return Duration.ofNanos(cycle.periodNanos);
+        }
+
+        /**
+         * Replaces the frame that is sent from the next cycle on. The frame will be copied.
+         *
+         * @param frame the new frame
+         */
+        public void update(CanFrame frame) {
+            synchronized (lock) {
+                if (cancelled) {
+                    throw new IllegalStateException("The cyclic frame has already been cancelled!");
+                }
+                writeSlot(slot, frame);
+            }
+        }
+
+        /**
+         * Stops sending this frame. The timer of the cycle will be closed if no other frame uses it.
+         *
+         * @throws IOException if the timer could not be cancelled
+         */
+        public void cancel() throws IOException {
+            synchronized (lock) {
+                if (cancelled) {
+                    return;
+                }
+                cancelled = true;
+                cycle.remove(slot);
+                freeSlots[freeSlotCount++] = slot;
+                if (cycle.slotCount == 0) {
+                    cyclesByPeriod.remove(cycle.periodNanos);
+                    cyclesByTimer.remove(cycle.timer);
+                    try {
+                        CyclicSender.this.cancel(cycle.timer);
+                    } finally {
+                        cycle.timer.close();
+                    }
+                }
+            }
+            lazyShutdown();
+        }
+    }
+
+    private static final class Cycle {
+        private final long periodNanos;
+        private final TimerFdChannel timer;
+        private int[] slots = new int[4];
+        private int slotCount = 0;
+
+        Cycle(long periodNanos, TimerFdChannel timer) {
+            this.periodNanos = periodNanos;
+            this.timer = timer;
+        }
+
+        void add(int slot) {
+            if (slotCount == slots.length) {
+                slots = Arrays.copyOf(slots, slotCount * 2);
+            }
+            slots[slotCount++] = slot;
+        }
+
+        void remove(int slot) {
+            for (int i = 0; i < slotCount; i++) {
+                if (slots[i] == slot) {
+                    slots[i] = slots[--slotCount];
+                    return;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ * The MIT License
+ * Copyright © 2018 Phillip Schichtel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package tel.schich.javacan.util;
+
+import java.io.IOException;
+
+/**
+ * The read loop shared by the event loops of this package. After a readiness event a channel is drained until it has
+ * no more messages, but at most for a budget of messages, so a busy channel can not starve the other channels of the
+ * same event loop. Messages beyond the budget stay in the kernel buffer and cause another readiness event.
+ * <p>
+ * The steps are expected to use the non-throwing reads of the channels, like
+ * {@link tel.schich.javacan.RawCanChannel#tryReadUnsafe(java.nio.ByteBuffer)}, so running out of messages neither
+ * throws an exception nor counts as a failure in the {@link tel.schich.javacan.ChannelMetrics}.
+ * </p>
+ */
+final class DrainLoop {
+    /**
+     * The default number of messages read from a channel per readiness event.
+     */
+    static final int DEFAULT_BUDGET = 64;
+
+    private DrainLoop() {
+    }
+
+    /**
+     * Reads and dispatches messages of the channel until the step stops or the budget is exhausted.
+     *
+     * @param channel the readable channel
+     * @param budget the maximum number of messages to read
+     * @param step reads and dispatches a single message
+     * @param <C> the type of the channel
+     * @throws IOException if a read fails
+     */
+    static <C> void drain(C channel, int budget, Step<C> step) throws IOException {
+        for (int i = 0; i < budget; i++) {
+            if (!step.readOne(channel)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * A single iteration of the read loop. Implementations should be kept in a field, so draining does not allocate.
+     *
+     * @param <C> the type of the channel
+     */
+    @FunctionalInterface
+    interface Step<C> {
+        /**
+         * Reads a single message from the channel and dispatches it.
+         *
+         * @param channel the channel to read from
+         * @return false if no message was available or the channel should not be read any further
+         * @throws IOException if the read fails
+         */
+        boolean readOne(C channel) throws IOException;
+    }
+}
@@ -40,10 +40,13 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * This is a simple single-threaded event loop implementation.
  * It supports registering several channels of the same type.
+ * Additionally, tasks can be scheduled on a {@link tel.schich.javacan.util.TimerWheel} that is driven by the polling
+ * thread, the earliest pending timer limits how long the loop blocks for IO.
  *
  * @param <HandleType>  the type of handles that are supported by the underlying {@link IOSelector}
  * @param <ChannelType> the type of channels that can be registered
@@ -57,9 +60,15 @@ public abstract class EventLoop<HandleType, ChannelType extends Channel> impleme
     private final IOSelector<HandleType> selector;
     private final Duration timeout;
     private final Map<ChannelType, SelectorRegistration<HandleType, ChannelType>> registrations;
+    private final TimerWheel timers;
+    /**
+     * The {@link System#nanoTime()} at which the current poll returns at the latest, {@link Long#MAX_VALUE} while the
+     * poller is about to block for an unknown time and {@link Long#MIN_VALUE} while it is not blocking at all.
+     */
+    private final AtomicLong pollDeadline = new AtomicLong(Long.MIN_VALUE);
 
     @Nullable
-    private PollingThread poller;
+    private volatile PollingThread poller;
     private final Object pollerLock = new Object();
 
     public EventLoop(String name, ThreadFactory threadFactory, IOSelector<HandleType> selector, Duration timeout) {
@@ -68,6 +77,7 @@ public abstract class EventLoop<HandleType, ChannelType extends Channel> impleme
         this.selector = selector;
         this.timeout = timeout;
         this.registrations = new IdentityHashMap<>();
+        this.timers = new TimerWheel();
     }
 
     /**
@@ -88,6 +98,64 @@ public abstract class EventLoop<HandleType, ChannelType extends Channel> impleme
         return timeout;
     }
 
+    /**
+     * <p>
+     * Schedules a task to be run on the polling thread of this event loop after the given delay. This method can be
+     * called from any thread and is cheap enough to be used for thousands of protocol timeouts.
+     * </p>
+     * <p>
+     * Timers only fire while the event loop is running, the resolution is
+     * {@link tel.schich.javacan.util.TimerWheel#DEFAULT_TICK_DURATION}. The polling thread is only woken up if the
+     * task is due before its current poll would return anyway.
+     * </p>
+     *
+     * @param delay the delay after which the task should run
+     * @param task the task
+     * @return a handle that allows cancelling the task
+     */
+    public TimerWheel.Timeout schedule(Duration delay, Runnable task) {
+        long deadline = System.nanoTime() + Math.max(0, delay.toNanos());
+        TimerWheel.Timeout timeout = timers.scheduleAt(deadline, task);
+        wakeupBefore(deadline);
+        return timeout;
+    }
+
+    /**
+     * Wakes up the polling thread if its current poll would return after the given deadline. Implementations that
+     * override {@link #nextDeadline()} call this when they lower their deadline from another thread.
+     *
+     * @param deadline the new deadline in terms of {@link System#nanoTime()}
+     */
+    protected final void wakeupBefore(long deadline) {
+        PollingThread p = this.poller;
+        if (p != null && !p.isCurrentThread() && selector.isOpen() && advancePollDeadline(deadline)) {
+            // the poller is blocking beyond the new deadline
+            try {
+                selector.wakeup();
+            } catch (IOException e) {
+                LOGGER.warn("Failed to wake up the selector for an earlier deadline", e);
+            }
+        }
+    }
+
+    /**
+     * Lowers the deadline of the current poll to the given deadline, if the poll would return later.
+     *
+     * @param deadline the deadline of a new timer
+     * @return true if the poller has to be woken up for the deadline
+     */
+    private boolean advancePollDeadline(long deadline) {
+        while (true) {
+            long current = pollDeadline.get();
+            if (deadline >= current) {
+                return false;
+            }
+            if (pollDeadline.compareAndSet(current, deadline)) {
+                return true;
+            }
+        }
+    }
+
     /**
      * Registers a channel to the {@link java.nio.channels.Selector}.
      *
@@ -96,7 +164,29 @@ public abstract class EventLoop<HandleType, ChannelType extends Channel> impleme
      * @throws ClosedChannelException if the channel is already closed
      */
     protected final void register(ChannelType ch, Set<SelectorRegistration.Operation> ops) throws IOException {
-        registrations.put(ch, selector.register(ch, ops));
+        synchronized (registrations) {
+            registrations.put(ch, selector.register(ch, ops));
+        }
+    }
+
+    /**
+     * Changes the interested ops of an already registered channel. This can be called from any thread and takes
+     * effect immediately, even if the event loop is currently blocking in a poll call.
+     *
+     * @param ch the channel to update
+     * @param ops the new interested ops, an empty set disables the channel without cancelling its registration
+     * @return true if the channel was updated, false if the channel was not registered
+     * @throws IOException if the underlying selector is unable to update the registration
+     */
+    protected final boolean updateRegistration(ChannelType ch, Set<SelectorRegistration.Operation> ops) throws IOException {
+        synchronized (registrations) {
+            SelectorRegistration<HandleType, ChannelType> registration = this.registrations.get(ch);
+            if (registration == null) {
+                return false;
+            }
+            registrations.put(ch, selector.updateRegistration(registration, ops));
+            return true;
+        }
     }
 
     /**
@@ -107,11 +197,13 @@ public abstract class EventLoop<HandleType, ChannelType extends Channel> impleme
      * @throws IOException if the underlying selector is unable to cancel the registration
      */
     protected final boolean cancel(ChannelType ch) throws IOException {
-        SelectorRegistration<HandleType, ChannelType> registration = this.registrations.remove(ch);
-        if (registration != null) {
-            return selector.cancel(registration);
+        synchronized (registrations) {
+            SelectorRegistration<HandleType, ChannelType> registration = this.registrations.remove(ch);
+            if (registration != null) {
+                return selector.cancel(registration);
+            }
+            return false;
         }
-        return false;
     }
 
     /**
@@ -170,7 +262,9 @@ public abstract class EventLoop<HandleType, ChannelType extends Channel> impleme
      * Shuts down this event loop, even if currently blocking in a poll call.
      * </p>
      * <p>
-     * The event loop is automatically shutdown when no channels are registered.
+     * The event loop is automatically shutdown when no channels are registered. When called from within the event
+     * loop itself (e.g. by a handler removing the last channel), the loop is only signalled to stop and will exit
+     * after the current iteration.
      * </p>
      *
      * @throws InterruptedException if the joining the polling thread gets interrupted
@@ -188,7 +282,9 @@ public abstract class EventLoop<HandleType, ChannelType extends Channel> impleme
                 } catch (IOException ignored) {
 
                 }
-                this.poller.join();
+                if (!this.poller.isCurrentThread()) {
+                    this.poller.join();
+                }
             } finally {
                 this.poller = null;
             }
@@ -206,13 +302,72 @@ public abstract class EventLoop<HandleType, ChannelType extends Channel> impleme
         if (lazyShutdown()) {
             return false;
         }
-        List<IOEvent<HandleType>> events = select(timeout);
+        // announce the poll before looking at the timers, timers scheduled from now on compare against its deadline
+        pollDeadline.set(Long.MAX_VALUE);
+        Duration pollTimeout = limitByNextTimer(timeout);
+        pollDeadline.accumulateAndGet(deadlineAfter(pollTimeout), Math::min);
+        final List<IOEvent<HandleType>> events;
+        try {
+            events = select(pollTimeout);
+        } finally {
+            pollDeadline.set(Long.MIN_VALUE);
+        }
         if (!events.isEmpty()) {
             processEvents(events);
         }
+        long now = System.nanoTime();
+        timers.expire(now);
+        processDeadlines(now);
         return true;
     }
 
+    private static long deadlineAfter(Duration timeout) {
+        long now = System.nanoTime();
+        if (timeout.getSeconds() >= (Long.MAX_VALUE - now) / 1_000_000_000L) {
+            return Long.MAX_VALUE;
+        }
+        return now + timeout.toNanos();
+    }
+
+    private Duration limitByNextTimer(Duration timeout) {
+        long now = System.nanoTime();
+        long nanos = timers.nanosUntilNextExpiry(now);
+        long deadline = nextDeadline();
+        if (deadline != Long.MAX_VALUE) {
+            long untilDeadline = Math.max(0, deadline - now);
+            nanos = nanos < 0 ? untilDeadline : Math.min(nanos, untilDeadline);
+        }
+        if (nanos < 0) {
+            return timeout;
+        }
+        // round up, neither the wheel nor the deadlines would advance if woken up too early
+        long millis = (nanos + 999_999) / 1_000_000;
+        if (millis >= timeout.toMillis()) {
+            return timeout;
+        }
+        return Duration.ofMillis(millis);
+    }
+
+    /**
+     * Returns the earliest deadline of work that the implementation drives itself instead of using the timer wheel,
+     * because it needs a finer resolution than the wheel's ticks. The poll returns no later than this deadline,
+     * rounded up to the millisecond resolution of the selector. This is called by the polling thread before each
+     * poll.
+     *
+     * @return the deadline in terms of {@link System#nanoTime()} or {@link Long#MAX_VALUE} if there is none
+     */
+    protected long nextDeadline() {
+        return Long.MAX_VALUE;
+    }
+
+    /**
+     * Runs the work whose {@link #nextDeadline()} has passed. This is called by the polling thread after each poll.
+     *
+     * @param nowNanos the current time in terms of {@link System#nanoTime()}
+     */
+    protected void processDeadlines(long nowNanos) {
+    }
+
     /**
      * Handles the {@link java.lang.Throwable} that got thrown in the event loop.
      *
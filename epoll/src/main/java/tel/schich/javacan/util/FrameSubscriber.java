@@ -0,0 +1,61 @@
+/*
+ * The MIT License
+ * Copyright © 2018 Phillip Schichtel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package tel.schich.javacan.util;
+
+import tel.schich.javacan.CanFrame;
+
+/**
+ * A frame subscriber receives {@link tel.schich.javacan.CanFrame}s from a
+ * {@link tel.schich.javacan.util.CanFramePublisher} according to the demand it signalled via its
+ * {@link tel.schich.javacan.util.FrameSubscription}. It mirrors {@code java.util.concurrent.Flow.Subscriber}, which is
+ * not available on all Java versions supported by this library, so adapting it to a Flow or Reactive Streams
+ * subscriber is straight forward.
+ */
+public interface FrameSubscriber {
+    /**
+     * Called once before any other method with the subscription of this subscriber.
+     *
+     * @param subscription the subscription
+     */
+    void onSubscribe(FrameSubscription subscription);
+
+    /**
+     * Called for each received frame, but never more often than requested. The frame is backed by a buffer that
+     * is reused for the next frame, so it must be copied if it is needed beyond this call.
+     *
+     * @param frame the received frame
+     */
+    void onNext(CanFrame frame);
+
+    /**
+     * Called when the publisher failed, no further methods will be called after this.
+     *
+     * @param t the failure
+     */
+    void onError(Throwable t);
+
+    /**
+     * Called when the publisher has been closed, no further methods will be called after this.
+     */
+    void onComplete();
+}
@@ -0,0 +1,44 @@
+/*
+ * The MIT License
+ * Copyright © 2018 Phillip Schichtel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package tel.schich.javacan.util;
+
+/**
+ * A frame subscription links a {@link tel.schich.javacan.util.FrameSubscriber} to a
+ * {@link tel.schich.javacan.util.CanFramePublisher}. It mirrors {@code java.util.concurrent.Flow.Subscription}, which
+ * is not available on all Java versions supported by this library.
+ */
+public interface FrameSubscription {
+    /**
+     * Adds the given number of frames to the unfulfilled demand of this subscription. A demand of
+     * {@link java.lang.Long#MAX_VALUE} is considered unbounded.
+     *
+     * @param n the number of additional frames, must be positive
+     */
+    void request(long n);
+
+    /**
+     * Cancels this subscription. The subscriber will eventually stop receiving frames, frames that are already being
+     * delivered might still arrive.
+     */
+    void cancel();
+}
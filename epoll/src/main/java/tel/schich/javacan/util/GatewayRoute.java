@@ -0,0 +1,227 @@
+/*
+ * The MIT License
+ * Copyright © 2018 Phillip Schichtel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package tel.schich.javacan.util;
+
+import org.eclipse.jdt.annotation.Nullable;
+import tel.schich.javacan.CanFilter;
+import tel.schich.javacan.CanFrame;
+import tel.schich.javacan.NetworkDevice;
+
+import java.time.Duration;
+import java.util.Arrays;
+
+/**
+ * <p>
+ * A GatewayRoute describes how a {@link tel.schich.javacan.util.CanGateway} forwards frames from one
+ * {@link tel.schich.javacan.NetworkDevice} to another. Frames received on the source device whose CAN ID is accepted
+ * by the filter are sent on the destination device, optionally with a rewritten CAN ID, with modified payload bytes
+ * and at a limited rate.
+ * </p>
+ * <p>
+ * Payload modifications are applied in the order AND, OR, XOR, just like the kernel's CAN gateway does it. Bytes
+ * beyond the length of a modification mask or beyond the data length of the frame are not modified.
+ * </p>
+ * <p>
+ * Instances are immutable, the {@code with*} methods return modified copies.
+ * </p>
+ */
+public final class GatewayRoute {
+    private static final byte[] NO_MASK = new byte[0];
+
+    private final NetworkDevice source;
+    private final NetworkDevice destination;
+    private final CanFilter filter;
+    private final boolean rewriteId;
+    private final int id;
+    private final byte[] and;
+    private final byte[] or;
+    private final byte[] xor;
+    @Nullable
+    private final Duration minInterval;
+
+    private GatewayRoute(NetworkDevice source, NetworkDevice destination, CanFilter filter, boolean rewriteId, int id,
+                         byte[] and, byte[] or, byte[] xor, @Nullable Duration minInterval) {
+        this.source = source;
+        this.destination = destination;
+        this.filter = filter;
+        this.rewriteId = rewriteId;
+        this.id = id;
+        this.and = and;
+        this.or = or;
+        this.xor = xor;
+        this.minInterval = minInterval;
+    }
+
+    /**
+     * Creates a route that forwards all frames accepted by the filter unmodified. The filter is matched just like the
+     * kernel matches socket filters, so inverted filters are supported as well. Source and destination may be the same
+     * device, e.g. to translate CAN IDs on a single bus, since the gateway does not receive the frames it sent itself.
+     *
+     * @param source the device to receive frames from
+     * @param destination the device to send frames to
+     * @param filter the filter selecting the frames to forward
+     * @return the route
+     */
+    public static GatewayRoute of(NetworkDevice source, NetworkDevice destination, CanFilter filter) {
+        return new GatewayRoute(source, destination, filter, false, 0, NO_MASK, NO_MASK, NO_MASK, null);
+    }
+
+    /**
+     * Returns a copy of this route that replaces the CAN ID of forwarded frames.
+     *
+     * @param id the new CAN ID as the kernel expects it, including {@link tel.schich.javacan.CanId#EFF_FLAG} for
+     *           extended IDs
+     * @return the modified route
+     */
+    public GatewayRoute withId(int id) {
+        return new GatewayRoute(source, destination, filter, true, id, and, or, xor, minInterval);
+    }
+
+    /**
+     * Returns a copy of this route that ANDs the payload of forwarded frames with the given mask.
+     *
+     * @param mask the mask, at most {@link tel.schich.javacan.CanFrame#MAX_FD_DATA_LENGTH} bytes
+     * @return the modified route
+     */
+    public GatewayRoute withDataAnd(byte[] mask) {
+        return new GatewayRoute(source, destination, filter, rewriteId, id, checkMask(mask), or, xor, minInterval);
+    }
+
+    /**
+     * Returns a copy of this route that ORs the payload of forwarded frames with the given mask.
+     *
+     * @param mask the mask, at most {@link tel.schich.javacan.CanFrame#MAX_FD_DATA_LENGTH} bytes
+     * @return the modified route
+     */
+    public GatewayRoute withDataOr(byte[] mask) {
+        return new GatewayRoute(source, destination, filter, rewriteId, id, and, checkMask(mask), xor, minInterval);
+    }
+
+    /**
+     * Returns a copy of this route that XORs the payload of forwarded frames with the given mask.
+     *
+     * @param mask the mask, at most {@link tel.schich.javacan.CanFrame#MAX_FD_DATA_LENGTH} bytes
+     * @return the modified route
+     */
+    public GatewayRoute withDataXor(byte[] mask) {
+        return new GatewayRoute(source, destination, filter, rewriteId, id, and, or, checkMask(mask), minInterval);
+    }
+
+    /**
+     * Returns a copy of this route that forwards at most one frame per interval, frames arriving earlier are dropped.
+     *
+     * @param minInterval the minimum time between two forwarded frames, or {@code null} to disable rate limiting
+     * @return the modified route
+     */
+    public GatewayRoute withMinInterval(@Nullable Duration minInterval) {
+        if (minInterval != null && (minInterval.isNegative() || minInterval.isZero())) {
+            minInterval = null;
+        }
+        return new GatewayRoute(source, destination, filter, rewriteId, id, and, or, xor, minInterval);
+    }
+
+    private static byte[] checkMask(byte[] mask) {
+        if (mask.length > CanFrame.MAX_FD_DATA_LENGTH) {
+            throw new IllegalArgumentException("A mask must not be longer than " + CanFrame.MAX_FD_DATA_LENGTH + " bytes!");
+        }
+        return mask.clone();
+    }
+
+    public NetworkDevice getSource() {
+        return source;
+    }
+
+    public NetworkDevice getDestination() {
+        return destination;
+    }
+
+    public CanFilter getFilter() {
+        return filter;
+    }
+
+    public boolean isRewritingId() {
+        return rewriteId;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    @Nullable
+    public Duration getMinInterval() {
+        return minInterval;
+    }
+
+    /**
+     * Checks if this route modifies forwarded frames in any way.
+     *
+     * @return true if the CAN ID or the payload is modified
+     */
+    public boolean isModifying() {
+        return rewriteId || and.length > 0 || or.length > 0 || xor.length > 0;
+    }
+
+    /**
+     * Merges the payload masks into an AND, OR and XOR mask of equal length, bytes that are not covered by a mask are
+     * padded to leave the payload unchanged.
+     *
+     * @return the AND, OR and XOR masks
+     */
+    byte[][] toDataMasks() {
+        int length = Math.max(and.length, Math.max(or.length, xor.length));
+        byte[] a = Arrays.copyOf(and, length);
+        Arrays.fill(a, and.length, length, (byte) 0xFF);
+        return new byte[][] { a, Arrays.copyOf(or, length), Arrays.copyOf(xor, length) };
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof GatewayRoute)) return false;
+        GatewayRoute that = (GatewayRoute) o;
+        return source.equals(that.source) && destination.equals(that.destination) && filter.equals(that.filter)
+                && rewriteId == that.rewriteId && id == that.id && Arrays.equals(and, that.and)
+                && Arrays.equals(or, that.or) && Arrays.equals(xor, that.xor)
+                && (minInterval == null ? that.minInterval == null : minInterval.equals(that.minInterval));
+    }
+
+    @Override
+    public int hashCode() {
+        int result = source.hashCode();
+        result = 31 * result + destination.hashCode();
+        result = 31 * result + filter.hashCode();
+        result = 31 * result + (rewriteId ? id : 0);
+        result = 31 * result + Arrays.hashCode(and);
+        result = 31 * result + Arrays.hashCode(or);
+        result = 31 * result + Arrays.hashCode(xor);
+        result = 31 * result + (minInterval == null ? 0 : minInterval.hashCode());
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return "GatewayRoute(source=" + source + ", destination=" + destination + ", filter=" + filter
+                + ", id=" + (rewriteId ? Integer.toHexString(id) : "unchanged") + ", and=" + and.length
+                + ", or=" + or.length + ", xor=" + xor.length + ", minInterval=" + minInterval + ")";
+    }
+}
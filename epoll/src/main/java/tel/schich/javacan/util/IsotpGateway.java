@@ -0,0 +1,471 @@
+/*
+ * The MIT License
+ * Copyright © 2018 Phillip Schichtel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package tel.schich.javacan.util;
+
+import org.eclipse.jdt.annotation.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import tel.schich.javacan.CanChannels;
+import tel.schich.javacan.IsotpCanChannel;
+import tel.schich.javacan.IsotpSocketAddress;
+import tel.schich.javacan.NetworkDevice;
+import tel.schich.javacan.platform.linux.UnixFileDescriptor;
+import tel.schich.javacan.select.IOEvent;
+import tel.schich.javacan.select.IOSelector;
+import tel.schich.javacan.select.SelectorRegistration;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channel;
+import java.nio.channels.ClosedChannelException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * <p>
+ * This class manages a large number of {@link tel.schich.javacan.IsotpCanChannel}s, one per rx/tx address pair
+ * ("session"), spread over several pollers. Channels are opened on demand when a message is sent to a session and
+ * closed again when they have been idle for too long or when the maximum number of open channels is reached, in
+ * which case the least recently used session is closed first.
+ * </p>
+ * <p>
+ * Messages received on any session are passed to a single {@link tel.schich.javacan.util.MessageHandler}, the
+ * channel given to the handler identifies the session. As with the {@link IsotpListener}, the message buffer is only
+ * valid during the handler call: it is a read-only view of the poller's read buffer, which is reused for every
+ * message. Each poller has its own read buffer, so handlers may be called concurrently for sessions on different
+ * pollers.
+ * </p>
+ * <p>
+ * Unlike the {@link IsotpListener}, the pollers keep running while no channels are open, so sessions can be opened
+ * and closed at a high rate. Each open session uses a file descriptor, so the process limit for open files has to
+ * be sized accordingly.
+ * </p>
+ */
+public class IsotpGateway implements Closeable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(IsotpGateway.class);
+
+    public static final Duration DEFAULT_IDLE_TIMEOUT = Duration.ofMinutes(1);
+
+    /**
+     * How often {@link #send(NetworkDevice, IsotpSocketAddress, IsotpSocketAddress, ByteBuffer)} reopens a session
+     * that has been closed concurrently, e.g. by eviction, before giving up.
+     */
+    private static final int MAX_SEND_ATTEMPTS = 3;
+
+    private final List<Poller> pollers;
+    private final MessageHandler handler;
+    private final ChannelInitializer initializer;
+    private final int maxChannels;
+    private final long idleTimeoutNanos;
+    private final LinkedHashMap<SessionKey, Session> sessions = new LinkedHashMap<>(16, 0.75f, true);
+    private final Object sessionLock = new Object();
+    private volatile boolean open = true;
+
+    public IsotpGateway(ThreadFactory threadFactory, List<? extends IOSelector<UnixFileDescriptor>> selectors, MessageHandler handler, int maxChannels) {
+        this(threadFactory, selectors, handler, maxChannels, DEFAULT_IDLE_TIMEOUT, ch -> {});
+    }
+
+    /**
+     * Creates a new gateway with one poller per given selector.
+     *
+     * @param threadFactory the thread factory for the pollers
+     * @param selectors the selectors, one poller is created for each of them
+     * @param handler the handler for messages received on any session
+     * @param maxChannels the maximum number of simultaneously open channels
+     * @param idleTimeout the time after which a session without traffic is closed
+     * @param initializer configures new channels (e.g. socket options) before they are bound
+     */
+    public IsotpGateway(ThreadFactory threadFactory, List<? extends IOSelector<UnixFileDescriptor>> selectors, MessageHandler handler, int maxChannels, Duration idleTimeout, ChannelInitializer initializer) {
+        if (selectors.isEmpty()) {
+            throw new IllegalArgumentException("At least one selector is required!");
+        }
+        if (maxChannels <= 0) {
+            throw new IllegalArgumentException("maxChannels must be positive!");
+        }
+        if (idleTimeout.isNegative() || idleTimeout.isZero()) {
+            throw new IllegalArgumentException("The idle timeout must be positive!");
+        }
+        this.pollers = new ArrayList<>(selectors.size());
+        for (int i = 0; i < selectors.size(); i++) {
+            this.pollers.add(new Poller("ISOTP-gateway-" + i, threadFactory, selectors.get(i)));
+        }
+        this.handler = handler;
+        this.initializer = initializer;
+        this.maxChannels = maxChannels;
+        this.idleTimeoutNanos = idleTimeout.toNanos();
+    }
+
+    /**
+     * Returns the channel of the given session, opening it if necessary. The channel must not be read and must
+     * not be closed by the caller, it might be closed by the gateway at any time.
+     *
+     * @param device the device of the session
+     * @param rx the receive address
+     * @param tx the transmit address
+     * @return the open channel
+     * @throws IOException if the channel could not be opened
+     */
+    public IsotpCanChannel open(NetworkDevice device, IsotpSocketAddress rx, IsotpSocketAddress tx) throws IOException {
+        return acquire(new SessionKey(device, rx, tx)).channel;
+    }
+
+    /**
+     * Sends a message to the given session, opening it if necessary.
+     *
+     * @param device the device of the session
+     * @param rx the receive address
+     * @param tx the transmit address
+     * @param message the message
+     * @throws ClosedChannelException if the gateway has been closed or the session kept being closed concurrently
+     * @throws IOException if the channel could not be opened or written
+     */
+    public void send(NetworkDevice device, IsotpSocketAddress rx, IsotpSocketAddress tx, ByteBuffer message) throws IOException {
+        SessionKey key = new SessionKey(device, rx, tx);
+        for (int attempt = 0; attempt < MAX_SEND_ATTEMPTS; attempt++) {
+            Session session = acquire(key);
+            synchronized (session) {
+                // the session might have been closed concurrently after it has been acquired
+                if (session.channel.isOpen()) {
+                    session.channel.write(message);
+                    session.touch();
+                    return;
+                }
+            }
+        }
+        throw new ClosedChannelException();
+    }
+
+    /**
+     * Closes the given session if it is open.
+     *
+     * @param device the device of the session
+     * @param rx the receive address
+     * @param tx the transmit address
+     * @return true if the session was open
+     * @throws IOException if the channel could not be closed
+     */
+    public boolean close(NetworkDevice device, IsotpSocketAddress rx, IsotpSocketAddress tx) throws IOException {
+        final Session session;
+        synchronized (sessionLock) {
+            session = sessions.remove(new SessionKey(device, rx, tx));
+        }
+        if (session == null) {
+            return false;
+        }
+        session.close();
+        return true;
+    }
+
+    /**
+     * Returns the number of currently open sessions.
+     *
+     * @return the number of open channels
+     */
+    public int getOpenChannelCount() {
+        synchronized (sessionLock) {
+            return sessions.size();
+        }
+    }
+
+    private Session acquire(SessionKey key) throws IOException {
+        if (!open) {
+            throw new ClosedChannelException();
+        }
+        synchronized (sessionLock) {
+            Session existing = sessions.get(key);
+            if (existing != null) {
+                existing.touch();
+                return existing;
+            }
+        }
+        // opening and registering the channel happens outside the lock, so other sessions are not held up by it
+        final Session created = openSession(key);
+        final List<Session> evicted = new ArrayList<>();
+        @Nullable
+        Session session = null;
+        try {
+            synchronized (sessionLock) {
+                // close() takes the lock after clearing the flag, so no session can be added after its snapshot
+                if (open) {
+                    session = sessions.get(key);
+                    if (session == null) {
+                        Iterator<Session> eldest = sessions.values().iterator();
+                        while (sessions.size() >= maxChannels && eldest.hasNext()) {
+                            evicted.add(eldest.next());
+                            eldest.remove();
+                        }
+                        sessions.put(key, created);
+                        session = created;
+                    }
+                }
+            }
+        } finally {
+            if (session != created) {
+                // another thread opened the same session concurrently or the gateway has been closed
+                created.close();
+            }
+            for (Session s : evicted) {
+                s.close();
+            }
+        }
+        if (session == null) {
+            throw new ClosedChannelException();
+        }
+        session.touch();
+        return session;
+    }
+
+    private Session openSession(SessionKey key) throws IOException {
+        Poller poller = pollers.get(0);
+        for (Poller p : pollers) {
+            if (p.sessions.size() < poller.sessions.size()) {
+                poller = p;
+            }
+        }
+        IsotpCanChannel ch = CanChannels.newIsotpChannel();
+        try {
+            initializer.initialize(ch);
+            ch.bind(key.device, key.rx, key.tx);
+            ch.configureBlocking(false);
+            Session session = new Session(key, ch, poller);
+            poller.add(session);
+            return session;
+        } catch (IOException | RuntimeException e) {
+            ch.close();
+            throw e;
+        }
+    }
+
+    private void closeIfIdle(Session session) {
+        long idle = System.nanoTime() - session.lastUsed;
+        if (idle < idleTimeoutNanos) {
+            session.scheduleIdleCheck(Duration.ofNanos(idleTimeoutNanos - idle));
+            return;
+        }
+        synchronized (sessionLock) {
+            if (sessions.get(session.key) != session) {
+                return;
+            }
+            sessions.remove(session.key);
+        }
+        LOGGER.debug("Closing idle session {}", session.key);
+        try {
+            session.close();
+        } catch (IOException e) {
+            LOGGER.warn("Failed to close idle session {}", session.key, e);
+        }
+    }
+
+    /**
+     * Closes all sessions and stops the pollers.
+     *
+     * @throws IOException if any channel or poller failed to close
+     */
+    @Override
+    public void close() throws IOException {
+        if (!open) {
+            return;
+        }
+        open = false;
+        final List<Session> all;
+        synchronized (sessionLock) {
+            all = new ArrayList<>(sessions.values());
+            sessions.clear();
+        }
+        IOException e = null;
+        for (Session session : all) {
+            try {
+                session.close();
+            } catch (IOException e1) {
+                e = suppress(e, e1);
+            }
+        }
+        for (Poller poller : pollers) {
+            try {
+                poller.close();
+            } catch (IOException e1) {
+                e = suppress(e, e1);
+            }
+        }
+        if (e != null) {
+            throw e;
+        }
+    }
+
+    private static IOException suppress(@Nullable IOException previous, IOException e) {
+        if (previous != null) {
+            e.addSuppressed(previous);
+        }
+        return e;
+    }
+
+    /**
+     * Configures newly created channels before they are bound.
+     */
+    @FunctionalInterface
+    public interface ChannelInitializer {
+        void initialize(IsotpCanChannel ch) throws IOException;
+    }
+
+    private static final class SessionKey {
+        private final NetworkDevice device;
+        private final IsotpSocketAddress rx;
+        private final IsotpSocketAddress tx;
+
+        SessionKey(NetworkDevice device, IsotpSocketAddress rx, IsotpSocketAddress tx) {
+            this.device = device;
+            this.rx = rx;
+            this.tx = tx;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof SessionKey)) return false;
+            SessionKey that = (SessionKey) o;
+            return device.equals(that.device) && rx.equals(that.rx) && tx.equals(that.tx);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(device, rx, tx);
+        }
+
+        @Override
+        public String toString() {
+            return "SessionKey(device=" + device + ", rx=" + rx + ", tx=" + tx + ')';
+        }
+    }
+
+    private final class Session {
+        private final SessionKey key;
+        private final IsotpCanChannel channel;
+        private final Poller poller;
+        private volatile long lastUsed = System.nanoTime();
+
+        Session(SessionKey key, IsotpCanChannel channel, Poller poller) {
+            this.key = key;
+            this.channel = channel;
+            this.poller = poller;
+        }
+
+        void touch() {
+            lastUsed = System.nanoTime();
+        }
+
+        void scheduleIdleCheck(Duration delay) {
+            poller.schedule(delay, () -> closeIfIdle(this));
+        }
+
+        void close() throws IOException {
+            synchronized (this) {
+                try {
+                    poller.remove(this);
+                } finally {
+                    channel.close();
+                }
+            }
+        }
+    }
+
+    private final class Poller extends EventLoop<UnixFileDescriptor, IsotpCanChannel> {
+        private final ByteBuffer readBuffer = IsotpCanChannel.allocateSufficientMemory();
+        private final ByteBuffer readView = readBuffer.asReadOnlyBuffer();
+        private final DrainLoop.Step<Session> readMessage = this::readMessage;
+        private final Map<IsotpCanChannel, Session> sessions = new ConcurrentHashMap<>();
+
+        Poller(String name, ThreadFactory threadFactory, IOSelector<UnixFileDescriptor> selector) {
+            super(name, threadFactory, selector, CanBroker.DEFAULT_TIMEOUT);
+        }
+
+        void add(Session session) throws IOException {
+            register(session.channel, EnumSet.of(SelectorRegistration.Operation.READ));
+            sessions.put(session.channel, session);
+            start();
+            session.scheduleIdleCheck(Duration.ofNanos(idleTimeoutNanos));
+        }
+
+        void remove(Session session) throws IOException {
+            if (sessions.remove(session.channel) != null) {
+                cancel(session.channel);
+            }
+        }
+
+        @Override
+        protected boolean lazyShutdown() {
+            // sessions come and go frequently, the poller is only stopped when the gateway is closed
+            return false;
+        }
+
+        @Override
+        protected boolean isEmpty() {
+            return sessions.isEmpty();
+        }
+
+        @Override
+        protected void processEvents(List<IOEvent<UnixFileDescriptor>> events) {
+            for (IOEvent<UnixFileDescriptor> event : events) {
+                Channel ch = event.getRegistration().getChannel();
+                Session session = sessions.get(ch);
+                if (session == null) {
+                    // closed after the event has been selected
+                    continue;
+                }
+                try {
+                    DrainLoop.drain(session, DrainLoop.DEFAULT_BUDGET, readMessage);
+                } catch (IOException e) {
+                    if (session.channel.isOpen()) {
+                        LOGGER.warn("Failed to read from session {}", session.key, e);
+                    }
+                }
+            }
+        }
+
+        private boolean readMessage(Session session) throws IOException {
+            readBuffer.clear();
+            int length = session.channel.tryRead(readBuffer);
+            if (length < 0) {
+                return false;
+            }
+            session.touch();
+            readView.clear();
+            readView.limit(length);
+            try {
+                handler.handle(session.channel, readView);
+            } catch (RuntimeException e) {
+                LOGGER.warn("Handler failed for session {}", session.key, e);
+            }
+            // the handler might have closed the session
+            return sessions.get(session.channel) == session;
+        }
+    }
+}
@@ -51,6 +51,11 @@ import tel.schich.javacan.select.SelectorRegistration;
  * If the handler logic needs to keep the buffer around for longer than its own execution, than a copy of the buffer must
  * be created. If messages are always passed on to other threads consider using the {@link CopyingMessageHandlerProxy}.
  * </p>
+ * <p>
+ * Alternatively channels can be added with a {@link PooledMessageHandler}, then each message is read directly into a
+ * buffer taken from a {@link MessageBufferPool} and ownership of that buffer is passed to the handler. This avoids
+ * both the per-message view and the copy when messages are processed asynchronously.
+ * </p>
  *
  * @see tel.schich.javacan.util.EventLoop
  * @see CopyingMessageHandlerProxy
@@ -60,7 +65,7 @@ public class IsotpListener extends EventLoop<UnixFileDescriptor, IsotpCanChannel
 
     private final ByteBuffer readBuffer = IsotpCanChannel.allocateSufficientMemory();
 
-    private final IdentityHashMap<IsotpCanChannel, MessageHandler> handlerMap = new IdentityHashMap<>();
+    private final IdentityHashMap<IsotpCanChannel, Receiver> handlerMap = new IdentityHashMap<>();
     private final Object handlerLock = new Object();
 
     public IsotpListener(ThreadFactory threadFactory, IOSelector<UnixFileDescriptor> selector, Duration timeout) {
@@ -76,10 +81,47 @@ public class IsotpListener extends EventLoop<UnixFileDescriptor, IsotpCanChannel
      * @throws IOException if native calls fail
      */
     public void addChannel(IsotpCanChannel ch, MessageHandler handler) throws IOException {
-        synchronized (handlerLock) {
-            if (handler == null) {
-                throw new NullPointerException("handle must not be null!");
+        if (handler == null) {
+            throw new NullPointerException("handle must not be null!");
+        }
+        addReceiver(ch, isotp -> {
+            readBuffer.clear();
+            isotp.read(readBuffer);
+            readBuffer.flip();
+            handler.handle(isotp, readBuffer.asReadOnlyBuffer());
+        });
+    }
+
+    /**
+     * Adds the given {@link tel.schich.javacan.IsotpCanChannel} together with its
+     * {@link tel.schich.javacan.util.PooledMessageHandler} to this listener. Messages will be read into buffers of the
+     * given pool.
+     *
+     * @param ch the channel to add
+     * @param pool the pool to take message buffers from
+     * @param handler the corresponding handler
+     * @throws IOException if native calls fail
+     */
+    public void addChannel(IsotpCanChannel ch, MessageBufferPool pool, PooledMessageHandler handler) throws IOException {
+        if (handler == null) {
+            throw new NullPointerException("handle must not be null!");
+        }
+        addReceiver(ch, isotp -> {
+            PooledMessage message = pool.acquire();
+            try {
+                ByteBuffer buffer = message.getBuffer();
+                isotp.read(buffer);
+                buffer.flip();
+            } catch (IOException | RuntimeException e) {
+                message.release();
+                throw e;
             }
+            handler.handle(isotp, message);
+        });
+    }
+
+    private void addReceiver(IsotpCanChannel ch, Receiver receiver) throws IOException {
+        synchronized (handlerLock) {
             if (this.handlerMap.containsKey(ch)) {
                 throw new IllegalArgumentException("Channel already added!");
             }
@@ -87,7 +129,7 @@ public class IsotpListener extends EventLoop<UnixFileDescriptor, IsotpCanChannel
                 ch.configureBlocking(false);
             }
             register(ch, EnumSet.of(SelectorRegistration.Operation.READ));
-            this.handlerMap.put(ch, handler);
+            this.handlerMap.put(ch, receiver);
             this.start();
         }
     }
@@ -130,12 +172,9 @@ public class IsotpListener extends EventLoop<UnixFileDescriptor, IsotpCanChannel
                 Channel ch = event.getRegistration().getChannel();
                 if (ch instanceof IsotpCanChannel) {
                     IsotpCanChannel isotp = (IsotpCanChannel) ch;
-                    MessageHandler handler = handlerMap.get(ch);
-                    if (handler != null) {
-                        readBuffer.clear();
-                        isotp.read(readBuffer);
-                        readBuffer.flip();
-                        handler.handle(isotp, readBuffer.asReadOnlyBuffer());
+                    Receiver receiver = handlerMap.get(ch);
+                    if (receiver != null) {
+                        receiver.receive(isotp);
                     } else {
                         LOGGER.warn("Handler not found for channel: {}", ch);
                     }
@@ -145,4 +184,9 @@ public class IsotpListener extends EventLoop<UnixFileDescriptor, IsotpCanChannel
             }
         }
     }
+
+    @FunctionalInterface
+    private interface Receiver {
+        void receive(IsotpCanChannel ch) throws IOException;
+    }
 }
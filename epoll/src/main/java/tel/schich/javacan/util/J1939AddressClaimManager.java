@@ -0,0 +1,613 @@
+/*
+ * The MIT License
+ * Copyright © 2018 Phillip Schichtel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package tel.schich.javacan.util;
+
+import org.eclipse.jdt.annotation.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import tel.schich.javacan.CanChannels;
+import tel.schich.javacan.ImmutableJ1939Address;
+import tel.schich.javacan.J1939Address;
+import tel.schich.javacan.J1939CanChannel;
+import tel.schich.javacan.J1939Filter;
+import tel.schich.javacan.J1939ReceiveMessageHeaderBuffer;
+import tel.schich.javacan.JavaCAN;
+import tel.schich.javacan.NetworkDevice;
+import tel.schich.javacan.platform.linux.UnixFileDescriptor;
+import tel.schich.javacan.select.IOEvent;
+import tel.schich.javacan.select.IOSelector;
+import tel.schich.javacan.select.SelectorRegistration;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Channel;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadFactory;
+
+import static java.time.Duration.ofMillis;
+import static java.time.Duration.ofMinutes;
+import static tel.schich.javacan.CanSocketOptions.SO_BROADCAST;
+import static tel.schich.javacan.J1939CanSocketOptions.SO_J1939_FILTER;
+import static tel.schich.javacan.J1939CanSocketOptions.SO_J1939_PROMISC;
+
+/**
+ * <p>
+ * This class implements the J1939-81 address claim procedure on top of the kernel's J1939 stack. For every bus it
+ * keeps a {@link tel.schich.javacan.util.J1939AddressTable} of the NAMEs and source addresses seen on the bus, which
+ * is populated by a request for address claimed when the bus is added and kept up to date incrementally from the
+ * address claimed, cannot claim and request messages observed afterwards.
+ * </p>
+ * <p>
+ * Local NAMEs can be claimed with {@link #claim(NetworkDevice, long, byte, ClaimListener)}. The manager sends the
+ * address claim, defends the address against NAMEs of lower priority, answers requests for address claimed and moves
+ * to a free address in the self-configurable range if the NAME is arbitrary address capable and loses its address.
+ * Once an address has been claimed, channels bound to the NAME get their source address assigned by the kernel.
+ * </p>
+ */
+public class J1939AddressClaimManager extends EventLoop<UnixFileDescriptor, J1939CanChannel> {
+    private static final Logger LOGGER = LoggerFactory.getLogger(J1939AddressClaimManager.class);
+
+    public static final Duration DEFAULT_TIMEOUT = ofMinutes(1);
+
+    /**
+     * The PGN of the address claimed and cannot claim messages.
+     */
+    public static final int PGN_ADDRESS_CLAIMED = 0x0EE00;
+
+    /**
+     * The PGN of the request message.
+     */
+    public static final int PGN_REQUEST = 0x0EA00;
+
+    /**
+     * The time an address claim has to stand uncontested before the address may be used.
+     */
+    public static final Duration CLAIM_TIMEOUT = ofMillis(250);
+
+    /**
+     * The first address of the range used by self-configurable ECUs.
+     */
+    public static final int DYNAMIC_ADDRESS_MIN = 128;
+
+    /**
+     * The last address of the range used by self-configurable ECUs.
+     */
+    public static final int DYNAMIC_ADDRESS_MAX = 247;
+
+    private static final long ARBITRARY_ADDRESS_CAPABLE = 1L << 63;
+    private static final int PGN_MASK_PDU1 = 0x3FF00;
+
+    private final ByteBuffer readBuffer = JavaCAN.allocateOrdered(8).order(ByteOrder.LITTLE_ENDIAN);
+    private final ByteBuffer writeBuffer = JavaCAN.allocateOrdered(8).order(ByteOrder.LITTLE_ENDIAN);
+    private final J1939ReceiveMessageHeaderBuffer header = new J1939ReceiveMessageHeaderBuffer();
+    private final DrainLoop.Step<Bus> readMonitor = this::readMonitor;
+    private final DrainLoop.Step<Claim> discardClaimChannel = this::discardClaimChannel;
+    private final Map<NetworkDevice, Bus> buses = new HashMap<>();
+    private final IdentityHashMap<J1939CanChannel, Bus> monitors = new IdentityHashMap<>();
+    private final IdentityHashMap<J1939CanChannel, Claim> claimChannels = new IdentityHashMap<>();
+    private final Object lock = new Object();
+
+    public J1939AddressClaimManager(ThreadFactory threadFactory, IOSelector<UnixFileDescriptor> selector) {
+        this(threadFactory, selector, DEFAULT_TIMEOUT);
+    }
+
+    public J1939AddressClaimManager(ThreadFactory threadFactory, IOSelector<UnixFileDescriptor> selector, Duration timeout) {
+        super("j1939-address-claim", threadFactory, selector, timeout);
+    }
+
+    /**
+     * Starts tracking address claims on the given bus. A request for address claimed is broadcast, so the table is
+     * populated by the answers of all ECUs on the bus. Adding a bus twice returns the existing table.
+     *
+     * @param device the bus
+     * @return the address table of the bus
+     * @throws IOException if the monitoring channel could not be opened
+     */
+    public J1939AddressTable addBus(NetworkDevice device) throws IOException {
+        synchronized (lock) {
+            Bus bus = buses.get(device);
+            if (bus != null) {
+                return bus.table;
+            }
+            J1939CanChannel ch = CanChannels.newJ1939Channel();
+            try {
+                ch.bind(new ImmutableJ1939Address(device, J1939Address.NO_NAME, J1939Address.NO_PGN, J1939Address.IDLE_ADDR));
+                ch.configureBlocking(false);
+                ch.setOption(SO_J1939_PROMISC, true);
+                ch.setOption(SO_BROADCAST, true);
+                ch.setOption(SO_J1939_FILTER, new J1939Filter[] {
+                    new J1939Filter(J1939Address.NO_NAME, 0, PGN_ADDRESS_CLAIMED, PGN_MASK_PDU1, J1939Address.NO_ADDR, (byte) 0),
+                    new J1939Filter(J1939Address.NO_NAME, 0, PGN_REQUEST, PGN_MASK_PDU1, J1939Address.NO_ADDR, (byte) 0),
+                });
+                register(ch, EnumSet.of(SelectorRegistration.Operation.READ));
+            } catch (IOException e) {
+                ch.close();
+                throw e;
+            }
+            bus = new Bus(device, ch);
+            buses.put(device, bus);
+            monitors.put(ch, bus);
+            this.start();
+            sendRequest(bus);
+            return bus.table;
+        }
+    }
+
+    /**
+     * Stops tracking the given bus, all claims on the bus are released.
+     *
+     * @param device the bus
+     * @return true if the bus was tracked
+     * @throws IOException if the channels could not be closed
+     */
+    public boolean removeBus(NetworkDevice device) throws IOException {
+        Bus bus;
+        synchronized (lock) {
+            bus = buses.remove(device);
+            if (bus == null) {
+                return false;
+            }
+            monitors.remove(bus.monitor);
+            for (Claim claim : new ArrayList<>(bus.claims)) {
+                release(claim);
+            }
+        }
+        cancel(bus.monitor);
+        lazyShutdown();
+        bus.monitor.close();
+        return true;
+    }
+
+    /**
+     * Returns the address table of the given bus.
+     *
+     * @param device the bus
+     * @return the table or null if the bus is not tracked
+     */
+    @Nullable
+    public J1939AddressTable getTable(NetworkDevice device) {
+        synchronized (lock) {
+            Bus bus = buses.get(device);
+            return bus == null ? null : bus.table;
+        }
+    }
+
+    /**
+     * Broadcasts a request for address claimed on the given bus, so all ECUs announce their addresses again.
+     *
+     * @param device the bus
+     * @throws IOException if the request could not be sent
+     */
+    public void requestAddressClaims(NetworkDevice device) throws IOException {
+        synchronized (lock) {
+            Bus bus = buses.get(device);
+            if (bus == null) {
+                throw new IllegalArgumentException("Bus is not tracked: " + device);
+            }
+            sendRequest(bus);
+        }
+    }
+
+    /**
+     * Starts claiming an address for a local NAME. The bus is added if it is not yet tracked.
+     *
+     * @param device the bus
+     * @param name the local NAME
+     * @param preferredAddress the address to claim first
+     * @param listener notified on the polling thread whenever the address of the claim changes
+     * @return the claim
+     * @throws IOException if the claim could not be sent
+     */
+    public Claim claim(NetworkDevice device, long name, byte preferredAddress, ClaimListener listener) throws IOException {
+        if (name == J1939Address.NO_NAME) {
+            throw new IllegalArgumentException("A NAME is required to claim an address!");
+        }
+        if ((preferredAddress & 0xFF) >= (J1939Address.IDLE_ADDR & 0xFF)) {
+            throw new IllegalArgumentException("Not a unicast address: " + (preferredAddress & 0xFF));
+        }
+        synchronized (lock) {
+            addBus(device);
+            Bus bus = buses.get(device);
+            for (Claim other : bus.claims) {
+                if (other.name == name) {
+                    throw new IllegalArgumentException("NAME is already claimed: " + Long.toHexString(name));
+                }
+            }
+            Claim claim = new Claim(bus, name, listener);
+            bus.claims.add(claim);
+            startClaim(claim, preferredAddress);
+            return claim;
+        }
+    }
+
+    /**
+     * Stops claiming the address of the given claim. J1939 has no message to give up an address, other ECUs will
+     * notice when the address is claimed by another NAME.
+     *
+     * @param claim the claim to release
+     * @throws IOException if the claim channel could not be closed
+     */
+    public void release(Claim claim) throws IOException {
+        J1939CanChannel ch;
+        synchronized (lock) {
+            if (!claim.bus.claims.remove(claim)) {
+                return;
+            }
+            claim.state = ClaimState.RELEASED;
+            claim.cancelTimer();
+            ch = claim.channel;
+            claim.channel = null;
+            if (ch != null) {
+                claimChannels.remove(ch);
+            }
+        }
+        if (ch != null) {
+            cancel(ch);
+            ch.close();
+        }
+    }
+
+    private void startClaim(Claim claim, byte address) throws IOException {
+        claim.address = address;
+        claim.state = ClaimState.CLAIMING;
+        rebind(claim, address);
+        sendClaim(claim);
+        claim.cancelTimer();
+        claim.timer = schedule(CLAIM_TIMEOUT, () -> {
+            synchronized (lock) {
+                if (claim.state == ClaimState.CLAIMING && claim.address == address) {
+                    claim.state = ClaimState.CLAIMED;
+                    LOGGER.debug("Claimed address {} for NAME {}", address & 0xFF, Long.toHexString(claim.name));
+                    notifyListener(claim);
+                }
+            }
+        });
+    }
+
+    private void rebind(Claim claim, byte address) throws IOException {
+        // the kernel takes the source address of claims from the bound address, but channels can only be bound once
+        J1939CanChannel old = claim.channel;
+        if (old != null) {
+            claimChannels.remove(old);
+            cancel(old);
+            old.close();
+        }
+        J1939CanChannel ch = CanChannels.newJ1939Channel();
+        try {
+            ch.bind(new ImmutableJ1939Address(claim.bus.device, claim.name, J1939Address.NO_PGN, address));
+            ch.configureBlocking(false);
+            ch.setOption(SO_BROADCAST, true);
+            register(ch, EnumSet.of(SelectorRegistration.Operation.READ));
+        } catch (IOException e) {
+            ch.close();
+            throw e;
+        }
+        claim.channel = ch;
+        claimChannels.put(ch, claim);
+    }
+
+    private void sendClaim(Claim claim) throws IOException {
+        J1939CanChannel ch = claim.channel;
+        if (ch == null) {
+            return;
+        }
+        writeBuffer.clear();
+        writeBuffer.putLong(claim.name);
+        writeBuffer.flip();
+        ch.send(writeBuffer, new ImmutableJ1939Address(claim.bus.device, J1939Address.NO_NAME, PGN_ADDRESS_CLAIMED, J1939Address.NO_ADDR));
+    }
+
+    private void sendRequest(Bus bus) throws IOException {
+        writeBuffer.clear();
+        writeBuffer.put((byte) PGN_ADDRESS_CLAIMED);
+        writeBuffer.put((byte) (PGN_ADDRESS_CLAIMED >> 8));
+        writeBuffer.put((byte) (PGN_ADDRESS_CLAIMED >> 16));
+        writeBuffer.flip();
+        bus.monitor.send(writeBuffer, new ImmutableJ1939Address(bus.device, J1939Address.NO_NAME, PGN_REQUEST, J1939Address.NO_ADDR));
+    }
+
+    @Override
+    protected boolean isEmpty() {
+        synchronized (lock) {
+            return buses.isEmpty();
+        }
+    }
+
+    @Override
+    protected void processEvents(List<IOEvent<UnixFileDescriptor>> events) throws IOException {
+        synchronized (lock) {
+            for (IOEvent<UnixFileDescriptor> event : events) {
+                Channel ch = event.getRegistration().getChannel();
+                Bus bus = monitors.get(ch);
+                if (bus != null) {
+                    DrainLoop.drain(bus, DrainLoop.DEFAULT_BUDGET, readMonitor);
+                    continue;
+                }
+                Claim claim = claimChannels.get(ch);
+                if (claim != null && claim.channel != null) {
+                    // the claim channels only send, everything addressed to them is handled by the monitor
+                    DrainLoop.drain(claim, DrainLoop.DEFAULT_BUDGET, discardClaimChannel);
+                }
+            }
+        }
+    }
+
+    private boolean readMonitor(Bus bus) throws IOException {
+        if (!receive(bus.monitor, header)) {
+            return false;
+        }
+        onMessage(bus);
+        return true;
+    }
+
+    private boolean discardClaimChannel(Claim claim) throws IOException {
+        J1939CanChannel channel = claim.channel;
+        if (channel == null || !receive(channel, null)) {
+            return false;
+        }
+        LOGGER.trace("Discarding message on claim channel of NAME {}", Long.toHexString(claim.name));
+        return true;
+    }
+
+    private boolean receive(J1939CanChannel ch, @Nullable J1939ReceiveMessageHeaderBuffer header) throws IOException {
+        readBuffer.clear();
+        if (ch.tryReceive(readBuffer, header) < 0) {
+            return false;
+        }
+        readBuffer.flip();
+        return true;
+    }
+
+    private void onMessage(Bus bus) throws IOException {
+        int pgn = header.getSourceAddressBuffer().getParameterGroupNumber() & PGN_MASK_PDU1;
+        byte source = header.getSourceAddressBuffer().getAddress();
+        if (pgn == PGN_ADDRESS_CLAIMED && readBuffer.remaining() == 8) {
+            onAddressClaimed(bus, readBuffer.getLong(0), source);
+        } else if (pgn == PGN_REQUEST && readBuffer.remaining() >= 3) {
+            int requested = (readBuffer.get(0) & 0xFF) | ((readBuffer.get(1) & 0xFF) << 8) | ((readBuffer.get(2) & 0xFF) << 16);
+            if (requested == PGN_ADDRESS_CLAIMED) {
+                onRequest(bus, header.getDestinationAddress());
+            }
+        }
+    }
+
+    private void onAddressClaimed(Bus bus, long name, byte address) throws IOException {
+        bus.table.update(name, address);
+        if ((address & 0xFF) >= (J1939Address.IDLE_ADDR & 0xFF)) {
+            return;
+        }
+        for (Claim claim : new ArrayList<>(bus.claims)) {
+            if (claim.name == name || claim.address != address || claim.state == ClaimState.LOST) {
+                continue;
+            }
+            if (Long.compareUnsigned(name, claim.name) > 0) {
+                // our NAME has the higher priority, defend the address
+                sendClaim(claim);
+                bus.table.update(claim.name, claim.address);
+            } else {
+                lose(claim);
+            }
+        }
+    }
+
+    private void lose(Claim claim) throws IOException {
+        LOGGER.debug("NAME {} lost address {}", Long.toHexString(claim.name), claim.address & 0xFF);
+        if ((claim.name & ARBITRARY_ADDRESS_CAPABLE) != 0) {
+            byte next = nextFreeAddress(claim);
+            if (next != J1939Address.IDLE_ADDR) {
+                boolean wasClaimed = claim.state == ClaimState.CLAIMED;
+                startClaim(claim, next);
+                if (wasClaimed) {
+                    notifyListener(claim);
+                }
+                return;
+            }
+        }
+        claim.cancelTimer();
+        claim.state = ClaimState.LOST;
+        claim.address = J1939Address.IDLE_ADDR;
+        rebind(claim, J1939Address.IDLE_ADDR);
+        sendClaim(claim);
+        notifyListener(claim);
+    }
+
+    private byte nextFreeAddress(Claim claim) {
+        int range = DYNAMIC_ADDRESS_MAX - DYNAMIC_ADDRESS_MIN + 1;
+        int start = claim.address & 0xFF;
+        for (int i = 1; i <= range; i++) {
+            byte candidate = (byte) (DYNAMIC_ADDRESS_MIN + Math.floorMod(start + i - DYNAMIC_ADDRESS_MIN, range));
+            if (!claim.bus.table.isClaimed(candidate) && !isClaimedLocally(claim.bus, candidate)) {
+                return candidate;
+            }
+        }
+        return J1939Address.IDLE_ADDR;
+    }
+
+    private static boolean isClaimedLocally(Bus bus, byte address) {
+        for (Claim claim : bus.claims) {
+            if (claim.address == address && claim.state != ClaimState.LOST) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void onRequest(Bus bus, byte destination) throws IOException {
+        for (Claim claim : bus.claims) {
+            if (destination == J1939Address.NO_ADDR || destination == claim.address) {
+                sendClaim(claim);
+            }
+        }
+    }
+
+    private void notifyListener(Claim claim) {
+        try {
+            claim.listener.onClaimChanged(claim);
+        } catch (RuntimeException e) {
+            LOGGER.error("Claim listener failed for NAME {}", Long.toHexString(claim.name), e);
+        }
+    }
+
+    @Override
+    protected void closeResources() throws IOException {
+        IOException e = null;
+        synchronized (lock) {
+            List<J1939CanChannel> channels = new ArrayList<>(monitors.keySet());
+            channels.addAll(claimChannels.keySet());
+            for (J1939CanChannel ch : channels) {
+                try {
+                    ch.close();
+                } catch (IOException e1) {
+                    if (e != null) {
+                        e1.addSuppressed(e);
+                    }
+                    e = e1;
+                }
+            }
+            for (Bus bus : buses.values()) {
+                for (Claim claim : bus.claims) {
+                    claim.state = ClaimState.RELEASED;
+                    claim.cancelTimer();
+                    claim.channel = null;
+                }
+                bus.claims.clear();
+                bus.table.clear();
+            }
+            buses.clear();
+            monitors.clear();
+            claimChannels.clear();
+        }
+        if (e != null) {
+            throw e;
+        }
+    }
+
+    /**
+     * The state of a local address claim.
+     */
+    public enum ClaimState {
+        /**
+         * The claim has been sent and the claim timeout is pending.
+         */
+        CLAIMING,
+        /**
+         * The address has been claimed and may be used.
+         */
+        CLAIMED,
+        /**
+         * No address could be claimed, a cannot claim message has been sent.
+         */
+        LOST,
+        /**
+         * The claim has been released.
+         */
+        RELEASED,
+    }
+
+    /**
+     * A listener that is notified about address changes of a claim.
+     */
+    @FunctionalInterface
+    public interface ClaimListener {
+        /**
+         * Called on the polling thread after a claim has been completed, lost or moved to a different address.
+         *
+         * @param claim the claim
+         */
+        void onClaimChanged(Claim claim);
+    }
+
+    /**
+     * An address claim of a local NAME.
+     */
+    public static final class Claim {
+        private final Bus bus;
+        private final long name;
+        private final ClaimListener listener;
+        private volatile byte address = J1939Address.IDLE_ADDR;
+        private volatile ClaimState state = ClaimState.CLAIMING;
+        @Nullable
+        private J1939CanChannel channel;
+        private TimerWheel.@Nullable Timeout timer;
+
+        Claim(Bus bus, long name, ClaimListener listener) {
+            this.bus = bus;
+            this.name = name;
+            this.listener = listener;
+        }
+
+        public NetworkDevice getDevice() {
+            return bus.device;
+        }
+
+        public long getName() {
+            return name;
+        }
+
+        /**
+         * Returns the address that is being claimed or has been claimed.
+         *
+         * @return the address or {@link J1939Address#IDLE_ADDR} if the claim has been lost
+         */
+        public byte getAddress() {
+            return address;
+        }
+
+        public ClaimState getState() {
+            return state;
+        }
+
+        private void cancelTimer() {
+            TimerWheel.Timeout t = timer;
+            if (t != null) {
+                t.cancel();
+                timer = null;
+            }
+        }
+
+        @Override
+        public String toString() {
+            return "Claim(device=" + bus.device + ", name=" + Long.toHexString(name) + ", address=" + (address & 0xFF) + ", state=" + state + ")";
+        }
+    }
+
+    static final class Bus {
+        final NetworkDevice device;
+        final J1939CanChannel monitor;
+        final J1939AddressTable table;
+        final List<Claim> claims = new ArrayList<>();
+
+        Bus(NetworkDevice device, J1939CanChannel monitor) {
+            this.device = device;
+            this.monitor = monitor;
+            this.table = new J1939AddressTable(device);
+        }
+    }
+}
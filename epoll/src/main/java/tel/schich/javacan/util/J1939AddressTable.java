@@ -0,0 +1,166 @@
+/*
+ * The MIT License
+ * Copyright © 2018 Phillip Schichtel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package tel.schich.javacan.util;
+
+import tel.schich.javacan.J1939Address;
+import tel.schich.javacan.NetworkDevice;
+
+import java.util.Arrays;
+
+/**
+ * A table of the NAME to source address mapping on a single J1939 bus as observed from address claims. The table is
+ * updated incrementally by the {@link tel.schich.javacan.util.J1939AddressClaimManager} and can be queried from any
+ * thread, both lookup directions are constant time and allocation free.
+ * Conflicting claims are resolved like the kernel does it: a claim for an address that is already taken only succeeds
+ * if the claiming NAME is lower or equal (higher priority) than the NAME currently holding the address.
+ */
+public final class J1939AddressTable {
+    private static final int ADDRESSES = 256;
+    private static final long FREE = J1939Address.NO_NAME;
+
+    private final NetworkDevice device;
+    private final long[] nameByAddress = new long[ADDRESSES];
+    private final LongHashTable<Byte> addressByName = new LongHashTable<>(ADDRESSES / 4);
+
+    J1939AddressTable(NetworkDevice device) {
+        this.device = device;
+    }
+
+    /**
+     * Returns the device this table belongs to.
+     *
+     * @return the device
+     */
+    public NetworkDevice getDevice() {
+        return device;
+    }
+
+    /**
+     * Looks up the source address currently claimed by the given NAME.
+     *
+     * @param name the NAME
+     * @return the address or {@link J1939Address#NO_ADDR} if the NAME has no address
+     */
+    public synchronized byte getAddress(long name) {
+        if (name == FREE) {
+            return J1939Address.NO_ADDR;
+        }
+        Byte address = addressByName.get(name);
+        return address == null ? J1939Address.NO_ADDR : address;
+    }
+
+    /**
+     * Looks up the NAME that currently holds the given source address.
+     *
+     * @param address the source address
+     * @return the NAME or {@link J1939Address#NO_NAME} if the address is free
+     */
+    public synchronized long getName(byte address) {
+        return nameByAddress[address & 0xFF];
+    }
+
+    /**
+     * Checks whether the given source address is currently claimed by any NAME.
+     *
+     * @param address the source address
+     * @return true if the address is taken
+     */
+    public synchronized boolean isClaimed(byte address) {
+        return nameByAddress[address & 0xFF] != FREE;
+    }
+
+    /**
+     * Returns the number of NAMEs that currently hold an address.
+     *
+     * @return the number of entries
+     */
+    public synchronized int size() {
+        return addressByName.size();
+    }
+
+    /**
+     * Applies an observed address claim.
+     *
+     * @param name the claiming NAME
+     * @param address the claimed address, {@link J1939Address#IDLE_ADDR} for a cannot claim
+     * @return true if the NAME holds the address afterwards
+     */
+    synchronized boolean update(long name, byte address) {
+        if (name == FREE) {
+            return false;
+        }
+        int sa = address & 0xFF;
+        if (sa >= (J1939Address.IDLE_ADDR & 0xFF)) {
+            remove(name);
+            return false;
+        }
+        long current = nameByAddress[sa];
+        if (current == name) {
+            return true;
+        }
+        if (current != FREE) {
+            if (Long.compareUnsigned(name, current) > 0) {
+                // the current holder has the higher priority and will defend its address
+                return false;
+            }
+            remove(current);
+        }
+        remove(name);
+        addressByName.put(name, address);
+        nameByAddress[sa] = name;
+        return true;
+    }
+
+    /**
+     * Removes the NAME from the table, freeing its address.
+     *
+     * @param name the NAME
+     */
+    synchronized void remove(long name) {
+        Byte address = addressByName.remove(name);
+        if (address != null) {
+            nameByAddress[address & 0xFF] = FREE;
+        }
+    }
+
+    synchronized void clear() {
+        Arrays.fill(nameByAddress, FREE);
+        addressByName.clear();
+    }
+
+    @Override
+    public synchronized String toString() {
+        StringBuilder sb = new StringBuilder("J1939AddressTable(device=").append(device).append(", entries={");
+        boolean first = true;
+        for (int sa = 0; sa < ADDRESSES; sa++) {
+            if (nameByAddress[sa] != FREE) {
+                if (!first) {
+                    sb.append(", ");
+                }
+                first = false;
+                sb.append(String.format("%02X=%016X", sa, nameByAddress[sa]));
+            }
+        }
+        return sb.append("})").toString();
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ * The MIT License
+ * Copyright © 2018 Phillip Schichtel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package tel.schich.javacan.util;
+
+import tel.schich.javacan.IsotpCanChannel;
+import tel.schich.javacan.JavaCAN;
+
+import java.nio.ByteBuffer;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <p>
+ * This class implements a pool of direct buffers that are each large enough to hold any ISO-TP message. The buffers
+ * are slices of a single large allocation and are handed out as {@link PooledMessage}s, which return their buffer to
+ * the pool when they are released.
+ * </p>
+ * <p>
+ * When the pool is exhausted a fresh buffer is allocated, which will simply be dropped on release. The number of
+ * such allocations is exposed by {@link #getMisses()} and should stay at zero for a properly sized pool.
+ * </p>
+ *
+ * @see PooledMessageHandler
+ */
+public final class MessageBufferPool {
+    /**
+     * The capacity of each buffer in this pool.
+     */
+    public static final int BUFFER_SIZE = IsotpCanChannel.MAX_MESSAGE_LENGTH + 1;
+
+    /**
+     * The largest supported number of buffers, all buffers are allocated as a single {@link ByteBuffer}.
+     */
+    public static final int MAX_SIZE = Integer.MAX_VALUE / BUFFER_SIZE;
+
+    private final Queue<PooledMessage> available = new ConcurrentLinkedQueue<>();
+    private final int size;
+    private final AtomicLong misses = new AtomicLong(0);
+
+    /**
+     * Creates a new pool.
+     *
+     * @param size the number of pooled buffers, at most {@link #MAX_SIZE}
+     * @throws IllegalArgumentException if the size is not positive or the buffers would not fit into one allocation
+     */
+    public MessageBufferPool(int size) {
+        if (size <= 0) {
+            throw new IllegalArgumentException("The pool size must be positive!");
+        }
+        if (size > MAX_SIZE) {
+            throw new IllegalArgumentException("The pool size must not exceed " + MAX_SIZE + "!");
+        }
+        this.size = size;
+        ByteBuffer slab = JavaCAN.allocateUnordered(size * BUFFER_SIZE);
+        for (int i = 0; i < size; i++) {
+            slab.limit((i + 1) * BUFFER_SIZE).position(i * BUFFER_SIZE);
+            available.add(new PooledMessage(this, slab.slice()));
+        }
+    }
+
+    /**
+     * Returns the number of buffers managed by this pool.
+     *
+     * @return the pool size
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * Returns the number of buffers that are currently not handed out.
+     *
+     * @return the number of available buffers
+     */
+    public int getAvailable() {
+        return available.size();
+    }
+
+    /**
+     * Returns how often the pool was exhausted and a buffer had to be allocated.
+     *
+     * @return the number of misses
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * Takes a message from the pool. The buffer of the message is cleared.
+     *
+     * @return a message that must be released once it is not needed anymore
+     */
+    public PooledMessage acquire() {
+        PooledMessage message = available.poll();
+        if (message == null) {
+            misses.incrementAndGet();
+            message = new PooledMessage(null, IsotpCanChannel.allocateSufficientMemory());
+        }
+        message.acquire();
+        return message;
+    }
+
+    void release(PooledMessage message) {
+        available.add(message);
+    }
+}
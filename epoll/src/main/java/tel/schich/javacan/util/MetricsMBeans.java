@@ -0,0 +1,72 @@
+/*
+ * The MIT License
+ * Copyright © 2018 Phillip Schichtel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package tel.schich.javacan.util;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+
+/**
+ * Registers the metrics of this library, e.g. {@link tel.schich.javacan.ChannelMetrics},
+ * {@link tel.schich.javacan.platform.linux.epoll.SelectorMetrics} or {@link LatencyHistogram}, with the platform
+ * MBean server. They are registered as {@code tel.schich.javacan:type=<simple class name>,name=<name>}.
+ * This lives outside of the core module, since {@code java.lang.management} is not available on every platform.
+ */
+public final class MetricsMBeans {
+    public static final String DOMAIN = "tel.schich.javacan";
+
+    private MetricsMBeans() {
+    }
+
+    /**
+     * Registers the given metrics with the platform MBean server.
+     *
+     * @param name the name of the metrics, e.g. the name of the device
+     * @param metrics an instance implementing a {@code *MXBean} interface
+     * @return the object name the metrics have been registered under
+     * @throws JMException if the name is invalid or already taken
+     */
+    public static ObjectName register(String name, Object metrics) throws JMException {
+        ObjectName objectName = objectName(metrics.getClass(), name);
+        ManagementFactory.getPlatformMBeanServer().registerMBean(metrics, objectName);
+        return objectName;
+    }
+
+    /**
+     * Removes previously registered metrics from the platform MBean server, if they are registered.
+     *
+     * @param objectName the name returned by {@link #register(String, Object)}
+     * @throws JMException if the unregistration fails
+     */
+    public static void unregister(ObjectName objectName) throws JMException {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        if (server.isRegistered(objectName)) {
+            server.unregisterMBean(objectName);
+        }
+    }
+
+    private static ObjectName objectName(Class<?> type, String name) throws JMException {
+        return new ObjectName(DOMAIN + ":type=" + type.getSimpleName() + ",name=" + ObjectName.quote(name));
+    }
+}
@@ -50,6 +50,10 @@ final class PollingThread {
         thread.join();
     }
 
+    public boolean isCurrentThread() {
+        return Thread.currentThread() == thread;
+    }
+
     static PollingThread create(String name, Duration timeout, ThreadFactory factory, PollFunction foo, PollExceptionHandler exceptionHandler) {
         Poller p = new Poller(name, timeout, foo, exceptionHandler);
         Thread t = factory.newThread(p);
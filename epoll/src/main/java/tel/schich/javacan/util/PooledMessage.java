@@ -0,0 +1,86 @@
+/*
+ * The MIT License
+ * Copyright © 2018 Phillip Schichtel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package tel.schich.javacan.util;
+
+import org.eclipse.jdt.annotation.Nullable;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A message buffer taken from a {@link MessageBufferPool}. The owner of the message has exclusive access to its
+ * buffer until {@link #release()} is called, after which the buffer must not be used anymore. Ownership may be passed
+ * on to other threads, as long as the message is released exactly once.
+ */
+public final class PooledMessage implements AutoCloseable {
+    @Nullable
+    private final MessageBufferPool pool;
+    private final ByteBuffer buffer;
+    private final AtomicBoolean acquired = new AtomicBoolean(false);
+
+    PooledMessage(@Nullable MessageBufferPool pool, ByteBuffer buffer) {
+        this.pool = pool;
+        this.buffer = buffer;
+    }
+
+    void acquire() {
+        acquired.set(true);
+        buffer.clear();
+    }
+
+    /**
+     * Returns the buffer of this message. Its position and limit are set to the message content when the message is
+     * handed to a {@link PooledMessageHandler}.
+     *
+     * @return the direct buffer backing this message
+     * @throws IllegalStateException if the message has already been released
+     */
+    public ByteBuffer getBuffer() {
+        if (!acquired.get()) {
+            throw new IllegalStateException("The message has already been released!");
+        }
+        return buffer;
+    }
+
+    /**
+     * Returns the message to its pool.
+     *
+     * @throws IllegalStateException if the message has already been released
+     */
+    public void release() {
+        if (!acquired.compareAndSet(true, false)) {
+            throw new IllegalStateException("The message has already been released!");
+        }
+        if (pool != null) {
+            pool.release(this);
+        }
+    }
+
+    /**
+     * Releases this message, so it can be used in try-with-resources blocks.
+     */
+    @Override
+    public void close() {
+        release();
+    }
+}
@@ -0,0 +1,42 @@
+/*
+ * The MIT License
+ * Copyright © 2018 Phillip Schichtel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package tel.schich.javacan.util;
+
+import tel.schich.javacan.IsotpCanChannel;
+
+/**
+ * Pooled message handlers are called by a {@link tel.schich.javacan.util.IsotpListener} for each message received by
+ * the {@link tel.schich.javacan.IsotpCanChannel} it was added with. Unlike a {@link MessageHandler}, the handler takes
+ * ownership of the message and its buffer.
+ */
+@FunctionalInterface
+public interface PooledMessageHandler {
+    /**
+     * Handles a received message. The handler owns the message and must {@link PooledMessage#release() release} it
+     * once it is done, possibly on another thread. The buffer's position and limit are set to the message content.
+     *
+     * @param ch the channel that received the message
+     * @param message the message
+     */
+    void handle(IsotpCanChannel ch, PooledMessage message);
+}
@@ -0,0 +1,366 @@
+/*
+ * The MIT License
+ * Copyright © 2018 Phillip Schichtel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package tel.schich.javacan.util;
+
+import org.eclipse.jdt.annotation.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * <p>
+ * This class implements a hashed timer wheel as described by Varghese and Lauck. Timeouts are hashed into a fixed
+ * number of buckets by their deadline, scheduling and cancelling a timeout are O(1) operations and expiring timeouts
+ * only touches the buckets of the elapsed ticks. Timeouts further in the future than one revolution of the wheel are
+ * kept in their bucket with a number of remaining rounds.
+ * </p>
+ * <p>
+ * The wheel is not driven by a thread of its own. Instead, a single owning thread (usually the poller thread of an
+ * event loop) is expected to call {@link #expire(long)} regularly, ideally no later than
+ * {@link #nanosUntilNextExpiry(long)}.
+ * Timeouts can be scheduled and cancelled from any thread, the tasks are always executed on the owning thread.
+ * </p>
+ * <p>
+ * The resolution of the wheel is its tick duration: timeouts never fire early, but may fire up to one tick late.
+ * </p>
+ */
+public final class TimerWheel {
+    private static final Logger LOGGER = LoggerFactory.getLogger(TimerWheel.class);
+
+    public static final Duration DEFAULT_TICK_DURATION = Duration.ofMillis(10);
+    public static final int DEFAULT_TICKS_PER_WHEEL = 512;
+
+    private final long tickNanos;
+    private final Bucket[] wheel;
+    private final int mask;
+    private final long startTime;
+    private final Queue<Timeout> pendingTimeouts = new ConcurrentLinkedQueue<>();
+    private final Queue<Timeout> cancelledTimeouts = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger activeTimeouts = new AtomicInteger();
+
+    private long tick;
+    /**
+     * A lower bound of the tick in which the earliest timeout fires, {@link Long#MIN_VALUE} if it has to be looked up
+     * again. Cancelled timeouts may leave it too early, which only costs a spurious wakeup.
+     */
+    private long nextExpiryTick = Long.MAX_VALUE;
+
+    public TimerWheel() {
+        this(DEFAULT_TICK_DURATION, DEFAULT_TICKS_PER_WHEEL);
+    }
+
+    /**
+     * Creates a new timer wheel.
+     *
+     * @param tickDuration the resolution of the wheel
+     * @param ticksPerWheel the number of buckets, this will be rounded up to the next power of two
+     */
+    public TimerWheel(Duration tickDuration, int ticksPerWheel) {
+        if (tickDuration.isNegative() || tickDuration.isZero()) {
+            throw new IllegalArgumentException("The tick duration must be positive!");
+        }
+        if (ticksPerWheel <= 0 || ticksPerWheel > (1 << 30)) {
+            throw new IllegalArgumentException("ticksPerWheel must be between 1 and 2^30!");
+        }
+        this.tickNanos = tickDuration.toNanos();
+        int size = Integer.highestOneBit(ticksPerWheel);
+        if (size < ticksPerWheel) {
+            size <<= 1;
+        }
+        this.wheel = new Bucket[size];
+        for (int i = 0; i < size; i++) {
+            this.wheel[i] = new Bucket();
+        }
+        this.mask = size - 1;
+        this.startTime = System.nanoTime();
+    }
+
+    /**
+     * Returns the resolution of this wheel.
+     *
+     * @return the tick duration
+     */
+    public Duration getTickDuration() {
+        return Duration.ofNanos(tickNanos);
+    }
+
+    /**
+     * Schedules a task to be run after the given delay. This method can be called from any thread.
+     *
+     * @param delay the delay after which the task should run
+     * @param task the task
+     * @return a handle that allows cancelling the timeout
+     */
+    public Timeout schedule(Duration delay, Runnable task) {
+        return scheduleAt(System.nanoTime() + Math.max(0, delay.toNanos()), task);
+    }
+
+    /**
+     * Schedules a task to be run at the given {@link System#nanoTime()} deadline. This method can be called from
+     * any thread.
+     *
+     * @param deadlineNanos the deadline in terms of {@link System#nanoTime()}
+     * @param task the task
+     * @return a handle that allows cancelling the timeout
+     */
+    public Timeout scheduleAt(long deadlineNanos, Runnable task) {
+        Timeout timeout = new Timeout(this, deadlineNanos - startTime, task);
+        activeTimeouts.incrementAndGet();
+        pendingTimeouts.add(timeout);
+        return timeout;
+    }
+
+    /**
+     * Returns the number of timeouts that have neither expired nor been cancelled yet.
+     *
+     * @return the number of active timeouts
+     */
+    public int size() {
+        return activeTimeouts.get();
+    }
+
+    /**
+     * Checks if there are no active timeouts.
+     *
+     * @return true if nothing is scheduled
+     */
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /**
+     * Calculates how long the owning thread may sleep until the earliest active timeout is due. This does
+     * not require waking up for ticks without timeouts, so a single timeout minutes in the future does not cause a
+     * wakeup per tick. This method must only be called by the owning thread.
+     *
+     * @param nowNanos the current time in terms of {@link System#nanoTime()}
+     * @return the nanoseconds until the end of the tick of the earliest timeout, or -1 if no timeouts are active
+     */
+    public long nanosUntilNextExpiry(long nowNanos) {
+        if (isEmpty()) {
+            return -1;
+        }
+        transferPendingTimeouts();
+        if (nextExpiryTick == Long.MIN_VALUE) {
+            nextExpiryTick = findNextExpiryTick();
+        }
+        if (nextExpiryTick == Long.MAX_VALUE) {
+            return -1;
+        }
+        long expiryTime = (nextExpiryTick + 1) * tickNanos;
+        return Math.max(0, expiryTime - (nowNanos - startTime));
+    }
+
+    private long findNextExpiryTick() {
+        long earliest = Long.MAX_VALUE;
+        for (int offset = 0; offset < wheel.length && tick + offset < earliest; offset++) {
+            for (Timeout t = wheel[(int) ((tick + offset) & mask)].head; t != null; t = t.next) {
+                if (!t.isCancelled()) {
+                    earliest = Math.min(earliest, tick + offset + Math.max(0, t.remainingRounds) * wheel.length);
+                }
+            }
+        }
+        return earliest;
+    }
+
+    /**
+     * Advances the wheel up to the given time and runs all tasks whose deadline has passed.
+     * This method must only ever be called by a single thread.
+     *
+     * @param nowNanos the current time in terms of {@link System#nanoTime()}
+     * @return the number of tasks that have been run
+     */
+    public int expire(long nowNanos) {
+        final long elapsed = nowNanos - startTime;
+        int expired = 0;
+        removeCancelledTimeouts();
+        while ((tick + 1) * tickNanos <= elapsed) {
+            transferPendingTimeouts();
+            expired += wheel[(int) (tick & mask)].expire(tick * tickNanos + tickNanos);
+            tick++;
+        }
+        if (nextExpiryTick < tick) {
+            nextExpiryTick = Long.MIN_VALUE;
+        }
+        transferPendingTimeouts();
+        return expired;
+    }
+
+    private void transferPendingTimeouts() {
+        Timeout timeout;
+        while ((timeout = pendingTimeouts.poll()) != null) {
+            if (timeout.state.get() != Timeout.STATE_PENDING) {
+                continue;
+            }
+            // timeouts that are already due go into the current bucket and fire with the next expired tick
+            long ticks = Math.max(timeout.deadline / tickNanos, tick);
+            timeout.remainingRounds = (ticks - tick) / wheel.length;
+            Bucket bucket = wheel[(int) (ticks & mask)];
+            bucket.add(timeout);
+            if (nextExpiryTick != Long.MIN_VALUE) {
+                nextExpiryTick = Math.min(nextExpiryTick, ticks);
+            }
+        }
+    }
+
+    private void removeCancelledTimeouts() {
+        Timeout timeout;
+        while ((timeout = cancelledTimeouts.poll()) != null) {
+            Bucket bucket = timeout.bucket;
+            if (bucket != null) {
+                bucket.remove(timeout);
+            }
+        }
+    }
+
+    /**
+     * A handle for a task scheduled on a {@link TimerWheel}.
+     */
+    public static final class Timeout {
+        private static final int STATE_PENDING = 0;
+        private static final int STATE_CANCELLED = 1;
+        private static final int STATE_EXPIRED = 2;
+
+        private final TimerWheel wheel;
+        private final long deadline;
+        private final Runnable task;
+        private final AtomicInteger state = new AtomicInteger(STATE_PENDING);
+
+        private long remainingRounds;
+        @Nullable
+        private Bucket bucket;
+        @Nullable
+        private Timeout next;
+        @Nullable
+        private Timeout prev;
+
+        private Timeout(TimerWheel wheel, long deadline, Runnable task) {
+            this.wheel = wheel;
+            this.deadline = deadline;
+            this.task = task;
+        }
+
+        /**
+         * Cancels this timeout, unless it already expired. This method can be called from any thread.
+         *
+         * @return true if the timeout has been cancelled by this call
+         */
+        public boolean cancel() {
+            if (!state.compareAndSet(STATE_PENDING, STATE_CANCELLED)) {
+                return false;
+            }
+            wheel.activeTimeouts.decrementAndGet();
+            wheel.cancelledTimeouts.add(this);
+            return true;
+        }
+
+        public boolean isCancelled() {
+            return state.get() == STATE_CANCELLED;
+        }
+
+        public boolean isExpired() {
+            return state.get() == STATE_EXPIRED;
+        }
+
+        private boolean expire() {
+            if (!state.compareAndSet(STATE_PENDING, STATE_EXPIRED)) {
+                return false;
+            }
+            wheel.activeTimeouts.decrementAndGet();
+            try {
+                task.run();
+            } catch (Throwable t) {
+                LOGGER.warn("A timer task failed!", t);
+            }
+            return true;
+        }
+    }
+
+    private static final class Bucket {
+        @Nullable
+        private Timeout head;
+        @Nullable
+        private Timeout tail;
+
+        void add(Timeout timeout) {
+            timeout.bucket = this;
+            if (head == null) {
+                head = tail = timeout;
+            } else {
+                tail.next = timeout;
+                timeout.prev = tail;
+                tail = timeout;
+            }
+        }
+
+        int expire(long tickEnd) {
+            int expired = 0;
+            Timeout timeout = head;
+            while (timeout != null) {
+                Timeout next = timeout.next;
+                if (timeout.remainingRounds <= 0 && timeout.deadline < tickEnd) {
+                    remove(timeout);
+                    if (timeout.expire()) {
+                        expired++;
+                    }
+                } else if (timeout.isCancelled()) {
+                    remove(timeout);
+                } else {
+                    timeout.remainingRounds--;
+                }
+                timeout = next;
+            }
+            return expired;
+        }
+
+        void remove(Timeout timeout) {
+            if (timeout.bucket != this) {
+                return;
+            }
+            Timeout next = timeout.next;
+            if (timeout.prev != null) {
+                timeout.prev.next = next;
+            }
+            if (timeout.next != null) {
+                timeout.next.prev = timeout.prev;
+            }
+            if (timeout == head) {
+                if (timeout == tail) {
+                    tail = null;
+                    head = null;
+                } else {
+                    head = next;
+                }
+            } else if (timeout == tail) {
+                tail = timeout.prev;
+            }
+            timeout.prev = null;
+            timeout.next = null;
+            timeout.bucket = null;
+        }
+    }
+}
@@ -0,0 +1,732 @@
+/*
+ * The MIT License
+ * Copyright © 2018 Phillip Schichtel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package tel.schich.javacan.util;
+
+import org.eclipse.jdt.annotation.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import tel.schich.javacan.IsotpCanChannel;
+import tel.schich.javacan.JavaCAN;
+import tel.schich.javacan.platform.linux.LinuxNativeOperationException;
+import tel.schich.javacan.platform.linux.UnixFileDescriptor;
+import tel.schich.javacan.select.IOSelector;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * <p>
+ * A UDS (ISO 14229) client on top of {@link tel.schich.javacan.IsotpCanChannel}s. Each ECU is represented by an
+ * {@link Ecu} with its own request queue, so requests to many ECUs are in flight at the same time while a single
+ * polling thread handles all IO and timers.
+ * </p>
+ * <p>
+ * Responses are matched to their request by service ID and, for positive responses, by the request parameter that
+ * the ECU echoes (the sub-function, the data identifier, the routine identifier or the TransferData block sequence
+ * counter), so a late response to a timed out request is not taken for the response to the next request of the same
+ * service. A negative response with the code {@link #NRC_RESPONSE_PENDING} extends the timeout of the request to the
+ * pending timeout (P2*) and any other negative response fails the request with a
+ * {@link UdsNegativeResponseException}. Messages that neither match the positive nor the negative response of the
+ * request in flight are dropped.
+ * </p>
+ * <p>
+ * The next queued request is sent directly from the polling thread once the previous response arrived and the
+ * {@link ResponseDecoder}s decode responses in place from the receive buffer, so a request/response cycle does not
+ * involve any thread hand-off or copy. {@link Ecu#download(long, ByteBuffer)} builds on this to stream a
+ * RequestDownload/TransferData sequence with the next block already encoded when the previous block is
+ * acknowledged.
+ * </p>
+ *
+ * @see AsyncIsotpClient
+ */
+public class UdsClient implements Closeable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(UdsClient.class);
+
+    public static final Duration DEFAULT_RESPONSE_TIMEOUT = Duration.ofSeconds(1);
+    public static final Duration DEFAULT_PENDING_TIMEOUT = Duration.ofSeconds(5);
+
+    public static final int SID_DIAGNOSTIC_SESSION_CONTROL = 0x10;
+    public static final int SID_ECU_RESET = 0x11;
+    public static final int SID_READ_DTC_INFORMATION = 0x19;
+    public static final int SID_READ_DATA_BY_IDENTIFIER = 0x22;
+    public static final int SID_SECURITY_ACCESS = 0x27;
+    public static final int SID_COMMUNICATION_CONTROL = 0x28;
+    public static final int SID_WRITE_DATA_BY_IDENTIFIER = 0x2E;
+    public static final int SID_INPUT_OUTPUT_CONTROL = 0x2F;
+    public static final int SID_ROUTINE_CONTROL = 0x31;
+    public static final int SID_TESTER_PRESENT = 0x3E;
+    public static final int SID_CONTROL_DTC_SETTING = 0x85;
+    public static final int SID_REQUEST_DOWNLOAD = 0x34;
+    public static final int SID_TRANSFER_DATA = 0x36;
+    public static final int SID_REQUEST_TRANSFER_EXIT = 0x37;
+    public static final int NEGATIVE_RESPONSE = 0x7F;
+    public static final int POSITIVE_RESPONSE_OFFSET = 0x40;
+    public static final int SUPPRESS_POSITIVE_RESPONSE = 0x80;
+    public static final int NRC_RESPONSE_PENDING = 0x78;
+
+    /**
+     * The address and length format used by {@link Ecu#download(long, ByteBuffer)}: 4 bytes memory size and
+     * 4 bytes memory address.
+     */
+    private static final int ADDRESS_AND_LENGTH_FORMAT = 0x44;
+
+    /**
+     * Copies the response into a new heap buffer owned by the caller.
+     */
+    public static final ResponseDecoder<ByteBuffer> COPY = response -> {
+        ByteBuffer copy = ByteBuffer.allocate(response.remaining());
+        copy.put(response);
+        copy.flip();
+        return copy;
+    };
+
+    private static final ResponseDecoder<Void> IGNORE = response -> null;
+
+    /**
+     * The delay before a request is sent again after the channel reported that it is still busy transmitting,
+     * effectively the next tick of the timer wheel.
+     */
+    private static final Duration SEND_RETRY_DELAY = Duration.ofMillis(1);
+
+    private final IsotpListener listener;
+    private final Duration responseTimeout;
+    private final Duration pendingTimeout;
+    private final Map<IsotpCanChannel, Ecu> ecus = new IdentityHashMap<>();
+    private final Object ecuLock = new Object();
+    private volatile boolean open = true;
+
+    public UdsClient(ThreadFactory threadFactory, IOSelector<UnixFileDescriptor> selector) {
+        this(threadFactory, selector, DEFAULT_RESPONSE_TIMEOUT, DEFAULT_PENDING_TIMEOUT);
+    }
+
+    /**
+     * Creates a new client.
+     *
+     * @param threadFactory the thread factory for the polling thread
+     * @param selector the selector to use
+     * @param responseTimeout the time to wait for a response (P2 client)
+     * @param pendingTimeout the time to wait for a response after a response pending message (P2* client)
+     */
+    public UdsClient(ThreadFactory threadFactory, IOSelector<UnixFileDescriptor> selector, Duration responseTimeout,
+                     Duration pendingTimeout) {
+        this.listener = new IsotpListener(threadFactory, selector, CanBroker.DEFAULT_TIMEOUT);
+        this.responseTimeout = responseTimeout;
+        this.pendingTimeout = pendingTimeout;
+    }
+
+    public Duration getResponseTimeout() {
+        return responseTimeout;
+    }
+
+    public Duration getPendingTimeout() {
+        return pendingTimeout;
+    }
+
+    /**
+     * Adds an ECU reachable via the given channel. The channel will be switched to non-blocking mode and must not be
+     * read by anyone else while it is part of this client.
+     *
+     * @param ch the channel connected to the ECU
+     * @return the ECU handle to send requests with
+     * @throws IOException if native calls fail
+     */
+    public Ecu addEcu(IsotpCanChannel ch) throws IOException {
+        ensureOpen();
+        synchronized (ecuLock) {
+            if (ecus.containsKey(ch)) {
+                throw new IllegalArgumentException("Channel already added!");
+            }
+            Ecu ecu = new Ecu(ch);
+            ch.configureBlocking(false);
+            ecus.put(ch, ecu);
+            try {
+                listener.addChannel(ch, ecu::handle);
+            } catch (IOException | RuntimeException e) {
+                ecus.remove(ch);
+                throw e;
+            }
+            return ecu;
+        }
+    }
+
+    /**
+     * Removes the given ECU, cancelling its outstanding requests and stopping its tester present messages. The
+     * channel itself will not be closed.
+     *
+     * @param ecu the ECU to remove
+     * @throws IOException if the underlying selector is unable to cancel the registration
+     */
+    public void removeEcu(Ecu ecu) throws IOException {
+        synchronized (ecuLock) {
+            if (ecus.remove(ecu.channel) != ecu) {
+                throw new IllegalArgumentException("ECU not known!");
+            }
+        }
+        try {
+            listener.removeChannel(ecu.channel);
+        } finally {
+            ecu.cancelAll();
+        }
+    }
+
+    private void ensureOpen() {
+        if (!open) {
+            throw new IllegalStateException("The client has already been closed!");
+        }
+    }
+
+    /**
+     * Closes this client by cancelling all outstanding requests and closing the underlying {@link IsotpListener}.
+     * The channels will not be closed.
+     *
+     * @throws IOException if the underlying listener fails to close
+     */
+    @Override
+    public void close() throws IOException {
+        if (!open) {
+            return;
+        }
+        open = false;
+        final List<Ecu> removed;
+        synchronized (ecuLock) {
+            removed = new ArrayList<>(ecus.values());
+            ecus.clear();
+        }
+        try {
+            listener.close();
+        } finally {
+            for (Ecu ecu : removed) {
+                ecu.cancelAll();
+            }
+        }
+    }
+
+    /**
+     * Decodes a positive response. Decoders are called on the polling thread with the receive buffer, which is only
+     * valid for the duration of the call, positioned at the response service ID.
+     *
+     * @param <T> the decoded type
+     */
+    @FunctionalInterface
+    public interface ResponseDecoder<T> {
+        T decode(ByteBuffer response) throws IOException;
+    }
+
+    /**
+     * An ECU addressed by a single ISO-TP channel. Requests are sent in order, one at a time.
+     */
+    public final class Ecu {
+        private final IsotpCanChannel channel;
+        private final ArrayDeque<PendingRequest<?>> queue = new ArrayDeque<>();
+        private final ByteBuffer testerPresent = JavaCAN.allocateUnordered(2);
+        private final Runnable testerPresentTask = this::sendTesterPresent;
+        @Nullable
+        private PendingRequest<?> inFlight;
+        private long lastRequest = System.nanoTime();
+        private long testerPresentNanos;
+        private TimerWheel.@Nullable Timeout testerPresentTimer;
+        private boolean sendRetryScheduled = false;
+
+        Ecu(IsotpCanChannel channel) {
+            this.channel = channel;
+        }
+
+        public IsotpCanChannel getChannel() {
+            return channel;
+        }
+
+        /**
+         * Sends a request and completes with a copy of the positive response.
+         *
+         * @param request the request starting with the service ID, this buffer must not be modified until the
+         *                returned future completed
+         * @return a future that completes with the response
+         * @see #request(ByteBuffer, ResponseDecoder)
+         */
+        public CompletableFuture<ByteBuffer> request(ByteBuffer request) {
+            return request(request, COPY);
+        }
+
+        /**
+         * <p>
+         * Sends a request and completes with the result of decoding the positive response. The request is sent
+         * immediately if there is no request in flight for this ECU, otherwise it is queued.
+         * </p>
+         * <p>
+         * The future completes exceptionally with a {@link UdsNegativeResponseException} on a negative response,
+         * with a {@link TimeoutException} if no (final) response was received in time and with an
+         * {@link IOException} if the request could not be sent.
+         * </p>
+         *
+         * @param request the request starting with the service ID, this buffer must not be modified until the
+         *                returned future completed
+         * @param decoder the decoder for the positive response
+         * @param <T> the result type
+         * @return a future that completes with the decoded response
+         */
+        public <T> CompletableFuture<T> request(ByteBuffer request, ResponseDecoder<T> decoder) {
+            ensureOpen();
+            if (!request.hasRemaining() || request.remaining() > IsotpCanChannel.MAX_MESSAGE_LENGTH) {
+                throw new IllegalArgumentException("Invalid request length: " + request.remaining());
+            }
+            PendingRequest<T> pending = new PendingRequest<>(request, decoder);
+            synchronized (this) {
+                queue.add(pending);
+            }
+            sendNext();
+            return pending.future;
+        }
+
+        /**
+         * Periodically sends TesterPresent with suppressed positive response to keep a non-default diagnostic
+         * session alive. The message is only sent if no other request has been sent within the interval, as every
+         * request restarts the session timer of the ECU. Requests that are issued while the channel is still
+         * transmitting a TesterPresent are sent as soon as the channel is ready again.
+         *
+         * @param interval the interval, which should be well below the S3 server timeout of the ECU
+         */
+        public void startTesterPresent(Duration interval) {
+            ensureOpen();
+            synchronized (this) {
+                stopTesterPresent();
+                testerPresentNanos = interval.toNanos();
+                testerPresentTimer = listener.schedule(interval, testerPresentTask);
+            }
+        }
+
+        public synchronized void stopTesterPresent() {
+            TimerWheel.Timeout timer = testerPresentTimer;
+            if (timer != null) {
+                timer.cancel();
+                testerPresentTimer = null;
+            }
+        }
+
+        private synchronized void sendTesterPresent() {
+            TimerWheel.Timeout timer = testerPresentTimer;
+            if (timer == null || !timer.isExpired()) {
+                // stopped or restarted after this run had been triggered
+                return;
+            }
+            long now = System.nanoTime();
+            long idle = now - lastRequest;
+            if (inFlight == null && queue.isEmpty() && idle >= testerPresentNanos) {
+                testerPresent.clear();
+                testerPresent.put((byte) SID_TESTER_PRESENT).put((byte) SUPPRESS_POSITIVE_RESPONSE).flip();
+                try {
+                    channel.write(testerPresent);
+                    lastRequest = now;
+                    idle = 0;
+                } catch (LinuxNativeOperationException e) {
+                    if (e.mayTryAgain()) {
+                        LOGGER.debug("Channel {} is busy, skipping tester present", channel);
+                    } else {
+                        LOGGER.warn("Failed to send tester present on channel {}", channel, e);
+                    }
+                } catch (IOException e) {
+                    LOGGER.warn("Failed to send tester present on channel {}", channel, e);
+                }
+            }
+            long delay = inFlight == null ? Math.max(0, testerPresentNanos - idle) : testerPresentNanos;
+            testerPresentTimer = listener.schedule(Duration.ofNanos(delay), testerPresentTask);
+        }
+
+        /**
+         * Downloads the given data to the ECU using the data format 0 (neither compressed nor encrypted).
+         *
+         * @param address the memory address to download to
+         * @param data the data to download, the buffer must not be modified until the returned future completed
+         * @return a future that completes after the transfer has been exited successfully
+         * @see #download(int, long, ByteBuffer)
+         */
+        public CompletableFuture<Void> download(long address, ByteBuffer data) {
+            return download(0x00, address, data);
+        }
+
+        /**
+         * <p>
+         * Downloads the given data to the ECU using RequestDownload, as many TransferData requests as necessary and
+         * RequestTransferExit. The block size is the maximum announced by the ECU, limited by the maximum ISO-TP
+         * message length.
+         * </p>
+         * <p>
+         * Two block buffers are allocated per download and used alternately: while one block is in flight, the next
+         * one is encoded, so it can be sent from the polling thread as soon as the previous one is acknowledged.
+         * </p>
+         *
+         * @param dataFormatIdentifier the data format identifier (compression and encryption method)
+         * @param address the memory address to download to, at most 32 bit
+         * @param data the data to download, the buffer must not be modified until the returned future completed
+         * @return a future that completes after the transfer has been exited successfully
+         */
+        public CompletableFuture<Void> download(int dataFormatIdentifier, long address, ByteBuffer data) {
+            if (address < 0 || address > 0xFFFFFFFFL) {
+                throw new IllegalArgumentException("The address must fit into 32 bit!");
+            }
+            return new Download(this, dataFormatIdentifier, address, data).start();
+        }
+
+        private void handle(IsotpCanChannel ch, ByteBuffer buffer) {
+            final PendingRequest<?> request;
+            final int position = buffer.position();
+            int negativeResponseCode = -1;
+            synchronized (this) {
+                request = inFlight;
+                if (request == null) {
+                    LOGGER.debug("Dropping unsolicited message on channel {}", ch);
+                    return;
+                }
+                int responseId = buffer.remaining() > 0 ? buffer.get(position) & 0xFF : -1;
+                if (responseId == NEGATIVE_RESPONSE && buffer.remaining() >= 3
+                        && (buffer.get(position + 1) & 0xFF) == request.serviceId) {
+                    negativeResponseCode = buffer.get(position + 2) & 0xFF;
+                    if (negativeResponseCode == NRC_RESPONSE_PENDING) {
+                        request.cancelTimeout();
+                        request.timeoutHandle = listener.schedule(pendingTimeout, () -> timedOut(request));
+                        return;
+                    }
+                } else if (responseId != request.serviceId + POSITIVE_RESPONSE_OFFSET
+                        || !request.echoMatches(buffer)) {
+                    LOGGER.debug("Dropping unexpected response 0x{} to service 0x{} on channel {}",
+                            Integer.toHexString(responseId), Integer.toHexString(request.serviceId), ch);
+                    return;
+                }
+                inFlight = null;
+                lastRequest = System.nanoTime();
+            }
+            request.cancelTimeout();
+            if (negativeResponseCode >= 0) {
+                request.future.completeExceptionally(new UdsNegativeResponseException(request.serviceId, negativeResponseCode));
+            } else {
+                request.complete(buffer);
+            }
+            sendNext();
+        }
+
+        private void timedOut(PendingRequest<?> request) {
+            synchronized (this) {
+                if (inFlight != request) {
+                    return;
+                }
+                inFlight = null;
+            }
+            request.future.completeExceptionally(new TimeoutException("No response to service 0x"
+                    + Integer.toHexString(request.serviceId)));
+            sendNext();
+        }
+
+        private void sendNext() {
+            while (true) {
+                final PendingRequest<?> request;
+                synchronized (this) {
+                    if (inFlight != null) {
+                        return;
+                    }
+                    request = queue.poll();
+                    if (request == null) {
+                        return;
+                    }
+                    if (request.future.isDone()) {
+                        // cancelled by the caller while being queued
+                        continue;
+                    }
+                    inFlight = request;
+                    long now = System.nanoTime();
+                    if (!request.attempted) {
+                        request.attempted = true;
+                        request.firstAttempt = now;
+                    }
+                    try {
+                        // the channel moves the position, which has to stay at the service ID for matching
+                        channel.write(request.request.duplicate());
+                        lastRequest = now;
+                        request.timeoutHandle = listener.schedule(responseTimeout, () -> timedOut(request));
+                        return;
+                    } catch (LinuxNativeOperationException e) {
+                        inFlight = null;
+                        if (e.mayTryAgain() && now - request.firstAttempt < responseTimeout.toNanos()) {
+                            // the channel is still transmitting the previous message, e.g. a tester present
+                            queue.addFirst(request);
+                            scheduleSendRetry();
+                            return;
+                        }
+                        request.future.completeExceptionally(e);
+                    } catch (IOException | RuntimeException e) {
+                        inFlight = null;
+                        request.future.completeExceptionally(e);
+                    }
+                }
+            }
+        }
+
+        private void scheduleSendRetry() {
+            if (sendRetryScheduled) {
+                return;
+            }
+            sendRetryScheduled = true;
+            listener.schedule(SEND_RETRY_DELAY, () -> {
+                synchronized (this) {
+                    sendRetryScheduled = false;
+                }
+                sendNext();
+            });
+        }
+
+        void cancelAll() {
+            final List<PendingRequest<?>> requests;
+            synchronized (this) {
+                stopTesterPresent();
+                requests = new ArrayList<>(queue.size() + 1);
+                if (inFlight != null) {
+                    requests.add(inFlight);
+                    inFlight = null;
+                }
+                requests.addAll(queue);
+                queue.clear();
+            }
+            for (PendingRequest<?> request : requests) {
+                request.cancelTimeout();
+                request.future.cancel(false);
+            }
+        }
+    }
+
+    /**
+     * The number of request bytes after the service ID that the positive response repeats.
+     *
+     * @param serviceId the request service ID
+     * @return the echo length, 0 if the service does not echo any parameter
+     */
+    private static int echoLength(int serviceId) {
+        switch (serviceId) {
+            case SID_DIAGNOSTIC_SESSION_CONTROL:
+            case SID_ECU_RESET:
+            case SID_SECURITY_ACCESS:
+            case SID_COMMUNICATION_CONTROL:
+            case SID_TESTER_PRESENT:
+            case SID_CONTROL_DTC_SETTING:
+            case SID_READ_DTC_INFORMATION:
+            case SID_TRANSFER_DATA:
+                return 1;
+            case SID_READ_DATA_BY_IDENTIFIER:
+            case SID_WRITE_DATA_BY_IDENTIFIER:
+            case SID_INPUT_OUTPUT_CONTROL:
+                return 2;
+            case SID_ROUTINE_CONTROL:
+                return 3;
+            default:
+                return 0;
+        }
+    }
+
+    private static boolean hasSubFunction(int serviceId) {
+        switch (serviceId) {
+            case SID_DIAGNOSTIC_SESSION_CONTROL:
+            case SID_ECU_RESET:
+            case SID_SECURITY_ACCESS:
+            case SID_COMMUNICATION_CONTROL:
+            case SID_TESTER_PRESENT:
+            case SID_CONTROL_DTC_SETTING:
+            case SID_READ_DTC_INFORMATION:
+            case SID_ROUTINE_CONTROL:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private static final class PendingRequest<T> {
+        private final ByteBuffer request;
+        private final int serviceId;
+        private final int echoOffset;
+        private final int echoLength;
+        private final ResponseDecoder<T> decoder;
+        private final CompletableFuture<T> future = new CompletableFuture<>();
+        private volatile TimerWheel.@Nullable Timeout timeoutHandle;
+        private boolean attempted = false;
+        private long firstAttempt;
+
+        PendingRequest(ByteBuffer request, ResponseDecoder<T> decoder) {
+            this.request = request;
+            this.serviceId = request.get(request.position()) & 0xFF;
+            this.echoOffset = request.position() + 1;
+            this.echoLength = Math.min(echoLength(serviceId), request.remaining() - 1);
+            this.decoder = decoder;
+        }
+
+        /**
+         * Checks that the positive response echoes the parameter of this request following the service ID. The
+         * suppress positive response bit of a sub-function is not echoed.
+         *
+         * @param response the response positioned at the response service ID
+         * @return true if the response belongs to this request
+         */
+        boolean echoMatches(ByteBuffer response) {
+            if (response.remaining() < 1 + echoLength) {
+                return false;
+            }
+            int responseOffset = response.position() + 1;
+            for (int i = 0; i < echoLength; i++) {
+                int expected = request.get(echoOffset + i) & 0xFF;
+                if (i == 0 && hasSubFunction(serviceId)) {
+                    expected &= ~SUPPRESS_POSITIVE_RESPONSE;
+                }
+                if ((response.get(responseOffset + i) & 0xFF) != expected) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        void complete(ByteBuffer response) {
+            try {
+                future.complete(decoder.decode(response));
+            } catch (IOException | RuntimeException e) {
+                future.completeExceptionally(e);
+            }
+        }
+
+        void cancelTimeout() {
+            TimerWheel.Timeout handle = timeoutHandle;
+            if (handle != null) {
+                handle.cancel();
+            }
+        }
+    }
+
+    private static final class Download {
+        private final Ecu ecu;
+        private final int dataFormatIdentifier;
+        private final long address;
+        private final ByteBuffer data;
+        private final CompletableFuture<Void> result = new CompletableFuture<>();
+        private final ByteBuffer[] blocks = new ByteBuffer[2];
+        private int blockCounter;
+
+        Download(Ecu ecu, int dataFormatIdentifier, long address, ByteBuffer data) {
+            this.ecu = ecu;
+            this.dataFormatIdentifier = dataFormatIdentifier;
+            this.address = address;
+            this.data = data.duplicate();
+        }
+
+        CompletableFuture<Void> start() {
+            ByteBuffer request = JavaCAN.allocateUnordered(11);
+            request.put((byte) SID_REQUEST_DOWNLOAD)
+                    .put((byte) dataFormatIdentifier)
+                    .put((byte) ADDRESS_AND_LENGTH_FORMAT)
+                    .putInt((int) address)
+                    .putInt(data.remaining())
+                    .flip();
+            ecu.request(request, Download::decodeMaxBlockLength).whenComplete((maxBlockLength, e) -> {
+                if (e != null) {
+                    result.completeExceptionally(e);
+                    return;
+                }
+                int blockLength = Math.min(maxBlockLength, IsotpCanChannel.MAX_MESSAGE_LENGTH);
+                if (blockLength <= 2) {
+                    result.completeExceptionally(new IOException("Invalid maximum block length: " + maxBlockLength));
+                    return;
+                }
+                blocks[0] = JavaCAN.allocateUnordered(blockLength);
+                blocks[1] = JavaCAN.allocateUnordered(blockLength);
+                encodeNextBlock(blocks[0]);
+                sendBlock(0);
+            });
+            return result;
+        }
+
+        private static int decodeMaxBlockLength(ByteBuffer response) throws IOException {
+            if (response.remaining() < 2) {
+                throw new IOException("RequestDownload response too short");
+            }
+            int lengthBytes = (response.get(response.position() + 1) & 0xF0) >>> 4;
+            if (lengthBytes < 1 || lengthBytes > 4 || response.remaining() < 2 + lengthBytes) {
+                throw new IOException("Invalid length format in RequestDownload response");
+            }
+            long length = 0;
+            for (int i = 0; i < lengthBytes; i++) {
+                length = length << 8 | response.get(response.position() + 2 + i) & 0xFF;
+            }
+            return (int) Math.min(length, Integer.MAX_VALUE);
+        }
+
+        private void encodeNextBlock(ByteBuffer block) {
+            blockCounter = (blockCounter + 1) & 0xFF;
+            block.clear();
+            block.put((byte) SID_TRANSFER_DATA).put((byte) blockCounter);
+            int length = Math.min(block.remaining(), data.remaining());
+            int limit = data.limit();
+            data.limit(data.position() + length);
+            block.put(data);
+            data.limit(limit);
+            block.flip();
+        }
+
+        private void sendBlock(int index) {
+            final int counter = blockCounter;
+            CompletableFuture<Void> acknowledged = ecu.request(blocks[index], response -> {
+                if (response.remaining() < 2 || (response.get(response.position() + 1) & 0xFF) != counter) {
+                    throw new IOException("TransferData acknowledged the wrong block, expected " + counter);
+                }
+                return null;
+            });
+            final boolean last = !data.hasRemaining();
+            if (!last) {
+                // prepare the next block while this one is in flight
+                encodeNextBlock(blocks[index ^ 1]);
+            }
+            acknowledged.whenComplete((ignored, e) -> {
+                if (e != null) {
+                    result.completeExceptionally(e);
+                } else if (last) {
+                    exit();
+                } else {
+                    sendBlock(index ^ 1);
+                }
+            });
+        }
+
+        private void exit() {
+            ByteBuffer request = JavaCAN.allocateUnordered(1);
+            request.put((byte) SID_REQUEST_TRANSFER_EXIT).flip();
+            ecu.request(request, IGNORE).whenComplete((ignored, e) -> {
+                if (e != null) {
+                    result.completeExceptionally(e);
+                } else {
+                    result.complete(null);
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,57 @@
+/*
+ * The MIT License
+ * Copyright © 2018 Phillip Schichtel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package tel.schich.javacan.util;
+
+import java.io.IOException;
+
+/**
+ * Signals that an ECU answered a UDS request with a negative response (service ID {@code 0x7F}).
+ */
+public class UdsNegativeResponseException extends IOException {
+    private final int serviceId;
+    private final int responseCode;
+
+    public UdsNegativeResponseException(int serviceId, int responseCode) {
+        super(String.format("Negative response to service 0x%02X: NRC 0x%02X", serviceId, responseCode));
+        this.serviceId = serviceId;
+        this.responseCode = responseCode;
+    }
+
+    /**
+     * Returns the ID of the service that has been rejected.
+     *
+     * @return the service ID
+     */
+    public int getServiceId() {
+        return serviceId;
+    }
+
+    /**
+     * Returns the negative response code (NRC) as defined by ISO 14229-1.
+     *
+     * @return the negative response code
+     */
+    public int getResponseCode() {
+        return responseCode;
+    }
+}
@@ -0,0 +1,636 @@
+/*
+ * The MIT License
+ * Copyright © 2018 Phillip Schichtel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package tel.schich.javacan.util;
+
+import org.eclipse.jdt.annotation.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import tel.schich.javacan.CanFrame;
+import tel.schich.javacan.IsotpCanChannel;
+import tel.schich.javacan.IsotpFlowControlOptions;
+import tel.schich.javacan.IsotpLinkLayerOptions;
+import tel.schich.javacan.IsotpOptions;
+import tel.schich.javacan.IsotpSocketAddress;
+import tel.schich.javacan.JavaCAN;
+import tel.schich.javacan.RawCanChannel;
+import tel.schich.javacan.platform.linux.LinuxNativeOperationException;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ByteChannel;
+import java.nio.channels.ClosedChannelException;
+import java.time.Duration;
+
+import static tel.schich.javacan.util.CanUtils.padDataLength;
+
+/**
+ * <p>
+ * An ISO 15765-2 connection implemented in user space by a {@link tel.schich.javacan.util.UserSpaceIsotpEngine}.
+ * It offers the same message based read and write semantics as {@link tel.schich.javacan.IsotpCanChannel}: each
+ * {@link #write(java.nio.ByteBuffer)} sends one message and each {@link #read(java.nio.ByteBuffer)} returns one
+ * message.
+ * </p>
+ * <p>
+ * Similar to the kernel implementation, a write returns as soon as the transmission has been started and a
+ * subsequent write waits for the previous transmission to complete. Errors of an asynchronous transmission, like
+ * a missing flow control frame, are reported by the next write. Received messages are buffered until they are read;
+ * a message that completes while the previous one has not been read yet is dropped and counted in
+ * {@link #getDroppedMessages()}.
+ * </p>
+ * <p>
+ * All buffers are allocated when the channel is opened, so that neither reception nor transmission allocates.
+ * Frames are always padded with {@link tel.schich.javacan.IsotpOptions#DEFAULT_PADDING_CONTENT}.
+ * </p>
+ */
+public class UserSpaceIsotpChannel implements ByteChannel {
+    private static final Logger LOGGER = LoggerFactory.getLogger(UserSpaceIsotpChannel.class);
+
+    private static final int PCI_SINGLE_FRAME = 0x0;
+    private static final int PCI_FIRST_FRAME = 0x1;
+    private static final int PCI_CONSECUTIVE_FRAME = 0x2;
+    private static final int PCI_FLOW_CONTROL = 0x3;
+
+    private static final int FLOW_STATUS_CONTINUE = 0x0;
+    private static final int FLOW_STATUS_WAIT = 0x1;
+    private static final int FLOW_STATUS_OVERFLOW = 0x2;
+
+    private static final int OFFSET_ID = 0;
+    private static final int OFFSET_LENGTH = 4;
+    private static final int OFFSET_FLAGS = 5;
+    private static final int OFFSET_DATA = CanFrame.HEADER_LENGTH;
+
+    private static final int IDLE = 0;
+    private static final int WAITING_FOR_FLOW_CONTROL = 1;
+    private static final int SENDING = 2;
+    private static final int RECEIVING = 1;
+
+    private final UserSpaceIsotpEngine engine;
+    private final UserSpaceIsotpEngine.Device device;
+    private final IsotpSocketAddress rx;
+    private final IsotpSocketAddress tx;
+    private final long timeoutNanos;
+
+    private final int txDataLength;
+    private final int txMtu;
+    private final byte txFlags;
+    private final byte rxBlockSize;
+    private final byte rxMinimumSeparationTime;
+    private final int maximumWaitFrames;
+
+    private final ByteBuffer frame;
+    private byte[] rxBuffer = new byte[IsotpCanChannel.MAX_MESSAGE_LENGTH];
+    private byte[] readyBuffer = new byte[IsotpCanChannel.MAX_MESSAGE_LENGTH];
+    private final byte[] txBuffer = new byte[IsotpCanChannel.MAX_MESSAGE_LENGTH];
+
+    private final Runnable sendConsecutiveTask = this::sendConsecutiveFrames;
+    private final Runnable txTimeoutTask = this::checkTransmissionTimeout;
+    private final Runnable rxTimeoutTask = this::checkReceptionTimeout;
+
+    private boolean open = true;
+    private boolean blocking = true;
+
+    private int rxState = IDLE;
+    private int rxLength;
+    private int rxOffset;
+    private int rxSequence;
+    private int rxBlockRemaining;
+    private long rxDeadline;
+    private TimerWheel.@Nullable Timeout rxTimer;
+    private int readyLength = -1;
+    private long droppedMessages;
+
+    private int txState = IDLE;
+    private int txLength;
+    private int txOffset;
+    private int txSequence;
+    private int txBlockSize;
+    private int txBlockRemaining;
+    private long txSeparationNanos;
+    private int txWaitFrames;
+    private long txDeadline;
+    private TimerWheel.@Nullable Timeout txTimer;
+    @Nullable
+    private IOException txError;
+
+    UserSpaceIsotpChannel(UserSpaceIsotpEngine engine, UserSpaceIsotpEngine.Device device, IsotpSocketAddress rx,
+                          IsotpSocketAddress tx, IsotpLinkLayerOptions linkLayer,
+                          IsotpFlowControlOptions flowControl, Duration timeout) {
+        this.engine = engine;
+        this.device = device;
+        this.rx = rx;
+        this.tx = tx;
+        this.timeoutNanos = timeout.toNanos();
+        this.txMtu = linkLayer.getMaximumTransmissionUnit();
+        this.txDataLength = txMtu == RawCanChannel.FD_MTU ? linkLayer.getTransmissionDataLength() : CanFrame.MAX_DATA_LENGTH;
+        this.txFlags = linkLayer.getTransmissionFlags();
+        this.rxBlockSize = flowControl.getBlockSize();
+        this.rxMinimumSeparationTime = flowControl.getMinimumSeparationTime();
+        this.maximumWaitFrames = flowControl.getMaximumWaitFrameTransmission() & 0xFF;
+        this.frame = JavaCAN.allocateOrdered(RawCanChannel.FD_MTU);
+    }
+
+    public IsotpSocketAddress getRxAddress() {
+        return rx;
+    }
+
+    public IsotpSocketAddress getTxAddress() {
+        return tx;
+    }
+
+    /**
+     * Returns the number of completely received messages that have been dropped, because the previous message had
+     * not been read yet.
+     *
+     * @return the number of dropped messages
+     */
+    public synchronized long getDroppedMessages() {
+        return droppedMessages;
+    }
+
+    /**
+     * Configures whether {@link #read(java.nio.ByteBuffer)} and {@link #write(java.nio.ByteBuffer)} wait for a message
+     * or for the previous transmission respectively. Non-blocking calls return 0 instead of waiting.
+     *
+     * @param block true to block, false otherwise
+     * @return this channel
+     */
+    public synchronized UserSpaceIsotpChannel configureBlocking(boolean block) {
+        this.blocking = block;
+        return this;
+    }
+
+    public synchronized boolean isBlocking() {
+        return blocking;
+    }
+
+    /**
+     * Reads the next message into the given buffer. If the buffer is too small, the message is truncated.
+     *
+     * @param buffer the buffer to read into
+     * @return the number of bytes read or 0 if this channel is non-blocking and no message is available
+     * @throws IOException if the channel is closed or the thread gets interrupted while waiting
+     */
+    @Override
+    public int read(ByteBuffer buffer) throws IOException {
+        return read(buffer, 0);
+    }
+
+    /**
+     * Reads the next message into the given buffer, waiting at most for the given time.
+     *
+     * @param buffer the buffer to read into
+     * @param timeout the maximum time to wait for a message
+     * @return the number of bytes read or 0 if no message arrived in time
+     * @throws IOException if the channel is closed or the thread gets interrupted while waiting
+     */
+    public int read(ByteBuffer buffer, Duration timeout) throws IOException {
+        return read(buffer, Math.max(1, timeout.toNanos()));
+    }
+
+    private synchronized int read(ByteBuffer buffer, long timeoutNanos) throws IOException {
+        long deadline = System.nanoTime() + timeoutNanos;
+        while (readyLength < 0) {
+            ensureOpen();
+            if (!blocking) {
+                return 0;
+            }
+            if (timeoutNanos > 0) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    return 0;
+                }
+                awaitNanos(remaining);
+            } else {
+                awaitNanos(0);
+            }
+        }
+        int length = Math.min(readyLength, buffer.remaining());
+        buffer.put(readyBuffer, 0, length);
+        readyLength = -1;
+        return length;
+    }
+
+    /**
+     * Sends the remaining bytes of the given buffer as one message. This waits until the previous transmission
+     * completed and reports its failure if it did not complete successfully.
+     *
+     * @param buffer the message
+     * @return the number of bytes written or 0 if this channel is non-blocking and a transmission is in progress
+     * @throws IOException if the previous transmission or the first frame of this one failed
+     */
+    @Override
+    public synchronized int write(ByteBuffer buffer) throws IOException {
+        int length = buffer.remaining();
+        if (length == 0 || length > IsotpCanChannel.MAX_MESSAGE_LENGTH) {
+            throw new IllegalArgumentException("Message length must be between 1 and " + IsotpCanChannel.MAX_MESSAGE_LENGTH + "!");
+        }
+        while (txState != IDLE) {
+            ensureOpen();
+            if (!blocking) {
+                return 0;
+            }
+            awaitNanos(0);
+        }
+        ensureOpen();
+        IOException previousError = txError;
+        if (previousError != null) {
+            txError = null;
+            throw previousError;
+        }
+
+        buffer.get(txBuffer, 0, length);
+        txLength = length;
+        if (length <= singleFrameCapacity()) {
+            int pciLength;
+            if (length <= 7) {
+                frame.put(OFFSET_DATA, (byte) (PCI_SINGLE_FRAME << 4 | length));
+                pciLength = 1;
+            } else {
+                frame.put(OFFSET_DATA, (byte) (PCI_SINGLE_FRAME << 4));
+                frame.put(OFFSET_DATA + 1, (byte) length);
+                pciLength = 2;
+            }
+            putPayload(pciLength, txBuffer, 0, length);
+            writeFrame(pciLength + length, true);
+        } else {
+            int chunk = txDataLength - 2;
+            frame.put(OFFSET_DATA, (byte) (PCI_FIRST_FRAME << 4 | length >>> 8));
+            frame.put(OFFSET_DATA + 1, (byte) length);
+            putPayload(2, txBuffer, 0, chunk);
+            writeFrame(txDataLength, true);
+            txOffset = chunk;
+            txSequence = 1;
+            txWaitFrames = 0;
+            awaitFlowControl();
+        }
+        return length;
+    }
+
+    private int singleFrameCapacity() {
+        return txDataLength > CanFrame.MAX_DATA_LENGTH ? txDataLength - 2 : 7;
+    }
+
+    private void putPayload(int pciLength, byte[] source, int offset, int length) {
+        frame.position(OFFSET_DATA + pciLength);
+        frame.put(source, offset, length);
+    }
+
+    /**
+     * Writes the frame that has been prepared in the frame buffer.
+     *
+     * @param dataLength the number of used data bytes, the frame gets padded as necessary
+     * @param propagate whether temporary errors should be thrown instead of being reported as false
+     * @return true if the frame was written, false if the interface was busy
+     * @throws IOException if the frame could not be written
+     */
+    private boolean writeFrame(int dataLength, boolean propagate) throws IOException {
+        boolean fd = txMtu == RawCanChannel.FD_MTU;
+        int frameLength = fd ? Math.max(CanFrame.MAX_DATA_LENGTH, padDataLength((byte) dataLength)) : CanFrame.MAX_DATA_LENGTH;
+        for (int i = OFFSET_DATA + dataLength; i < OFFSET_DATA + frameLength; i++) {
+            frame.put(i, IsotpOptions.DEFAULT_PADDING_CONTENT);
+        }
+        frame.putInt(OFFSET_ID, tx.getId());
+        frame.put(OFFSET_LENGTH, (byte) frameLength);
+        frame.put(OFFSET_FLAGS, fd ? txFlags : 0);
+        frame.clear();
+        frame.limit(fd ? RawCanChannel.FD_MTU : RawCanChannel.MTU);
+        try {
+            device.channel.writeUnsafe(frame);
+            return true;
+        } catch (LinuxNativeOperationException e) {
+            if (!propagate && (e.mayTryAgain() || e.getErrorNumber() == LinuxNativeOperationException.ENOBUFS)) {
+                return false;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Handles a frame received for this channel. Only called by the engine's poller thread.
+     *
+     * @param buffer the buffer containing the frame, starting at position 0
+     * @param dataLength the data length of the frame
+     */
+    synchronized void onFrame(ByteBuffer buffer, int dataLength) {
+        if (!open || dataLength < 1) {
+            return;
+        }
+        int pci = buffer.get(OFFSET_DATA) & 0xFF;
+        switch (pci >>> 4) {
+            case PCI_SINGLE_FRAME:
+                onSingleFrame(buffer, pci, dataLength);
+                break;
+            case PCI_FIRST_FRAME:
+                onFirstFrame(buffer, pci, dataLength);
+                break;
+            case PCI_CONSECUTIVE_FRAME:
+                onConsecutiveFrame(buffer, pci, dataLength);
+                break;
+            case PCI_FLOW_CONTROL:
+                onFlowControl(buffer, pci, dataLength);
+                break;
+            default:
+                LOGGER.debug("Ignoring frame with unknown PCI {} on {}", pci, rx);
+        }
+    }
+
+    private void onSingleFrame(ByteBuffer buffer, int pci, int dataLength) {
+        int length = pci & 0xF;
+        int offset = 1;
+        if (length == 0 && dataLength > CanFrame.MAX_DATA_LENGTH) {
+            length = buffer.get(OFFSET_DATA + 1) & 0xFF;
+            offset = 2;
+        }
+        if (length == 0 || offset + length > dataLength) {
+            return;
+        }
+        // a new message aborts any reception in progress
+        rxState = IDLE;
+        if (readyLength >= 0) {
+            droppedMessages++;
+            return;
+        }
+        buffer.position(OFFSET_DATA + offset);
+        buffer.get(readyBuffer, 0, length);
+        deliver(length);
+    }
+
+    private void onFirstFrame(ByteBuffer buffer, int pci, int dataLength) {
+        int length = (pci & 0xF) << 8 | buffer.get(OFFSET_DATA + 1) & 0xFF;
+        if (length == 0) {
+            // messages beyond 4095 bytes (escape sequence) are not supported
+            sendFlowControl(FLOW_STATUS_OVERFLOW);
+            return;
+        }
+        if (dataLength < CanFrame.MAX_DATA_LENGTH) {
+            return;
+        }
+        // ISO 15765-2 requires ignoring first frames of messages that would have fit into a single frame
+        int singleFrameLimit = dataLength > CanFrame.MAX_DATA_LENGTH ? dataLength - 2 : dataLength - 1;
+        if (length <= singleFrameLimit) {
+            return;
+        }
+        int chunk = dataLength - 2;
+        buffer.position(OFFSET_DATA + 2);
+        buffer.get(rxBuffer, 0, chunk);
+        rxLength = length;
+        rxOffset = chunk;
+        rxSequence = 1;
+        rxBlockRemaining = rxBlockSize & 0xFF;
+        if (sendFlowControl(FLOW_STATUS_CONTINUE)) {
+            rxState = RECEIVING;
+            armReceptionTimeout();
+        } else {
+            rxState = IDLE;
+        }
+    }
+
+    private void onConsecutiveFrame(ByteBuffer buffer, int pci, int dataLength) {
+        if (rxState != RECEIVING) {
+            return;
+        }
+        if ((pci & 0xF) != rxSequence) {
+            LOGGER.debug("Wrong sequence number on {}, expected {} but got {}", rx, rxSequence, pci & 0xF);
+            rxState = IDLE;
+            return;
+        }
+        int chunk = Math.min(dataLength - 1, rxLength - rxOffset);
+        buffer.position(OFFSET_DATA + 1);
+        buffer.get(rxBuffer, rxOffset, chunk);
+        rxOffset += chunk;
+        rxSequence = (rxSequence + 1) & 0xF;
+        if (rxOffset >= rxLength) {
+            rxState = IDLE;
+            if (readyLength >= 0) {
+                droppedMessages++;
+                return;
+            }
+            byte[] received = rxBuffer;
+            rxBuffer = readyBuffer;
+            readyBuffer = received;
+            deliver(rxLength);
+            return;
+        }
+        rxDeadline = System.nanoTime() + timeoutNanos;
+        if (rxBlockSize != 0 && --rxBlockRemaining == 0) {
+            rxBlockRemaining = rxBlockSize & 0xFF;
+            if (!sendFlowControl(FLOW_STATUS_CONTINUE)) {
+                rxState = IDLE;
+            }
+        }
+    }
+
+    private void deliver(int length) {
+        readyLength = length;
+        notifyAll();
+    }
+
+    private boolean sendFlowControl(int status) {
+        frame.put(OFFSET_DATA, (byte) (PCI_FLOW_CONTROL << 4 | status));
+        frame.put(OFFSET_DATA + 1, rxBlockSize);
+        frame.put(OFFSET_DATA + 2, rxMinimumSeparationTime);
+        try {
+            return writeFrame(3, false);
+        } catch (IOException e) {
+            LOGGER.debug("Failed to send flow control on {}", tx, e);
+            return false;
+        }
+    }
+
+    private void onFlowControl(ByteBuffer buffer, int pci, int dataLength) {
+        if (txState != WAITING_FOR_FLOW_CONTROL || dataLength < 3) {
+            return;
+        }
+        switch (pci & 0xF) {
+            case FLOW_STATUS_CONTINUE:
+                txBlockSize = buffer.get(OFFSET_DATA + 1) & 0xFF;
+                txBlockRemaining = txBlockSize;
+                txSeparationNanos = decodeSeparationTime(buffer.get(OFFSET_DATA + 2) & 0xFF);
+                txState = SENDING;
+                sendConsecutiveFrames();
+                break;
+            case FLOW_STATUS_WAIT:
+                if (maximumWaitFrames != 0 && ++txWaitFrames > maximumWaitFrames) {
+                    completeTransmission(new IOException("Receiver sent more than " + maximumWaitFrames + " wait frames"));
+                } else {
+                    txDeadline = System.nanoTime() + timeoutNanos;
+                }
+                break;
+            case FLOW_STATUS_OVERFLOW:
+                completeTransmission(new IOException("Receiver reported an overflow for a message of " + txLength + " bytes"));
+                break;
+            default:
+                completeTransmission(new IOException("Invalid flow status: " + (pci & 0xF)));
+        }
+    }
+
+    /**
+     * Decodes STmin as specified by ISO 15765-2: 0 to 127 milliseconds or 100 to 900 microseconds, reserved values
+     * are interpreted as the maximum of 127 milliseconds.
+     *
+     * @param value the raw STmin value
+     * @return the separation time in nanoseconds
+     */
+    static long decodeSeparationTime(int value) {
+        if (value <= 0x7F) {
+            return value * 1_000_000L;
+        }
+        if (value >= 0xF1 && value <= 0xF9) {
+            return (value - 0xF0) * 100_000L;
+        }
+        return 0x7F * 1_000_000L;
+    }
+
+    synchronized void sendConsecutiveFrames() {
+        while (txState == SENDING) {
+            int chunk = Math.min(txDataLength - 1, txLength - txOffset);
+            frame.put(OFFSET_DATA, (byte) (PCI_CONSECUTIVE_FRAME << 4 | txSequence));
+            putPayload(1, txBuffer, txOffset, chunk);
+            try {
+                if (!writeFrame(1 + chunk, false)) {
+                    // the interface queue is full, try again on the next tick
+                    engine.schedule(Duration.ZERO, sendConsecutiveTask);
+                    return;
+                }
+            } catch (IOException e) {
+                completeTransmission(e);
+                return;
+            }
+            txOffset += chunk;
+            txSequence = (txSequence + 1) & 0xF;
+            if (txOffset >= txLength) {
+                completeTransmission(null);
+                return;
+            }
+            if (txBlockSize != 0 && --txBlockRemaining == 0) {
+                awaitFlowControl();
+                return;
+            }
+            if (txSeparationNanos > 0) {
+                engine.pace(this, System.nanoTime() + txSeparationNanos);
+                return;
+            }
+        }
+    }
+
+    private void awaitFlowControl() {
+        txState = WAITING_FOR_FLOW_CONTROL;
+        txDeadline = System.nanoTime() + timeoutNanos;
+        if (txTimer == null) {
+            txTimer = engine.schedule(Duration.ofNanos(timeoutNanos), txTimeoutTask);
+        }
+    }
+
+    private synchronized void checkTransmissionTimeout() {
+        txTimer = null;
+        if (txState != WAITING_FOR_FLOW_CONTROL) {
+            return;
+        }
+        // the deadline is moved forward without rescheduling, so only the last timer actually times out
+        long remaining = txDeadline - System.nanoTime();
+        if (remaining > 0) {
+            txTimer = engine.schedule(Duration.ofNanos(remaining), txTimeoutTask);
+        } else {
+            completeTransmission(new IOException("Timed out waiting for a flow control frame on " + rx));
+        }
+    }
+
+    private void armReceptionTimeout() {
+        rxDeadline = System.nanoTime() + timeoutNanos;
+        if (rxTimer == null) {
+            rxTimer = engine.schedule(Duration.ofNanos(timeoutNanos), rxTimeoutTask);
+        }
+    }
+
+    private synchronized void checkReceptionTimeout() {
+        rxTimer = null;
+        if (rxState != RECEIVING) {
+            return;
+        }
+        long remaining = rxDeadline - System.nanoTime();
+        if (remaining > 0) {
+            rxTimer = engine.schedule(Duration.ofNanos(remaining), rxTimeoutTask);
+        } else {
+            LOGGER.debug("Timed out waiting for a consecutive frame on {}", rx);
+            rxState = IDLE;
+        }
+    }
+
+    private void completeTransmission(@Nullable IOException error) {
+        txState = IDLE;
+        txError = error;
+        notifyAll();
+    }
+
+    private void awaitNanos(long nanos) throws IOException {
+        try {
+            if (nanos > 0) {
+                wait(nanos / 1_000_000, (int) (nanos % 1_000_000));
+            } else {
+                wait();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting", e);
+        }
+    }
+
+    private void ensureOpen() throws ClosedChannelException {
+        if (!open) {
+            throw new ClosedChannelException();
+        }
+    }
+
+    @Override
+    public synchronized boolean isOpen() {
+        return open;
+    }
+
+    /**
+     * Closes this channel, aborting any transmission or reception in progress.
+     *
+     * @throws IOException if the engine failed to release the underlying raw channel
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (this) {
+            if (!open) {
+                return;
+            }
+            open = false;
+            rxState = IDLE;
+            txState = IDLE;
+            notifyAll();
+        }
+        engine.remove(this);
+    }
+
+    UserSpaceIsotpEngine.Device getDevice() {
+        return device;
+    }
+
+    @Override
+    public String toString() {
+        return "UserSpaceIsotpChannel(" + "device=" + device.device + ", rx=" + rx + ", tx=" + tx + ')';
+    }
+}
@@ -0,0 +1,311 @@
+/*
+ * The MIT License
+ * Copyright © 2018 Phillip Schichtel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package tel.schich.javacan.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import tel.schich.javacan.CanChannels;
+import tel.schich.javacan.CanId;
+import tel.schich.javacan.IsotpSocketAddress;
+import tel.schich.javacan.IsotpTuningProfile;
+import tel.schich.javacan.JavaCAN;
+import tel.schich.javacan.NetworkDevice;
+import tel.schich.javacan.RawCanChannel;
+import tel.schich.javacan.platform.linux.UnixFileDescriptor;
+import tel.schich.javacan.select.IOEvent;
+import tel.schich.javacan.select.IOSelector;
+import tel.schich.javacan.select.SelectorRegistration;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channel;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadFactory;
+
+import static java.time.Duration.ofMinutes;
+import static java.time.Duration.ofSeconds;
+import static tel.schich.javacan.CanSocketOptions.FD_FRAMES;
+
+/**
+ * <p>
+ * A user space implementation of ISO 15765-2 (ISO-TP) for systems without the {@code can-isotp} kernel module.
+ * The engine opens a single {@link tel.schich.javacan.RawCanChannel} per network device, which is shared by all
+ * {@link tel.schich.javacan.util.UserSpaceIsotpChannel}s on that device. Received frames are dispatched to the
+ * channels by their CAN ID on the polling thread, which also drives flow control, the separation time between
+ * consecutive frames and the protocol timeouts (N_Bs and N_Cr).
+ * </p>
+ * <p>
+ * The protocol timeouts use the event loop's timer wheel. The separation time is paced with the poll timeout
+ * instead, so non-zero STmin values are only rounded up to the millisecond resolution of the selector and not to
+ * {@link tel.schich.javacan.util.TimerWheel#DEFAULT_TICK_DURATION}. Frames sent by the engine are not received by
+ * channels of the same engine, so both peers of a connection on the same host need their own engine.
+ * </p>
+ */
+public class UserSpaceIsotpEngine extends EventLoop<UnixFileDescriptor, RawCanChannel> {
+    private static final Logger LOGGER = LoggerFactory.getLogger(UserSpaceIsotpEngine.class);
+
+    public static final Duration DEFAULT_TIMEOUT = ofMinutes(1);
+
+    /**
+     * The default time to wait for flow control frames (N_Bs) and consecutive frames (N_Cr).
+     */
+    public static final Duration DEFAULT_PROTOCOL_TIMEOUT = ofSeconds(1);
+
+    private final Duration protocolTimeout;
+    private final ByteBuffer readBuffer = JavaCAN.allocateOrdered(RawCanChannel.FD_MTU);
+    private final DrainLoop.Step<Device> readFrame = this::readFrame;
+    private final Map<NetworkDevice, Device> devices = new HashMap<>();
+    private final IdentityHashMap<RawCanChannel, Device> channels = new IdentityHashMap<>();
+    private final Object lock = new Object();
+
+    // the channels waiting for STmin to pass, only accessed by the poller thread
+    private UserSpaceIsotpChannel[] pacedChannels = new UserSpaceIsotpChannel[16];
+    private long[] pacedDeadlines = new long[16];
+    private int pacedCount;
+
+    public UserSpaceIsotpEngine(ThreadFactory threadFactory, IOSelector<UnixFileDescriptor> selector) {
+        this(threadFactory, selector, DEFAULT_TIMEOUT, DEFAULT_PROTOCOL_TIMEOUT);
+    }
+
+    public UserSpaceIsotpEngine(ThreadFactory threadFactory, IOSelector<UnixFileDescriptor> selector, Duration timeout,
+                                Duration protocolTimeout) {
+        super("user-space-isotp", threadFactory, selector, timeout);
+        this.protocolTimeout = protocolTimeout;
+    }
+
+    /**
+     * Opens a channel with the default kernel settings (classic CAN frames, no block size and no STmin).
+     *
+     * @param device the device to communicate on
+     * @param rx the address to receive from
+     * @param tx the address to send to
+     * @return the new channel
+     * @throws IOException if the device could not be opened
+     */
+    public UserSpaceIsotpChannel open(NetworkDevice device, IsotpSocketAddress rx, IsotpSocketAddress tx) throws IOException {
+        return open(device, rx, tx, IsotpTuningProfile.DEFAULT);
+    }
+
+    /**
+     * Opens a channel. The link layer options of the profile determine the frames sent by the channel, while the flow
+     * control options are announced to the peer when receiving.
+     *
+     * @param device the device to communicate on
+     * @param rx the address to receive from
+     * @param tx the address to send to
+     * @param profile the link layer and flow control settings
+     * @return the new channel
+     * @throws IOException if the device could not be opened
+     */
+    public UserSpaceIsotpChannel open(NetworkDevice device, IsotpSocketAddress rx, IsotpSocketAddress tx,
+                                      IsotpTuningProfile profile) throws IOException {
+        synchronized (lock) {
+            Device d = devices.get(device);
+            if (d == null) {
+                RawCanChannel ch = CanChannels.newRawChannel(device);
+                try {
+                    ch.configureBlocking(false);
+                    ch.setOption(FD_FRAMES, true);
+                    register(ch, EnumSet.of(SelectorRegistration.Operation.READ));
+                } catch (IOException e) {
+                    ch.close();
+                    throw e;
+                }
+                d = new Device(device, ch);
+                devices.put(device, d);
+                channels.put(ch, d);
+            }
+            if (d.sessions.get(rx.getId()) != null) {
+                throw new IllegalArgumentException("Receive address already in use: " + rx);
+            }
+            UserSpaceIsotpChannel channel = new UserSpaceIsotpChannel(this, d, rx, tx, profile.getLinkLayerOptions(),
+                    profile.getFlowControlOptions(), protocolTimeout);
+            d.sessions.put(rx.getId(), channel);
+            this.start();
+            return channel;
+        }
+    }
+
+    /**
+     * Returns the number of open channels across all devices.
+     *
+     * @return the number of channels
+     */
+    public int getChannelCount() {
+        synchronized (lock) {
+            int count = 0;
+            for (Device device : devices.values()) {
+                count += device.sessions.size();
+            }
+            return count;
+        }
+    }
+
+    void remove(UserSpaceIsotpChannel channel) throws IOException {
+        Device d = channel.getDevice();
+        synchronized (lock) {
+            if (d.sessions.get(channel.getRxAddress().getId()) != channel) {
+                return;
+            }
+            d.sessions.remove(channel.getRxAddress().getId());
+            if (d.sessions.size() > 0) {
+                return;
+            }
+            devices.remove(d.device);
+            channels.remove(d.channel);
+        }
+        cancel(d.channel);
+        lazyShutdown();
+        d.channel.close();
+    }
+
+    @Override
+    protected boolean isEmpty() {
+        synchronized (lock) {
+            return devices.isEmpty();
+        }
+    }
+
+    @Override
+    protected void processEvents(List<IOEvent<UnixFileDescriptor>> events) throws IOException {
+        synchronized (lock) {
+            for (IOEvent<UnixFileDescriptor> event : events) {
+                Channel ch = event.getRegistration().getChannel();
+                Device device = channels.get(ch);
+                if (device == null) {
+                    // the last channel of the device has been closed after the event was selected
+                    LOGGER.debug("Ignoring event for unknown channel: {}", ch);
+                    continue;
+                }
+                DrainLoop.drain(device, DrainLoop.DEFAULT_BUDGET, readFrame);
+            }
+        }
+    }
+
+    private boolean readFrame(Device device) throws IOException {
+        readBuffer.clear();
+        if (device.channel.tryReadUnsafe(readBuffer) <= 0) {
+            return false;
+        }
+        dispatch(device, readBuffer);
+        return true;
+    }
+
+    private static void dispatch(Device device, ByteBuffer frame) {
+        int id = frame.getInt(0);
+        if (CanId.isError(id) || CanId.isRemoteTransmissionRequest(id)) {
+            return;
+        }
+        UserSpaceIsotpChannel channel = device.sessions.get(id);
+        if (channel != null) {
+            channel.onFrame(frame, frame.get(4) & 0xFF);
+        }
+    }
+
+    /**
+     * Sends the next consecutive frames of the channel once the given deadline passed. Only called by the poller
+     * thread.
+     *
+     * @param channel the channel waiting for its separation time
+     * @param deadline the time in terms of {@link System#nanoTime()} at which the next frame may be sent
+     */
+    void pace(UserSpaceIsotpChannel channel, long deadline) {
+        if (pacedCount == pacedChannels.length) {
+            pacedChannels = Arrays.copyOf(pacedChannels, pacedCount * 2);
+            pacedDeadlines = Arrays.copyOf(pacedDeadlines, pacedCount * 2);
+        }
+        pacedChannels[pacedCount] = channel;
+        pacedDeadlines[pacedCount] = deadline;
+        pacedCount++;
+    }
+
+    @Override
+    protected long nextDeadline() {
+        long earliest = Long.MAX_VALUE;
+        for (int i = 0; i < pacedCount; i++) {
+            earliest = Math.min(earliest, pacedDeadlines[i]);
+        }
+        return earliest;
+    }
+
+    @Override
+    protected void processDeadlines(long nowNanos) {
+        // channels paced again while sending are appended and only considered by the next poll
+        int count = pacedCount;
+        int i = 0;
+        while (i < count) {
+            if (pacedDeadlines[i] - nowNanos > 0) {
+                i++;
+                continue;
+            }
+            UserSpaceIsotpChannel channel = pacedChannels[i];
+            count--;
+            pacedCount--;
+            pacedChannels[i] = pacedChannels[count];
+            pacedDeadlines[i] = pacedDeadlines[count];
+            pacedChannels[count] = pacedChannels[pacedCount];
+            pacedDeadlines[count] = pacedDeadlines[pacedCount];
+            pacedChannels[pacedCount] = null;
+            channel.sendConsecutiveFrames();
+        }
+    }
+
+    @Override
+    protected void closeResources() throws IOException {
+        IOException e = null;
+        synchronized (lock) {
+            for (Device device : devices.values()) {
+                try {
+                    device.channel.close();
+                } catch (IOException e1) {
+                    if (e != null) {
+                        e1.addSuppressed(e);
+                    }
+                    e = e1;
+                }
+            }
+            devices.clear();
+            channels.clear();
+        }
+        if (e != null) {
+            throw e;
+        }
+    }
+
+    static final class Device {
+        final NetworkDevice device;
+        final RawCanChannel channel;
+        final IntHashTable<UserSpaceIsotpChannel> sessions = new IntHashTable<>();
+
+        Device(NetworkDevice device, RawCanChannel channel) {
+            this.device = device;
+            this.channel = channel;
+        }
+    }
+}
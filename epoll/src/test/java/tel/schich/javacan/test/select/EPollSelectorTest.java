@@ -29,6 +29,10 @@ import org.slf4j.LoggerFactory;
 import tel.schich.javacan.CanChannels;
 import tel.schich.javacan.CanFrame;
 import tel.schich.javacan.CanSocketOptions;
+import tel.schich.javacan.ImmutableJ1939Address;
+import tel.schich.javacan.J1939CanChannel;
+import tel.schich.javacan.J1939ErrorQueueEvent;
+import tel.schich.javacan.J1939ErrorQueueEventBuffer;
 import tel.schich.javacan.RawCanChannel;
 import tel.schich.javacan.platform.linux.UnixFileDescriptor;
 import tel.schich.javacan.platform.linux.epoll.EPollSelector;
@@ -38,6 +42,7 @@ import tel.schich.javacan.select.SelectorRegistration;
 import tel.schich.javacan.test.CanTestHelper;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.time.Duration;
 import java.util.EnumSet;
 import java.util.List;
@@ -46,6 +51,8 @@ import static java.time.Duration.ofMillis;
 import static org.junit.jupiter.api.Assertions.*;
 import static tel.schich.javacan.CanFrame.FD_NO_FLAGS;
 import static tel.schich.javacan.CanSocketOptions.RECV_OWN_MSGS;
+import static tel.schich.javacan.CanSocketOptions.SO_TIMESTAMPING;
+import static tel.schich.javacan.CanSocketOptions.TimestampingFlag.*;
 import static tel.schich.javacan.test.CanTestHelper.CAN_INTERFACE;
 import static tel.schich.javacan.test.CanTestHelper.runDelayed;
 
@@ -127,6 +134,45 @@ public class EPollSelectorTest {
         }
     }
 
+    @Test
+    public void testJ1939ErrorQueue() throws IOException {
+        ImmutableJ1939Address source = new ImmutableJ1939Address(CAN_INTERFACE, ImmutableJ1939Address.NO_NAME, 0xEF00, (byte) 0x20);
+        ImmutableJ1939Address destination = new ImmutableJ1939Address(CAN_INTERFACE, ImmutableJ1939Address.NO_NAME, ImmutableJ1939Address.NO_PGN, (byte) 0x30);
+        final int length = 100;
+
+        try (J1939CanChannel sender = CanChannels.newJ1939Channel(); J1939CanChannel receiver = CanChannels.newJ1939Channel()) {
+            receiver.bind(destination);
+            receiver.connect(source);
+            sender.bind(source);
+            sender.connect(destination);
+            sender.configureBlocking(false);
+            sender.setOption(SO_TIMESTAMPING, CanSocketOptions.TimestampingFlagSet.of(SOFTWARE, TX_SOFTWARE, TX_SCHED, TX_ACK, OPT_ID, OPT_STATS));
+
+            try (EPollSelector selector = EPollSelector.open()) {
+                selector.register(sender, EnumSet.of(SelectorRegistration.Operation.ERROR));
+                assertEquals(length, sender.send(ByteBuffer.allocateDirect(length)));
+
+                J1939ErrorQueueEventBuffer event = new J1939ErrorQueueEventBuffer();
+                assertTimeoutPreemptively(ofMillis(2000), () -> {
+                    while (true) {
+                        for (IOEvent<UnixFileDescriptor> ioEvent : selector.select()) {
+                            assertTrue(ioEvent.getOperations().contains(SelectorRegistration.Operation.ERROR), "The error queue is signaled as an error");
+                            while (sender.receiveErrorQueue(event)) {
+                                LOGGER.debug("J1939 error queue event: {}", event);
+                                if (event.getType() == J1939ErrorQueueEvent.Type.TX_ACKNOWLEDGED) {
+                                    assertEquals(length, event.getTotalSize());
+                                    assertEquals(length, event.getBytesAcknowledged());
+                                    return;
+                                }
+                            }
+                        }
+                    }
+                });
+                assertFalse(sender.receiveErrorQueue(event), "The error queue has been drained");
+            }
+        }
+    }
+
     private static SelectorRegistration<UnixFileDescriptor, RawCanChannel> configureAndRegisterChannel(IOSelector<UnixFileDescriptor> selector) throws IOException {
         final RawCanChannel ch = CanChannels.newRawChannel(CAN_INTERFACE);
         LOGGER.debug("Created channel: {}", ch);
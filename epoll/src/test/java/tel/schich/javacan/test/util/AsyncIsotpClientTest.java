@@ -0,0 +1,125 @@
+/*
+ * The MIT License
+ * Copyright © 2018 Phillip Schichtel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package tel.schich.javacan.test.util;
+
+import org.junit.jupiter.api.Test;
+import tel.schich.javacan.CanChannels;
+import tel.schich.javacan.IsotpCanChannel;
+import tel.schich.javacan.IsotpCanSocketOptions;
+import tel.schich.javacan.IsotpOptions;
+import tel.schich.javacan.IsotpSocketAddress;
+import tel.schich.javacan.platform.linux.epoll.EPollSelector;
+import tel.schich.javacan.test.CanTestHelper;
+import tel.schich.javacan.util.AsyncIsotpClient;
+import tel.schich.javacan.util.IsotpListener;
+
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeoutException;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.junit.jupiter.api.Assertions.*;
+import static tel.schich.javacan.IsotpAddress.*;
+
+class AsyncIsotpClientTest {
+
+    private static final ThreadFactory THREAD_FACTORY = r -> {
+        Thread t = new Thread(r);
+        t.setName("async-isotp-test-" + t.getName());
+        return t;
+    };
+
+    private static final IsotpSocketAddress REQUEST_ADDR = IsotpSocketAddress.isotpAddress(SFF_ECU_REQUEST_BASE + DESTINATION_ECU_1);
+    private static final IsotpSocketAddress RESPONSE_ADDR = IsotpSocketAddress.isotpAddress(SFF_ECU_RESPONSE_BASE + DESTINATION_ECU_1);
+    private static final IsotpOptions OPTIONS = IsotpOptions.DEFAULT
+            .withFrameTransmissionTime(IsotpOptions.FRAME_TXTIME_ZERO);
+
+    @Test
+    void testRequestResponse() throws Exception {
+        try (AsyncIsotpClient client = new AsyncIsotpClient(THREAD_FACTORY, EPollSelector.open());
+             IsotpListener ecu = new IsotpListener(THREAD_FACTORY, EPollSelector.open(), Duration.ofSeconds(1));
+             IsotpCanChannel tester = newChannel(RESPONSE_ADDR, REQUEST_ADDR);
+             IsotpCanChannel server = newChannel(REQUEST_ADDR, RESPONSE_ADDR)) {
+
+            ecu.addChannel(server, (ch, buffer) -> {
+                // respond with the request in reverse order
+                ByteBuffer response = ByteBuffer.allocateDirect(buffer.remaining());
+                for (int i = buffer.limit() - 1; i >= buffer.position(); i--) {
+                    response.put(buffer.get(i));
+                }
+                response.flip();
+                try {
+                    ch.write(response);
+                } catch (Exception e) {
+                    e.printStackTrace(System.err);
+                }
+            });
+            client.addChannel(tester);
+
+            CompletableFuture<ByteBuffer> first = client.request(tester, directBuffer(1, 2, 3));
+            CompletableFuture<ByteBuffer> second = client.request(tester, directBuffer(4, 5, 6, 7, 8, 9, 10, 11, 12));
+
+            assertArrayEquals(new byte[] { 3, 2, 1 }, bytesOf(first.get(5, SECONDS)));
+            assertArrayEquals(new byte[] { 12, 11, 10, 9, 8, 7, 6, 5, 4 }, bytesOf(second.get(5, SECONDS)));
+        }
+    }
+
+    @Test
+    void testRequestTimeout() throws Exception {
+        try (AsyncIsotpClient client = new AsyncIsotpClient(THREAD_FACTORY, EPollSelector.open());
+             IsotpCanChannel tester = newChannel(RESPONSE_ADDR, REQUEST_ADDR);
+             IsotpCanChannel server = newChannel(REQUEST_ADDR, RESPONSE_ADDR)) {
+
+            client.addChannel(tester);
+
+            CompletableFuture<ByteBuffer> future = client.request(tester, directBuffer(1), Duration.ofMillis(100));
+            ExecutionException e = assertThrows(ExecutionException.class, () -> future.get(5, SECONDS));
+            assertEquals(TimeoutException.class, e.getCause().getClass());
+        }
+    }
+
+    private static IsotpCanChannel newChannel(IsotpSocketAddress rx, IsotpSocketAddress tx) throws Exception {
+        IsotpCanChannel ch = CanChannels.newIsotpChannel();
+        ch.setOption(IsotpCanSocketOptions.OPTS, OPTIONS);
+        ch.bind(CanTestHelper.CAN_INTERFACE, rx, tx);
+        return ch;
+    }
+
+    private static ByteBuffer directBuffer(int... bytes) {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(bytes.length);
+        for (int b : bytes) {
+            buffer.put((byte) b);
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    private static byte[] bytesOf(ByteBuffer buffer) {
+        byte[] out = new byte[buffer.remaining()];
+        buffer.get(out);
+        return out;
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ * The MIT License
+ * Copyright © 2018 Phillip Schichtel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package tel.schich.javacan.test.util;
+
+import org.junit.jupiter.api.Test;
+import tel.schich.javacan.BcmCanChannel;
+import tel.schich.javacan.BcmFlag;
+import tel.schich.javacan.BcmMessage;
+import tel.schich.javacan.BcmMessageReader;
+import tel.schich.javacan.BcmOpcode;
+import tel.schich.javacan.CanChannels;
+import tel.schich.javacan.CanFrame;
+import tel.schich.javacan.platform.linux.epoll.EPollSelector;
+import tel.schich.javacan.util.BcmListener;
+
+import java.time.Duration;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.junit.jupiter.api.Assertions.*;
+import static tel.schich.javacan.CanFrame.FD_NO_FLAGS;
+import static tel.schich.javacan.test.CanTestHelper.CAN_INTERFACE;
+
+class BcmListenerTest {
+    private static final ThreadFactory FACTORY = r -> {
+        Thread t = new Thread(r);
+        t.setName("bcm-listener-test" + Math.random());
+        return t;
+    };
+
+    @Test
+    void testNotifications() throws Exception {
+        final int rxId = 0x7E5;
+        BlockingQueue<String> events = new LinkedBlockingQueue<>();
+
+        try (BcmListener listener = new BcmListener(FACTORY, EPollSelector.open());
+             BcmCanChannel rx = CanChannels.newBcmChannel(CAN_INTERFACE);
+             BcmCanChannel tx = CanChannels.newBcmChannel(CAN_INTERFACE)) {
+            BcmMessageReader[] seen = new BcmMessageReader[1];
+            listener.addChannel(rx, (ch, message) -> {
+                assertSame(rx, ch);
+                if (seen[0] == null) {
+                    seen[0] = message;
+                }
+                assertSame(seen[0], message, "The message reader should be reused");
+                events.add(message.getOpcode() + ":" + Integer.toHexString(message.getCanId()));
+            });
+            listener.addChannel(tx, (ch, message) -> {
+                assertSame(tx, ch);
+                events.add(message.getOpcode() + ":" + Integer.toHexString(message.getCanId()));
+            });
+            assertFalse(rx.isBlocking());
+
+            rx.write(BcmMessage.builder(BcmOpcode.RX_SETUP)
+                    .canId(rxId)
+                    .flag(BcmFlag.SETTIMER)
+                    .interval1(Duration.ofMillis(200))
+                    .frame(CanFrame.create(rxId, FD_NO_FLAGS, new byte[]{(byte) 0xFF}))
+                    .build());
+            // three frames sent by the broadcast manager itself, then the job expires
+            tx.write(BcmMessage.builder(BcmOpcode.TX_SETUP)
+                    .canId(rxId)
+                    .flag(BcmFlag.SETTIMER).flag(BcmFlag.STARTTIMER).flag(BcmFlag.TX_COUNTEVT)
+                    .count(3)
+                    .interval1(Duration.ofMillis(10))
+                    .frame(CanFrame.create(rxId, FD_NO_FLAGS, new byte[]{1}))
+                    .build());
+
+            assertEquals(BcmOpcode.RX_CHANGED + ":" + Integer.toHexString(rxId), events.poll(2, SECONDS));
+            assertEquals(BcmOpcode.TX_EXPIRED + ":" + Integer.toHexString(rxId), events.poll(2, SECONDS));
+            assertEquals(BcmOpcode.RX_TIMEOUT + ":" + Integer.toHexString(rxId), events.poll(2, SECONDS));
+
+            listener.removeChannel(tx);
+            assertThrows(IllegalArgumentException.class, () -> listener.removeChannel(tx));
+        }
+    }
+}
@@ -27,11 +27,15 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import tel.schich.javacan.CanFilter;
 import tel.schich.javacan.CanFrame;
+import tel.schich.javacan.ChannelMetrics;
 import tel.schich.javacan.platform.linux.epoll.EPollSelector;
+import tel.schich.javacan.platform.linux.epoll.SelectorMetrics;
 import tel.schich.javacan.test.CanTestHelper;
 import tel.schich.javacan.util.CanBroker;
+import tel.schich.javacan.util.LatencyHistogram;
 
 import java.io.IOException;
+import java.time.Duration;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ThreadFactory;
 
@@ -96,4 +100,78 @@ class CanBrokerTest {
         assertNotNull(actual, "CAN frame should have been captured!");
         assertEquals(expected, actual, "What goes in should come out!");
     }
+
+    @Test
+    void testScheduledTaskRunsOnPoller() throws Exception {
+        try (CanBroker can = new CanBroker(FACTORY, EPollSelector.open())) {
+            can.addDevice(CanTestHelper.CAN_INTERFACE, (ch, frame) -> {});
+
+            CompletableFuture<Thread> f = new CompletableFuture<>();
+            long start = System.nanoTime();
+            can.schedule(Duration.ofMillis(50), () -> f.complete(Thread.currentThread()));
+
+            Thread poller = f.get(2, SECONDS);
+            assertTrue(System.nanoTime() - start >= Duration.ofMillis(50).toNanos(), "The task must not run early");
+            assertNotSame(Thread.currentThread(), poller);
+
+            CompletableFuture<Void> cancelled = new CompletableFuture<>();
+            assertTrue(can.schedule(Duration.ofMillis(50), () -> cancelled.complete(null)).cancel());
+            Thread.sleep(150);
+            assertFalse(cancelled.isDone(), "A cancelled task must not run");
+        }
+    }
+
+    @Test
+    void testScheduleOnlyWakesForEarlierDeadlines() throws Exception {
+        EPollSelector selector = EPollSelector.open();
+        SelectorMetrics selectorMetrics = new SelectorMetrics();
+        selector.setMetrics(selectorMetrics);
+
+        try (CanBroker can = new CanBroker(FACTORY, selector)) {
+            can.addDevice(CanTestHelper.CAN_INTERFACE, (ch, frame) -> {});
+            // let the poller block without any timers
+            Thread.sleep(50);
+
+            for (int i = 0; i < 10; i++) {
+                can.schedule(Duration.ofSeconds(10 + i), () -> {});
+            }
+            assertTrue(selectorMetrics.getWakeupRequests() <= 1,
+                    "Only the first timer is due before the poll returns, but woke up "
+                            + selectorMetrics.getWakeupRequests() + " times");
+        }
+    }
+
+    @Test
+    void testMetrics() throws Exception {
+        final int id = 0x7E1;
+        CanFrame expected = CanFrame.create(id, CanFrame.FD_NO_FLAGS, new byte[]{1, 2, 3});
+
+        EPollSelector selector = EPollSelector.open();
+        SelectorMetrics selectorMetrics = new SelectorMetrics();
+        selector.setMetrics(selectorMetrics);
+
+        try (CanBroker can = new CanBroker(FACTORY, selector)) {
+            ChannelMetrics metrics = new ChannelMetrics();
+            LatencyHistogram latency = new LatencyHistogram();
+            can.setHandlerLatency(latency);
+            can.addFilter(new CanFilter(id));
+
+            CompletableFuture<CanFrame> f = new CompletableFuture<>();
+            can.addDevice(CanTestHelper.CAN_INTERFACE, (ch, frame) -> f.complete(frame));
+            can.setMetrics(CanTestHelper.CAN_INTERFACE, metrics);
+
+            CanTestHelper.sendFrameViaUtils(CanTestHelper.CAN_INTERFACE, expected);
+            assertEquals(expected, f.get(2, SECONDS));
+            // the poller records the handler latency right after the handler returns
+            Thread.sleep(50);
+
+            assertEquals(1, metrics.getReadMessages());
+            assertEquals(expected.getSize(), metrics.getReadBytes());
+            assertEquals(0, metrics.getKernelDrops());
+            assertEquals(1, latency.getCount());
+            assertTrue(latency.getMedianNanos() <= latency.getMaxNanos());
+            assertTrue(selectorMetrics.getPolls() >= 1);
+            assertTrue(selectorMetrics.getEvents() >= 1);
+        }
+    }
 }
@@ -0,0 +1,167 @@
+/*
+ * The MIT License
+ * Copyright © 2018 Phillip Schichtel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package tel.schich.javacan.test.util;
+
+import org.junit.jupiter.api.Test;
+import tel.schich.javacan.CanChannels;
+import tel.schich.javacan.CanFilter;
+import tel.schich.javacan.CanFrame;
+import tel.schich.javacan.RawCanChannel;
+import tel.schich.javacan.platform.linux.epoll.EPollSelector;
+import tel.schich.javacan.test.CanTestHelper;
+import tel.schich.javacan.util.CanBroker;
+import tel.schich.javacan.util.CanFramePublisher;
+import tel.schich.javacan.util.FrameSubscriber;
+import tel.schich.javacan.util.FrameSubscription;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.junit.jupiter.api.Assertions.*;
+
+class CanFramePublisherTest {
+
+    private static final ThreadFactory FACTORY = r -> {
+        Thread t = new Thread(r);
+        t.setName("can-publisher-test" + Math.random());
+        return t;
+    };
+
+    @Test
+    void testDemandIsHonoured() throws Exception {
+        final int id = 0x7E1;
+        final int frameCount = 5;
+
+        try (CanBroker broker = new CanBroker(FACTORY, EPollSelector.open());
+             RawCanChannel sender = CanChannels.newRawChannel(CanTestHelper.CAN_INTERFACE)) {
+            broker.addFilter(new CanFilter(id));
+
+            BlockingQueue<CanFrame> received = new LinkedBlockingQueue<>();
+            CompletableFuture<FrameSubscription> subscription = new CompletableFuture<>();
+            CompletableFuture<Void> completed = new CompletableFuture<>();
+
+            CanFramePublisher publisher = new CanFramePublisher(broker, CanTestHelper.CAN_INTERFACE);
+            publisher.subscribe(new FrameSubscriber() {
+                @Override
+                public void onSubscribe(FrameSubscription s) {
+                    subscription.complete(s);
+                    s.request(2);
+                }
+
+                @Override
+                public void onNext(CanFrame frame) {
+                    received.add(frame.copy());
+                }
+
+                @Override
+                public void onError(Throwable t) {
+                    completed.completeExceptionally(t);
+                }
+
+                @Override
+                public void onComplete() {
+                    completed.complete(null);
+                }
+            });
+
+            for (int i = 0; i < frameCount; i++) {
+                sender.write(CanFrame.create(id, CanFrame.FD_NO_FLAGS, new byte[]{(byte) i}));
+            }
+
+            assertEquals(0, firstByte(received.take()));
+            assertEquals(1, firstByte(received.take()));
+            assertNull(received.poll(200, MILLISECONDS), "No frames should be delivered without demand");
+            assertTrue(broker.isPaused(CanTestHelper.CAN_INTERFACE));
+
+            subscription.get().request(frameCount - 2);
+            for (int i = 2; i < frameCount; i++) {
+                CanFrame frame = received.poll(2, SECONDS);
+                assertNotNull(frame, "Frames should be delivered after requesting them");
+                assertEquals(i, firstByte(frame));
+            }
+
+            publisher.close();
+            completed.get(2, SECONDS);
+            assertTrue(broker.isEmpty());
+        }
+    }
+
+    @Test
+    void testResubscribeAfterCancel() throws Exception {
+        try (CanBroker broker = new CanBroker(FACTORY, EPollSelector.open())) {
+            CanFramePublisher publisher = new CanFramePublisher(broker, CanTestHelper.CAN_INTERFACE);
+
+            RecordingSubscriber first = new RecordingSubscriber();
+            publisher.subscribe(first);
+            assertNull(first.error.getNow(null));
+
+            RecordingSubscriber rejected = new RecordingSubscriber();
+            publisher.subscribe(rejected);
+            assertInstanceOf(IllegalStateException.class, rejected.error.get(2, SECONDS));
+
+            first.subscription.get(2, SECONDS).cancel();
+            assertTrue(broker.isEmpty());
+
+            RecordingSubscriber second = new RecordingSubscriber();
+            publisher.subscribe(second);
+            assertNull(second.error.getNow(null), "A cancelled subscription should allow a new subscriber");
+            assertTrue(broker.isPaused(CanTestHelper.CAN_INTERFACE));
+
+            publisher.close();
+            assertTrue(broker.isEmpty());
+        }
+    }
+
+    private static final class RecordingSubscriber implements FrameSubscriber {
+        final CompletableFuture<FrameSubscription> subscription = new CompletableFuture<>();
+        final CompletableFuture<Throwable> error = new CompletableFuture<>();
+
+        @Override
+        public void onSubscribe(FrameSubscription s) {
+            subscription.complete(s);
+        }
+
+        @Override
+        public void onNext(CanFrame frame) {
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            error.complete(t);
+        }
+
+        @Override
+        public void onComplete() {
+        }
+    }
+
+    private static byte firstByte(CanFrame frame) {
+        byte[] data = new byte[1];
+        frame.getData(data, 0, 1);
+        return data[0];
+    }
+}
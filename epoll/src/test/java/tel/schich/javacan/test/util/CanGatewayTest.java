@@ -0,0 +1,133 @@
+/*
+ * The MIT License
+ * Copyright © 2018 Phillip Schichtel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package tel.schich.javacan.test.util;
+
+import org.junit.jupiter.api.Test;
+import tel.schich.javacan.CanChannels;
+import tel.schich.javacan.CanFilter;
+import tel.schich.javacan.CanFrame;
+import tel.schich.javacan.RawCanChannel;
+import tel.schich.javacan.platform.linux.epoll.EPollSelector;
+import tel.schich.javacan.util.CanBroker;
+import tel.schich.javacan.util.CanGateway;
+import tel.schich.javacan.util.GatewayRoute;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.junit.jupiter.api.Assertions.*;
+import static tel.schich.javacan.test.CanTestHelper.CAN_INTERFACE;
+
+class CanGatewayTest {
+    private static final ThreadFactory FACTORY = r -> {
+        Thread t = new Thread(r);
+        t.setName("can-gateway-test" + Math.random());
+        return t;
+    };
+
+    @Test
+    void testRewrite() throws Exception {
+        final int id = 0x6A0;
+        final int target = 0x6A1;
+        BlockingQueue<CanFrame> forwarded = new LinkedBlockingQueue<>();
+
+        try (CanGateway gateway = new CanGateway(FACTORY, EPollSelector.open());
+             RawCanChannel sender = CanChannels.newRawChannel(CAN_INTERFACE)) {
+            gateway.addFilter(new CanFilter(id));
+            gateway.addFilter(new CanFilter(id + 0x20, 0x7F0));
+            gateway.addDevice(CAN_INTERFACE);
+            gateway.addRoute(GatewayRoute.of(CAN_INTERFACE, CAN_INTERFACE, new CanFilter(id))
+                    .withId(target)
+                    .withDataAnd(new byte[]{0x0F})
+                    .withDataOr(new byte[]{0, (byte) 0x80})
+                    .withDataXor(new byte[]{0, 0, (byte) 0xFF}));
+            gateway.addRoute(GatewayRoute.of(CAN_INTERFACE, CAN_INTERFACE, new CanFilter(id + 0x20, 0x7F0)).withId(target + 1));
+
+            try (CanBroker receiver = receiver(forwarded, target, target + 1)) {
+                sender.write(CanFrame.create(id, CanFrame.FD_NO_FLAGS, new byte[]{(byte) 0xAB, 1, 2, 3}));
+                CanFrame frame = forwarded.poll(2, SECONDS);
+                assertNotNull(frame, "The frame should have been forwarded");
+                assertEquals(target, frame.getId());
+                byte[] data = new byte[frame.getDataLength()];
+                frame.getData(data, 0, data.length);
+                assertArrayEquals(new byte[]{0x0B, (byte) 0x81, (byte) 0xFD, 3}, data);
+
+                // masked routes are matched as well, unrouted IDs are not forwarded
+                sender.write(CanFrame.create(id + 0x2F, CanFrame.FD_NO_FLAGS, new byte[]{4}));
+                sender.write(CanFrame.create(id + 5, CanFrame.FD_NO_FLAGS, new byte[]{5}));
+                frame = forwarded.poll(2, SECONDS);
+                assertNotNull(frame, "The frame should have been forwarded");
+                assertEquals(target + 1, frame.getId());
+                assertNull(forwarded.poll(100, MILLISECONDS));
+                assertEquals(2, gateway.getForwardedFrames());
+                assertEquals(0, gateway.getDroppedFrames());
+            }
+        }
+    }
+
+    @Test
+    void testRateLimit() throws Exception {
+        final int id = 0x6B0;
+        final int target = 0x6B1;
+        BlockingQueue<CanFrame> forwarded = new LinkedBlockingQueue<>();
+
+        try (CanGateway gateway = new CanGateway(FACTORY, EPollSelector.open());
+             RawCanChannel sender = CanChannels.newRawChannel(CAN_INTERFACE)) {
+            GatewayRoute route = GatewayRoute.of(CAN_INTERFACE, CAN_INTERFACE, new CanFilter(id))
+                    .withId(target)
+                    .withMinInterval(Duration.ofSeconds(10));
+            gateway.addFilter(new CanFilter(id));
+            gateway.addDevice(CAN_INTERFACE);
+            assertTrue(gateway.addRoute(route));
+            assertFalse(gateway.addRoute(route));
+
+            try (CanBroker receiver = receiver(forwarded, target)) {
+                for (byte i = 1; i <= 5; i++) {
+                    sender.write(CanFrame.create(id, CanFrame.FD_NO_FLAGS, new byte[]{i}));
+                }
+                CanFrame frame = forwarded.poll(2, SECONDS);
+                assertNotNull(frame, "The first frame should have been forwarded");
+                assertNull(forwarded.poll(200, MILLISECONDS), "Frames within the interval must be dropped");
+
+                assertTrue(gateway.removeRoute(route));
+                assertTrue(gateway.getRoutes().isEmpty());
+                sender.write(CanFrame.create(id, CanFrame.FD_NO_FLAGS, new byte[]{6}));
+                assertNull(forwarded.poll(200, MILLISECONDS));
+            }
+        }
+    }
+
+    private static CanBroker receiver(BlockingQueue<CanFrame> frames, int... ids) throws IOException {
+        CanBroker broker = new CanBroker(FACTORY, EPollSelector.open());
+        for (int id : ids) {
+            broker.addFilter(new CanFilter(id));
+        }
+        broker.addDevice(CAN_INTERFACE, (ch, frame) -> frames.add(frame.copy()));
+        return broker;
+    }
+}
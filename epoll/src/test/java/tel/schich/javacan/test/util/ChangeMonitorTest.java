@@ -0,0 +1,114 @@
+/*
+ * The MIT License
+ * Copyright © 2018 Phillip Schichtel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package tel.schich.javacan.test.util;
+
+import org.junit.jupiter.api.Test;
+import tel.schich.javacan.CanChannels;
+import tel.schich.javacan.CanFrame;
+import tel.schich.javacan.RawCanChannel;
+import tel.schich.javacan.platform.linux.epoll.EPollSelector;
+import tel.schich.javacan.util.ChangeFilter;
+import tel.schich.javacan.util.ChangeMonitor;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.junit.jupiter.api.Assertions.*;
+import static tel.schich.javacan.test.CanTestHelper.CAN_INTERFACE;
+
+class ChangeMonitorTest {
+    private static final ThreadFactory FACTORY = r -> {
+        Thread t = new Thread(r);
+        t.setName("change-monitor-test" + Math.random());
+        return t;
+    };
+
+    @Test
+    void testOnlyChangesAreDelivered() throws Exception {
+        final int id = 0x7E3;
+        BlockingQueue<byte[]> changes = new LinkedBlockingQueue<>();
+
+        try (ChangeMonitor monitor = new ChangeMonitor(FACTORY, EPollSelector.open());
+             RawCanChannel sender = CanChannels.newRawChannel(CAN_INTERFACE)) {
+            monitor.addDevice(CAN_INTERFACE, (device, frame) -> {
+                byte[] data = new byte[frame.getDataLength()];
+                frame.getData(data, 0, data.length);
+                changes.add(data);
+            });
+            monitor.install(CAN_INTERFACE, Arrays.asList(
+                    ChangeFilter.ofMask(id, new byte[]{(byte) 0xFF, 0, (byte) 0xFF}),
+                    ChangeFilter.ofId(id + 1)));
+            assertEquals(2, monitor.getFilters(CAN_INTERFACE).size());
+
+            sender.write(CanFrame.create(id, CanFrame.FD_NO_FLAGS, new byte[]{1, 2, 3}));
+            assertArrayEquals(new byte[]{1, 2, 3}, changes.poll(2, SECONDS), "The first frame is always a change");
+
+            // identical content and changes outside of the mask are discarded by the kernel
+            sender.write(CanFrame.create(id, CanFrame.FD_NO_FLAGS, new byte[]{1, 2, 3}));
+            sender.write(CanFrame.create(id, CanFrame.FD_NO_FLAGS, new byte[]{1, 9, 3}));
+            sender.write(CanFrame.create(id, CanFrame.FD_NO_FLAGS, new byte[]{4, 9, 3}));
+            assertArrayEquals(new byte[]{4, 9, 3}, changes.poll(2, SECONDS));
+            assertNull(changes.poll(100, MILLISECONDS));
+
+            // without a mask every frame is reported
+            sender.write(CanFrame.create(id + 1, CanFrame.FD_NO_FLAGS, new byte[]{5}));
+            sender.write(CanFrame.create(id + 1, CanFrame.FD_NO_FLAGS, new byte[]{5}));
+            assertArrayEquals(new byte[]{5}, changes.poll(2, SECONDS));
+            assertArrayEquals(new byte[]{5}, changes.poll(2, SECONDS));
+
+            assertTrue(monitor.uninstall(CAN_INTERFACE, id));
+            assertFalse(monitor.uninstall(CAN_INTERFACE, id));
+            sender.write(CanFrame.create(id, CanFrame.FD_NO_FLAGS, new byte[]{7, 7, 7}));
+            assertNull(changes.poll(100, MILLISECONDS));
+        }
+    }
+
+    @Test
+    void testThrottle() throws Exception {
+        final int id = 0x7E4;
+        BlockingQueue<byte[]> changes = new LinkedBlockingQueue<>();
+
+        try (ChangeMonitor monitor = new ChangeMonitor(FACTORY, EPollSelector.open());
+             RawCanChannel sender = CanChannels.newRawChannel(CAN_INTERFACE)) {
+            monitor.addDevice(CAN_INTERFACE, (device, frame) -> {
+                byte[] data = new byte[frame.getDataLength()];
+                frame.getData(data, 0, data.length);
+                changes.add(data);
+            });
+            monitor.install(CAN_INTERFACE, ChangeFilter.ofMask(id, new byte[]{(byte) 0xFF}).withThrottle(Duration.ofMillis(200)));
+
+            for (byte i = 1; i <= 5; i++) {
+                sender.write(CanFrame.create(id, CanFrame.FD_NO_FLAGS, new byte[]{i}));
+            }
+            assertArrayEquals(new byte[]{1}, changes.poll(2, SECONDS));
+            // the changes within the throttle interval are merged into the last state
+            assertArrayEquals(new byte[]{5}, changes.poll(2, SECONDS));
+            assertNull(changes.poll(300, MILLISECONDS));
+        }
+    }
+}
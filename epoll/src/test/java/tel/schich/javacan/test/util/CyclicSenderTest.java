@@ -0,0 +1,142 @@
+/*
+ * The MIT License
+ * Copyright © 2018 Phillip Schichtel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package tel.schich.javacan.test.util;
+
+import org.junit.jupiter.api.Test;
+import tel.schich.javacan.CanChannels;
+import tel.schich.javacan.CanFilter;
+import tel.schich.javacan.CanFrame;
+import tel.schich.javacan.RawCanChannel;
+import tel.schich.javacan.platform.linux.epoll.EPollSelector;
+import tel.schich.javacan.util.CyclicSender;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.ThreadFactory;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+import static tel.schich.javacan.CanFrame.FD_NO_FLAGS;
+import static tel.schich.javacan.CanSocketOptions.FILTER;
+import static tel.schich.javacan.CanSocketOptions.SO_RCVTIMEO;
+import static tel.schich.javacan.test.CanTestHelper.CAN_INTERFACE;
+
+class CyclicSenderTest {
+
+    private static final ThreadFactory FACTORY = r -> {
+        Thread t = new Thread(r);
+        t.setName("cyclic-sender-test" + Math.random());
+        return t;
+    };
+
+    @Test
+    void testCyclicTransmission() throws Exception {
+        try (RawCanChannel tx = CanChannels.newRawChannel(CAN_INTERFACE);
+             RawCanChannel rx = CanChannels.newRawChannel(CAN_INTERFACE)) {
+            tx.configureBlocking(false);
+            rx.setOption(FILTER, new CanFilter[]{new CanFilter(0x123), new CanFilter(0x456)});
+            rx.setOption(SO_RCVTIMEO, Duration.ofSeconds(1));
+
+            try (EPollSelector selector = EPollSelector.open()) {
+                assertThrows(IllegalArgumentException.class, () -> new CyclicSender(FACTORY, selector, tx, CyclicSender.MAX_CAPACITY + 1));
+            }
+
+            try (CyclicSender sender = new CyclicSender(FACTORY, EPollSelector.open(), tx, 8)) {
+                CyclicSender.CyclicFrame fast = sender.add(Duration.ofMillis(10), CanFrame.create(0x123, FD_NO_FLAGS, new byte[]{1}));
+                CyclicSender.CyclicFrame slow = sender.add(Duration.ofMillis(50), CanFrame.create(0x456, FD_NO_FLAGS, new byte[]{2}));
+
+                int fastCount = 0;
+                int slowCount = 0;
+                while (slowCount < 4) {
+                    CanFrame frame = rx.read();
+                    if (frame.getId() == 0x123) {
+                        fastCount++;
+                    } else {
+                        slowCount++;
+                    }
+                }
+                assertTrue(fastCount >= 15, "The fast cycle should have been sent about 5 times as often, but was " + fastCount);
+
+                slow.cancel();
+                fast.update(CanFrame.create(0x123, FD_NO_FLAGS, new byte[]{3}));
+                CanFrame updated;
+                do {
+                    updated = rx.read();
+                } while (updated.getId() != 0x123 || firstByte(updated) != 3);
+                for (int i = 0; i < 10; i++) {
+                    assertEquals(0x123, rx.read().getId(), "The slow cycle should not be sent after cancelling it");
+                }
+
+                fast.cancel();
+                assertEquals(0, sender.getDroppedFrames());
+            }
+        }
+    }
+
+    @Test
+    void testFullTransmitQueueDropsFrames() throws Exception {
+        try (RawCanChannel tx = CanChannels.newRawChannel(CAN_INTERFACE);
+             RawCanChannel rx = CanChannels.newRawChannel(CAN_INTERFACE)) {
+            tx.configureBlocking(false);
+            rx.setOption(FILTER, new CanFilter[]{new CanFilter(0x124)});
+            rx.setOption(SO_RCVTIMEO, Duration.ofSeconds(1));
+
+            try (CyclicSender sender = new CyclicSender(FACTORY, EPollSelector.open(), tx, 2)) {
+                // a FIFO without any room rejects every frame with ENOBUFS, like the full queue of a real controller
+                assumeTrue(tc("qdisc", "replace", "dev", CAN_INTERFACE.getName(), "root", "pfifo", "limit", "0"),
+                        "Changing the queueing discipline requires CAP_NET_ADMIN");
+                try {
+                    sender.add(Duration.ofMillis(10), CanFrame.create(0x124, FD_NO_FLAGS, new byte[]{1}));
+                    long deadline = System.nanoTime() + Duration.ofSeconds(2).toNanos();
+                    while (sender.getDroppedFrames() < 5 && System.nanoTime() < deadline) {
+                        Thread.sleep(10);
+                    }
+                    assertTrue(sender.getDroppedFrames() >= 5, "Frames rejected by the full queue must be counted");
+                } finally {
+                    tc("qdisc", "del", "dev", CAN_INTERFACE.getName(), "root");
+                }
+
+                // the sender keeps running once the queue drains again
+                assertEquals(0x124, rx.read().getId());
+            }
+        }
+    }
+
+    private static boolean tc(String... args) throws InterruptedException {
+        String[] command = new String[args.length + 1];
+        command[0] = "tc";
+        System.arraycopy(args, 0, command, 1, args.length);
+        try {
+            Process proc = new ProcessBuilder(command).inheritIO().start();
+            return proc.waitFor() == 0;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private static byte firstByte(CanFrame frame) {
+        byte[] data = new byte[1];
+        frame.getData(data, 0, 1);
+        return data[0];
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ * The MIT License
+ * Copyright © 2018 Phillip Schichtel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package tel.schich.javacan.test.util;
+
+import org.junit.jupiter.api.Test;
+import tel.schich.javacan.CanChannels;
+import tel.schich.javacan.IsotpCanChannel;
+import tel.schich.javacan.IsotpCanSocketOptions;
+import tel.schich.javacan.IsotpOptions;
+import tel.schich.javacan.IsotpSocketAddress;
+import tel.schich.javacan.platform.linux.epoll.EPollSelector;
+import tel.schich.javacan.util.IsotpGateway;
+import tel.schich.javacan.util.IsotpListener;
+
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadFactory;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.junit.jupiter.api.Assertions.*;
+import static tel.schich.javacan.IsotpAddress.*;
+import static tel.schich.javacan.IsotpSocketAddress.isotpAddress;
+import static tel.schich.javacan.test.CanTestHelper.CAN_INTERFACE;
+
+class IsotpGatewayTest {
+
+    private static final ThreadFactory FACTORY = r -> {
+        Thread t = new Thread(r);
+        t.setName("isotp-gateway-test-" + t.getName());
+        return t;
+    };
+
+    private static final IsotpOptions OPTIONS = IsotpOptions.DEFAULT
+            .withFrameTransmissionTime(IsotpOptions.FRAME_TXTIME_ZERO);
+
+    @Test
+    void testSessionsAreOpenedOnDemandAndEvicted() throws Exception {
+        IsotpSocketAddress ecuRx = isotpAddress(SFF_ECU_REQUEST_BASE + DESTINATION_ECU_2);
+        IsotpSocketAddress ecuTx = isotpAddress(SFF_ECU_RESPONSE_BASE + DESTINATION_ECU_2);
+
+        CompletableFuture<ByteBuffer> response = new CompletableFuture<>();
+        try (IsotpGateway gateway = new IsotpGateway(FACTORY,
+                Arrays.asList(EPollSelector.open(), EPollSelector.open()),
+                (ch, buffer) -> {
+                    ByteBuffer copy = ByteBuffer.allocate(buffer.remaining());
+                    copy.put(buffer).flip();
+                    response.complete(copy);
+                },
+                2, Duration.ofMillis(300), ch -> ch.setOption(IsotpCanSocketOptions.OPTS, OPTIONS));
+             IsotpListener ecu = new IsotpListener(FACTORY, EPollSelector.open(), Duration.ofSeconds(1));
+             IsotpCanChannel server = CanChannels.newIsotpChannel()) {
+
+            server.setOption(IsotpCanSocketOptions.OPTS, OPTIONS);
+            server.bind(CAN_INTERFACE, ecuRx, ecuTx);
+            ecu.addChannel(server, (ch, buffer) -> {
+                ByteBuffer answer = ByteBuffer.allocateDirect(buffer.remaining() + 1);
+                answer.put((byte) 0x40).put(buffer).flip();
+                try {
+                    ch.write(answer);
+                } catch (Exception e) {
+                    e.printStackTrace(System.err);
+                }
+            });
+
+            // the first two sessions are evicted when the limit is reached
+            gateway.open(CAN_INTERFACE, isotpAddress(0x701), isotpAddress(0x702));
+            gateway.open(CAN_INTERFACE, isotpAddress(0x703), isotpAddress(0x704));
+            assertEquals(2, gateway.getOpenChannelCount());
+
+            ByteBuffer request = ByteBuffer.allocateDirect(2);
+            request.put((byte) 0x10).put((byte) 0x03).flip();
+            gateway.send(CAN_INTERFACE, ecuTx, ecuRx, request);
+            assertEquals(2, gateway.getOpenChannelCount());
+
+            ByteBuffer answer = response.get(2, SECONDS);
+            assertEquals(3, answer.remaining());
+            assertEquals(0x40, answer.get(0));
+            assertEquals(0x10, answer.get(1));
+
+            assertTrue(gateway.close(CAN_INTERFACE, ecuTx, ecuRx));
+            assertFalse(gateway.close(CAN_INTERFACE, ecuTx, ecuRx));
+
+            long deadline = System.nanoTime() + Duration.ofSeconds(2).toNanos();
+            while (gateway.getOpenChannelCount() > 0 && System.nanoTime() < deadline) {
+                Thread.sleep(50);
+            }
+            assertEquals(0, gateway.getOpenChannelCount(), "Idle sessions should have been closed");
+        }
+    }
+}
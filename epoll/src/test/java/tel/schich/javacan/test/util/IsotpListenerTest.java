@@ -35,10 +35,14 @@ import tel.schich.javacan.platform.linux.epoll.EPollSelector;
 import tel.schich.javacan.test.CanTestHelper;
 import tel.schich.javacan.util.CanUtils;
 import tel.schich.javacan.util.IsotpListener;
+import tel.schich.javacan.util.MessageBufferPool;
 import tel.schich.javacan.util.MessageHandler;
+import tel.schich.javacan.util.PooledMessage;
 
 import java.nio.ByteBuffer;
 import java.time.Duration;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
@@ -97,6 +101,70 @@ class IsotpListenerTest {
         }
     }
 
+    @Test
+    void testPoolSizeLimit() {
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new MessageBufferPool(0));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new MessageBufferPool(MessageBufferPool.MAX_SIZE + 1));
+    }
+
+    @Test
+    void testPooledDelivery() throws Exception {
+        ThreadFactory threadFactory = r -> {
+            Thread t = new Thread(r);
+            t.setName("pooled-test-" + t.getName());
+            return t;
+        };
+
+        IsotpSocketAddress addrA = IsotpSocketAddress.isotpAddress(SFF_ECU_REQUEST_BASE + DESTINATION_ECU_3);
+        IsotpSocketAddress addrB = IsotpSocketAddress.isotpAddress(SFF_ECU_RESPONSE_BASE + DESTINATION_ECU_3);
+        final IsotpOptions isotpOptions = IsotpOptions.DEFAULT
+                .withFrameTransmissionTime(IsotpOptions.FRAME_TXTIME_ZERO);
+        final MessageBufferPool pool = new MessageBufferPool(1);
+        final BlockingQueue<PooledMessage> received = new LinkedBlockingQueue<>();
+
+        try (IsotpListener listener = new IsotpListener(threadFactory, EPollSelector.open(), Duration.ofSeconds(5));
+             IsotpCanChannel a = CanChannels.newIsotpChannel();
+             IsotpCanChannel b = CanChannels.newIsotpChannel()) {
+            a.setOption(IsotpCanSocketOptions.OPTS, isotpOptions);
+            b.setOption(IsotpCanSocketOptions.OPTS, isotpOptions);
+            a.bind(CanTestHelper.CAN_INTERFACE, addrA, addrB);
+            b.bind(CanTestHelper.CAN_INTERFACE, addrB, addrA);
+
+            listener.addChannel(b, pool, (ch, message) -> received.add(message));
+
+            ByteBuffer out = IsotpCanChannel.allocateSufficientMemory();
+            for (int i = 0; i < 3; i++) {
+                out.clear();
+                for (int j = 0; j < 100 * (i + 1); j++) {
+                    out.put((byte) i);
+                }
+                out.flip();
+                a.write(out);
+            }
+
+            PooledMessage first = null;
+            for (int i = 0; i < 3; i++) {
+                PooledMessage message = received.poll(5, TimeUnit.SECONDS);
+                Assertions.assertNotNull(message, "message " + i + " should have been received");
+                ByteBuffer buffer = message.getBuffer();
+                Assertions.assertTrue(buffer.isDirect());
+                Assertions.assertEquals(100 * (i + 1), buffer.remaining());
+                Assertions.assertEquals((byte) i, buffer.get(buffer.position()));
+                // keep the first message to exhaust the pool for the following ones
+                if (i == 0) {
+                    first = message;
+                } else {
+                    message.release();
+                    Assertions.assertThrows(IllegalStateException.class, message::release);
+                }
+            }
+            Assertions.assertEquals(2, pool.getMisses());
+            Assertions.assertEquals(0, pool.getAvailable());
+            first.release();
+            Assertions.assertEquals(1, pool.getAvailable());
+        }
+    }
+
     static byte randomByte() {
         return (byte) ThreadLocalRandom.current().nextInt(256);
     }
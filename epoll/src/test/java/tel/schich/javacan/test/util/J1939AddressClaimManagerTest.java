@@ -0,0 +1,127 @@
+/*
+ * The MIT License
+ * Copyright © 2018 Phillip Schichtel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package tel.schich.javacan.test.util;
+
+import org.junit.jupiter.api.Test;
+import tel.schich.javacan.J1939Address;
+import tel.schich.javacan.platform.linux.epoll.EPollSelector;
+import tel.schich.javacan.util.J1939AddressClaimManager;
+import tel.schich.javacan.util.J1939AddressClaimManager.Claim;
+import tel.schich.javacan.util.J1939AddressClaimManager.ClaimState;
+import tel.schich.javacan.util.J1939AddressTable;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.function.BooleanSupplier;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.junit.jupiter.api.Assertions.*;
+import static tel.schich.javacan.test.CanTestHelper.CAN_INTERFACE;
+
+class J1939AddressClaimManagerTest {
+    private static final ThreadFactory FACTORY = r -> {
+        Thread t = new Thread(r);
+        t.setName("j1939-address-claim-test" + Math.random());
+        return t;
+    };
+
+    private static final long ARBITRARY_ADDRESS_CAPABLE = 1L << 63;
+
+    @Test
+    void testClaimIsTracked() throws Exception {
+        final long name = 0x0000_0012_3456_7801L;
+        final byte address = (byte) 0x80;
+
+        try (J1939AddressClaimManager claimer = new J1939AddressClaimManager(FACTORY, EPollSelector.open());
+             J1939AddressClaimManager observer = new J1939AddressClaimManager(FACTORY, EPollSelector.open())) {
+            J1939AddressTable table = observer.addBus(CAN_INTERFACE);
+
+            CompletableFuture<Claim> claimed = new CompletableFuture<>();
+            Claim claim = claimer.claim(CAN_INTERFACE, name, address, c -> {
+                if (c.getState() == ClaimState.CLAIMED) {
+                    claimed.complete(c);
+                }
+            });
+            assertSame(claim, claimed.get(2, SECONDS));
+            assertEquals(address, claim.getAddress());
+
+            waitFor(() -> table.getAddress(name) == address);
+            assertEquals(name, table.getName(address));
+            assertEquals(J1939Address.NO_ADDR, table.getAddress(name + 1));
+
+            // a manager started later learns the claim from the request for address claimed
+            try (J1939AddressClaimManager late = new J1939AddressClaimManager(FACTORY, EPollSelector.open())) {
+                J1939AddressTable lateTable = late.addBus(CAN_INTERFACE);
+                waitFor(() -> lateTable.getAddress(name) == address);
+            }
+        }
+    }
+
+    @Test
+    void testLowerNameWinsContention() throws Exception {
+        final long high = ARBITRARY_ADDRESS_CAPABLE | 0x0000_0022_0000_0002L;
+        final long low = 0x0000_0022_0000_0001L;
+        final byte address = (byte) 0x81;
+
+        try (J1939AddressClaimManager a = new J1939AddressClaimManager(FACTORY, EPollSelector.open());
+             J1939AddressClaimManager b = new J1939AddressClaimManager(FACTORY, EPollSelector.open())) {
+            CompletableFuture<Claim> first = new CompletableFuture<>();
+            CompletableFuture<Claim> moved = new CompletableFuture<>();
+            a.claim(CAN_INTERFACE, high, address, c -> {
+                if (c.getState() == ClaimState.CLAIMED) {
+                    if (c.getAddress() == address) {
+                        first.complete(c);
+                    } else {
+                        moved.complete(c);
+                    }
+                }
+            });
+            first.get(2, SECONDS);
+
+            CompletableFuture<Claim> won = new CompletableFuture<>();
+            b.claim(CAN_INTERFACE, low, address, c -> {
+                if (c.getState() == ClaimState.CLAIMED) {
+                    won.complete(c);
+                }
+            });
+            assertEquals(address, won.get(2, SECONDS).getAddress());
+
+            Claim other = moved.get(2, SECONDS);
+            assertNotEquals(address, other.getAddress());
+            assertTrue((other.getAddress() & 0xFF) >= J1939AddressClaimManager.DYNAMIC_ADDRESS_MIN);
+
+            J1939AddressTable table = b.getTable(CAN_INTERFACE);
+            assertNotNull(table);
+            waitFor(() -> table.getAddress(high) == other.getAddress());
+            assertEquals(low, table.getName(address));
+        }
+    }
+
+    private static void waitFor(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + SECONDS.toNanos(2);
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "Condition not met in time");
+            Thread.sleep(10);
+        }
+    }
+}
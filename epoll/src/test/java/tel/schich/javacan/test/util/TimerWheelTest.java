@@ -0,0 +1,119 @@
+/*
+ * The MIT License
+ * Copyright © 2018 Phillip Schichtel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package tel.schich.javacan.test.util;
+
+import org.junit.jupiter.api.Test;
+import tel.schich.javacan.util.TimerWheel;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.time.Duration.ofMillis;
+import static org.junit.jupiter.api.Assertions.*;
+
+class TimerWheelTest {
+
+    private static final long TICK = ofMillis(10).toNanos();
+
+    @Test
+    void testExpiresInDeadlineOrder() {
+        TimerWheel wheel = new TimerWheel(ofMillis(10), 8);
+        long start = System.nanoTime();
+        List<Integer> fired = new ArrayList<>();
+
+        wheel.scheduleAt(start + 3 * TICK, () -> fired.add(3));
+        wheel.scheduleAt(start + TICK, () -> fired.add(1));
+        wheel.scheduleAt(start + 2 * TICK, () -> fired.add(2));
+        assertEquals(3, wheel.size());
+
+        assertEquals(0, wheel.expire(start));
+        assertTrue(fired.isEmpty(), "Nothing should fire before the first deadline");
+
+        assertEquals(3, wheel.expire(start + 5 * TICK));
+        assertEquals(3, fired.size());
+        assertEquals(1, (int) fired.get(0));
+        assertEquals(2, (int) fired.get(1));
+        assertEquals(3, (int) fired.get(2));
+        assertTrue(wheel.isEmpty());
+    }
+
+    @Test
+    void testTimeoutsBeyondOneRevolution() {
+        TimerWheel wheel = new TimerWheel(ofMillis(10), 4);
+        long start = System.nanoTime();
+        AtomicInteger fired = new AtomicInteger();
+
+        // 10 ticks on a wheel with 4 buckets needs two additional rounds
+        wheel.scheduleAt(start + 10 * TICK, fired::incrementAndGet);
+
+        for (int i = 1; i <= 9; i++) {
+            wheel.expire(start + i * TICK);
+            assertEquals(0, fired.get(), "The timeout must not fire after " + i + " ticks");
+        }
+        wheel.expire(start + 12 * TICK);
+        assertEquals(1, fired.get());
+    }
+
+    @Test
+    void testCancel() {
+        TimerWheel wheel = new TimerWheel(ofMillis(10), 8);
+        long start = System.nanoTime();
+        AtomicInteger fired = new AtomicInteger();
+
+        TimerWheel.Timeout timeout = wheel.scheduleAt(start + 2 * TICK, fired::incrementAndGet);
+        wheel.expire(start);
+        assertTrue(timeout.cancel());
+        assertFalse(timeout.cancel(), "A timeout can only be cancelled once");
+        assertTrue(wheel.isEmpty());
+
+        wheel.expire(start + 4 * TICK);
+        assertEquals(0, fired.get());
+        assertTrue(timeout.isCancelled());
+        assertFalse(timeout.isExpired());
+    }
+
+    @Test
+    void testNanosUntilNextExpiry() {
+        TimerWheel wheel = new TimerWheel(ofMillis(10), 8);
+        long now = System.nanoTime();
+        assertEquals(-1, wheel.nanosUntilNextExpiry(now), "An empty wheel has no deadline");
+
+        // 20 ticks on a wheel with 8 buckets, the wheel must not be driven every tick
+        TimerWheel.Timeout late = wheel.scheduleAt(now + 20 * TICK, () -> {});
+        long wait = wheel.nanosUntilNextExpiry(now);
+        assertTrue(wait >= 19 * TICK && wait <= 21 * TICK, "The wait should reach the deadline: " + wait);
+
+        wheel.scheduleAt(now + 3 * TICK, () -> {});
+        wait = wheel.nanosUntilNextExpiry(now);
+        assertTrue(wait >= 2 * TICK && wait <= 4 * TICK, "An earlier timeout should shorten the wait: " + wait);
+
+        wheel.expire(now + 5 * TICK);
+        wait = wheel.nanosUntilNextExpiry(now + 5 * TICK);
+        assertTrue(wait >= 14 * TICK && wait <= 16 * TICK, "The wait should fall back to the late timeout: " + wait);
+
+        late.cancel();
+        assertEquals(-1, wheel.nanosUntilNextExpiry(now + 5 * TICK));
+    }
+}
@@ -0,0 +1,204 @@
+/*
+ * The MIT License
+ * Copyright © 2018 Phillip Schichtel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package tel.schich.javacan.test.util;
+
+import org.junit.jupiter.api.Test;
+import tel.schich.javacan.CanChannels;
+import tel.schich.javacan.IsotpCanChannel;
+import tel.schich.javacan.IsotpSocketAddress;
+import tel.schich.javacan.platform.linux.epoll.EPollSelector;
+import tel.schich.javacan.util.IsotpListener;
+import tel.schich.javacan.util.UdsClient;
+import tel.schich.javacan.util.UdsNegativeResponseException;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.junit.jupiter.api.Assertions.*;
+import static tel.schich.javacan.IsotpAddress.*;
+import static tel.schich.javacan.IsotpSocketAddress.isotpAddress;
+import static tel.schich.javacan.test.CanTestHelper.CAN_INTERFACE;
+
+class UdsClientTest {
+
+    private static final ThreadFactory FACTORY = r -> {
+        Thread t = new Thread(r);
+        t.setName("uds-client-test-" + t.getName());
+        return t;
+    };
+
+    private static final IsotpSocketAddress ECU_RX = isotpAddress(SFF_ECU_REQUEST_BASE + DESTINATION_ECU_4);
+    private static final IsotpSocketAddress ECU_TX = isotpAddress(SFF_ECU_RESPONSE_BASE + DESTINATION_ECU_4);
+
+    private static ByteBuffer message(int... bytes) {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(bytes.length);
+        for (int b : bytes) {
+            buffer.put((byte) b);
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    private static void reply(IsotpCanChannel ch, ByteBuffer message) {
+        try {
+            ch.write(message);
+        } catch (Exception e) {
+            e.printStackTrace(System.err);
+        }
+    }
+
+    @Test
+    void testRequestsAndDownload() throws Exception {
+        ByteArrayOutputStream downloaded = new ByteArrayOutputStream();
+        AtomicInteger testerPresentCount = new AtomicInteger();
+
+        try (IsotpListener simulator = new IsotpListener(FACTORY, EPollSelector.open(), Duration.ofSeconds(1));
+             IsotpCanChannel server = CanChannels.newIsotpChannel();
+             IsotpCanChannel client = CanChannels.newIsotpChannel();
+             UdsClient uds = new UdsClient(FACTORY, EPollSelector.open())) {
+
+            server.bind(CAN_INTERFACE, ECU_RX, ECU_TX);
+            client.bind(CAN_INTERFACE, ECU_TX, ECU_RX);
+            simulator.addChannel(server, (ch, buffer) -> {
+                int sid = buffer.get(0) & 0xFF;
+                switch (sid) {
+                    case 0x22:
+                        reply(ch, message(0x7F, 0x22, UdsClient.NRC_RESPONSE_PENDING));
+                        simulator.schedule(Duration.ofMillis(100), () -> reply(ch, message(0x62, 0xF1, 0x90, 0x42)));
+                        break;
+                    case 0x34:
+                        // 258 bytes per TransferData request
+                        reply(ch, message(0x74, 0x20, 0x01, 0x02));
+                        break;
+                    case 0x36:
+                        for (int i = 2; i < buffer.remaining(); i++) {
+                            downloaded.write(buffer.get(i));
+                        }
+                        reply(ch, message(0x76, buffer.get(1) & 0xFF));
+                        break;
+                    case 0x37:
+                        reply(ch, message(0x77));
+                        break;
+                    case 0x3E:
+                        testerPresentCount.incrementAndGet();
+                        break;
+                    default:
+                        reply(ch, message(0x7F, sid, 0x11));
+                }
+            });
+
+            UdsClient.Ecu ecu = uds.addEcu(client);
+
+            ByteBuffer response = ecu.request(message(0x22, 0xF1, 0x90)).get(2, SECONDS);
+            assertEquals(4, response.remaining());
+            assertEquals(0x42, response.get(3), "The final response should follow the response pending message");
+
+            ExecutionException e = assertThrows(ExecutionException.class,
+                    () -> ecu.request(message(0x31, 0x01, 0xFF, 0x00)).get(2, SECONDS));
+            UdsNegativeResponseException nrc = assertInstanceOf(UdsNegativeResponseException.class, e.getCause());
+            assertEquals(0x31, nrc.getServiceId());
+            assertEquals(0x11, nrc.getResponseCode());
+
+            byte[] data = new byte[2000];
+            for (int i = 0; i < data.length; i++) {
+                data[i] = (byte) (i * 7);
+            }
+            ecu.download(0x8000, ByteBuffer.wrap(data)).get(5, SECONDS);
+            assertArrayEquals(data, downloaded.toByteArray(), "All blocks should arrive in order");
+
+            ecu.startTesterPresent(Duration.ofMillis(50));
+            Thread.sleep(300);
+            ecu.stopTesterPresent();
+            assertTrue(testerPresentCount.get() > 0, "Tester present should have been sent while idle");
+        }
+    }
+
+    @Test
+    void testRequestIsRetriedWhileChannelIsBusy() throws Exception {
+        try (IsotpListener simulator = new IsotpListener(FACTORY, EPollSelector.open(), Duration.ofSeconds(1));
+             IsotpCanChannel server = CanChannels.newIsotpChannel();
+             IsotpCanChannel client = CanChannels.newIsotpChannel();
+             UdsClient uds = new UdsClient(FACTORY, EPollSelector.open())) {
+
+            server.bind(CAN_INTERFACE, ECU_RX, ECU_TX);
+            client.bind(CAN_INTERFACE, ECU_TX, ECU_RX);
+            simulator.addChannel(server, (ch, buffer) -> {
+                if ((buffer.get(0) & 0xFF) == 0x22) {
+                    reply(ch, message(0x62, 0xF1, 0x90, 0x42));
+                }
+            });
+
+            UdsClient.Ecu ecu = uds.addEcu(client);
+
+            // keep the channel busy with a long message without response, like a tester present would
+            ByteBuffer busy = ByteBuffer.allocateDirect(4000);
+            busy.put(0, (byte) UdsClient.SID_TESTER_PRESENT);
+            client.write(busy);
+
+            ByteBuffer response = ecu.request(message(0x22, 0xF1, 0x90)).get(2, SECONDS);
+            assertEquals(0x42, response.get(3), "The request should be sent once the channel is ready again");
+        }
+    }
+
+    @Test
+    void testLateResponseIsNotMatchedToTheNextRequest() throws Exception {
+        try (IsotpListener simulator = new IsotpListener(FACTORY, EPollSelector.open(), Duration.ofSeconds(1));
+             IsotpCanChannel server = CanChannels.newIsotpChannel();
+             IsotpCanChannel client = CanChannels.newIsotpChannel();
+             UdsClient uds = new UdsClient(FACTORY, EPollSelector.open(), Duration.ofMillis(150), Duration.ofSeconds(2))) {
+
+            server.bind(CAN_INTERFACE, ECU_RX, ECU_TX);
+            client.bind(CAN_INTERFACE, ECU_TX, ECU_RX);
+            simulator.addChannel(server, (ch, buffer) -> {
+                if ((buffer.get(0) & 0xFF) != 0x22) {
+                    return;
+                }
+                if ((buffer.get(2) & 0xFF) == 0x90) {
+                    // answered after the request timed out and the next request is in flight
+                    simulator.schedule(Duration.ofMillis(300), () -> reply(ch, message(0x62, 0xF1, 0x90, 0x01)));
+                } else {
+                    reply(ch, message(0x7F, 0x22, UdsClient.NRC_RESPONSE_PENDING));
+                    simulator.schedule(Duration.ofMillis(400), () -> reply(ch, message(0x62, 0xF1, 0x91, 0x02)));
+                }
+            });
+
+            UdsClient.Ecu ecu = uds.addEcu(client);
+
+            ByteBuffer first = message(0x22, 0xF1, 0x90);
+            ByteBuffer second = message(0x22, 0xF1, 0x91);
+            ExecutionException e = assertThrows(ExecutionException.class, () -> ecu.request(first).get(2, SECONDS));
+            assertInstanceOf(TimeoutException.class, e.getCause());
+
+            ByteBuffer response = ecu.request(second).get(2, SECONDS);
+            assertEquals(0x91, response.get(2) & 0xFF, "The late response to F190 should have been dropped");
+            assertEquals(0x02, response.get(3));
+            assertEquals(0, second.position(), "Sending the request should not move the position of its buffer");
+        }
+    }
+}
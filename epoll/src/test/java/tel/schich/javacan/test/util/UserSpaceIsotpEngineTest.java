@@ -0,0 +1,169 @@
+/*
+ * The MIT License
+ * Copyright © 2018 Phillip Schichtel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package tel.schich.javacan.test.util;
+
+import org.junit.jupiter.api.Test;
+import tel.schich.javacan.CanChannels;
+import tel.schich.javacan.CanFilter;
+import tel.schich.javacan.CanFrame;
+import tel.schich.javacan.IsotpCanChannel;
+import tel.schich.javacan.IsotpSocketAddress;
+import tel.schich.javacan.IsotpTuningProfile;
+import tel.schich.javacan.JavaCAN;
+import tel.schich.javacan.RawCanChannel;
+import tel.schich.javacan.platform.linux.epoll.EPollSelector;
+import tel.schich.javacan.util.UserSpaceIsotpChannel;
+import tel.schich.javacan.util.UserSpaceIsotpEngine;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.concurrent.ThreadFactory;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static tel.schich.javacan.CanFrame.FD_NO_FLAGS;
+import static tel.schich.javacan.CanSocketOptions.FILTER;
+import static tel.schich.javacan.CanSocketOptions.SO_RCVTIMEO;
+import static tel.schich.javacan.IsotpSocketAddress.isotpAddress;
+import static tel.schich.javacan.test.CanTestHelper.CAN_INTERFACE;
+
+class UserSpaceIsotpEngineTest {
+
+    private static final ThreadFactory FACTORY = r -> {
+        Thread t = new Thread(r);
+        t.setName("user-space-isotp-test-" + t.getName());
+        return t;
+    };
+
+    private static final IsotpSocketAddress TESTER = isotpAddress(0x7E0);
+    private static final IsotpSocketAddress ECU = isotpAddress(0x7E8);
+
+    private static byte[] message(int length) {
+        byte[] message = new byte[length];
+        for (int i = 0; i < length; i++) {
+            message[i] = (byte) i;
+        }
+        return message;
+    }
+
+    private static byte[] read(UserSpaceIsotpChannel channel) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(IsotpCanChannel.MAX_MESSAGE_LENGTH);
+        int length = channel.read(buffer, Duration.ofSeconds(2));
+        assertTrue(length > 0, "A message should have been received");
+        byte[] out = new byte[length];
+        buffer.flip();
+        buffer.get(out);
+        return out;
+    }
+
+    @Test
+    void testSegmentedTransfer() throws Exception {
+        IsotpTuningProfile profile = IsotpTuningProfile.classic("bs4-st1", 4, 1);
+        try (UserSpaceIsotpEngine a = new UserSpaceIsotpEngine(FACTORY, EPollSelector.open());
+             UserSpaceIsotpEngine b = new UserSpaceIsotpEngine(FACTORY, EPollSelector.open())) {
+            UserSpaceIsotpChannel tester = a.open(CAN_INTERFACE, ECU, TESTER, profile);
+            UserSpaceIsotpChannel ecu = b.open(CAN_INTERFACE, TESTER, ECU, profile);
+            assertEquals(1, a.getChannelCount());
+
+            for (int length : new int[]{3, 7, 8, 62, 300}) {
+                byte[] request = message(length);
+                assertEquals(length, tester.write(ByteBuffer.wrap(request)));
+                assertArrayEquals(request, read(ecu), "What goes in must come out!");
+
+                assertEquals(length, ecu.write(ByteBuffer.wrap(request)));
+                assertArrayEquals(request, read(tester), "What goes in must come out!");
+            }
+
+            tester.close();
+            assertFalse(tester.isOpen());
+            assertEquals(0, a.getChannelCount());
+        }
+    }
+
+    @Test
+    void testCanFdTransfer() throws Exception {
+        IsotpTuningProfile profile = IsotpTuningProfile.canFd("fd64", 64, false, 0, 0);
+        try (UserSpaceIsotpEngine a = new UserSpaceIsotpEngine(FACTORY, EPollSelector.open());
+             UserSpaceIsotpEngine b = new UserSpaceIsotpEngine(FACTORY, EPollSelector.open())) {
+            UserSpaceIsotpChannel tester = a.open(CAN_INTERFACE, ECU, TESTER, profile);
+            UserSpaceIsotpChannel ecu = b.open(CAN_INTERFACE, TESTER, ECU, profile);
+
+            for (int length : new int[]{20, 62, IsotpCanChannel.MAX_MESSAGE_LENGTH}) {
+                byte[] request = message(length);
+                tester.write(ByteBuffer.wrap(request));
+                assertArrayEquals(request, read(ecu), "What goes in must come out!");
+            }
+        }
+    }
+
+    @Test
+    void testInteroperabilityWithKernel() throws Exception {
+        try (UserSpaceIsotpEngine engine = new UserSpaceIsotpEngine(FACTORY, EPollSelector.open());
+             IsotpCanChannel kernel = CanChannels.newIsotpChannel()) {
+            kernel.bind(CAN_INTERFACE, TESTER, ECU);
+            UserSpaceIsotpChannel tester = engine.open(CAN_INTERFACE, ECU, TESTER);
+
+            byte[] request = message(100);
+            tester.write(ByteBuffer.wrap(request));
+            ByteBuffer buffer = JavaCAN.allocateUnordered(IsotpCanChannel.MAX_MESSAGE_LENGTH);
+            assertEquals(request.length, kernel.read(buffer));
+
+            buffer.flip();
+            kernel.write(buffer);
+            assertArrayEquals(request, read(tester), "What goes in must come out!");
+        }
+    }
+
+    @Test
+    void testMissingFlowControlFailsNextWrite() throws Exception {
+        try (UserSpaceIsotpEngine engine = new UserSpaceIsotpEngine(FACTORY, EPollSelector.open(),
+                UserSpaceIsotpEngine.DEFAULT_TIMEOUT, Duration.ofMillis(100))) {
+            UserSpaceIsotpChannel tester = engine.open(CAN_INTERFACE, isotpAddress(0x6F8), isotpAddress(0x6F0));
+
+            tester.write(ByteBuffer.wrap(message(20)));
+            assertThrows(IOException.class, () -> tester.write(ByteBuffer.wrap(message(20))));
+            assertEquals(3, tester.write(ByteBuffer.wrap(message(3))), "The channel should be usable again");
+        }
+    }
+
+    @Test
+    void testFirstFrameFittingASingleFrameIsIgnored() throws Exception {
+        try (UserSpaceIsotpEngine engine = new UserSpaceIsotpEngine(FACTORY, EPollSelector.open());
+             RawCanChannel raw = CanChannels.newRawChannel(CAN_INTERFACE)) {
+            raw.setOption(FILTER, new CanFilter[]{new CanFilter(0x6E8)});
+            raw.setOption(SO_RCVTIMEO, Duration.ofMillis(200));
+            UserSpaceIsotpChannel ecu = engine.open(CAN_INTERFACE, isotpAddress(0x6E0), isotpAddress(0x6E8));
+
+            // FF_DL 7 fits into a classic single frame, so the first frame is invalid
+            raw.write(CanFrame.create(0x6E0, FD_NO_FLAGS, new byte[]{0x10, 0x07, 1, 2, 3, 4, 5, 6}));
+            assertThrows(IOException.class, raw::read, "No flow control must be sent for an invalid first frame");
+
+            raw.write(CanFrame.create(0x6E0, FD_NO_FLAGS, new byte[]{0x10, 0x08, 1, 2, 3, 4, 5, 6}));
+            byte[] flowControl = new byte[1];
+            raw.read().getData(flowControl, 0, 1);
+            assertEquals(0x30, flowControl[0] & 0xF0,
+                    "The shortest valid first frame must be answered with a flow control");
+            ecu.close();
+        }
+    }
+}
@@ -2,7 +2,7 @@
 
 set -euo pipefail
 
-sudo modprobe vcan can_raw can_bcm can_j1939
+sudo modprobe vcan can_raw can_bcm can_j1939 can_gw
 
 interface_name="${1:-vcan0}"
 
@@ -0,0 +1,214 @@
+/*
+ * The MIT License
+ * Copyright © 2018 Phillip Schichtel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package tel.schich.javacan.tools;
+
+import org.eclipse.jdt.annotation.Nullable;
+import tel.schich.javacan.CanId;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * The messages and signals of a DBC file.
+ * <p>
+ * Only the {@code BO_} and {@code SG_} sections are interpreted, which is all that is needed to decode and encode
+ * payloads. Everything else (nodes, comments, attributes, value tables, ...) is skipped. Signals are decoded as
+ * integers, float signals declared by {@code SIG_VALTYPE_} and extended multiplexing ({@code SG_MUL_VAL_}) are not
+ * supported, multiplexed multiplexers ({@code m<value>M}) are treated as plain multiplexed signals.
+ * </p>
+ */
+public final class DbcDatabase {
+    private static final Pattern MESSAGE = Pattern.compile(
+            "^BO_\\s+(\\d+)\\s+(\\w+)\\s*:\\s*(\\d+)\\s+(\\S+).*$");
+    private static final Pattern SIGNAL = Pattern.compile(
+            "^SG_\\s+(\\w+)\\s*(M|m\\d+M?)?\\s*:\\s*(\\d+)\\|(\\d+)@([01])([+-])\\s*"
+                    + "\\(\\s*([^,\\s]+)\\s*,\\s*([^)\\s]+)\\s*\\)\\s*"
+                    + "\\[\\s*([^|\\s]*)\\s*\\|\\s*([^\\]\\s]*)\\s*]\\s*"
+                    + "\"([^\"]*)\".*$");
+
+    /**
+     * The name of the pseudo message that holds signals which are not assigned to any message.
+     */
+    private static final String INDEPENDENT_SIGNALS = "VECTOR__INDEPENDENT_SIG_MSG";
+
+    private final List<DbcMessage> messages;
+    private final Map<Integer, DbcMessage> byId;
+
+    public DbcDatabase(List<DbcMessage> messages) {
+        Map<Integer, DbcMessage> byId = new LinkedHashMap<>();
+        for (DbcMessage message : messages) {
+            if (byId.put(message.getCanId(), message) != null) {
+                throw new IllegalArgumentException("duplicate message ID: " + Integer.toHexString(message.getCanId()));
+            }
+        }
+        this.messages = Collections.unmodifiableList(new ArrayList<>(messages));
+        this.byId = byId;
+    }
+
+    /**
+     * Parses a DBC file.
+     *
+     * @param reader the DBC source
+     * @return the database
+     * @throws IOException if reading fails or a message or signal definition is malformed
+     */
+    public static DbcDatabase parse(Reader reader) throws IOException {
+        BufferedReader lines = reader instanceof BufferedReader ? (BufferedReader) reader : new BufferedReader(reader);
+        List<DbcMessage> messages = new ArrayList<>();
+        @Nullable
+        Matcher message = null;
+        List<DbcSignal> signals = new ArrayList<>();
+        String line;
+        int lineNumber = 0;
+        while ((line = lines.readLine()) != null) {
+            lineNumber++;
+            String trimmed = line.trim();
+            if (trimmed.startsWith("BO_ ")) {
+                if (message != null) {
+                    addMessage(messages, message, signals);
+                }
+                message = MESSAGE.matcher(trimmed);
+                if (!message.matches()) {
+                    throw new IOException("malformed message definition in line " + lineNumber + ": " + trimmed);
+                }
+                signals = new ArrayList<>();
+            } else if (trimmed.startsWith("SG_ ")) {
+                if (message == null) {
+                    throw new IOException("signal outside of a message in line " + lineNumber + ": " + trimmed);
+                }
+                signals.add(parseSignal(trimmed, lineNumber));
+            } else if (!trimmed.isEmpty() && message != null) {
+                // any other section terminates the signal list of the current message
+                addMessage(messages, message, signals);
+                message = null;
+            }
+        }
+        if (message != null) {
+            addMessage(messages, message, signals);
+        }
+        try {
+            return new DbcDatabase(messages);
+        } catch (IllegalArgumentException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Parses a DBC file.
+     *
+     * @param path the DBC file
+     * @return the database
+     * @throws IOException if reading fails or a message or signal definition is malformed
+     */
+    public static DbcDatabase load(Path path) throws IOException {
+        // DBC files are traditionally written in Windows-1252, which is a superset of ISO-8859-1 for printable characters
+        try (Reader reader = Files.newBufferedReader(path, StandardCharsets.ISO_8859_1)) {
+            return parse(reader);
+        }
+    }
+
+    private static void addMessage(List<DbcMessage> messages, Matcher m, List<DbcSignal> signals) throws IOException {
+        if (!INDEPENDENT_SIGNALS.equals(m.group(2))) {
+            messages.add(toMessage(m, signals));
+        }
+    }
+
+    private static DbcMessage toMessage(Matcher m, List<DbcSignal> signals) throws IOException {
+        try {
+            // the DBC ID uses the same extended flag as the kernel
+            int id = (int) Long.parseLong(m.group(1));
+            int canId = CanId.isExtended(id) ? id & (CanId.EFF_FLAG | CanId.EFF_MASK) : id & CanId.SFF_MASK;
+            return new DbcMessage(canId, m.group(2), Integer.parseInt(m.group(3)), m.group(4), signals);
+        } catch (IllegalArgumentException e) {
+            throw new IOException("invalid message " + m.group(2) + ": " + e.getMessage(), e);
+        }
+    }
+
+    private static DbcSignal parseSignal(String line, int lineNumber) throws IOException {
+        Matcher m = SIGNAL.matcher(line);
+        if (!m.matches()) {
+            throw new IOException("malformed signal definition in line " + lineNumber + ": " + line);
+        }
+        try {
+            String mux = m.group(2);
+            boolean multiplexer = "M".equals(mux);
+            int multiplexValue = DbcSignal.NOT_MULTIPLEXED;
+            if (mux != null && !multiplexer) {
+                int end = mux.endsWith("M") ? mux.length() - 1 : mux.length();
+                multiplexValue = Integer.parseInt(mux.substring(1, end));
+            }
+            return new DbcSignal(m.group(1), Integer.parseInt(m.group(3)), Integer.parseInt(m.group(4)),
+                    "1".equals(m.group(5)), "-".equals(m.group(6)),
+                    Double.parseDouble(m.group(7)), Double.parseDouble(m.group(8)),
+                    parseLimit(m.group(9)), parseLimit(m.group(10)), m.group(11), multiplexer, multiplexValue);
+        } catch (IllegalArgumentException e) {
+            throw new IOException("invalid signal in line " + lineNumber + ": " + e.getMessage(), e);
+        }
+    }
+
+    private static double parseLimit(String value) {
+        return value.isEmpty() ? 0 : Double.parseDouble(value);
+    }
+
+    public List<DbcMessage> getMessages() {
+        return messages;
+    }
+
+    /**
+     * Looks up a message by its CAN ID.
+     *
+     * @param canId the CAN ID including {@link tel.schich.javacan.CanId#EFF_FLAG} for extended frames
+     * @return the message or null if it is unknown
+     */
+    @Nullable
+    public DbcMessage getMessage(int canId) {
+        return byId.get(canId);
+    }
+
+    /**
+     * Looks up a message by its name.
+     *
+     * @param name the name of the message
+     * @return the message or null if it is unknown
+     */
+    @Nullable
+    public DbcMessage getMessage(String name) {
+        for (DbcMessage message : messages) {
+            if (message.getName().equals(name)) {
+                return message;
+            }
+        }
+        return null;
+    }
+}
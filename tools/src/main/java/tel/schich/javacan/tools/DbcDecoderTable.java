@@ -0,0 +1,141 @@
+/*
+ * The MIT License
+ * Copyright © 2018 Phillip Schichtel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package tel.schich.javacan.tools;
+
+import org.eclipse.jdt.annotation.Nullable;
+import tel.schich.javacan.CanFrame;
+import tel.schich.javacan.CanId;
+import tel.schich.javacan.util.IntHashTable;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * A set of {@link DbcMessageDecoder}s, looked up by CAN ID without boxing.
+ * <p>
+ * Usage with a raw channel:
+ * </p>
+ * <pre>{@code
+ * DbcDecoderTable table = DbcDecoderTable.load(Paths.get("powertrain.dbc"));
+ * double[] values = new double[table.getMaxSignalCount()];
+ * CanFrame frame = channel.read(buffer);
+ * DbcMessageDecoder decoder = table.get(frame.getRawId());
+ * if (decoder != null) {
+ *     decoder.decode(frame, values);
+ * }
+ * }</pre>
+ */
+public final class DbcDecoderTable {
+    private static final int ID_MASK = CanId.EFF_FLAG | CanId.EFF_MASK;
+
+    private final IntHashTable<DbcMessageDecoder> decoders;
+    private final int maxSignalCount;
+
+    private DbcDecoderTable(List<DbcMessage> messages) {
+        this.decoders = new IntHashTable<>(messages.size());
+        int max = 0;
+        for (DbcMessage message : messages) {
+            this.decoders.put(message.getCanId(), DbcMessageDecoder.compile(message));
+            max = Math.max(max, message.getSignals().size());
+        }
+        this.maxSignalCount = max;
+    }
+
+    /**
+     * Compiles decoders for all messages of the given database.
+     *
+     * @param database the database
+     * @return the table
+     */
+    public static DbcDecoderTable compile(DbcDatabase database) {
+        return new DbcDecoderTable(database.getMessages());
+    }
+
+    /**
+     * Parses and compiles a DBC file.
+     *
+     * @param reader the DBC source
+     * @return the table
+     * @throws IOException if reading or parsing fails
+     */
+    public static DbcDecoderTable load(Reader reader) throws IOException {
+        return compile(DbcDatabase.parse(reader));
+    }
+
+    /**
+     * Parses and compiles a DBC file.
+     *
+     * @param path the DBC file
+     * @return the table
+     * @throws IOException if reading or parsing fails
+     */
+    public static DbcDecoderTable load(Path path) throws IOException {
+        return compile(DbcDatabase.load(path));
+    }
+
+    /**
+     * Looks up the decoder of a CAN ID. The RTR and error flags of the ID are ignored.
+     *
+     * @param canId the CAN ID as returned by {@link tel.schich.javacan.CanFrame#getRawId()}
+     * @return the decoder or null if the ID is unknown
+     */
+    @Nullable
+    public DbcMessageDecoder get(int canId) {
+        return decoders.get(canId & ID_MASK);
+    }
+
+    /**
+     * Decodes a frame.
+     *
+     * @param frame the frame
+     * @param values the destination of the physical values, at least {@link #getMaxSignalCount()} long
+     * @return the number of decoded signals or -1 if the ID of the frame is unknown
+     */
+    public int decode(CanFrame frame, double[] values) {
+        DbcMessageDecoder decoder = get(frame.getRawId());
+        if (decoder == null) {
+            return -1;
+        }
+        return decoder.decode(frame, values);
+    }
+
+    /**
+     * Returns the number of messages in this table.
+     *
+     * @return the number of decoders
+     */
+    public int size() {
+        return decoders.size();
+    }
+
+    /**
+     * Returns the highest number of signals of a single message, which is sufficient to size the value arrays.
+     *
+     * @return the maximum signal count
+     */
+    public int getMaxSignalCount() {
+        return maxSignalCount;
+    }
+}
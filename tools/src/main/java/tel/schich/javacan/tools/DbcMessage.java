@@ -0,0 +1,106 @@
+/*
+ * The MIT License
+ * Copyright © 2018 Phillip Schichtel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package tel.schich.javacan.tools;
+
+import tel.schich.javacan.CanId;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The definition of a CAN message as given by a {@code BO_} line of a DBC file together with its signals.
+ */
+public final class DbcMessage {
+    /**
+     * The bit DBC files use to mark extended frame IDs, which matches {@link tel.schich.javacan.CanId#EFF_FLAG}.
+     */
+    public static final int DBC_EXTENDED_FLAG = 0x80000000;
+
+    private final int canId;
+    private final String name;
+    private final int length;
+    private final String transmitter;
+    private final List<DbcSignal> signals;
+
+    public DbcMessage(int canId, String name, int length, String transmitter, List<DbcSignal> signals) {
+        if (length < 0 || length > 64) {
+            throw new IllegalArgumentException("length must be between 0 and 64 bytes: " + length);
+        }
+        int multiplexers = 0;
+        for (DbcSignal signal : signals) {
+            if (signal.isMultiplexer()) {
+                multiplexers++;
+            }
+        }
+        if (multiplexers > 1) {
+            throw new IllegalArgumentException("message " + name + " has more than one multiplexer");
+        }
+        this.canId = canId;
+        this.name = name;
+        this.length = length;
+        this.transmitter = transmitter;
+        this.signals = Collections.unmodifiableList(new ArrayList<>(signals));
+    }
+
+    /**
+     * Returns the CAN ID in the kernel representation, which includes {@link tel.schich.javacan.CanId#EFF_FLAG} for
+     * extended frames and can be compared to {@link tel.schich.javacan.CanFrame#getRawId()}.
+     *
+     * @return the CAN ID
+     */
+    public int getCanId() {
+        return canId;
+    }
+
+    public boolean isExtended() {
+        return CanId.isExtended(canId);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Returns the payload length in bytes.
+     *
+     * @return the length
+     */
+    public int getLength() {
+        return length;
+    }
+
+    public String getTransmitter() {
+        return transmitter;
+    }
+
+    public List<DbcSignal> getSignals() {
+        return signals;
+    }
+
+    @Override
+    public String toString() {
+        return "DbcMessage(" + name + ", id=" + Integer.toHexString(CanId.getId(canId)) + (isExtended() ? ", extended" : "")
+                + ", length=" + length + ", signals=" + signals.size() + ')';
+    }
+}
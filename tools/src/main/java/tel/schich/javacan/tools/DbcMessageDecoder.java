@@ -0,0 +1,171 @@
+/*
+ * The MIT License
+ * Copyright © 2018 Phillip Schichtel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package tel.schich.javacan.tools;
+
+import tel.schich.javacan.CanFrame;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A decoder for the signals of a single {@link DbcMessage}. The signal layouts are compiled into primitive arrays
+ * when the decoder is created, decoding reads the payload directly from the backing buffer of the frame, neither
+ * allocates nor boxes and stores the values in the order of the signal definitions.
+ * <p>
+ * Signals that exceed the received payload, as well as multiplexed signals whose multiplex value does not match the
+ * multiplexer of the frame, are decoded as {@link Double#NaN}.
+ * </p>
+ */
+public final class DbcMessageDecoder {
+    private final DbcSignalLayout layout;
+
+    DbcMessageDecoder(DbcSignalLayout layout) {
+        this.layout = layout;
+    }
+
+    /**
+     * Compiles a decoder for the given message.
+     *
+     * @param message the message definition
+     * @return the decoder
+     */
+    public static DbcMessageDecoder compile(DbcMessage message) {
+        return new DbcMessageDecoder(new DbcSignalLayout(message));
+    }
+
+    public DbcMessage getMessage() {
+        return layout.message;
+    }
+
+    /**
+     * Returns the number of signals decoded by this decoder.
+     *
+     * @return the number of signals
+     */
+    public int getSignalCount() {
+        return layout.signals.length;
+    }
+
+    /**
+     * Returns the definition of the signal at the given index.
+     *
+     * @param index the index of the signal
+     * @return the definition
+     */
+    public DbcSignal getSignal(int index) {
+        return layout.signals[index];
+    }
+
+    /**
+     * Looks up a signal by name, which is meant to resolve the indices once instead of per frame.
+     *
+     * @param name the name of the signal
+     * @return the index of the signal or -1 if the message has no such signal
+     */
+    public int indexOf(String name) {
+        return layout.indexOf(name);
+    }
+
+    /**
+     * Decodes a signal of a payload into its physical value.
+     *
+     * @param buffer the buffer containing the payload
+     * @param dataOffset the offset of the payload within the buffer
+     * @param dataLength the length of the payload
+     * @param index the index of the signal
+     * @return the physical value or {@link Double#NaN} if the signal is not present
+     */
+    public double decode(ByteBuffer buffer, int dataOffset, int dataLength, int index) {
+        DbcSignalLayout l = layout;
+        if (!l.isPresent(buffer, dataOffset, dataLength, index)) {
+            return Double.NaN;
+        }
+        long raw = l.extract(buffer, dataOffset, index);
+        final double value;
+        if (l.signShifts[index] != 0) {
+            value = l.signExtend(raw, index);
+        } else if (raw < 0) {
+            // unsigned 64 bit signal beyond Long.MAX_VALUE
+            value = (raw >>> 1) * 2.0 + (raw & 1);
+        } else {
+            value = raw;
+        }
+        return value * l.factors[index] + l.offsets[index];
+    }
+
+    /**
+     * Decodes a signal of a frame into its physical value.
+     *
+     * @param frame the frame
+     * @param index the index of the signal
+     * @return the physical value or {@link Double#NaN} if the signal is not present
+     */
+    public double decode(CanFrame frame, int index) {
+        return decode(frame.getBuffer(), frame.getDataOffset(), frame.getDataLength(), index);
+    }
+
+    /**
+     * Decodes all signals of a payload.
+     *
+     * @param buffer the buffer containing the payload
+     * @param dataOffset the offset of the payload within the buffer
+     * @param dataLength the length of the payload
+     * @param values the destination of the physical values, at least {@link #getSignalCount()} long
+     * @return the number of decoded signals
+     */
+    public int decode(ByteBuffer buffer, int dataOffset, int dataLength, double[] values) {
+        int n = layout.signals.length;
+        for (int i = 0; i < n; i++) {
+            values[i] = decode(buffer, dataOffset, dataLength, i);
+        }
+        return n;
+    }
+
+    /**
+     * Decodes all signals of a frame, reading the payload directly from the backing buffer of the frame.
+     *
+     * @param frame the frame
+     * @param values the destination of the physical values, at least {@link #getSignalCount()} long
+     * @return the number of decoded signals
+     */
+    public int decode(CanFrame frame, double[] values) {
+        return decode(frame.getBuffer(), frame.getDataOffset(), frame.getDataLength(), values);
+    }
+
+    /**
+     * Extracts the raw value of a signal, sign extended for signed signals.
+     *
+     * @param buffer the buffer containing the payload
+     * @param dataOffset the offset of the payload within the buffer
+     * @param index the index of the signal
+     * @return the raw value
+     * @throws IndexOutOfBoundsException if the signal exceeds the buffer
+     */
+    public long decodeRaw(ByteBuffer buffer, int dataOffset, int index) {
+        return layout.signExtend(layout.extract(buffer, dataOffset, index), index);
+    }
+
+    @Override
+    public String toString() {
+        return "DbcMessageDecoder(" + layout.message.getName() + ", signals=" + layout.signals.length + ')';
+    }
+}
@@ -0,0 +1,278 @@
+/*
+ * The MIT License
+ * Copyright © 2018 Phillip Schichtel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package tel.schich.javacan.tools;
+
+import tel.schich.javacan.CanFrame;
+import tel.schich.javacan.JavaCAN;
+import tel.schich.javacan.RawCanChannel;
+import tel.schich.javacan.util.CanUtils;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * An encoder for the signals of a single {@link DbcMessage}, the counterpart of {@link DbcMessageDecoder}. Physical
+ * values are converted to raw values and packed into the payload in place, using the same precompiled bit layouts as
+ * the decoder. Bits that do not belong to the encoded signal are left untouched, so signals can be updated
+ * individually.
+ * <p>
+ * The payload can live in a frame created once by {@link #createFrame()}, which can be passed to
+ * {@link tel.schich.javacan.RawCanChannel#write(CanFrame)} after every update, or in a caller supplied buffer
+ * holding many frames prepared by {@link #writeFrameHeader(ByteBuffer, int)}, which can be sent with
+ * {@link tel.schich.javacan.RawCanChannel#writeBatchUnsafe(ByteBuffer, int[], int[], int)}. Encoding does not
+ * allocate.
+ * </p>
+ * <p>
+ * Values outside the range representable by a signal are saturated, {@link Double#NaN} values are skipped.
+ * </p>
+ */
+public final class DbcMessageEncoder {
+    private static final double TWO_POW_63 = 0x1p63;
+
+    private final DbcSignalLayout layout;
+    private final double[] minRaw;
+    private final double[] maxRaw;
+    private final int frameLength;
+    private final int dataLength;
+
+    DbcMessageEncoder(DbcSignalLayout layout) {
+        this.layout = layout;
+        int n = layout.signals.length;
+        this.minRaw = new double[n];
+        this.maxRaw = new double[n];
+        for (int i = 0; i < n; i++) {
+            int length = layout.signals[i].getLength();
+            if (layout.signals[i].isSigned()) {
+                minRaw[i] = -Math.pow(2, length - 1);
+                maxRaw[i] = Math.pow(2, length - 1) - 1;
+            } else {
+                minRaw[i] = 0;
+                maxRaw[i] = Math.pow(2, length) - 1;
+            }
+        }
+        int length = layout.message.getLength();
+        if (length > CanFrame.MAX_DATA_LENGTH) {
+            // CAN FD frames only support a few data lengths beyond 8 bytes
+            this.frameLength = RawCanChannel.FD_MTU;
+            this.dataLength = CanUtils.padDataLength((byte) length);
+        } else {
+            this.frameLength = RawCanChannel.MTU;
+            this.dataLength = length;
+        }
+    }
+
+    /**
+     * Compiles an encoder for the given message.
+     *
+     * @param message the message definition
+     * @return the encoder
+     */
+    public static DbcMessageEncoder compile(DbcMessage message) {
+        return new DbcMessageEncoder(new DbcSignalLayout(message));
+    }
+
+    public DbcMessage getMessage() {
+        return layout.message;
+    }
+
+    public int getSignalCount() {
+        return layout.signals.length;
+    }
+
+    public DbcSignal getSignal(int index) {
+        return layout.signals[index];
+    }
+
+    /**
+     * Looks up a signal by name, which is meant to resolve the indices once instead of per update.
+     *
+     * @param name the name of the signal
+     * @return the index of the signal or -1 if the message has no such signal
+     */
+    public int indexOf(String name) {
+        return layout.indexOf(name);
+    }
+
+    /**
+     * Returns the length of the frames of this message, either {@link tel.schich.javacan.RawCanChannel#MTU} or
+     * {@link tel.schich.javacan.RawCanChannel#FD_MTU} for messages longer than 8 bytes.
+     *
+     * @return the frame length in bytes
+     */
+    public int getFrameLength() {
+        return frameLength;
+    }
+
+    /**
+     * Returns the data length of the frames of this message. This is the message length, rounded up to the next valid
+     * CAN FD data length for messages longer than 8 bytes.
+     *
+     * @return the data length in bytes
+     */
+    public int getDataLength() {
+        return dataLength;
+    }
+
+    /**
+     * Creates a frame of this message with a zeroed payload, backed by its own direct buffer.
+     *
+     * @return the new frame
+     */
+    public CanFrame createFrame() {
+        ByteBuffer buffer = JavaCAN.allocateOrdered(frameLength);
+        writeFrameHeader(buffer, 0);
+        return CanFrame.create(buffer);
+    }
+
+    /**
+     * Writes the header of a frame of this message into the buffer and zeroes the payload. The payload starts at
+     * {@code frameOffset + CanFrame.HEADER_LENGTH}, its length is {@link #getDataLength()}.
+     *
+     * @param buffer the direct buffer in native byte order
+     * @param frameOffset the offset of the frame within the buffer
+     * @return the length of the frame
+     */
+    public int writeFrameHeader(ByteBuffer buffer, int frameOffset) {
+        if (buffer.order() != ByteOrder.nativeOrder()) {
+            throw new IllegalArgumentException("The buffer must use the native byte order!");
+        }
+        buffer.putInt(frameOffset, layout.message.getCanId())
+                .put(frameOffset + 4, (byte) dataLength)
+                .put(frameOffset + 5, CanFrame.FD_NO_FLAGS)
+                .putShort(frameOffset + 6, (short) 0);
+        for (int i = CanFrame.HEADER_LENGTH; i < frameLength; i++) {
+            buffer.put(frameOffset + i, (byte) 0);
+        }
+        return frameLength;
+    }
+
+    /**
+     * Encodes the physical value of a signal into a payload.
+     *
+     * @param buffer the buffer containing the payload
+     * @param dataOffset the offset of the payload within the buffer
+     * @param index the index of the signal
+     * @param value the physical value, {@link Double#NaN} leaves the signal unchanged
+     */
+    public void encode(ByteBuffer buffer, int dataOffset, int index, double value) {
+        if (Double.isNaN(value)) {
+            return;
+        }
+        double raw = toRaw(index, value);
+        // unsigned 64 bit values beyond Long.MAX_VALUE do not survive the plain conversion
+        long bits = raw >= TWO_POW_63 ? (long) (raw - TWO_POW_63) ^ Long.MIN_VALUE : (long) raw;
+        layout.insert(buffer, dataOffset, index, bits);
+    }
+
+    /**
+     * Encodes the physical value of a signal into the payload of a frame in place.
+     *
+     * @param frame the frame, e.g. created by {@link #createFrame()}
+     * @param index the index of the signal
+     * @param value the physical value, {@link Double#NaN} leaves the signal unchanged
+     * @throws IllegalArgumentException if the signal exceeds the payload of the frame
+     */
+    public void encode(CanFrame frame, int index, double value) {
+        checkLength(frame, index);
+        encode(frame.getBuffer(), frame.getDataOffset(), index, value);
+    }
+
+    /**
+     * Encodes a raw value into the bits of a signal, bits beyond the signal length are ignored.
+     *
+     * @param buffer the buffer containing the payload
+     * @param dataOffset the offset of the payload within the buffer
+     * @param index the index of the signal
+     * @param raw the raw value
+     */
+    public void encodeRaw(ByteBuffer buffer, int dataOffset, int index, long raw) {
+        layout.insert(buffer, dataOffset, index, raw);
+    }
+
+    /**
+     * Encodes all signals of a payload. Multiplexed signals are only encoded if their multiplex value matches the
+     * raw value of the multiplexer, {@link Double#NaN} values are skipped.
+     *
+     * @param buffer the buffer containing the payload
+     * @param dataOffset the offset of the payload within the buffer
+     * @param values the physical values in the order of the signals, at least {@link #getSignalCount()} long
+     * @return the number of encoded signals
+     */
+    public int encode(ByteBuffer buffer, int dataOffset, double[] values) {
+        int mux = layout.multiplexerIndex;
+        // multiplex values are raw values, so the physical multiplexer value has to be converted first
+        double muxRaw = mux < 0 || Double.isNaN(values[mux]) ? Double.NaN : toRaw(mux, values[mux]);
+        int n = layout.signals.length;
+        int encoded = 0;
+        for (int i = 0; i < n; i++) {
+            double value = values[i];
+            if (Double.isNaN(value)) {
+                continue;
+            }
+            int multiplexValue = layout.multiplexValues[i];
+            if (multiplexValue != DbcSignal.NOT_MULTIPLEXED && muxRaw != multiplexValue) {
+                continue;
+            }
+            encode(buffer, dataOffset, i, value);
+            encoded++;
+        }
+        return encoded;
+    }
+
+    /**
+     * Encodes all signals into the payload of a frame in place.
+     *
+     * @param frame the frame, e.g. created by {@link #createFrame()}
+     * @param values the physical values in the order of the signals, at least {@link #getSignalCount()} long
+     * @return the number of encoded signals
+     * @throws IllegalArgumentException if the message does not fit the payload of the frame
+     * @see #encode(ByteBuffer, int, double[])
+     */
+    public int encode(CanFrame frame, double[] values) {
+        if (frame.getDataLength() < layout.message.getLength()) {
+            throw new IllegalArgumentException("The frame is shorter than the message " + layout.message.getName());
+        }
+        return encode(frame.getBuffer(), frame.getDataOffset(), values);
+    }
+
+    private double toRaw(int index, double value) {
+        double raw = Math.rint((value - layout.offsets[index]) / layout.factors[index]);
+        if (raw < minRaw[index]) {
+            return minRaw[index];
+        } else if (raw > maxRaw[index]) {
+            return maxRaw[index];
+        }
+        return raw;
+    }
+
+    private void checkLength(CanFrame frame, int index) {
+        if (layout.requiredLengths[index] > frame.getDataLength()) {
+            throw new IllegalArgumentException("Signal " + layout.signals[index].getName() + " exceeds the frame payload");
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "DbcMessageEncoder(" + layout.message.getName() + ", signals=" + layout.signals.length + ')';
+    }
+}
@@ -0,0 +1,190 @@
+/*
+ * The MIT License
+ * Copyright © 2018 Phillip Schichtel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package tel.schich.javacan.tools;
+
+import java.util.Objects;
+
+/**
+ * The definition of a single signal of a {@link DbcMessage} as given by an {@code SG_} line of a DBC file.
+ * <p>
+ * The start bit uses the DBC notation: for little endian (Intel, {@code @1}) signals it is the position of the least
+ * significant bit, for big endian (Motorola, {@code @0}) signals it is the position of the most significant bit, in
+ * both cases counted as {@code byte * 8 + bit} with bit 0 being the least significant bit of the byte.
+ * </p>
+ */
+public final class DbcSignal {
+    /**
+     * The maximum length of a signal in bits.
+     */
+    public static final int MAX_LENGTH = 64;
+
+    /**
+     * The multiplex value of signals that are not multiplexed.
+     */
+    public static final int NOT_MULTIPLEXED = -1;
+
+    private final String name;
+    private final int startBit;
+    private final int length;
+    private final boolean littleEndian;
+    private final boolean signed;
+    private final double factor;
+    private final double offset;
+    private final double minimum;
+    private final double maximum;
+    private final String unit;
+    private final boolean multiplexer;
+    private final int multiplexValue;
+
+    public DbcSignal(String name, int startBit, int length, boolean littleEndian, boolean signed, double factor,
+                     double offset, double minimum, double maximum, String unit, boolean multiplexer,
+                     int multiplexValue) {
+        if (startBit < 0 || startBit >= 8 * 64) {
+            throw new IllegalArgumentException("start bit out of range: " + startBit);
+        }
+        if (length < 1 || length > MAX_LENGTH) {
+            throw new IllegalArgumentException("length must be between 1 and " + MAX_LENGTH + " bits: " + length);
+        }
+        if (multiplexValue < NOT_MULTIPLEXED) {
+            throw new IllegalArgumentException("multiplex value must not be negative: " + multiplexValue);
+        }
+        this.name = name;
+        this.startBit = startBit;
+        this.length = length;
+        this.littleEndian = littleEndian;
+        this.signed = signed;
+        this.factor = factor;
+        this.offset = offset;
+        this.minimum = minimum;
+        this.maximum = maximum;
+        this.unit = unit;
+        this.multiplexer = multiplexer;
+        this.multiplexValue = multiplexValue;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getStartBit() {
+        return startBit;
+    }
+
+    public int getLength() {
+        return length;
+    }
+
+    public boolean isLittleEndian() {
+        return littleEndian;
+    }
+
+    public boolean isSigned() {
+        return signed;
+    }
+
+    public double getFactor() {
+        return factor;
+    }
+
+    public double getOffset() {
+        return offset;
+    }
+
+    public double getMinimum() {
+        return minimum;
+    }
+
+    public double getMaximum() {
+        return maximum;
+    }
+
+    public String getUnit() {
+        return unit;
+    }
+
+    /**
+     * Checks if this signal is the multiplexer switch ({@code M}) of its message.
+     *
+     * @return true if this signal selects the multiplexed signals
+     */
+    public boolean isMultiplexer() {
+        return multiplexer;
+    }
+
+    /**
+     * Returns the value of the multiplexer for which this signal is present ({@code m<value>}).
+     *
+     * @return the multiplex value or {@link #NOT_MULTIPLEXED}
+     */
+    public int getMultiplexValue() {
+        return multiplexValue;
+    }
+
+    /**
+     * Returns the position of the most significant bit in a linear big endian numbering of the payload, in which bit
+     * 0 is the most significant bit of the first byte.
+     *
+     * @return the linear position of the most significant bit of a big endian signal
+     */
+    int getLinearMsb() {
+        return (startBit / 8) * 8 + (7 - startBit % 8);
+    }
+
+    /**
+     * Returns the number of payload bytes required to hold this signal.
+     *
+     * @return the minimum payload length
+     */
+    public int getRequiredLength() {
+        if (littleEndian) {
+            return (startBit + length + 7) / 8;
+        }
+        return (getLinearMsb() + length + 7) / 8;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof DbcSignal)) return false;
+        DbcSignal that = (DbcSignal) o;
+        return startBit == that.startBit && length == that.length && littleEndian == that.littleEndian
+                && signed == that.signed && Double.compare(factor, that.factor) == 0
+                && Double.compare(offset, that.offset) == 0 && Double.compare(minimum, that.minimum) == 0
+                && Double.compare(maximum, that.maximum) == 0 && multiplexer == that.multiplexer
+                && multiplexValue == that.multiplexValue && name.equals(that.name) && unit.equals(that.unit);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(name, startBit, length, littleEndian, signed, factor, offset, minimum, maximum, unit,
+                multiplexer, multiplexValue);
+    }
+
+    @Override
+    public String toString() {
+        return "DbcSignal(" + name + ", start=" + startBit + ", length=" + length + (littleEndian ? ", intel" : ", motorola")
+                + (signed ? ", signed" : "") + ", factor=" + factor + ", offset=" + offset + ", unit=" + unit
+                + (multiplexer ? ", multiplexer" : "")
+                + (multiplexValue != NOT_MULTIPLEXED ? ", multiplexed=" + multiplexValue : "") + ')';
+    }
+}
@@ -0,0 +1,207 @@
+/*
+ * The MIT License
+ * Copyright © 2018 Phillip Schichtel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package tel.schich.javacan.tools;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+
+/**
+ * The precomputed bit layout of the signals of a {@link DbcMessage}, flattened into primitive arrays. For every signal
+ * the covered bytes, the shift of the least significant bit within them, the mask and the linear conversion are
+ * computed once, so extracting or inserting a signal is a single loop over at most nine bytes.
+ */
+final class DbcSignalLayout {
+    final DbcMessage message;
+    final DbcSignal[] signals;
+    final int[] firstBytes;
+    final int[] byteCounts;
+    final int[] shifts;
+    final long[] masks;
+    final boolean[] bigEndian;
+    final int[] signShifts;
+    final double[] factors;
+    final double[] offsets;
+    final int[] requiredLengths;
+    final int multiplexerIndex;
+    final int[] multiplexValues;
+
+    DbcSignalLayout(DbcMessage message) {
+        List<DbcSignal> definitions = message.getSignals();
+        int n = definitions.size();
+        this.message = message;
+        this.signals = definitions.toArray(new DbcSignal[0]);
+        this.firstBytes = new int[n];
+        this.byteCounts = new int[n];
+        this.shifts = new int[n];
+        this.masks = new long[n];
+        this.bigEndian = new boolean[n];
+        this.signShifts = new int[n];
+        this.factors = new double[n];
+        this.offsets = new double[n];
+        this.requiredLengths = new int[n];
+        this.multiplexValues = new int[n];
+        int multiplexer = -1;
+        for (int i = 0; i < n; i++) {
+            DbcSignal s = signals[i];
+            int length = s.getLength();
+            if (s.isLittleEndian()) {
+                firstBytes[i] = s.getStartBit() / 8;
+                shifts[i] = s.getStartBit() % 8;
+                byteCounts[i] = (shifts[i] + length + 7) / 8;
+            } else {
+                // the signal covers the bits msb to msb + length - 1 in a numbering that starts at the MSB of byte 0
+                int msb = s.getLinearMsb();
+                int lsb = msb + length - 1;
+                firstBytes[i] = msb / 8;
+                shifts[i] = 7 - lsb % 8;
+                byteCounts[i] = lsb / 8 - msb / 8 + 1;
+                bigEndian[i] = true;
+            }
+            masks[i] = length == 64 ? -1L : (1L << length) - 1;
+            signShifts[i] = s.isSigned() ? 64 - length : 0;
+            factors[i] = s.getFactor();
+            offsets[i] = s.getOffset();
+            requiredLengths[i] = firstBytes[i] + byteCounts[i];
+            multiplexValues[i] = s.getMultiplexValue();
+            if (s.isMultiplexer()) {
+                multiplexer = i;
+            }
+        }
+        this.multiplexerIndex = multiplexer;
+    }
+
+    /**
+     * Looks up a signal by name.
+     *
+     * @param name the name of the signal
+     * @return the index of the signal or -1 if the message has no such signal
+     */
+    int indexOf(String name) {
+        for (int i = 0; i < signals.length; i++) {
+            if (signals[i].getName().equals(name)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Extracts the raw, not sign extended value of a signal. The caller has to ensure that the data is long enough.
+     *
+     * @param buffer the buffer containing the payload
+     * @param data the offset of the payload within the buffer
+     * @param index the index of the signal
+     * @return the raw value
+     */
+    long extract(ByteBuffer buffer, int data, int index) {
+        int start = data + firstBytes[index];
+        int count = byteCounts[index];
+        int shift = shifts[index];
+        long raw = 0;
+        if (bigEndian[index]) {
+            // a 64 bit signal that is not byte aligned covers 9 bytes, the first one only contributes its low bits
+            int skip = count > 8 ? 1 : 0;
+            for (int i = skip; i < count; i++) {
+                raw = (raw << 8) | (buffer.get(start + i) & 0xFF);
+            }
+            raw >>>= shift;
+            if (skip != 0) {
+                raw |= (long) (buffer.get(start) & 0xFF) << (64 - shift);
+            }
+        } else {
+            int n = Math.min(count, 8);
+            for (int i = n - 1; i >= 0; i--) {
+                raw = (raw << 8) | (buffer.get(start + i) & 0xFF);
+            }
+            raw >>>= shift;
+            if (count > 8) {
+                raw |= (long) (buffer.get(start + 8) & 0xFF) << (64 - shift);
+            }
+        }
+        return raw & masks[index];
+    }
+
+    /**
+     * Inserts a raw value into the bits of a signal, leaving all other bits of the payload untouched. The caller has to
+     * ensure that the data is long enough.
+     *
+     * @param buffer the buffer containing the payload
+     * @param data the offset of the payload within the buffer
+     * @param index the index of the signal
+     * @param raw the raw value, bits beyond the signal length are ignored
+     */
+    void insert(ByteBuffer buffer, int data, int index, long raw) {
+        int start = data + firstBytes[index];
+        int count = byteCounts[index];
+        int shift = shifts[index];
+        long mask = masks[index];
+        long value = raw & mask;
+        for (int k = 0; k < count; k++) {
+            // k counts the bytes from the one containing the least significant bit of the signal
+            int position = bigEndian[index] ? start + count - 1 - k : start + k;
+            int bits;
+            int values;
+            if (k < 8) {
+                bits = (int) ((mask << shift) >>> (8 * k)) & 0xFF;
+                values = (int) ((value << shift) >>> (8 * k)) & 0xFF;
+            } else {
+                bits = (int) (mask >>> (64 - shift)) & 0xFF;
+                values = (int) (value >>> (64 - shift)) & 0xFF;
+            }
+            buffer.put(position, (byte) ((buffer.get(position) & ~bits) | values));
+        }
+    }
+
+    /**
+     * Checks if a signal is present in a payload of the given length, taking the multiplexer into account.
+     *
+     * @param buffer the buffer containing the payload
+     * @param data the offset of the payload within the buffer
+     * @param length the payload length
+     * @param index the index of the signal
+     * @return true if the signal can be decoded
+     */
+    boolean isPresent(ByteBuffer buffer, int data, int length, int index) {
+        if (requiredLengths[index] > length) {
+            return false;
+        }
+        int multiplexValue = multiplexValues[index];
+        if (multiplexValue == DbcSignal.NOT_MULTIPLEXED) {
+            return true;
+        }
+        int mux = multiplexerIndex;
+        return mux >= 0 && requiredLengths[mux] <= length && extract(buffer, data, mux) == multiplexValue;
+    }
+
+    /**
+     * Converts a raw value into its signed representation if the signal is signed.
+     *
+     * @param raw the raw value
+     * @param index the index of the signal
+     * @return the sign extended value
+     */
+    long signExtend(long raw, int index) {
+        int signShift = signShifts[index];
+        return signShift == 0 ? raw : (raw << signShift) >> signShift;
+    }
+}
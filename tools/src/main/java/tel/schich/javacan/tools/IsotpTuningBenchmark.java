@@ -0,0 +1,180 @@
+/*
+ * The MIT License
+ * Copyright © 2018 Phillip Schichtel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package tel.schich.javacan.tools;
+
+import tel.schich.javacan.CanChannels;
+import tel.schich.javacan.CanSocketOptions;
+import tel.schich.javacan.IsotpCanChannel;
+import tel.schich.javacan.IsotpSocketAddress;
+import tel.schich.javacan.IsotpTuningProfile;
+import tel.schich.javacan.JavaCAN;
+import tel.schich.javacan.NetworkDevice;
+import tel.schich.javacan.platform.linux.LinuxNetworkDevice;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+import static tel.schich.javacan.IsotpSocketAddress.isotpAddress;
+
+/**
+ * Measures the ISO-TP throughput of a set of {@link IsotpTuningProfile}s by transferring messages between two
+ * ISO-TP channels on the same interface, which is usually a {@code vcan} device:
+ * <pre>
+ * ip link add dev vcan0 type vcan
+ * ip link set vcan0 mtu 72
+ * ip link set up vcan0
+ * </pre>
+ * Each profile is applied to both the sending and the receiving channel and the achieved payload rate is reported
+ * in bytes per second. Profiles the interface does not support (e.g. CAN FD profiles on a classic CAN interface)
+ * are reported as failed.
+ */
+public class IsotpTuningBenchmark {
+
+    private static final IsotpSocketAddress SENDER = isotpAddress(0x7E0);
+    private static final IsotpSocketAddress RECEIVER = isotpAddress(0x7E8);
+    private static final Duration RECEIVE_TIMEOUT = Duration.ofSeconds(5);
+
+    public static final List<IsotpTuningProfile> DEFAULT_PROFILES = Arrays.asList(
+            IsotpTuningProfile.DEFAULT,
+            IsotpTuningProfile.classic("classic-bs8", 8, 0),
+            IsotpTuningProfile.canFd("fd16-brs", 16, true, 0, 0),
+            IsotpTuningProfile.canFd("fd32-brs", 32, true, 0, 0),
+            IsotpTuningProfile.canFd("fd64", 64, false, 0, 0),
+            IsotpTuningProfile.canFd("fd64-brs", 64, true, 0, 0),
+            IsotpTuningProfile.canFd("fd64-brs-bs8", 64, true, 8, 0),
+            IsotpTuningProfile.canFd("fd64-brs-bs16-st1", 64, true, 16, 1)
+    );
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1) {
+            System.out.println("usage: IsotpTuningBenchmark <interface> [message length] [message count]");
+            return;
+        }
+
+        NetworkDevice device = LinuxNetworkDevice.lookup(args[0]);
+        int messageLength = args.length > 1 ? Integer.parseInt(args[1]) : IsotpCanChannel.MAX_MESSAGE_LENGTH;
+        int messageCount = args.length > 2 ? Integer.parseInt(args[2]) : 100;
+        if (messageLength < 1 || messageLength > IsotpCanChannel.MAX_MESSAGE_LENGTH) {
+            System.out.println("The message length must be within 1 and " + IsotpCanChannel.MAX_MESSAGE_LENGTH);
+            return;
+        }
+
+        List<Result> results = new ArrayList<>(DEFAULT_PROFILES.size());
+        for (IsotpTuningProfile profile : DEFAULT_PROFILES) {
+            try {
+                Result result = run(device, profile, messageLength, messageCount);
+                results.add(result);
+                System.out.printf("%-20s %12.0f B/s%n", profile.getName(), result.bytesPerSecond);
+            } catch (IOException | ExecutionException e) {
+                Throwable cause = e instanceof ExecutionException ? e.getCause() : e;
+                System.out.printf("%-20s failed: %s%n", profile.getName(), cause);
+            }
+        }
+
+        results.stream()
+                .max((a, b) -> Double.compare(a.bytesPerSecond, b.bytesPerSecond))
+                .ifPresent(best -> System.out.println("fastest: " + best.profile));
+    }
+
+    /**
+     * Transfers the given number of messages using the given profile on both peers.
+     *
+     * @param device the device to run on
+     * @param profile the profile to measure
+     * @param messageLength the length of each message
+     * @param messageCount the number of messages to transfer
+     * @return the measured throughput
+     * @throws IOException if the profile could not be applied or a transfer failed on the sending side
+     * @throws ExecutionException if a transfer failed on the receiving side
+     * @throws InterruptedException if interrupted while waiting for the receiver
+     */
+    public static Result run(NetworkDevice device, IsotpTuningProfile profile, int messageLength,
+                             int messageCount) throws IOException, ExecutionException, InterruptedException {
+        try (IsotpCanChannel sender = CanChannels.newIsotpChannel();
+             IsotpCanChannel receiver = CanChannels.newIsotpChannel()) {
+            profile.apply(sender);
+            profile.apply(receiver);
+            receiver.setOption(CanSocketOptions.SO_RCVTIMEO, RECEIVE_TIMEOUT);
+            sender.bind(device, RECEIVER, SENDER);
+            receiver.bind(device, SENDER, RECEIVER);
+
+            CompletableFuture<Long> done = new CompletableFuture<>();
+            Thread receiverThread = new Thread(() -> {
+                ByteBuffer buffer = JavaCAN.allocateUnordered(IsotpCanChannel.MAX_MESSAGE_LENGTH + 1);
+                try {
+                    for (int i = 0; i < messageCount; i++) {
+                        buffer.clear();
+                        int length = receiver.read(buffer);
+                        if (length != messageLength) {
+                            throw new IOException("Received " + length + " bytes, expected " + messageLength);
+                        }
+                    }
+                    done.complete(System.nanoTime());
+                } catch (Throwable t) {
+                    done.completeExceptionally(t);
+                }
+            }, "isotp-benchmark-receiver");
+            receiverThread.start();
+
+            ByteBuffer message = JavaCAN.allocateUnordered(messageLength);
+            for (int i = 0; i < messageLength; i++) {
+                message.put((byte) i);
+            }
+
+            long start = System.nanoTime();
+            for (int i = 0; i < messageCount && !done.isDone(); i++) {
+                message.rewind();
+                sender.write(message);
+            }
+            long end = done.get();
+            receiverThread.join();
+
+            double seconds = (end - start) / 1e9;
+            return new Result(profile, (long) messageLength * messageCount / seconds);
+        }
+    }
+
+    public static final class Result {
+        private final IsotpTuningProfile profile;
+        private final double bytesPerSecond;
+
+        Result(IsotpTuningProfile profile, double bytesPerSecond) {
+            this.profile = profile;
+            this.bytesPerSecond = bytesPerSecond;
+        }
+
+        public IsotpTuningProfile getProfile() {
+            return profile;
+        }
+
+        public double getBytesPerSecond() {
+            return bytesPerSecond;
+        }
+    }
+}
@@ -0,0 +1,180 @@
+/*
+ * The MIT License
+ * Copyright © 2018 Phillip Schichtel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package tel.schich.javacan.tools;
+
+import org.eclipse.jdt.annotation.Nullable;
+import tel.schich.javacan.util.IntHashTable;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A set of {@link J1939PgnDecoder}s, looked up by PGN without boxing.
+ * <p>
+ * Usage with a J1939 channel:
+ * </p>
+ * <pre>{@code
+ * J1939DecoderTable table = J1939DecoderTable.load(Paths.get("spns.csv"));
+ * double[] values = new double[table.getMaxParameterCount()];
+ * channel.receive(buffer, header);
+ * buffer.flip();
+ * J1939PgnDecoder decoder = table.get(header.getSourceAddress().getParameterGroupNumber());
+ * if (decoder != null) {
+ *     decoder.decode(buffer, values);
+ * }
+ * }</pre>
+ */
+public final class J1939DecoderTable {
+    /**
+     * The classpath location of a small set of common definitions.
+     */
+    public static final String EXAMPLE_DEFINITIONS = "j1939-spn-example.csv";
+
+    private final IntHashTable<J1939PgnDecoder> decoders;
+    private final int maxParameterCount;
+
+    private J1939DecoderTable(List<J1939PgnDecoder> decoders) {
+        this.decoders = new IntHashTable<>(decoders.size());
+        int max = 0;
+        for (J1939PgnDecoder decoder : decoders) {
+            this.decoders.put(decoder.getParameterGroupNumber(), decoder);
+            max = Math.max(max, decoder.getParameterCount());
+        }
+        this.maxParameterCount = max;
+    }
+
+    /**
+     * Compiles the given definitions into decoders, grouped by PGN.
+     *
+     * @param definitions the definitions
+     * @return the table
+     */
+    public static J1939DecoderTable compile(List<J1939SpnDefinition> definitions) {
+        Map<Integer, List<J1939SpnDefinition>> byPgn = new LinkedHashMap<>();
+        for (J1939SpnDefinition definition : definitions) {
+            byPgn.computeIfAbsent(definition.getParameterGroupNumber(), pgn -> new ArrayList<>()).add(definition);
+        }
+        List<J1939PgnDecoder> decoders = new ArrayList<>(byPgn.size());
+        for (Map.Entry<Integer, List<J1939SpnDefinition>> entry : byPgn.entrySet()) {
+            decoders.add(new J1939PgnDecoder(entry.getKey(), entry.getValue()));
+        }
+        return new J1939DecoderTable(decoders);
+    }
+
+    /**
+     * Reads and compiles a CSV definition file.
+     *
+     * @param reader the CSV source
+     * @return the table
+     * @throws IOException if reading fails
+     * @see J1939SpnDefinition#readCsv(Reader)
+     */
+    public static J1939DecoderTable load(Reader reader) throws IOException {
+        return compile(J1939SpnDefinition.readCsv(reader));
+    }
+
+    /**
+     * Reads and compiles a CSV definition file.
+     *
+     * @param path the CSV file
+     * @return the table
+     * @throws IOException if reading fails
+     * @see J1939SpnDefinition#readCsv(Reader)
+     */
+    public static J1939DecoderTable load(Path path) throws IOException {
+        try (Reader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            return load(reader);
+        }
+    }
+
+    /**
+     * Loads the example definitions shipped with this module (EEC1, ET1, CCVS and LFE).
+     *
+     * @return the table
+     * @throws IOException if reading fails
+     */
+    public static J1939DecoderTable loadExample() throws IOException {
+        InputStream stream = J1939DecoderTable.class.getResourceAsStream(EXAMPLE_DEFINITIONS);
+        if (stream == null) {
+            throw new IOException("Example definitions not found: " + EXAMPLE_DEFINITIONS);
+        }
+        try (Reader reader = new InputStreamReader(stream, StandardCharsets.UTF_8)) {
+            return load(reader);
+        }
+    }
+
+    /**
+     * Looks up the decoder of a PGN.
+     *
+     * @param parameterGroupNumber the PGN
+     * @return the decoder or null if the PGN is unknown
+     */
+    @Nullable
+    public J1939PgnDecoder get(int parameterGroupNumber) {
+        return decoders.get(parameterGroupNumber);
+    }
+
+    /**
+     * Decodes a message of the given PGN.
+     *
+     * @param parameterGroupNumber the PGN of the message
+     * @param data the message data
+     * @param values the destination of the physical values, at least {@link #getMaxParameterCount()} long
+     * @return the number of decoded parameters or -1 if the PGN is unknown
+     */
+    public int decode(int parameterGroupNumber, ByteBuffer data, double[] values) {
+        J1939PgnDecoder decoder = get(parameterGroupNumber);
+        if (decoder == null) {
+            return -1;
+        }
+        return decoder.decode(data, values);
+    }
+
+    /**
+     * Returns the number of PGNs in this table.
+     *
+     * @return the number of decoders
+     */
+    public int size() {
+        return decoders.size();
+    }
+
+    /**
+     * Returns the highest number of parameters of a single PGN, which is sufficient to size the value arrays.
+     *
+     * @return the maximum parameter count
+     */
+    public int getMaxParameterCount() {
+        return maxParameterCount;
+    }
+}
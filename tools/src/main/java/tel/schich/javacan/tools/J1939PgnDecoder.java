@@ -0,0 +1,181 @@
+/*
+ * The MIT License
+ * Copyright © 2018 Phillip Schichtel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package tel.schich.javacan.tools;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+
+/**
+ * A decoder for the parameters of a single PGN, compiled from {@link J1939SpnDefinition}s. The definitions are
+ * flattened into primitive arrays of byte offsets, shifts, masks and linear conversions, so decoding a message neither
+ * allocates nor boxes. Parameters are stored in the order of their definitions.
+ * <p>
+ * Raw values outside the J1939 valid range, i.e. the reserved ({@code 0xFB} to {@code 0xFD}), error ({@code 0xFE})
+ * and not available ({@code 0xFF}) indicators in the most significant byte, or the two highest values of parameters
+ * shorter than a byte, as well as parameters exceeding the received data are decoded as {@link Double#NaN}.
+ * </p>
+ */
+public final class J1939PgnDecoder {
+    private final int parameterGroupNumber;
+    private final J1939SpnDefinition[] definitions;
+    private final int[] byteOffsets;
+    private final int[] byteCounts;
+    private final int[] shifts;
+    private final long[] masks;
+    private final long[] invalidFrom;
+    private final double[] scales;
+    private final double[] offsets;
+
+    J1939PgnDecoder(int parameterGroupNumber, List<J1939SpnDefinition> definitions) {
+        int n = definitions.size();
+        this.parameterGroupNumber = parameterGroupNumber;
+        this.definitions = definitions.toArray(new J1939SpnDefinition[0]);
+        this.byteOffsets = new int[n];
+        this.byteCounts = new int[n];
+        this.shifts = new int[n];
+        this.masks = new long[n];
+        this.invalidFrom = new long[n];
+        this.scales = new double[n];
+        this.offsets = new double[n];
+        for (int i = 0; i < n; i++) {
+            J1939SpnDefinition d = this.definitions[i];
+            if (d.getParameterGroupNumber() != parameterGroupNumber) {
+                throw new IllegalArgumentException("SPN " + d.getSuspectParameterNumber() + " does not belong to PGN " + parameterGroupNumber);
+            }
+            int length = d.getLength();
+            byteOffsets[i] = d.getStartBit() / 8;
+            shifts[i] = d.getStartBit() % 8;
+            byteCounts[i] = (shifts[i] + length + 7) / 8;
+            masks[i] = (1L << length) - 1;
+            invalidFrom[i] = invalidFrom(length, masks[i]);
+            scales[i] = d.getScale();
+            offsets[i] = d.getOffset();
+        }
+    }
+
+    private static long invalidFrom(int length, long mask) {
+        if (length >= 8) {
+            // 0xFB to 0xFD are reserved, 0xFE indicates an error and 0xFF is not available
+            return 0xFBL << (length - 8);
+        } else if (length >= 2) {
+            return mask - 1;
+        } else {
+            return mask + 1;
+        }
+    }
+
+    public int getParameterGroupNumber() {
+        return parameterGroupNumber;
+    }
+
+    /**
+     * Returns the number of parameters decoded by this decoder.
+     *
+     * @return the number of parameters
+     */
+    public int getParameterCount() {
+        return definitions.length;
+    }
+
+    /**
+     * Returns the definition of the parameter at the given index.
+     *
+     * @param index the index of the parameter
+     * @return the definition
+     */
+    public J1939SpnDefinition getDefinition(int index) {
+        return definitions[index];
+    }
+
+    /**
+     * Extracts the raw value of a parameter from the data between position and limit of the buffer. The buffer
+     * is not modified.
+     *
+     * @param data the message data
+     * @param index the index of the parameter
+     * @return the raw value or -1 if the parameter exceeds the data
+     */
+    public long decodeRaw(ByteBuffer data, int index) {
+        int start = data.position() + byteOffsets[index];
+        int count = byteCounts[index];
+        if (start + count > data.limit()) {
+            return -1;
+        }
+        long raw = 0;
+        for (int i = count - 1; i >= 0; i--) {
+            raw = (raw << 8) | (data.get(start + i) & 0xFF);
+        }
+        return (raw >>> shifts[index]) & masks[index];
+    }
+
+    /**
+     * Decodes a parameter into its physical value.
+     *
+     * @param data the message data
+     * @param index the index of the parameter
+     * @return the physical value or {@link Double#NaN} if the raw value is outside the valid range
+     */
+    public double decode(ByteBuffer data, int index) {
+        long raw = decodeRaw(data, index);
+        if (raw < 0 || raw >= invalidFrom[index]) {
+            return Double.NaN;
+        }
+        return raw * scales[index] + offsets[index];
+    }
+
+    /**
+     * Decodes all parameters of a message, e.g. a buffer filled by
+     * {@link tel.schich.javacan.J1939CanChannel#receive(ByteBuffer)} after flipping it.
+     *
+     * @param data the message data
+     * @param values the destination of the physical values, at least {@link #getParameterCount()} long
+     * @return the number of decoded parameters
+     */
+    public int decode(ByteBuffer data, double[] values) {
+        int n = definitions.length;
+        for (int i = 0; i < n; i++) {
+            values[i] = decode(data, i);
+        }
+        return n;
+    }
+
+    /**
+     * Decodes all parameters of a message into their raw values.
+     *
+     * @param data the message data
+     * @param values the destination of the raw values, at least {@link #getParameterCount()} long
+     * @return the number of decoded parameters
+     */
+    public int decodeRaw(ByteBuffer data, long[] values) {
+        int n = definitions.length;
+        for (int i = 0; i < n; i++) {
+            values[i] = decodeRaw(data, i);
+        }
+        return n;
+    }
+
+    @Override
+    public String toString() {
+        return "J1939PgnDecoder(pgn=" + parameterGroupNumber + ", parameters=" + definitions.length + ')';
+    }
+}
@@ -0,0 +1,186 @@
+/*
+ * The MIT License
+ * Copyright © 2018 Phillip Schichtel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package tel.schich.javacan.tools;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * The definition of a single J1939 suspect parameter (SPN) within a parameter group (PGN).
+ * <p>
+ * Definitions are read from CSV files with the columns {@code pgn,spn,name,start_bit,length,scale,offset,unit}.
+ * The start bit is zero based and counted from the least significant bit of the first data byte, so SPN 190
+ * (engine speed, bytes 4-5 in the J1939-71 notation) starts at bit 24. PGNs and SPNs may be given in decimal or in
+ * hexadecimal with a {@code 0x} prefix. Empty lines, lines starting with {@code #} and a header line are ignored.
+ * </p>
+ */
+public final class J1939SpnDefinition {
+    /**
+     * The maximum length of a parameter in bits.
+     */
+    public static final int MAX_LENGTH = 57;
+
+    private final int parameterGroupNumber;
+    private final int suspectParameterNumber;
+    private final String name;
+    private final int startBit;
+    private final int length;
+    private final double scale;
+    private final double offset;
+    private final String unit;
+
+    public J1939SpnDefinition(int parameterGroupNumber, int suspectParameterNumber, String name, int startBit,
+                              int length, double scale, double offset, String unit) {
+        if (startBit < 0 || startBit >= 8 * 1785) {
+            throw new IllegalArgumentException("start bit out of range: " + startBit);
+        }
+        if (length < 1 || length > MAX_LENGTH) {
+            throw new IllegalArgumentException("length must be between 1 and " + MAX_LENGTH + " bits: " + length);
+        }
+        this.parameterGroupNumber = parameterGroupNumber;
+        this.suspectParameterNumber = suspectParameterNumber;
+        this.name = name;
+        this.startBit = startBit;
+        this.length = length;
+        this.scale = scale;
+        this.offset = offset;
+        this.unit = unit;
+    }
+
+    public int getParameterGroupNumber() {
+        return parameterGroupNumber;
+    }
+
+    public int getSuspectParameterNumber() {
+        return suspectParameterNumber;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getStartBit() {
+        return startBit;
+    }
+
+    public int getLength() {
+        return length;
+    }
+
+    public double getScale() {
+        return scale;
+    }
+
+    public double getOffset() {
+        return offset;
+    }
+
+    public String getUnit() {
+        return unit;
+    }
+
+    /**
+     * Reads definitions in the CSV format described in the class documentation.
+     *
+     * @param reader the source of the CSV data
+     * @return the definitions in the order of the file
+     * @throws IOException if reading fails
+     * @throws IllegalArgumentException if a line is malformed
+     */
+    public static List<J1939SpnDefinition> readCsv(Reader reader) throws IOException {
+        List<J1939SpnDefinition> definitions = new ArrayList<>();
+        BufferedReader lines = new BufferedReader(reader);
+        String line;
+        int lineNumber = 0;
+        boolean first = true;
+        while ((line = lines.readLine()) != null) {
+            lineNumber++;
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            String[] columns = line.split(",", -1);
+            if (columns.length < 7 || columns.length > 8) {
+                throw new IllegalArgumentException("line " + lineNumber + ": expected 7 or 8 columns, got " + columns.length);
+            }
+            boolean header = first && columns[0].trim().equalsIgnoreCase("pgn");
+            first = false;
+            if (header) {
+                continue;
+            }
+            try {
+                definitions.add(new J1939SpnDefinition(
+                    Integer.decode(columns[0].trim()),
+                    Integer.decode(columns[1].trim()),
+                    columns[2].trim(),
+                    Integer.parseInt(columns[3].trim()),
+                    Integer.parseInt(columns[4].trim()),
+                    Double.parseDouble(columns[5].trim()),
+                    Double.parseDouble(columns[6].trim()),
+                    columns.length > 7 ? columns[7].trim() : ""
+                ));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("line " + lineNumber + ": " + e.getMessage(), e);
+            }
+        }
+        return definitions;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        J1939SpnDefinition that = (J1939SpnDefinition) o;
+        return parameterGroupNumber == that.parameterGroupNumber
+            && suspectParameterNumber == that.suspectParameterNumber
+            && startBit == that.startBit
+            && length == that.length
+            && Double.compare(that.scale, scale) == 0
+            && Double.compare(that.offset, offset) == 0
+            && name.equals(that.name)
+            && unit.equals(that.unit);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(parameterGroupNumber, suspectParameterNumber, name, startBit, length, scale, offset, unit);
+    }
+
+    @Override
+    public String toString() {
+        return "J1939SpnDefinition(" +
+            "pgn=" + parameterGroupNumber +
+            ", spn=" + suspectParameterNumber +
+            ", name=" + name +
+            ", startBit=" + startBit +
+            ", length=" + length +
+            ", scale=" + scale +
+            ", offset=" + offset +
+            ", unit=" + unit +
+            ')';
+    }
+}
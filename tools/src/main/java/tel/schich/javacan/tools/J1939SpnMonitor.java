@@ -0,0 +1,83 @@
+/*
+ * The MIT License
+ * Copyright © 2018 Phillip Schichtel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package tel.schich.javacan.tools;
+
+import tel.schich.javacan.CanChannels;
+import tel.schich.javacan.ImmutableJ1939Address;
+import tel.schich.javacan.J1939Address;
+import tel.schich.javacan.J1939CanChannel;
+import tel.schich.javacan.J1939ReceiveMessageHeaderBuffer;
+import tel.schich.javacan.J1939TransportMode;
+import tel.schich.javacan.JavaCAN;
+import tel.schich.javacan.NetworkDevice;
+import tel.schich.javacan.platform.linux.LinuxNetworkDevice;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Paths;
+
+import static tel.schich.javacan.J1939CanSocketOptions.SO_J1939_PROMISC;
+
+/**
+ * Prints the decoded parameters of all J1939 messages received on an interface for which definitions are known.
+ * <p>
+ * usage: {@code J1939SpnMonitor <interface> [definitions.csv]}
+ * </p>
+ * Without a definition file the example definitions of {@link J1939DecoderTable#loadExample()} are used.
+ */
+public class J1939SpnMonitor {
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.out.println("usage: J1939SpnMonitor <interface> [definitions.csv]");
+            return;
+        }
+        NetworkDevice device = LinuxNetworkDevice.lookup(args[0]);
+        J1939DecoderTable table = args.length > 1 ? J1939DecoderTable.load(Paths.get(args[1])) : J1939DecoderTable.loadExample();
+
+        ByteBuffer buffer = JavaCAN.allocateOrdered(J1939TransportMode.TP_CMDT.getMaximumLength());
+        J1939ReceiveMessageHeaderBuffer header = new J1939ReceiveMessageHeaderBuffer();
+        double[] values = new double[table.getMaxParameterCount()];
+        try (J1939CanChannel channel = CanChannels.newJ1939Channel()) {
+            channel.bind(new ImmutableJ1939Address(device, J1939Address.NO_NAME, J1939Address.NO_PGN, J1939Address.NO_ADDR));
+            channel.setOption(SO_J1939_PROMISC, true);
+            while (channel.isOpen()) {
+                buffer.clear();
+                channel.receive(buffer, header);
+                buffer.flip();
+                int pgn = header.getSourceAddressBuffer().getParameterGroupNumber();
+                J1939PgnDecoder decoder = table.get(pgn);
+                if (decoder == null) {
+                    continue;
+                }
+                decoder.decode(buffer, values);
+                byte source = header.getSourceAddressBuffer().getAddress();
+                for (int i = 0; i < decoder.getParameterCount(); i++) {
+                    J1939SpnDefinition definition = decoder.getDefinition(i);
+                    System.out.printf("%02X %05X %6d %-50s %12.4f %s%n", source & 0xFF, pgn,
+                        definition.getSuspectParameterNumber(), definition.getName(), values[i], definition.getUnit());
+                }
+            }
+        }
+    }
+}
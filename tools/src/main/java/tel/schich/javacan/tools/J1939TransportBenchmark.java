@@ -0,0 +1,160 @@
+/*
+ * The MIT License
+ * Copyright © 2018 Phillip Schichtel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package tel.schich.javacan.tools;
+
+import tel.schich.javacan.CanChannels;
+import tel.schich.javacan.ImmutableJ1939Address;
+import tel.schich.javacan.J1939CanChannel;
+import tel.schich.javacan.J1939TransportMode;
+import tel.schich.javacan.JavaCAN;
+import tel.schich.javacan.NetworkDevice;
+import tel.schich.javacan.platform.linux.LinuxNetworkDevice;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static tel.schich.javacan.CanSocketOptions.SO_RCVBUF;
+import static tel.schich.javacan.CanSocketOptions.SO_RCVTIMEO;
+import static tel.schich.javacan.CanSocketOptions.SO_SNDBUF;
+import static tel.schich.javacan.J1939CanSocketOptions.SO_J1939_SEND_PRIO;
+
+/**
+ * Measures J1939 transport protocol transfers between two J1939 channels on the same interface, usually a
+ * {@code vcan} device. For each message size the transport chosen by the kernel, the session completion latency
+ * (from the start of the send call until the receiver got the complete message) and the resulting payload rate in
+ * bytes per second are reported.
+ * <p>
+ * usage: {@code J1939TransportBenchmark <interface> [repetitions] [send buffer] [receive buffer] [priority]}
+ * </p>
+ * The buffer sizes and the priority are the parameters the kernel allows to tune, everything else about the
+ * transport (packets per clear-to-send, timeouts) is fixed by the kernel implementation.
+ */
+public class J1939TransportBenchmark {
+
+    private static final int PGN = 0xEF00;
+    private static final byte SENDER = (byte) 0x20;
+    private static final byte RECEIVER = (byte) 0x30;
+    private static final Duration RECEIVE_TIMEOUT = Duration.ofSeconds(30);
+
+    public static final int[] DEFAULT_SIZES = {1785, 1786, 4 * 1024, 16 * 1024, 64 * 1024, 100 * 1024};
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1) {
+            System.out.println("usage: J1939TransportBenchmark <interface> [repetitions] [send buffer] [receive buffer] [priority]");
+            return;
+        }
+        NetworkDevice device = LinuxNetworkDevice.lookup(args[0]);
+        int repetitions = args.length > 1 ? Integer.parseInt(args[1]) : 3;
+        int sendBuffer = args.length > 2 ? Integer.parseInt(args[2]) : 0;
+        int receiveBuffer = args.length > 3 ? Integer.parseInt(args[3]) : 0;
+        int priority = args.length > 4 ? Integer.parseInt(args[4]) : -1;
+
+        System.out.printf("%10s %10s %14s %14s%n", "bytes", "transport", "latency (ms)", "B/s");
+        for (int size : DEFAULT_SIZES) {
+            try (J1939CanChannel sender = CanChannels.newJ1939Channel();
+                 J1939CanChannel receiver = CanChannels.newJ1939Channel()) {
+                configure(sender, sendBuffer, receiveBuffer, priority);
+                configure(receiver, sendBuffer, receiveBuffer, priority);
+                connect(device, sender, receiver);
+
+                long totalNanos = 0;
+                for (int i = 0; i < repetitions; i++) {
+                    totalNanos += transfer(sender, receiver, size);
+                }
+                double latency = totalNanos / (double) repetitions;
+                System.out.printf("%10d %10s %14.1f %14.0f%n", size, J1939TransportMode.of(size, false),
+                        latency / 1e6, size / (latency / 1e9));
+            } catch (IOException | ExecutionException | TimeoutException e) {
+                Throwable cause = e instanceof ExecutionException ? e.getCause() : e;
+                System.out.printf("%10d failed: %s%n", size, cause);
+            }
+        }
+    }
+
+    private static void configure(J1939CanChannel channel, int sendBuffer, int receiveBuffer, int priority)
+            throws IOException {
+        if (sendBuffer > 0) {
+            channel.setOption(SO_SNDBUF, sendBuffer);
+        }
+        if (receiveBuffer > 0) {
+            channel.setOption(SO_RCVBUF, receiveBuffer);
+        }
+        if (priority >= 0) {
+            channel.setOption(SO_J1939_SEND_PRIO, priority);
+        }
+        channel.setOption(SO_RCVTIMEO, RECEIVE_TIMEOUT);
+    }
+
+    private static void connect(NetworkDevice device, J1939CanChannel sender, J1939CanChannel receiver)
+            throws IOException {
+        ImmutableJ1939Address senderAddress = new ImmutableJ1939Address(device, ImmutableJ1939Address.NO_NAME, PGN, SENDER);
+        ImmutableJ1939Address receiverAddress = new ImmutableJ1939Address(device, ImmutableJ1939Address.NO_NAME, PGN, RECEIVER);
+        sender.bind(senderAddress);
+        sender.connect(receiverAddress);
+        receiver.bind(receiverAddress);
+        receiver.connect(senderAddress);
+    }
+
+    /**
+     * Transfers one message and returns the session completion latency.
+     *
+     * @param sender the sending channel
+     * @param receiver the receiving channel
+     * @param size the message size
+     * @return the time from starting the send until the message was received completely in nanoseconds
+     */
+    private static long transfer(J1939CanChannel sender, J1939CanChannel receiver, int size)
+            throws IOException, ExecutionException, InterruptedException, TimeoutException {
+        CompletableFuture<Long> received = new CompletableFuture<>();
+        Thread receiverThread = new Thread(() -> {
+            ByteBuffer buffer = JavaCAN.allocateUnordered(size + 1);
+            try {
+                long length = receiver.receive(buffer);
+                if (length != size) {
+                    throw new IOException("Received " + length + " bytes, expected " + size);
+                }
+                received.complete(System.nanoTime());
+            } catch (Throwable t) {
+                received.completeExceptionally(t);
+            }
+        }, "j1939-benchmark-receiver");
+        receiverThread.start();
+
+        ByteBuffer message = JavaCAN.allocateUnordered(size);
+        for (int i = 0; i < size; i++) {
+            message.put((byte) i);
+        }
+        message.flip();
+
+        long start = System.nanoTime();
+        sender.send(message);
+        long end = received.get(RECEIVE_TIMEOUT.getSeconds() + 1, TimeUnit.SECONDS);
+        receiverThread.join();
+        return end - start;
+    }
+}
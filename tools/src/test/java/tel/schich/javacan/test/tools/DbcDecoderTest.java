@@ -0,0 +1,186 @@
+/*
+ * The MIT License
+ * Copyright © 2018 Phillip Schichtel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package tel.schich.javacan.test.tools;
+
+import org.junit.jupiter.api.Test;
+import tel.schich.javacan.CanFrame;
+import tel.schich.javacan.CanId;
+import tel.schich.javacan.tools.DbcDatabase;
+import tel.schich.javacan.tools.DbcDecoderTable;
+import tel.schich.javacan.tools.DbcMessage;
+import tel.schich.javacan.tools.DbcMessageDecoder;
+import tel.schich.javacan.tools.DbcSignal;
+
+import java.io.IOException;
+import java.io.StringReader;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static tel.schich.javacan.CanFrame.FD_NO_FLAGS;
+
+class DbcDecoderTest {
+    static final String DBC = String.join("\n",
+            "VERSION \"\"",
+            "",
+            "BU_: ECU",
+            "",
+            "BO_ 291 ENGINE: 8 ECU",
+            " SG_ Speed : 0|16@1+ (0.1,0) [0|6553.5] \"km/h\" ECU",
+            " SG_ Temp : 16|8@1- (1,-40) [-168|87] \"degC\" ECU",
+            " SG_ Torque : 31|12@0- (0.5,0) [-1024|1023.5] \"Nm\" ECU",
+            " SG_ Flag : 44|1@1+ (1,0) [0|1] \"\" ECU",
+            "",
+            "BO_ 512 MUXED: 8 ECU",
+            " SG_ Mux M : 0|8@1+ (1,0) [0|255] \"\" ECU",
+            " SG_ A m1 : 8|16@1+ (1,0) [0|65535] \"\" ECU",
+            " SG_ B m2 : 8|16@1- (0.01,0) [-327.68|327.67] \"\" ECU",
+            " SG_ Common : 24|8@1+ (1,0) [0|255] \"\" ECU",
+            "",
+            "BO_ 2147484484 WIDE: 10 ECU",
+            " SG_ Wide : 3|64@0+ (1,0) [0|0] \"\" ECU",
+            " SG_ Tail : 72|8@1- (1,0) [-128|127] \"\" ECU",
+            "",
+            "BO_ 3221225472 VECTOR__INDEPENDENT_SIG_MSG: 0 Vector__XXX",
+            " SG_ Unused : 0|8@1+ (1,0) [0|0] \"\" Vector__XXX",
+            "",
+            "CM_ SG_ 291 Speed \"vehicle speed\";",
+            "");
+
+    static DbcDatabase database() throws IOException {
+        return DbcDatabase.parse(new StringReader(DBC));
+    }
+
+    @Test
+    void testParse() throws IOException {
+        DbcDatabase database = database();
+        assertEquals(3, database.getMessages().size(), "the independent signals are not a message");
+
+        DbcMessage engine = database.getMessage("ENGINE");
+        assertNotNull(engine);
+        assertEquals(0x123, engine.getCanId());
+        assertEquals(8, engine.getLength());
+        DbcSignal torque = engine.getSignals().get(2);
+        assertEquals("Torque", torque.getName());
+        assertFalse(torque.isLittleEndian());
+        assertTrue(torque.isSigned());
+        assertEquals(0.5, torque.getFactor());
+        assertEquals(5, torque.getRequiredLength());
+
+        DbcMessage wide = database.getMessage("WIDE");
+        assertNotNull(wide);
+        assertTrue(wide.isExtended());
+        assertEquals(CanId.EFF_FLAG | 0x344, wide.getCanId());
+
+        DbcMessage muxed = database.getMessage(512);
+        assertNotNull(muxed);
+        assertTrue(muxed.getSignals().get(0).isMultiplexer());
+        assertEquals(2, muxed.getSignals().get(2).getMultiplexValue());
+        assertEquals(DbcSignal.NOT_MULTIPLEXED, muxed.getSignals().get(3).getMultiplexValue());
+    }
+
+    @Test
+    void testMalformedSignal() {
+        String dbc = "BO_ 1 BROKEN: 8 ECU\n SG_ Broken : 0|65@1+ (1,0) [0|0] \"\" ECU\n";
+        assertThrows(IOException.class, () -> DbcDatabase.parse(new StringReader(dbc)));
+    }
+
+    @Test
+    void testIntelAndMotorola() throws IOException {
+        DbcMessageDecoder decoder = DbcMessageDecoder.compile(database().getMessage("ENGINE"));
+        CanFrame frame = CanFrame.create(0x123, FD_NO_FLAGS,
+                bytes(0xD2, 0x04, 0xF6, 0xF3, 0x80, 0x10, 0x00, 0x00));
+
+        double[] values = new double[decoder.getSignalCount()];
+        assertEquals(4, decoder.decode(frame, values));
+        assertEquals(123.4, values[0], 1e-9, "little endian unsigned");
+        assertEquals(-50.0, values[1], "little endian signed");
+        assertEquals(-100.0, values[2], "big endian signed across two bytes");
+        assertEquals(1.0, values[3]);
+        assertEquals(0xF38 - 0x1000, decoder.decodeRaw(frame.getBuffer(), frame.getDataOffset(), 2));
+    }
+
+    @Test
+    void testShortPayload() throws IOException {
+        DbcMessageDecoder decoder = DbcMessageDecoder.compile(database().getMessage("ENGINE"));
+        CanFrame frame = CanFrame.create(0x123, FD_NO_FLAGS, bytes(0xD2, 0x04, 0xF6));
+        assertEquals(123.4, decoder.decode(frame, decoder.indexOf("Speed")), 1e-9);
+        assertEquals(-50.0, decoder.decode(frame, decoder.indexOf("Temp")));
+        assertTrue(Double.isNaN(decoder.decode(frame, decoder.indexOf("Torque"))));
+        assertTrue(Double.isNaN(decoder.decode(frame, decoder.indexOf("Flag"))));
+        assertEquals(-1, decoder.indexOf("Unknown"));
+    }
+
+    @Test
+    void testMultiplexing() throws IOException {
+        DbcMessageDecoder decoder = DbcMessageDecoder.compile(database().getMessage("MUXED"));
+        double[] values = new double[decoder.getSignalCount()];
+
+        decoder.decode(CanFrame.create(0x200, FD_NO_FLAGS, bytes(1, 0xF4, 0x01, 7)), values);
+        assertEquals(1.0, values[0]);
+        assertEquals(500.0, values[1]);
+        assertTrue(Double.isNaN(values[2]), "B is only present for multiplexer value 2");
+        assertEquals(7.0, values[3]);
+
+        decoder.decode(CanFrame.create(0x200, FD_NO_FLAGS, bytes(2, 0xD4, 0xFE, 7)), values);
+        assertTrue(Double.isNaN(values[1]), "A is only present for multiplexer value 1");
+        assertEquals(-3.0, values[2], 1e-9);
+        assertEquals(7.0, values[3]);
+    }
+
+    @Test
+    void testUnalignedWideBigEndianSignal() throws IOException {
+        DbcMessageDecoder decoder = DbcMessageDecoder.compile(database().getMessage("WIDE"));
+        // the 64 bit signal covers the low nibble of byte 0 up to the high nibble of byte 8
+        CanFrame frame = CanFrame.createExtended(0x344, FD_NO_FLAGS,
+                bytes(0x0F, 0xED, 0xCB, 0xA9, 0x87, 0x65, 0x43, 0x21, 0x00, 0x80, 0x00, 0x00));
+        assertEquals(0xFEDCBA9876543210L, decoder.decodeRaw(frame.getBuffer(), frame.getDataOffset(), 0));
+        assertEquals(0x1.FDB97530ECA86p63, decoder.decode(frame, 0), "unsigned beyond Long.MAX_VALUE");
+        assertEquals(-128.0, decoder.decode(frame, 1));
+    }
+
+    @Test
+    void testTable() throws IOException {
+        DbcDecoderTable table = DbcDecoderTable.compile(database());
+        assertEquals(3, table.size());
+        assertEquals(4, table.getMaxSignalCount());
+
+        DbcMessageDecoder engine = table.get(0x123);
+        assertNotNull(engine);
+        assertEquals("ENGINE", engine.getMessage().getName());
+        assertSame(engine, table.get(0x123 | CanId.RTR_FLAG), "the RTR flag is ignored");
+        assertNull(table.get(0x124));
+        assertNull(table.get(0x344), "an extended ID does not match the standard ID");
+        assertNotNull(table.get(CanId.EFF_FLAG | 0x344));
+
+        double[] values = new double[table.getMaxSignalCount()];
+        assertEquals(-1, table.decode(CanFrame.create(0x7FF, FD_NO_FLAGS, new byte[8]), values));
+        assertEquals(2, table.decode(CanFrame.createExtended(0x344, FD_NO_FLAGS, new byte[12]), values));
+    }
+
+    static byte[] bytes(int... values) {
+        byte[] bytes = new byte[values.length];
+        for (int i = 0; i < values.length; i++) {
+            bytes[i] = (byte) values[i];
+        }
+        return bytes;
+    }
+}
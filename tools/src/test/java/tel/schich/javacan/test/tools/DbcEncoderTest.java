@@ -0,0 +1,188 @@
+/*
+ * The MIT License
+ * Copyright © 2018 Phillip Schichtel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package tel.schich.javacan.test.tools;
+
+import org.junit.jupiter.api.Test;
+import tel.schich.javacan.CanFrame;
+import tel.schich.javacan.JavaCAN;
+import tel.schich.javacan.RawCanChannel;
+import tel.schich.javacan.tools.DbcDatabase;
+import tel.schich.javacan.tools.DbcMessageDecoder;
+import tel.schich.javacan.tools.DbcMessageEncoder;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static tel.schich.javacan.test.tools.DbcDecoderTest.bytes;
+
+class DbcEncoderTest {
+
+    private static byte[] payload(CanFrame frame) {
+        byte[] data = new byte[frame.getDataLength()];
+        frame.getData(data, 0, data.length);
+        return data;
+    }
+
+    @Test
+    void testIntelAndMotorolaLayout() throws IOException {
+        DbcMessageEncoder encoder = DbcMessageEncoder.compile(DbcDecoderTest.database().getMessage("ENGINE"));
+        CanFrame frame = encoder.createFrame();
+        assertEquals(0x123, frame.getRawId());
+        assertEquals(8, frame.getDataLength());
+
+        assertEquals(4, encoder.encode(frame, new double[] { 123.4, -50, -100, 1 }));
+        assertArrayEquals(bytes(0xD2, 0x04, 0xF6, 0xF3, 0x80, 0x10, 0x00, 0x00), payload(frame));
+    }
+
+    @Test
+    void testRoundTrip() throws IOException {
+        DbcDatabase database = DbcDecoderTest.database();
+        DbcMessageEncoder encoder = DbcMessageEncoder.compile(database.getMessage("ENGINE"));
+        DbcMessageDecoder decoder = DbcMessageDecoder.compile(database.getMessage("ENGINE"));
+        CanFrame frame = encoder.createFrame();
+        double[] decoded = new double[decoder.getSignalCount()];
+        Random random = new Random(42);
+        for (int n = 0; n < 1000; n++) {
+            double[] values = {
+                    random.nextInt(65536) * 0.1,
+                    random.nextInt(256) - 168,
+                    (random.nextInt(4096) - 2048) * 0.5,
+                    random.nextInt(2),
+            };
+            encoder.encode(frame, values);
+            decoder.decode(frame, decoded);
+            for (int i = 0; i < values.length; i++) {
+                assertEquals(values[i], decoded[i], 1e-9, encoder.getSignal(i).getName());
+            }
+        }
+    }
+
+    @Test
+    void testUpdateLeavesOtherBitsUntouched() throws IOException {
+        DbcMessageEncoder encoder = DbcMessageEncoder.compile(DbcDecoderTest.database().getMessage("ENGINE"));
+        CanFrame frame = encoder.createFrame();
+        ByteBuffer buffer = frame.getBuffer();
+        for (int i = 0; i < frame.getDataLength(); i++) {
+            buffer.put(frame.getDataOffset() + i, (byte) 0xFF);
+        }
+        encoder.encode(frame, encoder.indexOf("Torque"), 0);
+        assertArrayEquals(bytes(0xFF, 0xFF, 0xFF, 0x00, 0x0F, 0xFF, 0xFF, 0xFF), payload(frame));
+        encoder.encode(frame, encoder.indexOf("Flag"), 0);
+        assertArrayEquals(bytes(0xFF, 0xFF, 0xFF, 0x00, 0x0F, 0xEF, 0xFF, 0xFF), payload(frame));
+        encoder.encode(frame, encoder.indexOf("Speed"), Double.NaN);
+        assertArrayEquals(bytes(0xFF, 0xFF, 0xFF, 0x00, 0x0F, 0xEF, 0xFF, 0xFF), payload(frame));
+    }
+
+    @Test
+    void testSaturation() throws IOException {
+        DbcDatabase database = DbcDecoderTest.database();
+        DbcMessageEncoder encoder = DbcMessageEncoder.compile(database.getMessage("ENGINE"));
+        DbcMessageDecoder decoder = DbcMessageDecoder.compile(database.getMessage("ENGINE"));
+        CanFrame frame = encoder.createFrame();
+        int temp = encoder.indexOf("Temp");
+        encoder.encode(frame, temp, 1000);
+        assertEquals(87.0, decoder.decode(frame, temp));
+        encoder.encode(frame, temp, -1000);
+        assertEquals(-168.0, decoder.decode(frame, temp));
+        int speed = encoder.indexOf("Speed");
+        encoder.encode(frame, speed, -1);
+        assertEquals(0.0, decoder.decode(frame, speed));
+    }
+
+    @Test
+    void testMultiplexing() throws IOException {
+        DbcDatabase database = DbcDecoderTest.database();
+        DbcMessageEncoder encoder = DbcMessageEncoder.compile(database.getMessage("MUXED"));
+        DbcMessageDecoder decoder = DbcMessageDecoder.compile(database.getMessage("MUXED"));
+        CanFrame frame = encoder.createFrame();
+        double[] decoded = new double[decoder.getSignalCount()];
+
+        assertEquals(3, encoder.encode(frame, new double[] { 1, 500, -3, 7 }), "B does not belong to value 1");
+        assertArrayEquals(bytes(1, 0xF4, 0x01, 7, 0, 0, 0, 0), payload(frame));
+
+        assertEquals(3, encoder.encode(frame, new double[] { 2, 500, -3, 7 }), "A does not belong to value 2");
+        assertArrayEquals(bytes(2, 0xD4, 0xFE, 7, 0, 0, 0, 0), payload(frame));
+        decoder.decode(frame, decoded);
+        assertEquals(2.0, decoded[0]);
+        assertTrue(Double.isNaN(decoded[1]));
+        assertEquals(-3.0, decoded[2], 1e-9);
+
+        assertEquals(1, encoder.encode(frame, new double[] { Double.NaN, 1, 1, 8 }),
+                "multiplexed signals are skipped without a multiplexer value");
+        assertEquals(8.0, decoder.decode(frame, 3));
+    }
+
+    @Test
+    void testFdPaddingAndWideSignal() throws IOException {
+        DbcDatabase database = DbcDecoderTest.database();
+        DbcMessageEncoder encoder = DbcMessageEncoder.compile(database.getMessage("WIDE"));
+        DbcMessageDecoder decoder = DbcMessageDecoder.compile(database.getMessage("WIDE"));
+        assertEquals(RawCanChannel.FD_MTU, encoder.getFrameLength());
+        assertEquals(12, encoder.getDataLength(), "10 bytes are padded to the next CAN FD length");
+
+        CanFrame frame = encoder.createFrame();
+        assertTrue(frame.isFDFrame());
+        assertTrue(frame.isExtended());
+        assertEquals(0x344, frame.getId());
+        assertEquals(12, frame.getDataLength());
+
+        encoder.encodeRaw(frame.getBuffer(), frame.getDataOffset(), 0, 0xFEDCBA9876543210L);
+        encoder.encode(frame, 1, -128);
+        assertArrayEquals(bytes(0x0F, 0xED, 0xCB, 0xA9, 0x87, 0x65, 0x43, 0x21, 0x00, 0x80, 0x00, 0x00),
+                payload(frame));
+        assertEquals(0xFEDCBA9876543210L, decoder.decodeRaw(frame.getBuffer(), frame.getDataOffset(), 0));
+
+        encoder.encode(frame, 0, 0x1p64);
+        assertEquals(-1L, decoder.decodeRaw(frame.getBuffer(), frame.getDataOffset(), 0), "saturated to 2^64 - 1");
+        assertEquals(-128, decoder.decodeRaw(frame.getBuffer(), frame.getDataOffset(), 1));
+    }
+
+    @Test
+    void testBatchBuffer() throws IOException {
+        DbcDatabase database = DbcDecoderTest.database();
+        DbcMessageEncoder encoder = DbcMessageEncoder.compile(database.getMessage("ENGINE"));
+        DbcMessageDecoder decoder = DbcMessageDecoder.compile(database.getMessage("ENGINE"));
+        ByteBuffer batch = JavaCAN.allocateOrdered(2 * RawCanChannel.MTU);
+        assertEquals(RawCanChannel.MTU, encoder.writeFrameHeader(batch, 0));
+        assertEquals(RawCanChannel.MTU, encoder.writeFrameHeader(batch, RawCanChannel.MTU));
+        int second = RawCanChannel.MTU + CanFrame.HEADER_LENGTH;
+        encoder.encode(batch, second, new double[] { 10, 20, 30, 0 });
+        assertEquals(20.0, decoder.decode(batch, second, 8, 1));
+        assertEquals(-40.0, decoder.decode(batch, CanFrame.HEADER_LENGTH, 8, 1), "the first frame is untouched");
+
+        ByteOrder foreign = ByteOrder.nativeOrder() == ByteOrder.BIG_ENDIAN ? ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN;
+        assertThrows(IllegalArgumentException.class,
+                () -> encoder.writeFrameHeader(ByteBuffer.allocateDirect(16).order(foreign), 0));
+    }
+
+    @Test
+    void testShortFrame() throws IOException {
+        DbcMessageEncoder encoder = DbcMessageEncoder.compile(DbcDecoderTest.database().getMessage("ENGINE"));
+        CanFrame frame = CanFrame.create(0x123, CanFrame.FD_NO_FLAGS, new byte[3]);
+        assertThrows(IllegalArgumentException.class, () -> encoder.encode(frame, encoder.indexOf("Torque"), 1));
+        assertThrows(IllegalArgumentException.class, () -> encoder.encode(frame, new double[4]));
+    }
+}
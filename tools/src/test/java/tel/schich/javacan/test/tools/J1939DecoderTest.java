@@ -0,0 +1,132 @@
+/*
+ * The MIT License
+ * Copyright © 2018 Phillip Schichtel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package tel.schich.javacan.test.tools;
+
+import org.junit.jupiter.api.Test;
+import tel.schich.javacan.tools.J1939DecoderTable;
+import tel.schich.javacan.tools.J1939PgnDecoder;
+import tel.schich.javacan.tools.J1939SpnDefinition;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static tel.schich.javacan.test.tools.DbcDecoderTest.bytes;
+
+class J1939DecoderTest {
+    private static final int EEC1 = 0xF004;
+    private static final int ET1 = 0xFEEE;
+    private static final int CCVS = 0xFEF1;
+
+    @Test
+    void testReadCsv() throws IOException {
+        List<J1939SpnDefinition> definitions = J1939SpnDefinition.readCsv(new StringReader(String.join("\n",
+                "pgn,spn,name,start_bit,length,scale,offset,unit",
+                "# comment",
+                "",
+                "0xF004,190,Engine Speed,24,16,0.125,0,rpm",
+                "65262,110,Engine Coolant Temperature,0,8,1,-40")));
+        assertEquals(2, definitions.size());
+        assertEquals(new J1939SpnDefinition(EEC1, 190, "Engine Speed", 24, 16, 0.125, 0, "rpm"), definitions.get(0));
+        assertEquals(new J1939SpnDefinition(ET1, 110, "Engine Coolant Temperature", 0, 8, 1, -40, ""), definitions.get(1));
+
+        assertThrows(IllegalArgumentException.class,
+                () -> J1939SpnDefinition.readCsv(new StringReader("0xF004,190,Engine Speed,24,16")));
+        assertThrows(IllegalArgumentException.class,
+                () -> J1939SpnDefinition.readCsv(new StringReader("0xF004,190,Engine Speed,24,58,1,0,")));
+    }
+
+    @Test
+    void testExampleTable() throws IOException {
+        J1939DecoderTable table = J1939DecoderTable.loadExample();
+        assertEquals(4, table.size());
+        assertEquals(5, table.getMaxParameterCount());
+        assertNull(table.get(0xFECA));
+        assertEquals(-1, table.decode(0xFECA, ByteBuffer.wrap(new byte[8]), new double[5]));
+
+        J1939PgnDecoder eec1 = table.get(EEC1);
+        assertNotNull(eec1);
+        assertEquals(EEC1, eec1.getParameterGroupNumber());
+        assertEquals(190, eec1.getDefinition(3).getSuspectParameterNumber());
+    }
+
+    @Test
+    void testExtractionAndScaling() throws IOException {
+        J1939DecoderTable table = J1939DecoderTable.loadExample();
+        double[] values = new double[table.getMaxParameterCount()];
+
+        ByteBuffer eec1 = ByteBuffer.wrap(bytes(0xF3, 150, 0xFF, 0xE0, 0x2E, 0x00, 0xFF, 0xFF));
+        assertEquals(5, table.decode(EEC1, eec1, values));
+        assertEquals(3.0, values[0], "the low nibble of the first byte");
+        assertEquals(25.0, values[1], "offset -125");
+        assertTrue(Double.isNaN(values[2]), "0xFF is not available");
+        assertEquals(1500.0, values[3], "little endian 16 bit with scale 0.125");
+        assertEquals(0.0, values[4]);
+        assertEquals(0, eec1.position(), "the buffer is not modified");
+
+        ByteBuffer ccvs = ByteBuffer.wrap(bytes(0xFF, 0x00, 0x19, 0x10, 0xFF, 0xFF, 0xFF, 0xFF));
+        table.decode(CCVS, ccvs, values);
+        assertEquals(25.0, values[0], "scale 1/256");
+        assertEquals(1.0, values[1], "two bits in the middle of a byte");
+    }
+
+    @Test
+    void testValidRange() throws IOException {
+        J1939DecoderTable table = J1939DecoderTable.loadExample();
+        J1939PgnDecoder et1 = table.get(ET1);
+        assertNotNull(et1);
+
+        ByteBuffer data = ByteBuffer.wrap(bytes(0x5A, 0xFE, 0xFF, 0xFA, 0xFF, 0xFF, 0xFF, 0xFF));
+        assertEquals(50.0, et1.decode(data, 0));
+        assertTrue(Double.isNaN(et1.decode(data, 1)), "0xFE indicates an error");
+        assertEquals(0xFAFF * 0.03125 - 273, et1.decode(data, 2), "0xFAFF is the highest valid 16 bit value");
+        data.put(2, (byte) 0x00).put(3, (byte) 0xFB);
+        assertTrue(Double.isNaN(et1.decode(data, 2)), "0xFB00 is reserved");
+        assertEquals(0xFB00, et1.decodeRaw(data, 2));
+
+        J1939PgnDecoder ccvs = table.get(CCVS);
+        assertNotNull(ccvs);
+        assertTrue(Double.isNaN(ccvs.decode(ByteBuffer.wrap(bytes(0, 0, 0, 0x20)), 1)), "2 indicates an error");
+        assertTrue(Double.isNaN(ccvs.decode(ByteBuffer.wrap(bytes(0, 0, 0, 0x30)), 1)), "3 is not available");
+        assertEquals(0.0, ccvs.decode(ByteBuffer.wrap(bytes(0, 0, 0, 0xCF)), 1), "neighbouring bits are ignored");
+    }
+
+    @Test
+    void testShortDataAndPosition() throws IOException {
+        J1939PgnDecoder eec1 = J1939DecoderTable.loadExample().get(EEC1);
+        assertNotNull(eec1);
+        ByteBuffer data = ByteBuffer.wrap(bytes(0xAA, 0xBB, 0xF3, 150, 0xFF, 0xE0));
+        data.position(2);
+        assertEquals(3.0, eec1.decode(data, 0));
+        assertEquals(25.0, eec1.decode(data, 1));
+        assertEquals(-1, eec1.decodeRaw(data, 3), "engine speed exceeds the data");
+        assertTrue(Double.isNaN(eec1.decode(data, 3)));
+
+        long[] raw = new long[eec1.getParameterCount()];
+        assertEquals(5, eec1.decodeRaw(data, raw));
+        assertEquals(0xFF, raw[2]);
+        assertEquals(-1, raw[4]);
+    }
+}